@@ -0,0 +1,77 @@
+#!/usr/bin/env bash
+# Creates one database per gym location on a local PostgreSQL server so location sharding can
+# be tried on one machine. Each database gets the full schema from scripts.sql, its id
+# sequences moved to the location's block (see ShardMap.ID_BLOCK_SIZE), and one trainer, one
+# member, a membership and a class, so the cross-location lists and revenue have data to merge.
+#
+# Usage: scripts/setup-local-shards.sh [location ...]     (default: stjohns mountpearl)
+# Connection settings come from the usual PG* variables (PGHOST, PGPORT, PGUSER, PGPASSWORD).
+# Writes gym-db.shards.properties; start the app with -Dgym.db.config=gym-db.shards.properties.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SCHEMA=src/main/resources/scripts.sql
+CONFIG=gym-db.shards.properties
+BLOCK=100000000
+HOST=${PGHOST:-localhost}
+PORT=${PGPORT:-5432}
+USER_NAME=${PGUSER:-postgres}
+
+if [ "$#" -gt 0 ]; then
+    LOCATIONS=("$@")
+else
+    LOCATIONS=(stjohns mountpearl)
+fi
+
+{
+    echo "# Generated by scripts/setup-local-shards.sh"
+    echo "gym.db.user=${USER_NAME}"
+    echo "gym.db.shards=$(IFS=,; echo "${LOCATIONS[*]}")"
+} > "$CONFIG"
+
+index=0
+for location in "${LOCATIONS[@]}"; do
+    if [[ ! "$location" =~ ^[a-z][a-z0-9_]*$ ]]; then
+        echo "Location names must be lower-case letters, digits and underscores: $location" >&2
+        exit 1
+    fi
+    db="gym_${location}"
+    first=$((index * BLOCK + 1))
+    echo "Creating ${db} (ids from ${first})"
+
+    psql -q -v ON_ERROR_STOP=1 -d postgres -c "DROP DATABASE IF EXISTS ${db}" -c "CREATE DATABASE ${db}"
+    psql -q -v ON_ERROR_STOP=1 -d "$db" -f "$SCHEMA" > /dev/null
+    psql -q -v ON_ERROR_STOP=1 -d "$db" <<SQL
+TRUNCATE class_bookings, memberships, workoutclasses, users, membership_revenue_summary RESTART IDENTITY CASCADE;
+ALTER SEQUENCE users_user_id_seq RESTART WITH ${first};
+ALTER SEQUENCE memberships_membership_id_seq RESTART WITH ${first};
+ALTER SEQUENCE workoutclasses_class_id_seq RESTART WITH ${first};
+ALTER SEQUENCE class_bookings_booking_id_seq RESTART WITH ${first};
+
+-- Both sample users share the scripts.sql admin's password hash
+INSERT INTO users (user_name, user_password, user_email, user_phone, user_address, user_role) VALUES
+('Trainer ${location}', '\$2b\$12\$Qato2z3nbHFiPriCaswIDOireBF4Y3dRos2HZQWATYa40maIORSlq', 'trainer@${location}.example', '555-000-0000', '1 ${location} St', 'Trainer'),
+('Member ${location}', '\$2b\$12\$Qato2z3nbHFiPriCaswIDOireBF4Y3dRos2HZQWATYa40maIORSlq', 'member@${location}.example', '555-000-0001', '2 ${location} St', 'Member');
+INSERT INTO memberships (membership_type, membership_description, membership_cost, member_id, start_date, end_date, is_on_hold, payment_method, status)
+VALUES ('Monthly', 'Monthly pass at ${location}', 49.99, $((first + 1)), CURRENT_DATE, CURRENT_DATE + 30, FALSE, 'Card', 'active');
+INSERT INTO workoutclasses (class_name, class_description, trainer_id, class_date, class_time, class_duration, class_capacity, class_location, class_level, class_equipment)
+VALUES ('Spin at ${location}', 'Sample class', ${first}, CURRENT_DATE + 1, '09:00', 45, 20, 'Studio 1', 'Beginner', 'Bike');
+SQL
+
+    echo "gym.db.shard.${location}.url=jdbc:postgresql://${HOST}:${PORT}/${db}" >> "$CONFIG"
+    if [ "$index" -eq 0 ]; then
+        # Anything not routed to a location (the change feed, admin tools) uses the first one
+        echo "gym.db.url=jdbc:postgresql://${HOST}:${PORT}/${db}" >> "$CONFIG"
+    fi
+    index=$((index + 1))
+done
+
+echo
+echo "Wrote ${CONFIG}. Set the password with GYM_DB_PASSWORD, then check the routing:"
+echo "  java -Dgym.db.config=${CONFIG} -cp <classpath> org.keyin.database.DatabaseConnection"
+echo "  java -Dgym.db.config=${CONFIG} -cp <classpath> org.keyin.api.GymApiServer"
+echo "  TOKEN=\$(curl -s localhost:8080/api/login -d '{\"email\":\"<admin email>\",\"password\":\"<password>\"}' | sed 's/.*\"token\":\"\\([^\"]*\\)\".*/\\1/')"
+echo "  curl -H \"Authorization: Bearer \$TOKEN\" localhost:8080/api/users     # users of every location"
+echo "  curl -H \"Authorization: Bearer \$TOKEN\" localhost:8080/api/revenue   # revenue summed over all locations"
+echo "  curl -H 'X-Gym-Location: ${LOCATIONS[0]}' localhost:8080/api/users \\"
+echo "       -d '{\"username\":\"ana\",\"email\":\"ana@example.com\",\"password\":\"secret\",\"role\":\"Member\"}'"
@@ -0,0 +1,109 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.utils.PasswordUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Seeds the benchmark database with synthetic users, memberships and workout classes.
+ * The schema must already exist (run {@code src/main/resources/scripts.sql} against the
+ * database named by {@code -Dgym.db.url}). Seeding is skipped when the tables already hold
+ * the requested number of rows, so repeated trials at the same size start immediately.
+ */
+public final class BenchmarkDatabase {
+    /** Plain-text password shared by every seeded user. */
+    public static final String PASSWORD = "benchmark";
+
+    /** Number of seeded trainers; classes are spread across them. */
+    public static final int TRAINERS = 50;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Ensures each of the users, memberships and workoutclasses tables holds {@code rows} rows.
+     *
+     * @param rows number of rows per table
+     * @throws SQLException if seeding fails
+     */
+    public static synchronized void seed(int rows) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (count(conn, "users") == rows && count(conn, "memberships") == rows
+                    && count(conn, "workoutclasses") == rows) {
+                return;
+            }
+
+            // One hash for everyone: hashing a million passwords at cost 12 would take days.
+            String hash = PasswordUtils.hashPassword(PASSWORD);
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("TRUNCATE users, memberships, workoutclasses, membership_revenue_summary RESTART IDENTITY CASCADE");
+            }
+
+            try (PreparedStatement users = conn.prepareStatement(
+                    "INSERT INTO users (user_name, user_password, user_email, user_phone, user_address, user_role) " +
+                    "SELECT 'user' || g, ?, 'user' || g || '@bench.local', '555-000-0000', g || ' Bench St', " +
+                    "CASE WHEN g <= ? THEN 'Trainer' ELSE 'Member' END " +
+                    "FROM generate_series(1, ?) g")) {
+                users.setString(1, hash);
+                users.setInt(2, TRAINERS);
+                users.setInt(3, rows);
+                users.executeUpdate();
+            }
+
+            try (PreparedStatement memberships = conn.prepareStatement(
+                    "INSERT INTO memberships (membership_type, membership_description, membership_cost, member_id, " +
+                    "start_date, end_date, is_on_hold, payment_method, status) " +
+                    "SELECT (ARRAY['Monthly','Annual','Student','Trial'])[1 + g % 4], 'Benchmark membership ' || g, " +
+                    "(g % 500) + 0.99, 1 + (g % ?), DATE '2024-01-01' + (g % 730), DATE '2024-02-01' + (g % 730), " +
+                    "g % 17 = 0, (ARRAY['Card','Cash','Bank'])[1 + g % 3], 'active' " +
+                    "FROM generate_series(1, ?) g")) {
+                memberships.setInt(1, rows);
+                memberships.setInt(2, rows);
+                memberships.executeUpdate();
+            }
+
+            try (PreparedStatement classes = conn.prepareStatement(
+                    "INSERT INTO workoutclasses (class_name, class_description, class_date, class_time, trainer_id, " +
+                    "class_duration, class_capacity, class_location, class_level, class_equipment, is_completed) " +
+                    "SELECT 'Class ' || g, 'Synthetic benchmark class number ' || g, DATE '2024-01-01' + (g / 40), " +
+                    "TIME '06:00' + ((g % 40) * INTERVAL '20 minutes'), 1 + (g % ?), 45, 20, " +
+                    "'Studio ' || (g % 8), (ARRAY['Beginner','Intermediate','Advanced'])[1 + g % 3], 'None', FALSE " +
+                    "FROM generate_series(1, ?) g")) {
+                classes.setInt(1, TRAINERS);
+                classes.setInt(2, rows);
+                classes.executeUpdate();
+            }
+
+            conn.commit();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE users");
+                stmt.execute("ANALYZE memberships");
+                stmt.execute("ANALYZE workoutclasses");
+            }
+        }
+    }
+
+    /**
+     * Email address of the n-th seeded user (1-based).
+     *
+     * @param n user number
+     * @return the seeded email
+     */
+    public static String email(int n) {
+        return "user" + n + "@bench.local";
+    }
+
+    private static long count(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.keyin.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point for {@code benchmarks.jar}. Accepts the usual JMH command line
+ * (e.g. {@code -p rows=1000 UserDaoBenchmark}), always attaches the GC profiler so
+ * allocation rates are reported, and forwards {@code -Dgym.*} properties such as
+ * {@code gym.db.url} to the forked benchmark JVMs.
+ *
+ * <pre>
+ * mvn -Pbenchmark package
+ * java -Dgym.db.url=jdbc:postgresql://localhost:5432/gym_bench -jar target/benchmarks.jar -p rows=1000,100000
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            // Listing and help output are JMH's own job.
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        List<String> forwarded = new ArrayList<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("gym.")) {
+                forwarded.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        builder.addProfiler(GCProfiler.class);
+        if (!forwarded.isEmpty()) {
+            builder.jvmArgsAppend(forwarded.toArray(new String[0]));
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
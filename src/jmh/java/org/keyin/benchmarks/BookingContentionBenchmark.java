@@ -0,0 +1,115 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.workoutclasses.BookingDAO;
+import org.keyin.workoutclasses.BookingDAOImpl;
+import org.keyin.workoutclasses.BookingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many members racing for the last seats in a few popular classes.
+ * Each operation books a random member into a random hot class and, if it got a seat,
+ * cancels again so seats keep churning at the capacity boundary. After every iteration
+ * the seat counters are checked against the booking rows and the capacity, and the run
+ * fails loudly if anything was oversold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class BookingContentionBenchmark {
+    private static final int MEMBERS = 1000;
+
+    @Param({"1", "8"})
+    public int hotClasses;
+
+    @Param({"20"})
+    public int capacity;
+
+    private final BookingDAO bookingDAO = new BookingDAOImpl();
+    private int firstClassId;
+
+    @Setup(Level.Trial)
+    public void createClasses() throws SQLException {
+        BenchmarkDatabase.seed(MEMBERS);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO workoutclasses (class_name, class_description, class_date, class_time, trainer_id, " +
+                     "class_duration, class_capacity, class_location, class_level) " +
+                     "SELECT 'Hot class ' || g, 'booking-contention-benchmark', DATE '2031-01-01' + g, TIME '18:00', 1, 60, ?, 'Studio X', 'All Levels' " +
+                     "FROM generate_series(1, ?) g RETURNING class_id")) {
+            stmt.setInt(1, capacity);
+            stmt.setInt(2, hotClasses);
+            try (ResultSet rs = stmt.executeQuery()) {
+                firstClassId = Integer.MAX_VALUE;
+                while (rs.next()) {
+                    firstClassId = Math.min(firstClassId, rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyNoOversell() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT w.class_id, w.seats_booked, w.class_capacity, COUNT(b.booking_id) AS bookings " +
+                     "FROM workoutclasses w LEFT JOIN class_bookings b ON b.class_id = w.class_id " +
+                     "WHERE w.class_description = 'booking-contention-benchmark' " +
+                     "GROUP BY w.class_id, w.seats_booked, w.class_capacity")) {
+            while (rs.next()) {
+                int seats = rs.getInt("seats_booked");
+                if (seats > rs.getInt("class_capacity") || seats != rs.getInt("bookings")) {
+                    throw new IllegalStateException("Seat accounting broken for class " + rs.getInt("class_id")
+                            + ": seats_booked=" + seats + ", bookings=" + rs.getInt("bookings")
+                            + ", capacity=" + rs.getInt("class_capacity"));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropClasses() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM workoutclasses WHERE class_description = 'booking-contention-benchmark'");
+        }
+    }
+
+    @Benchmark
+    public BookingResult bookLastSeats() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int classId = firstClassId + random.nextInt(hotClasses);
+        int memberId = 1 + random.nextInt(MEMBERS);
+        BookingResult result = bookingDAO.bookClass(classId, memberId);
+        if (result == BookingResult.BOOKED && random.nextBoolean()) {
+            bookingDAO.cancelBooking(classId, memberId);
+        }
+        return result;
+    }
+}
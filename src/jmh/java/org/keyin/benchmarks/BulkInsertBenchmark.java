@@ -0,0 +1,114 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipDAOImpl;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-row insert path with the batched bulk insert APIs.
+ * Scores are rows per second ({@link OperationsPerInvocation} is the row count).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BulkInsertBenchmark {
+    private static final int ROWS = 5_000;
+    private static final String MARKER = "bulk-insert-benchmark";
+
+    /**
+     * Chunk sizes only apply to the batched paths, so the single-row paths don't rerun per size.
+     */
+    @State(Scope.Benchmark)
+    public static class Chunking {
+        @Param({"100", "500", "2000"})
+        public int chunkSize;
+    }
+
+    private final MembershipDAO membershipDAO = new MembershipDAOImpl();
+    private final WorkoutClassDAO workoutClassDAO = new WorkoutClassDAOImpl();
+    private List<Membership> memberships;
+    private List<WorkoutClass> workoutClasses;
+
+    @Setup(Level.Trial)
+    public void prepare() throws SQLException {
+        BenchmarkDatabase.seed(1000);
+        memberships = new ArrayList<>(ROWS);
+        workoutClasses = new ArrayList<>(ROWS);
+        LocalDate start = LocalDate.of(2030, 1, 1);
+        for (int i = 0; i < ROWS; i++) {
+            memberships.add(new Membership("Monthly", MARKER, 49.99, 1 + i % 1000,
+                    start, start.plusMonths(1), false));
+            workoutClasses.add(new WorkoutClass(0, "Bulk " + i, 1 + i % BenchmarkDatabase.TRAINERS, MARKER,
+                    "Beginner", 45, 20, start.plusDays(i / 40), LocalTime.of(6, 0).plusMinutes((i % 40) * 20L),
+                    "Studio " + (i % 8), "None"));
+        }
+    }
+
+    // Every invocation inserts the same schedule, which the no-overlap constraints would reject a second time
+    @TearDown(Level.Invocation)
+    public void cleanUp() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM memberships WHERE membership_description = '" + MARKER + "'");
+            stmt.executeUpdate("DELETE FROM workoutclasses WHERE class_description = '" + MARKER + "'");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void membershipsSingleRow() {
+        for (Membership membership : memberships) {
+            membershipDAO.addMembership(membership);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object membershipsBatched(Chunking chunking) {
+        return membershipDAO.addMemberships(memberships, chunking.chunkSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void workoutClassesSingleRow() throws SQLException {
+        for (WorkoutClass workoutClass : workoutClasses) {
+            workoutClassDAO.addWorkoutClass(workoutClass);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object workoutClassesBatched(Chunking chunking) throws SQLException {
+        return workoutClassDAO.addWorkoutClasses(workoutClasses, chunking.chunkSize);
+    }
+}
@@ -0,0 +1,156 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserDaoImpl;
+import org.keyin.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many clients registering the same emails at once. Every email is attempted by
+ * {@link #ATTEMPTS_PER_EMAIL} operations spread across the threads, so most registrations
+ * collide. {@code returning} uses the DAO's single INSERT ... ON CONFLICT DO NOTHING RETURNING;
+ * {@code checkThenInsert} reproduces the previous SELECT-then-INSERT code for comparison.
+ *
+ * <p>After every iteration the run fails if any email was registered twice, if the number of
+ * successful registrations differs from the rows actually inserted, or if the RETURNING path
+ * hit a unique violation (a lost race) instead of reporting the conflict.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(32)
+@Fork(1)
+public class ConcurrentRegistrationBenchmark {
+    private static final int ATTEMPTS_PER_EMAIL = 4;
+    private static final String EMAIL_PATTERN = "race%@bench.local";
+
+    private final UserDao userDao = new UserDaoImpl();
+    private final AtomicLong attempts = new AtomicLong();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder uniqueViolations = new LongAdder();
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void prepare() throws SQLException {
+        BenchmarkDatabase.seed(1000);
+        // Hash once: this benchmark is about the database round trips, not BCrypt
+        hash = PasswordUtils.hashPassword(BenchmarkDatabase.PASSWORD);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearRegistrations() throws SQLException {
+        deleteRaceUsers();
+        successes.reset();
+        uniqueViolations.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyNoDuplicates() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT COUNT(*), COUNT(DISTINCT user_email) FROM users WHERE user_email LIKE ?")) {
+            stmt.setString(1, EMAIL_PATTERN);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long rows = rs.getLong(1);
+                long distinct = rs.getLong(2);
+                if (rows != distinct) {
+                    throw new IllegalStateException("Duplicate registrations: " + rows + " rows for " + distinct + " emails");
+                }
+                if (rows != successes.sum()) {
+                    throw new IllegalStateException("Reported " + successes.sum() + " successful registrations but inserted " + rows);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws SQLException {
+        deleteRaceUsers();
+    }
+
+    @Benchmark
+    public int returning() throws SQLException {
+        String email = nextEmail();
+        int userId = userDao.registerUserWithHashedPassword(email, email, hash, "Member", "555-000-0000", "1 Race St");
+        if (userId > 0) {
+            successes.increment();
+        }
+        return userId;
+    }
+
+    @Benchmark
+    public boolean checkThenInsert() throws SQLException {
+        String email = nextEmail();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement checkStmt = conn.prepareStatement("SELECT 1 FROM users WHERE user_email = ?")) {
+            checkStmt.setString(1, email);
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                if (rs.next()) {
+                    return false;
+                }
+            }
+            try (PreparedStatement insertStmt = conn.prepareStatement(
+                    "INSERT INTO users (user_name, user_email, user_password, user_role, user_phone, user_address) VALUES (?, ?, ?, ?, ?, ?)")) {
+                insertStmt.setString(1, email);
+                insertStmt.setString(2, email);
+                insertStmt.setString(3, hash);
+                insertStmt.setString(4, "Member");
+                insertStmt.setString(5, "555-000-0000");
+                insertStmt.setString(6, "1 Race St");
+                insertStmt.executeUpdate();
+                successes.increment();
+                return true;
+            }
+        } catch (SQLException e) {
+            if ("23505".equals(e.getSQLState())) {
+                // Lost the race between the check and the insert
+                uniqueViolations.increment();
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportLostRaces() {
+        if (uniqueViolations.sum() > 0) {
+            System.out.println("checkThenInsert lost " + uniqueViolations.sum() + " check-then-insert races to unique violations");
+        }
+    }
+
+    private String nextEmail() {
+        return "race" + (attempts.getAndIncrement() / ATTEMPTS_PER_EMAIL) + "@bench.local";
+    }
+
+    private static void deleteRaceUsers() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM users WHERE user_email LIKE '" + EMAIL_PATTERN + "'");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.keyin.benchmarks;
+
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipDAOImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading the memberships of many members with one {@code member_id = ANY(?)} query
+ * against the per-member loop (one query per member) that rosters used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MembershipLookupBenchmark {
+
+    /** Seeded table size; every member owns one membership. */
+    private static final int ROWS = 100_000;
+
+    @Param({"10", "1000", "50000"})
+    public int ids;
+
+    private final MembershipDAO membershipDAO = new MembershipDAOImpl();
+    private List<Integer> memberIds;
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        BenchmarkDatabase.seed(ROWS);
+        List<Integer> all = new ArrayList<>(ROWS);
+        for (int id = 1; id <= ROWS; id++) {
+            all.add(id);
+        }
+        Collections.shuffle(all, new Random(42));
+        memberIds = new ArrayList<>(all.subList(0, ids));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Membership>> bulkAnyArray() throws SQLException {
+        return membershipDAO.getMembershipsByMemberIds(memberIds);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Membership>> perMemberLoop() throws SQLException {
+        Map<Integer, List<Membership>> byMember = new HashMap<>();
+        for (Integer memberId : memberIds) {
+            byMember.put(memberId, membershipDAO.getMembershipsByMemberId(memberId));
+        }
+        return byMember;
+    }
+}
@@ -0,0 +1,39 @@
+package org.keyin.benchmarks;
+
+import org.keyin.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures BCrypt verification on its own, without the database round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class PasswordUtilsBenchmark {
+
+    private String hash;
+
+    @Setup
+    public void hash() {
+        hash = PasswordUtils.hashPassword(BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean checkPassword() {
+        return PasswordUtils.checkPassword(BenchmarkDatabase.PASSWORD, hash);
+    }
+}
@@ -0,0 +1,172 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipDAOImpl;
+import org.keyin.user.User;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserDaoImpl;
+import org.keyin.user.childclasses.Admin;
+import org.keyin.user.childclasses.Member;
+import org.keyin.user.childclasses.Trainer;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the projected, index-based row mappers in the DAOs against the previous
+ * {@code SELECT *} plus read-by-label mapping, over full-table scans.
+ * The {@code legacy*} methods reproduce the old DAO code verbatim so both sides pay the
+ * same connection and fetch costs; the GC profiler shows the allocation difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 20)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    private final UserDao userDao = new UserDaoImpl();
+    private final MembershipDAO membershipDAO = new MembershipDAOImpl();
+    private final WorkoutClassDAO workoutClassDAO = new WorkoutClassDAOImpl();
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        BenchmarkDatabase.seed(rows);
+    }
+
+    @Benchmark
+    public void projectedUsers(Blackhole blackhole) throws SQLException {
+        userDao.streamAllUsers(DatabaseConnection.DEFAULT_FETCH_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public void legacyUsers(Blackhole blackhole) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM users ORDER BY user_id")) {
+                stmt.setFetchSize(DatabaseConnection.DEFAULT_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        blackhole.consume(legacyUser(rs));
+                    }
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    @Benchmark
+    public void projectedMemberships(Blackhole blackhole) throws SQLException {
+        membershipDAO.streamAllMemberships(DatabaseConnection.DEFAULT_FETCH_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public void legacyMemberships(Blackhole blackhole) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM memberships ORDER BY membership_id")) {
+                stmt.setFetchSize(DatabaseConnection.DEFAULT_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        blackhole.consume(new Membership(
+                                rs.getInt("membership_id"),
+                                rs.getString("membership_type"),
+                                rs.getString("membership_description"),
+                                rs.getDouble("membership_cost"),
+                                rs.getInt("member_id"),
+                                rs.getDate("start_date").toLocalDate(),
+                                rs.getDate("end_date").toLocalDate(),
+                                rs.getBoolean("is_on_hold")));
+                    }
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    @Benchmark
+    public List<WorkoutClass> projectedWorkoutClasses() throws SQLException {
+        return workoutClassDAO.getAllWorkoutClasses();
+    }
+
+    @Benchmark
+    public List<WorkoutClass> legacyWorkoutClasses() throws SQLException {
+        List<WorkoutClass> classes = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM workoutclasses")) {
+            while (rs.next()) {
+                classes.add(new WorkoutClass(
+                        rs.getInt("class_id"),
+                        rs.getString("class_name"),
+                        rs.getInt("trainer_id"),
+                        rs.getString("class_description"),
+                        rs.getString("class_level"),
+                        rs.getInt("class_duration"),
+                        rs.getInt("class_capacity"),
+                        rs.getDate("class_date").toLocalDate(),
+                        rs.getTime("class_time").toLocalTime(),
+                        rs.getString("class_location"),
+                        rs.getString("class_equipment")));
+            }
+        }
+        return classes;
+    }
+
+    private static User legacyUser(ResultSet rs) throws SQLException {
+        String role = rs.getString("user_role");
+        int id = rs.getInt("user_id");
+        String username = rs.getString("user_name");
+        String email = rs.getString("user_email");
+        String password = rs.getString("user_password");
+        String phone = rs.getString("user_phone");
+        String address = rs.getString("user_address");
+
+        User user;
+        switch (role.toLowerCase()) {
+            case "admin":
+                user = new Admin(id, username, email, password);
+                break;
+            case "trainer":
+                user = new Trainer(id, username, email, password);
+                break;
+            case "member":
+                user = new Member(id, username, email, password);
+                break;
+            default:
+                user = new User(id, username, email, password);
+                break;
+        }
+        user.setPhoneNumber(phone);
+        user.setAddress(address);
+        return user;
+    }
+}
@@ -0,0 +1,123 @@
+package org.keyin.benchmarks;
+
+import org.keyin.workoutclasses.FreeSlot;
+import org.keyin.workoutclasses.FreeSlotQuery;
+import org.keyin.workoutclasses.ScheduleConflictException;
+import org.keyin.workoutclasses.ScheduleIndex;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the interval-tree schedule index against scanning the trainer's and the location's
+ * classes for an overlap, over a synthetic schedule laid out like {@link BenchmarkDatabase}'s
+ * (40 slots a day, 50 trainers, 8 studios). Also times free-slot searches over a full year.
+ * Runs in memory; no database is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ScheduleConflictBenchmark {
+    private static final int CANDIDATES = 4096;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @Param({"500000"})
+    public int classes;
+
+    private final ScheduleIndex index = new ScheduleIndex();
+    private final Map<Integer, List<WorkoutClass>> byTrainer = new HashMap<>();
+    private final Map<String, List<WorkoutClass>> byLocation = new HashMap<>();
+    private WorkoutClass[] candidates;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildSchedule() {
+        List<WorkoutClass> schedule = new ArrayList<>(classes);
+        for (int g = 1; g <= classes; g++) {
+            WorkoutClass workoutClass = new WorkoutClass(g, "Class " + g, 1 + g % BenchmarkDatabase.TRAINERS, "",
+                    "Beginner", 45, 20, FIRST_DAY.plusDays(g / 40), LocalTime.of(6, 0).plusMinutes((g % 40) * 20L),
+                    "Studio " + g % 8, "None");
+            schedule.add(workoutClass);
+            byTrainer.computeIfAbsent(workoutClass.getTrainerId(), t -> new ArrayList<>()).add(workoutClass);
+            byLocation.computeIfAbsent(workoutClass.getClassLocation(), l -> new ArrayList<>()).add(workoutClass);
+        }
+        index.rebuild(schedule);
+
+        // New classes at random times across the schedule; roughly half of them clash
+        Random random = new Random(42);
+        int days = classes / 40 + 1;
+        candidates = new WorkoutClass[CANDIDATES];
+        for (int i = 0; i < CANDIDATES; i++) {
+            candidates[i] = new WorkoutClass(0, "Candidate", 1 + random.nextInt(BenchmarkDatabase.TRAINERS), "",
+                    "Beginner", 45, 20, FIRST_DAY.plusDays(random.nextInt(days)),
+                    LocalTime.of(6, 0).plusMinutes(random.nextInt(14 * 60)), "Studio " + random.nextInt(8), "None");
+        }
+    }
+
+    private WorkoutClass nextCandidate() {
+        next = (next + 1) & (CANDIDATES - 1);
+        return candidates[next];
+    }
+
+    @Benchmark
+    public ScheduleConflictException intervalIndex() {
+        return index.findConflict(nextCandidate());
+    }
+
+    @Benchmark
+    public int linearScan() {
+        WorkoutClass candidate = nextCandidate();
+        int clash = scan(byTrainer.get(candidate.getTrainerId()), candidate);
+        return clash != -1 ? clash : scan(byLocation.get(candidate.getClassLocation()), candidate);
+    }
+
+    /** "Which studio is free for an hour?" across every location for a year. */
+    @Benchmark
+    public List<FreeSlot> freeSlotsYearAllLocations() {
+        return index.findFreeSlots(new FreeSlotQuery(FIRST_DAY, FIRST_DAY.plusYears(1).minusDays(1), 60, null, null));
+    }
+
+    /** A year for one studio and one trainer together. */
+    @Benchmark
+    public List<FreeSlot> freeSlotsYearLocationAndTrainer() {
+        return index.findFreeSlots(new FreeSlotQuery(FIRST_DAY, FIRST_DAY.plusYears(1).minusDays(1), 60, "Studio 3", 7));
+    }
+
+    private static int scan(List<WorkoutClass> classes, WorkoutClass candidate) {
+        if (classes == null) {
+            return -1;
+        }
+        LocalDateTime start = LocalDateTime.of(candidate.getClassDate(), candidate.getClassTime());
+        LocalDateTime end = start.plusMinutes(candidate.getClassDuration());
+        for (WorkoutClass existing : classes) {
+            LocalDateTime existingStart = LocalDateTime.of(existing.getClassDate(), existing.getClassTime());
+            if (existingStart.isBefore(end) && existingStart.plusMinutes(existing.getClassDuration()).isAfter(start)) {
+                return existing.getClassId();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,174 @@
+package org.keyin.benchmarks;
+
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipDAOImpl;
+import org.keyin.storage.MappedMembershipDAO;
+import org.keyin.storage.MappedUserDao;
+import org.keyin.storage.MappedWorkoutClassDAO;
+import org.keyin.storage.StorageBackend;
+import org.keyin.user.User;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserDaoImpl;
+import org.keyin.utils.PasswordUtils;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+import org.keyin.workoutclasses.WorkoutClassFilter;
+import org.keyin.workoutclasses.WorkoutClassPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares throughput of the JDBC DAOs against the memory-mapped ones ({@code -Dgym.storage=mapped})
+ * on the same data: a login lookup by email, a member's memberships, a filtered schedule page,
+ * and a class update. The mapped stores are seeded in a temporary directory with the same
+ * distribution {@link BenchmarkDatabase} uses, and flushed by the OS rather than per write,
+ * as they are by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(4)
+@Fork(1)
+public class StorageBackendBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int CLASSES_PER_DAY = 40;
+    private static final int PAGE_SIZE = 20;
+    private static final String[] LEVELS = {"Beginner", "Intermediate", "Advanced"};
+
+    @Param({StorageBackend.POSTGRES, StorageBackend.MAPPED})
+    public String backend;
+
+    private UserDao userDao;
+    private MembershipDAO membershipDAO;
+    private WorkoutClassDAO workoutClassDAO;
+    private Path directory;
+    private final List<Closeable> stores = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException, IOException {
+        if (StorageBackend.POSTGRES.equals(backend)) {
+            BenchmarkDatabase.seed(ROWS);
+            userDao = new UserDaoImpl();
+            membershipDAO = new MembershipDAOImpl();
+            workoutClassDAO = new WorkoutClassDAOImpl();
+            return;
+        }
+
+        directory = Files.createTempDirectory("gym-storage-bench");
+        MappedUserDao users = new MappedUserDao(directory, false);
+        MappedMembershipDAO memberships = new MappedMembershipDAO(directory, false, id -> true);
+        MappedWorkoutClassDAO classes = new MappedWorkoutClassDAO(directory, false, id -> true);
+        stores.add(users.getStore());
+        stores.add(memberships.getStore());
+        stores.add(classes.getStore());
+
+        // One hash for everyone, as in BenchmarkDatabase
+        String hash = PasswordUtils.hashPassword(BenchmarkDatabase.PASSWORD);
+        for (int g = 1; g <= ROWS; g++) {
+            users.registerUserWithHashedPassword("user" + g, BenchmarkDatabase.email(g), hash,
+                    g <= BenchmarkDatabase.TRAINERS ? "Trainer" : "Member", "555-000-0000", g + " Bench St");
+        }
+
+        String[] types = {"Monthly", "Annual", "Student", "Trial"};
+        List<Membership> seededMemberships = new ArrayList<>(ROWS);
+        for (int g = 1; g <= ROWS; g++) {
+            Membership membership = new Membership(types[g % 4], "Benchmark membership " + g, (g % 500) + 0.99,
+                    1 + (g % ROWS), LocalDate.of(2024, 1, 1).plusDays(g % 730),
+                    LocalDate.of(2024, 2, 1).plusDays(g % 730), g % 17 == 0);
+            membership.setStatus(Membership.STATUS_ACTIVE);
+            seededMemberships.add(membership);
+        }
+        memberships.addMemberships(seededMemberships, 1000);
+
+        List<WorkoutClass> seededClasses = new ArrayList<>(ROWS);
+        for (int g = 1; g <= ROWS; g++) {
+            seededClasses.add(new WorkoutClass(0, "Class " + g, 1 + (g % BenchmarkDatabase.TRAINERS),
+                    "Synthetic benchmark class number " + g, LEVELS[g % 3], 45, 20,
+                    LocalDate.of(2024, 1, 1).plusDays(g / CLASSES_PER_DAY),
+                    LocalTime.of(6, 0).plusMinutes((g % CLASSES_PER_DAY) * 20L), "Studio " + (g % 8), "None"));
+        }
+        classes.addWorkoutClasses(seededClasses, 1000);
+
+        users.getStore().snapshot();
+        memberships.getStore().snapshot();
+        classes.getStore().snapshot();
+        userDao = users;
+        membershipDAO = memberships;
+        workoutClassDAO = classes;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        for (Closeable store : stores) {
+            store.close();
+        }
+        stores.clear();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            directory = null;
+        }
+    }
+
+    @Benchmark
+    public User findByEmail() throws SQLException {
+        int n = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+        return userDao.findByEmail(BenchmarkDatabase.email(n));
+    }
+
+    @Benchmark
+    public List<Membership> membershipsByMember() throws SQLException {
+        return membershipDAO.getMembershipsByMemberId(1 + ThreadLocalRandom.current().nextInt(ROWS));
+    }
+
+    @Benchmark
+    public WorkoutClassPage filteredSchedulePage() throws SQLException {
+        LocalDate from = LocalDate.of(2024, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(ROWS / CLASSES_PER_DAY));
+        WorkoutClassFilter filter = new WorkoutClassFilter(from, from.plusDays(7), "Beginner", null);
+        return workoutClassDAO.getWorkoutClassesPage(filter, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public boolean updateWorkoutClass() throws SQLException {
+        int g = 1 + ThreadLocalRandom.current().nextInt(ROWS);
+        WorkoutClass workoutClass = new WorkoutClass(g, "Class " + g, 1 + (g % BenchmarkDatabase.TRAINERS),
+                "Synthetic benchmark class number " + g, LEVELS[g % 3], 45, 20,
+                LocalDate.of(2024, 1, 1).plusDays(g / CLASSES_PER_DAY),
+                LocalTime.of(6, 0).plusMinutes((g % CLASSES_PER_DAY) * 20L), "Studio " + (g % 8), "None");
+        return workoutClassDAO.updateWorkoutClass(workoutClass);
+    }
+}
@@ -0,0 +1,50 @@
+package org.keyin.benchmarks;
+
+import org.keyin.user.User;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserDaoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the login path: the email lookup plus BCrypt verification in
+ * {@link UserDaoImpl#findByEmailAndPassword(String, String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class UserDaoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private final UserDao userDao = new UserDaoImpl();
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        BenchmarkDatabase.seed(rows);
+    }
+
+    @Benchmark
+    public User findByEmailAndPassword() throws SQLException {
+        int n = 1 + ThreadLocalRandom.current().nextInt(rows);
+        return userDao.findByEmailAndPassword(BenchmarkDatabase.email(n), BenchmarkDatabase.PASSWORD);
+    }
+}
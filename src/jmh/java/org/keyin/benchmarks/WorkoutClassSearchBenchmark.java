@@ -0,0 +1,86 @@
+package org.keyin.benchmarks;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+import org.keyin.workoutclasses.WorkoutClassSearchPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the first page of a ranked full-text search (GIN index on {@code search_vector})
+ * against the substring scan it replaces ({@code ILIKE '%word%'} on every text column).
+ * Parameters cover a selective query, a broad one matching a third of the table, and a prefix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class WorkoutClassSearchBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"class 12345", "beginner", "synth"})
+    public String query;
+
+    private final WorkoutClassDAO workoutClassDAO = new WorkoutClassDAOImpl();
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        BenchmarkDatabase.seed(ROWS);
+    }
+
+    @Benchmark
+    public WorkoutClassSearchPage fullTextRanked() throws SQLException {
+        return workoutClassDAO.searchWorkoutClasses(query, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Integer> ilikeScan() throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT class_id FROM workoutclasses WHERE TRUE");
+        String[] words = query.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            sql.append(" AND (class_name ILIKE ? OR class_level ILIKE ? OR class_description ILIKE ? OR class_equipment ILIKE ?)");
+        }
+        sql.append(" ORDER BY class_id LIMIT ?");
+
+        List<Integer> ids = new ArrayList<>(PAGE_SIZE);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (String word : words) {
+                for (int column = 0; column < 4; column++) {
+                    stmt.setString(index++, "%" + word + "%");
+                }
+            }
+            stmt.setInt(index, PAGE_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -1,18 +1,33 @@
 // GymApp.java
 package org.keyin;
 
+import org.keyin.database.ChangeEvent;
+import org.keyin.database.ChangeFeedListener;
+import org.keyin.database.DaoMetrics;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.MethodStats;
+import org.keyin.database.PartitionMaintenance;
+import org.keyin.database.PoolStats;
+import org.keyin.database.SlowQueryLog;
 import org.keyin.membership.*;
+import org.keyin.storage.RecordStore;
+import org.keyin.storage.StorageBackend;
 import org.keyin.user.*;
 import org.keyin.user.childclasses.Admin;
 import org.keyin.user.childclasses.Member;
 import org.keyin.user.childclasses.Trainer;
+import org.keyin.utils.LatencySnapshot;
 import org.keyin.workoutclasses.*;
 
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Main class for the Gym Management System.
@@ -21,15 +36,30 @@ import java.util.Scanner;
  */
 public class GymApp {
     private static final Scanner scanner = new Scanner(System.in);
-    private static final UserService userService = new UserService(new UserDaoImpl());
-    private static final MembershipService membershipService = new MembershipService(new MembershipDAOImpl());
-    private static final WorkoutClassService workoutClassService = new WorkoutClassService(new WorkoutClassDAOImpl());
+    private static final UserService userService = new UserService(DaoMetrics.instrument(UserDao.class, StorageBackend.userDao()));
+    private static final MembershipDAO membershipDAO = DaoMetrics.instrument(MembershipDAO.class, StorageBackend.membershipDAO());
+    private static final MembershipService membershipService = new MembershipService(membershipDAO);
+    private static MembershipExpirySweeper membershipSweeper;
+    private static ChangeFeedListener changeFeed;
+    private static PartitionMaintenance partitionMaintenance;
+    private static final CachingWorkoutClassDAO workoutClassCache = new CachingWorkoutClassDAO(DaoMetrics.instrument(WorkoutClassDAO.class, StorageBackend.workoutClassDAO()));
+    private static final WorkoutClassService workoutClassService = new WorkoutClassService(workoutClassCache, StorageBackend.bookingDAO());
+    private static final int BROWSE_PAGE_SIZE = 10;
 
     /**
      * Entry point of the application. Presents the login/register menu
      * and routes users to their respective dashboards.
      */
     public static void main(String[] args) {
+        membershipSweeper = MembershipExpirySweeper.startDefault(membershipDAO);
+        // Mapped storage has no partitions, and never changes behind this process's back, so there is no feed to follow
+        if (!StorageBackend.isMapped()) {
+            partitionMaintenance = PartitionMaintenance.startDefault();
+            changeFeed = new ChangeFeedListener();
+            changeFeed.subscribe(ChangeEvent.Table.WORKOUT_CLASSES, workoutClassCache::onChange);
+            changeFeed.subscribe(ChangeEvent.Table.WORKOUT_CLASSES, workoutClassService::onChange);
+            changeFeed.startIfEnabled();
+        }
         while (true) {
             System.out.println("=== Welcome to the Gym Management System ===");
             System.out.print("Do you want to (1) Login or (2) Register or (0) Exit? ");
@@ -67,7 +97,13 @@ public class GymApp {
         System.out.print("Enter password: ");
         String password = scanner.nextLine();
 
-        User loggedInUser = userService.login(email, password);
+        User loggedInUser;
+        try {
+            loggedInUser = userService.login(email, password);
+        } catch (SQLException | RejectedExecutionException e) {
+            System.out.println("Login is unavailable right now: " + e.getMessage());
+            return;
+        }
 
         if (loggedInUser == null) {
             System.out.println("User not found. Please check your email and try again.");
@@ -108,8 +144,16 @@ public class GymApp {
 
         if (username == null || email == null || password == null || role == null || phone == null || address == null) return;
 
-        boolean registered = userService.registerUser(username, email, password, role, phone, address);
-        System.out.println(registered ? "Registration successful! You can now login." : "Registration failed. Email might already be in use.");
+        int userId;
+        try {
+            userId = userService.registerUser(username, email, password, role, phone, address);
+        } catch (SQLException e) {
+            System.out.println("Registration failed: " + e.getMessage());
+            return;
+        }
+        System.out.println(userId > 0
+                ? "Registration successful! Your user ID is " + userId + ". You can now login."
+                : "Registration failed. Email or username might already be in use.");
     }
 
     private static void showAdminMenu(User loggedInUser) {
@@ -119,6 +163,8 @@ public class GymApp {
             System.out.println("1. View all users");
             System.out.println("2. View all memberships and total revenue");
             System.out.println("3. Delete user by ID");
+            System.out.println("4. Revenue report");
+            System.out.println("5. Performance metrics");
             System.out.println("0. Return to Main Menu");
             System.out.println("9. Exit Program");
             System.out.print("Select an option: ");
@@ -128,34 +174,44 @@ public class GymApp {
     
             switch (choice) {
                 case "1":
-                    List<User> users = userService.getAllUsers();
                     System.out.printf("%-5s %-20s %-30s %-12s %-15s %-30s%n", "ID", "Username", "Email", "Role", "Phone", "Address");
                     System.out.println("---------------------------------------------------------------------------------------------------------------");
-                    for (User user : users) {
-                        System.out.printf("%-5d %-20s %-30s %-12s %-15s %-30s%n",
-                                user.getId(),
-                                user.getUsername(),
-                                user.getEmail(),
-                                user.getRole(),
-                                user.getPhoneNumber() != null ? user.getPhoneNumber() : "N/A",
-                                user.getAddress() != null ? user.getAddress() : "N/A");
+                    // Rows are printed as they arrive from the cursor instead of after the whole table is loaded
+                    try {
+                        userService.streamAllUsers(user ->
+                            System.out.printf("%-5d %-20s %-30s %-12s %-15s %-30s%n",
+                                    user.getId(),
+                                    user.getUsername(),
+                                    user.getEmail(),
+                                    user.getRole(),
+                                    user.getPhoneNumber() != null ? user.getPhoneNumber() : "N/A",
+                                    user.getAddress() != null ? user.getAddress() : "N/A"));
+                    } catch (SQLException e) {
+                        System.out.println("Error listing users, the list above is incomplete: " + e.getMessage());
                     }
                     promptToReturn();
                     break;
     
                 case "2":
-                    List<Membership> memberships = membershipService.getAllMemberships();
+                    // The total is aggregated server-side; start it now so it is ready once the listing has streamed.
+                    CompletableFuture<Double> total = membershipService.getTotalRevenueAsync();
                     System.out.println("\nMemberships:");
                     System.out.printf("%-5s %-12s %-35s %-10s %-10s%n", "ID", "Type", "Description", "Cost", "Member ID");
                     System.out.println("--------------------------------------------------------------------------------");
-                    for (Membership m : memberships) {
-                        System.out.printf("%-5d %-12s %-35s $%-9.2f %-10d%n",
-                                m.getMembershipId(), m.getMembershipType(), m.getMembershipDescription(),
-                                m.getMembershipCost(), m.getMemberId());
+                    try {
+                        membershipService.streamAllMemberships(m ->
+                            System.out.printf("%-5d %-12s %-35s $%-9.2f %-10d%n",
+                                    m.getMembershipId(), m.getMembershipType(), m.getMembershipDescription(),
+                                    m.getMembershipCost(), m.getMemberId()));
+                    } catch (SQLException e) {
+                        System.out.println("Error listing memberships, the list above is incomplete: " + e.getMessage());
                     }
-                    double total = membershipService.getTotalRevenue();
                     System.out.println("--------------------------------------------------------------------------------");
-                    System.out.println("Total Revenue: $" + total);
+                    try {
+                        System.out.println("Total Revenue: $" + total.join());
+                    } catch (CompletionException e) {
+                        System.out.println("Could not calculate total revenue: " + e.getCause());
+                    }
                     promptToReturn();
                     break;
     
@@ -167,6 +223,16 @@ public class GymApp {
                     promptToReturn();
                     break;
     
+                case "4":
+                    printRevenueReport();
+                    promptToReturn();
+                    break;
+
+                case "5":
+                    printPerformanceMetrics();
+                    promptToReturn();
+                    break;
+    
                 case "0":
                     System.out.println("Returning to main menu...");
                     return;
@@ -192,6 +258,8 @@ public class GymApp {
             System.out.println("3. View my workout classes");
             System.out.println("4. Delete workout class");
             System.out.println("5. Update workout class");
+            System.out.println("6. View class attendees");
+            System.out.println("7. Find free time slots");
             System.out.println("0. Return to Main Menu");
             System.out.println("9. Exit Program");
             System.out.print("Select an option: ");
@@ -240,6 +308,16 @@ public class GymApp {
                     handleUpdateWorkoutClass(loggedInUser);
                     promptToReturn();
                     break;
+
+                case "6":
+                    handleViewAttendees();
+                    promptToReturn();
+                    break;
+
+                case "7":
+                    handleFindFreeSlots(loggedInUser);
+                    promptToReturn();
+                    break;
     
                 case "0":
                     System.out.println("Returning to main menu...");
@@ -270,6 +348,10 @@ private static void showMemberMenu(User loggedInUser) {
         System.out.println("1. Browse workout classes");
         System.out.println("2. Buy membership");
         System.out.println("3. View my memberships");
+        System.out.println("4. Book a class");
+        System.out.println("5. Cancel a booking");
+        System.out.println("6. View my bookings");
+        System.out.println("7. Search classes");
         System.out.println("0. Return to Main Menu");
         System.out.println("9. Exit Program");
         System.out.print("Select an option: ");
@@ -279,23 +361,7 @@ private static void showMemberMenu(User loggedInUser) {
 
         switch (choice) {
             case "1":
-                try {
-                    List<WorkoutClass> availableClasses = workoutClassService.getAllWorkoutClasses();
-                    System.out.printf("%-5s %-25s %-35s %-12s %-10s %-10s %-12s %-8s %-18s %-10s%n",
-                            "ID", "Name", "Description", "Level", "Duration", "Capacity", "Date", "Time", "Location", "Done");
-                    System.out.println("----------------------------------------------------------------------------------------------------------------------------------------------------");
-                    for (WorkoutClass wc : availableClasses) {
-                        String shortDesc = wc.getClassDescription().length() > 33
-                                ? wc.getClassDescription().substring(0, 30) + "..."
-                                : wc.getClassDescription();
-                        System.out.printf("%-5d %-25s %-35s %-12s %-10d %-10d %-12s %-8s %-18s %-10s%n",
-                                wc.getClassId(), wc.getClassName(), shortDesc, wc.getClassLevel(),
-                                wc.getClassDuration(), wc.getClassCapacity(), wc.getClassDate(),
-                                wc.getClassTime(), wc.getClassLocation(), wc.isCompleted() ? "Yes" : "No");
-                    }
-                } catch (SQLException e) {
-                    System.out.println("Error loading classes: " + e.getMessage());
-                }
+                browseWorkoutClasses();
                 promptToReturn();
                 break;
 
@@ -305,7 +371,14 @@ private static void showMemberMenu(User loggedInUser) {
                 break;
 
             case "3":
-                List<Membership> myMemberships = membershipService.getMembershipsByMemberId(loggedInUser.getId());
+                List<Membership> myMemberships;
+                try {
+                    myMemberships = membershipService.getMembershipsByMemberId(loggedInUser.getId());
+                } catch (SQLException e) {
+                    System.out.println("Error loading your memberships: " + e.getMessage());
+                    promptToReturn();
+                    break;
+                }
                 System.out.println("\nMy Memberships:");
                 System.out.println("--------------------------------------------------");
                 for (Membership membership : myMemberships) {
@@ -321,6 +394,35 @@ private static void showMemberMenu(User loggedInUser) {
                 promptToReturn();
                 break;
 
+            case "4":
+                handleBookClass(loggedInUser);
+                promptToReturn();
+                break;
+
+            case "5":
+                handleCancelBooking(loggedInUser);
+                promptToReturn();
+                break;
+
+            case "6":
+                try {
+                    List<Booking> bookings = workoutClassService.getBookingsByMemberId(loggedInUser.getId());
+                    System.out.printf("%-10s %-10s %-20s%n", "Booking", "Class ID", "Booked At");
+                    System.out.println("--------------------------------------------------");
+                    for (Booking booking : bookings) {
+                        System.out.printf("%-10d %-10d %-20s%n", booking.getBookingId(), booking.getClassId(), booking.getBookedAt());
+                    }
+                } catch (SQLException e) {
+                    System.out.println("Error loading bookings: " + e.getMessage());
+                }
+                promptToReturn();
+                break;
+
+            case "7":
+                searchWorkoutClasses();
+                promptToReturn();
+                break;
+
             case "0":
                 System.out.println("Returning to main menu...");
                 return;
@@ -337,6 +439,258 @@ private static void showMemberMenu(User loggedInUser) {
 }
 
 
+    /**
+     * Prints revenue grouped by membership type, start month and payment method.
+     * The grouping happens in PostgreSQL, so only one row per group is transferred.
+     */
+    private static void printRevenueReport() {
+        // The four aggregates are independent, so run them concurrently rather than back to back.
+        CompletableFuture<List<RevenueBreakdown>> byType = membershipService.getRevenueByMembershipTypeAsync();
+        CompletableFuture<List<RevenueBreakdown>> byMonth = membershipService.getRevenueByStartMonthAsync();
+        CompletableFuture<List<RevenueBreakdown>> byPaymentMethod = membershipService.getRevenueByPaymentMethodAsync();
+        CompletableFuture<BigDecimal> total = membershipService.getTotalRevenueExactAsync();
+        try {
+            CompletableFuture.allOf(byType, byMonth, byPaymentMethod, total).join();
+        } catch (CompletionException e) {
+            System.out.println("Could not build the revenue report: " + e.getCause());
+            return;
+        }
+        printRevenueSection("Revenue by membership type", byType.join());
+        printRevenueSection("Revenue by start month", byMonth.join());
+        printRevenueSection("Revenue by payment method", byPaymentMethod.join());
+        System.out.println("--------------------------------------------------");
+        System.out.println("Total Revenue: $" + total.join().toPlainString());
+    }
+
+    /**
+     * Prints live per-DAO-method latencies, connection pool state and schedule cache statistics.
+     * The same figures are published over JMX under the {@code org.keyin} domain.
+     */
+    private static void printPerformanceMetrics() {
+        System.out.println("\nDAO method latencies (ms):");
+        System.out.printf("%-45s %8s %6s %9s %9s %9s %9s%n", "Method", "Calls", "Errors", "p50", "p99", "p99.9", "Max");
+        System.out.println("------------------------------------------------------------------------------------------------------");
+        for (MethodStats stats : DaoMetrics.getAll()) {
+            LatencySnapshot snapshot = stats.snapshot();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-45s %8d %6d %9.2f %9.2f %9.2f %9.2f%n",
+                    stats.getDao() + "." + stats.getMethod(), snapshot.getCount(), stats.getErrorCount(),
+                    snapshot.getP50Millis(), snapshot.getP99Millis(), snapshot.getP999Millis(), snapshot.getMaxMillis());
+        }
+        PoolStats poolStats = DatabaseConnection.getPoolStats();
+        System.out.println("\n" + poolStats);
+        for (String leak : poolStats.getRecentLeaks()) {
+            System.out.println("Possible connection leak: " + leak);
+        }
+        if (DatabaseConnection.getReplicas() != null) {
+            System.out.println(DatabaseConnection.getReplicas());
+        }
+        if (DatabaseConnection.getShards() != null) {
+            System.out.println(DatabaseConnection.getShards());
+        }
+        System.out.println("Schedule cache: " + workoutClassCache.getCacheStats());
+        if (membershipSweeper != null && membershipSweeper.getLastResult() != null) {
+            System.out.println("Last membership expiry sweep: " + membershipSweeper.getLastResult()
+                    + " (runs=" + membershipSweeper.getRuns() + ", total expired=" + membershipSweeper.getTotalExpired()
+                    + ", total reactivated=" + membershipSweeper.getTotalReactivated() + ")");
+        }
+        if (partitionMaintenance != null) {
+            System.out.println(partitionMaintenance);
+        }
+        if (changeFeed != null) {
+            System.out.println(changeFeed);
+        }
+        for (RecordStore<?> store : StorageBackend.getStores()) {
+            System.out.println("Mapped store: " + store);
+        }
+        SlowQueryLog slowQueryLog = DatabaseConnection.getSlowQueryLog();
+        if (slowQueryLog != null) {
+            System.out.println("Slow statements logged: " + slowQueryLog.getSlowStatementCount()
+                    + " (EXPLAIN plans captured: " + slowQueryLog.getExplainsCaptured() + ")");
+        }
+    }
+
+    /**
+     * Prints one section of the revenue report.
+     *
+     * @param title heading for the section
+     * @param rows  breakdown rows to print
+     */
+    private static void printRevenueSection(String title, List<RevenueBreakdown> rows) {
+        System.out.println("\n" + title + ":");
+        System.out.printf("%-20s %-12s %-15s%n", "Group", "Count", "Revenue");
+        System.out.println("--------------------------------------------------");
+        for (RevenueBreakdown row : rows) {
+            System.out.printf("%-20s %-12d $%-14s%n", row.getGroup(), row.getMembershipCount(), row.getTotalRevenue().toPlainString());
+        }
+    }
+
+    /**
+     * Lets a member browse workout classes one page at a time, optionally
+     * filtered by level and location. Only the current page is loaded.
+     */
+    private static void browseWorkoutClasses() {
+        System.out.print("Filter by level (leave blank for all): ");
+        String level = scanner.nextLine().trim();
+        System.out.print("Filter by location (leave blank for all): ");
+        String location = scanner.nextLine().trim();
+
+        WorkoutClassFilter filter = new WorkoutClassFilter(null, null,
+                level.isEmpty() ? null : level,
+                location.isEmpty() ? null : location);
+        WorkoutClassCursor cursor = null;
+
+        while (true) {
+            WorkoutClassPage page;
+            try {
+                page = workoutClassService.getWorkoutClassesPage(filter, cursor, BROWSE_PAGE_SIZE);
+            } catch (SQLException e) {
+                System.out.println("Error loading classes: " + e.getMessage());
+                return;
+            }
+
+            System.out.printf("%-5s %-25s %-35s %-12s %-10s %-10s %-12s %-8s %-18s %-10s%n",
+                    "ID", "Name", "Description", "Level", "Duration", "Capacity", "Date", "Time", "Location", "Done");
+            System.out.println("----------------------------------------------------------------------------------------------------------------------------------------------------");
+            for (WorkoutClass wc : page.getClasses()) {
+                String shortDesc = wc.getClassDescription().length() > 33
+                        ? wc.getClassDescription().substring(0, 30) + "..."
+                        : wc.getClassDescription();
+                System.out.printf("%-5d %-25s %-35s %-12s %-10d %-10d %-12s %-8s %-18s %-10s%n",
+                        wc.getClassId(), wc.getClassName(), shortDesc, wc.getClassLevel(),
+                        wc.getClassDuration(), wc.getClassCapacity(), wc.getClassDate(),
+                        wc.getClassTime(), wc.getClassLocation(), wc.isCompleted() ? "Yes" : "No");
+            }
+
+            if (!page.hasNext()) {
+                System.out.println("(end of list)");
+                return;
+            }
+            System.out.print("Press N for the next page, or Enter to stop: ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("n")) {
+                return;
+            }
+            cursor = page.getNextCursor();
+        }
+    }
+
+    /**
+     * Asks for search words and pages through the matching classes, best match first.
+     */
+    private static void searchWorkoutClasses() {
+        System.out.print("Search classes (e.g. core beginner): ");
+        String text = scanner.nextLine().trim();
+        int page = 0;
+
+        while (true) {
+            WorkoutClassSearchPage results;
+            try {
+                results = workoutClassService.searchWorkoutClasses(text, page, BROWSE_PAGE_SIZE);
+            } catch (SQLException e) {
+                System.out.println("Error searching classes: " + e.getMessage());
+                return;
+            }
+            if (page == 0 && results.getClasses().isEmpty()) {
+                System.out.println("No classes match \"" + text + "\".");
+                return;
+            }
+
+            System.out.printf("%-5s %-25s %-35s %-12s %-12s %-8s %-18s%n",
+                    "ID", "Name", "Description", "Level", "Date", "Time", "Location");
+            System.out.println("-----------------------------------------------------------------------------------------------------------------");
+            for (WorkoutClass wc : results.getClasses()) {
+                String shortDesc = wc.getClassDescription().length() > 33
+                        ? wc.getClassDescription().substring(0, 30) + "..."
+                        : wc.getClassDescription();
+                System.out.printf("%-5d %-25s %-35s %-12s %-12s %-8s %-18s%n",
+                        wc.getClassId(), wc.getClassName(), shortDesc, wc.getClassLevel(),
+                        wc.getClassDate(), wc.getClassTime(), wc.getClassLocation());
+            }
+
+            if (!results.hasNext()) {
+                System.out.println("(end of results)");
+                return;
+            }
+            System.out.print("Press N for the next page, or Enter to stop: ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("n")) {
+                return;
+            }
+            page++;
+        }
+    }
+
+    /**
+     * Prompts a member for a class ID and tries to reserve a seat.
+     *
+     * @param loggedInUser the member booking the class
+     */
+    private static void handleBookClass(User loggedInUser) {
+        System.out.print("Enter ID of the class to book: ");
+        String classIdStr = scanner.nextLine();
+        try {
+            BookingResult result = workoutClassService.bookClass(Integer.parseInt(classIdStr.trim()), loggedInUser.getId());
+            switch (result) {
+                case BOOKED:
+                    System.out.println("Class booked successfully!");
+                    break;
+                case ALREADY_BOOKED:
+                    System.out.println("You have already booked this class.");
+                    break;
+                case CLASS_FULL:
+                    System.out.println("Sorry, this class is full.");
+                    break;
+                case CLASS_NOT_FOUND:
+                    System.out.println("No class found with that ID.");
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid class ID.");
+        } catch (SQLException e) {
+            System.out.println("Failed to book class: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prompts a member for a class ID and cancels their booking.
+     *
+     * @param loggedInUser the member cancelling the booking
+     */
+    private static void handleCancelBooking(User loggedInUser) {
+        System.out.print("Enter ID of the class to cancel: ");
+        String classIdStr = scanner.nextLine();
+        try {
+            boolean cancelled = workoutClassService.cancelBooking(Integer.parseInt(classIdStr.trim()), loggedInUser.getId());
+            System.out.println(cancelled ? "Booking cancelled." : "You have no booking for that class.");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid class ID.");
+        } catch (SQLException e) {
+            System.out.println("Failed to cancel booking: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prompts a trainer for a class ID and lists the members booked into it.
+     */
+    private static void handleViewAttendees() {
+        System.out.print("Enter ID of the class: ");
+        String classIdStr = scanner.nextLine();
+        try {
+            List<Booking> attendees = workoutClassService.getAttendees(Integer.parseInt(classIdStr.trim()));
+            System.out.printf("%-10s %-25s %-20s%n", "Member ID", "Name", "Booked At");
+            System.out.println("------------------------------------------------------------");
+            for (Booking booking : attendees) {
+                System.out.printf("%-10d %-25s %-20s%n", booking.getMemberId(), booking.getMemberName(), booking.getBookedAt());
+            }
+            System.out.println(attendees.size() + " attendee(s).");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid class ID.");
+        } catch (SQLException e) {
+            System.out.println("Error loading attendees: " + e.getMessage());
+        }
+    }
+
     /**
      * Handles the logic for purchasing a membership for a user.
      *
@@ -349,6 +703,8 @@ private static void showMemberMenu(User loggedInUser) {
         String desc = scanner.nextLine();
         System.out.print("Enter cost: ");
         String costStr = scanner.nextLine();
+        System.out.print("Enter payment method (e.g., Card, Cash): ");
+        String paymentMethod = scanner.nextLine().trim();
 
         double cost = Double.parseDouble(costStr);
         LocalDate startDate = LocalDate.now();
@@ -357,9 +713,12 @@ private static void showMemberMenu(User loggedInUser) {
         Membership newMembership = new Membership(
                 type, desc, cost, loggedInUser.getId(), startDate, endDate, false
         );
+        newMembership.setPaymentMethod(paymentMethod.isEmpty() ? null : paymentMethod);
 
-        membershipService.buyMembership(newMembership);
-        System.out.println("Membership purchased successfully!");
+        int membershipId = membershipService.buyMembership(newMembership);
+        System.out.println(membershipId > 0
+                ? "Membership purchased successfully! Membership ID: " + membershipId
+                : "Failed to purchase membership.");
     }
 
     /**
@@ -398,14 +757,52 @@ private static void showMemberMenu(User loggedInUser) {
                 capacity, date, time, location, equipment
             );
 
-            workoutClassService.addWorkoutClass(newClass);
-            System.out.println("Workout class added successfully!");
+            int classId = workoutClassService.addWorkoutClass(newClass);
+            System.out.println("Workout class added successfully! Class ID: " + classId);
 
         } catch (Exception e) {
             System.out.println("Failed to add workout class: " + e.getMessage());
         }
     }
 
+    /**
+     * Asks for a date range, duration and optional location, then lists the windows in which
+     * the location (or any location) and, optionally, the trainer are free.
+     *
+     * @param trainer the trainer searching for a slot
+     */
+    private static void handleFindFreeSlots(User trainer) {
+        try {
+            System.out.print("From date (YYYY-MM-DD): ");
+            LocalDate from = LocalDate.parse(scanner.nextLine().trim());
+            System.out.print("To date (YYYY-MM-DD): ");
+            LocalDate to = LocalDate.parse(scanner.nextLine().trim());
+            System.out.print("Duration needed (minutes): ");
+            int duration = Integer.parseInt(scanner.nextLine().trim());
+            System.out.print("Location (leave blank for any): ");
+            String location = scanner.nextLine().trim();
+            System.out.print("Only times when you are free too? (y/n): ");
+            boolean mine = scanner.nextLine().trim().equalsIgnoreCase("y");
+
+            List<FreeSlot> slots = workoutClassService.findFreeSlots(new FreeSlotQuery(from, to, duration,
+                    location.isEmpty() ? null : location, mine ? trainer.getId() : null));
+            if (slots.isEmpty()) {
+                System.out.println("No free slots found.");
+                return;
+            }
+            System.out.printf("%-12s %-8s %-8s %-20s%n", "Date", "From", "To", "Location");
+            System.out.println("--------------------------------------------------");
+            for (FreeSlot slot : slots) {
+                System.out.printf("%-12s %-8s %-8s %-20s%n", slot.getDate(), slot.getStart(), slot.getEnd(),
+                        slot.getClassLocation() != null ? slot.getClassLocation() : "(any)");
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not search the schedule: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Invalid search: " + e.getMessage());
+        }
+    }
+
     /**
      * Prompts trainer to enter an ID and deletes the corresponding class.
      */
@@ -522,8 +919,14 @@ private static void showMemberMenu(User loggedInUser) {
             }
         }
     
-        boolean success = workoutClassService.updateWorkoutClass(existing);
-        System.out.println(success ? "\nClass updated successfully!" : "\nFailed to update class.");
+        try {
+            boolean success = workoutClassService.updateWorkoutClass(existing);
+            System.out.println(success ? "\nClass updated successfully!" : "\nFailed to update class.");
+        } catch (ScheduleConflictException e) {
+            System.out.println("\nCould not update class: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("\nFailed to update class: " + e.getMessage());
+        }
     }
 
     /**
@@ -0,0 +1,106 @@
+package org.keyin;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.PartitionMaintenance;
+import org.keyin.database.QueryPlan;
+import org.keyin.membership.MembershipDAOImpl;
+import org.keyin.workoutclasses.BookingDAOImpl;
+import org.keyin.workoutclasses.WorkoutClassCursor;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+import org.keyin.workoutclasses.WorkoutClassFilter;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks against a live database that the date-bounded DAO queries prune the monthly partitions
+ * of {@code memberships} and {@code workoutclasses}. Each query is planned with
+ * {@code EXPLAIN} using the DAO's own SQL and realistic parameters, and the partitions left in
+ * the plan are compared with the months the query asks for. Prints PASS or FAIL per query and
+ * exits with status 1 if any failed, so it can run after a schema change or in CI:
+ * {@code java -cp target/classes:<dependencies> org.keyin.PartitionPruningCheck}.
+ *
+ * <p>Lookups by ID alone (e.g. finding a class's date before booking it) cannot prune and are
+ * not checked.</p>
+ */
+public class PartitionPruningCheck {
+    private static int failures;
+
+    public static void main(String[] args) {
+        LocalDate today = LocalDate.now();
+        LocalDate month = today.withDayOfMonth(1);
+        LocalDate monthEnd = month.plusMonths(1).minusDays(1);
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<Object> params = new ArrayList<>();
+            String sql = WorkoutClassDAOImpl.pageSql(new WorkoutClassFilter(month, monthEnd, null, null), null, 20, params);
+            check("Schedule page for this month", QueryPlan.explain(conn, sql, params),
+                    "workoutclasses", month, month, false);
+
+            params = new ArrayList<>();
+            sql = WorkoutClassDAOImpl.pageSql(new WorkoutClassFilter(month, month.plusMonths(3).minusDays(1), "Beginner", null),
+                    null, 20, params);
+            check("Beginner schedule page for the next three months", QueryPlan.explain(conn, sql, params),
+                    "workoutclasses", month, month.plusMonths(2), false);
+
+            params = new ArrayList<>();
+            sql = WorkoutClassDAOImpl.pageSql(null, new WorkoutClassCursor(today, LocalTime.NOON, 0), 20, params);
+            check("Unfiltered schedule page after a cursor", QueryPlan.explain(conn, sql, params),
+                    "workoutclasses", month, null, true);
+
+            check("Seat reservation", QueryPlan.explain(conn, BookingDAOImpl.RESERVE_SQL,
+                    List.of(1, Date.valueOf(today))), "workoutclasses", month, month, false);
+
+            Date asOf = Date.valueOf(today);
+            check("Membership expiry chunk", QueryPlan.explain(conn, MembershipDAOImpl.EXPIRE_SQL,
+                    List.of(asOf, asOf, 1000, asOf)), "memberships", null, month, true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failures++;
+        }
+
+        System.out.println(failures == 0 ? "All partition pruning checks passed." : failures + " check(s) failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Passes if the plan touches at least one partition of the table and every one it touches
+     * is a month in {@code [from, to]}, or the default partition where that is expected.
+     *
+     * @param from          first month the query may touch, or null for no lower bound
+     * @param to            last month the query may touch, or null for no upper bound
+     * @param defaultAllowed whether the default partition may appear (open-ended ranges overlap it)
+     */
+    private static void check(String label, QueryPlan plan, String table, LocalDate from, LocalDate to, boolean defaultAllowed) {
+        Set<String> touched = plan.getRelations(table + "_");
+        String first = from == null ? null : PartitionMaintenance.partitionName(table, from);
+        String last = to == null ? null : PartitionMaintenance.partitionName(table, to);
+        List<String> unexpected = new ArrayList<>();
+        for (String partition : touched) {
+            if (partition.equals(table + "_default")) {
+                if (!defaultAllowed) {
+                    unexpected.add(partition);
+                }
+            } else if ((first != null && partition.compareTo(first) < 0) || (last != null && partition.compareTo(last) > 0)) {
+                unexpected.add(partition);
+            }
+        }
+
+        boolean passed = !touched.isEmpty() && unexpected.isEmpty();
+        if (!passed) {
+            failures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + label + ": scans " + touched
+                + (touched.isEmpty() ? " (is " + table + " partitioned?)" : "")
+                + (unexpected.isEmpty() ? "" : ", should have pruned " + unexpected));
+        if (!passed) {
+            System.out.println(plan.getJson());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.keyin;
+
+import org.keyin.utils.IntervalTree;
+import org.keyin.workoutclasses.FreeSlot;
+import org.keyin.workoutclasses.FreeSlotQuery;
+import org.keyin.workoutclasses.ScheduleConflictException;
+import org.keyin.workoutclasses.ScheduleIndex;
+import org.keyin.workoutclasses.WorkoutClass;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks {@link IntervalTree} and {@link ScheduleIndex}, which decide double bookings and free
+ * slots without asking the database, against their edge cases: touching and contained intervals,
+ * equal starts, removal, classes with no duration or running past midnight, rescheduling a class
+ * onto its own slot, gaps too short to offer, and a rebuild racing a save. The interval tree is
+ * also compared with a brute-force scan over random intervals. Needs no database. Prints PASS or
+ * FAIL per check and exits with status 1 if any failed:
+ * {@code java -cp target/classes org.keyin.ScheduleIndexCheck}.
+ */
+public class ScheduleIndexCheck {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 7);
+    private static final String STUDIO = "Studio A";
+    private static final String POOL = "Pool";
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        checkIntervalTree();
+        checkIntervalTreeAgainstScan();
+        checkConflicts();
+        checkFreeSlots();
+        checkRebuild();
+
+        System.out.println(failures == 0 ? "All schedule index checks passed." : failures + " check(s) failed.");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void checkIntervalTree() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert(0, 10, 1);
+        check("Touching intervals do not overlap", tree.findOverlap(10, 20, IntervalTree.NONE), IntervalTree.NONE);
+        check("Interval ending at the start does not overlap", tree.findOverlap(-5, 0, IntervalTree.NONE), IntervalTree.NONE);
+        check("Query inside an interval overlaps it", tree.findOverlap(4, 5, IntervalTree.NONE), 1);
+        check("Query containing an interval overlaps it", tree.findOverlap(-100, 100, IntervalTree.NONE), 1);
+        check("Ignored id does not overlap itself", tree.findOverlap(0, 10, 1), IntervalTree.NONE);
+
+        tree.insert(0, 10, 2);
+        check("Equal starts are both stored", tree.size(), 2);
+        check("Removing one of two equal starts", tree.remove(0, 1), true);
+        check("The other equal start still overlaps", tree.findOverlap(0, 10, IntervalTree.NONE), 2);
+        check("Removing an unknown id", tree.remove(0, 1), false);
+        check("Removing the last interval", tree.remove(0, 2) && tree.size() == 0, true);
+
+        boolean rejected;
+        try {
+            tree.insert(5, 5, 3);
+            rejected = false;
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        check("Empty interval is rejected", rejected, true);
+    }
+
+    /**
+     * Random inserts, removals and queries, each compared with a scan over a plain list.
+     */
+    private static void checkIntervalTreeAgainstScan() {
+        Random random = new Random(42);
+        IntervalTree tree = new IntervalTree();
+        List<long[]> intervals = new ArrayList<>();
+        int mismatches = 0;
+        for (int id = 0; id < 2000; id++) {
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(500);
+            tree.insert(start, end, id);
+            intervals.add(new long[]{start, end, id});
+            if (random.nextInt(4) == 0) {
+                long[] removed = intervals.remove(random.nextInt(intervals.size()));
+                if (!tree.remove(removed[0], (int) removed[2])) {
+                    mismatches++;
+                }
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(300);
+            List<Long> expected = new ArrayList<>();
+            for (long[] interval : intervals) {
+                if (interval[0] < end && interval[1] > start) {
+                    expected.add(interval[2]);
+                }
+            }
+            int found = tree.findOverlap(start, end, IntervalTree.NONE);
+            if (expected.isEmpty() ? found != IntervalTree.NONE : !expected.contains((long) found)) {
+                mismatches++;
+            }
+            List<Long> visited = new ArrayList<>();
+            long[] lastStart = {Long.MIN_VALUE};
+            boolean[] ordered = {true};
+            tree.forEachOverlap(start, end, (from, to, id) -> {
+                ordered[0] &= from >= lastStart[0];
+                lastStart[0] = from;
+                visited.add((long) id);
+            });
+            if (!ordered[0] || visited.size() != expected.size() || !visited.containsAll(expected)) {
+                mismatches++;
+            }
+        }
+        check("Random intervals match a full scan", mismatches == 0 && tree.size() == intervals.size(), true);
+    }
+
+    private static void checkConflicts() {
+        ScheduleIndex index = new ScheduleIndex();
+        List<WorkoutClass> schedule = new ArrayList<>();
+        schedule.add(workoutClass(1, 7, DAY, "10:00", 60, STUDIO));
+        schedule.add(workoutClass(2, 8, DAY, "23:30", 60, POOL));
+        schedule.add(workoutClass(3, 9, DAY, "12:00", 0, STUDIO));
+        index.rebuild(schedule);
+
+        check("Same trainer at an overlapping time", conflictWith(index, workoutClass(10, 7, DAY, "10:30", 60, POOL)), 1);
+        check("Same location at an overlapping time", conflictWith(index, workoutClass(10, 99, DAY, "09:30", 31, STUDIO)), 1);
+        check("Class starting as another ends", conflictWith(index, workoutClass(10, 7, DAY, "11:00", 60, STUDIO)), 0);
+        check("Class ending as another starts", conflictWith(index, workoutClass(10, 7, DAY, "09:00", 60, STUDIO)), 0);
+        check("Other trainer and location", conflictWith(index, workoutClass(10, 99, DAY, "10:00", 60, POOL)), 0);
+        check("Rescheduling a class over its own slot", conflictWith(index, workoutClass(1, 7, DAY, "10:30", 60, STUDIO)), 0);
+        check("Class with no duration blocks nothing", conflictWith(index, workoutClass(10, 9, DAY, "12:00", 30, POOL)), 0);
+        check("Class with no duration clashes with nothing", conflictWith(index, workoutClass(10, 7, DAY, "10:00", 0, STUDIO)), 0);
+        check("Class running past midnight", conflictWith(index, workoutClass(10, 99, DAY.plusDays(1), "00:15", 30, POOL)), 2);
+
+        index.put(workoutClass(1, 7, DAY, "14:00", 60, STUDIO));
+        check("Moved class frees its old slot", conflictWith(index, workoutClass(10, 99, DAY, "10:00", 60, STUDIO)), 0);
+        check("Moved class occupies its new slot", conflictWith(index, workoutClass(10, 99, DAY, "14:30", 60, STUDIO)), 1);
+        index.remove(1);
+        check("Removed class frees its slot", conflictWith(index, workoutClass(10, 7, DAY, "14:30", 60, STUDIO)), 0);
+    }
+
+    private static void checkFreeSlots() {
+        ScheduleIndex index = new ScheduleIndex();
+        List<WorkoutClass> schedule = new ArrayList<>();
+        schedule.add(workoutClass(1, 7, DAY, "05:00", 120, STUDIO));
+        schedule.add(workoutClass(2, 7, DAY, "10:00", 60, STUDIO));
+        schedule.add(workoutClass(3, 8, DAY, "11:30", 30, STUDIO));
+        schedule.add(workoutClass(4, 8, DAY, "21:30", 600, STUDIO));
+        schedule.add(workoutClass(5, 7, DAY, "15:00", 60, POOL));
+        index.rebuild(schedule);
+
+        check("Free slots around classes, skipping short gaps",
+                index.findFreeSlots(new FreeSlotQuery(DAY, DAY.plusDays(1), 60, STUDIO, null)),
+                List.of(DAY + " 07:00-10:00 in " + STUDIO, DAY + " 12:00-21:30 in " + STUDIO,
+                        DAY.plusDays(1) + " 07:30-22:00 in " + STUDIO));
+        check("Gap exactly as long as needed",
+                index.findFreeSlots(new FreeSlotQuery(DAY, DAY, 30, STUDIO, null)),
+                List.of(DAY + " 07:00-10:00 in " + STUDIO, DAY + " 11:00-11:30 in " + STUDIO,
+                        DAY + " 12:00-21:30 in " + STUDIO));
+        check("Location and trainer both free",
+                index.findFreeSlots(new FreeSlotQuery(DAY, DAY, 60, POOL, 8)),
+                List.of(DAY + " 06:00-11:30 in " + POOL + " with trainer 8",
+                        DAY + " 12:00-15:00 in " + POOL + " with trainer 8",
+                        DAY + " 16:00-21:30 in " + POOL + " with trainer 8"));
+        check("Trainer free anywhere",
+                index.findFreeSlots(new FreeSlotQuery(DAY, DAY, 120, null, 7)),
+                List.of(DAY + " 07:00-10:00 with trainer 7", DAY + " 11:00-15:00 with trainer 7",
+                        DAY + " 16:00-22:00 with trainer 7"));
+        check("Unknown location is free all day",
+                index.findFreeSlots(new FreeSlotQuery(DAY, DAY, 60, "Roof", null)),
+                List.of(DAY + " 06:00-22:00 in Roof"));
+    }
+
+    private static void checkRebuild() {
+        ScheduleIndex index = new ScheduleIndex();
+        long stamp = index.stamp();
+        index.put(workoutClass(1, 7, DAY, "10:00", 60, STUDIO));
+        check("Rebuild from a read that missed a save is refused",
+                index.rebuildIfUnchanged(new ArrayList<>(), stamp) || index.isLoaded(), false);
+        check("Refused rebuild keeps the save", conflictWith(index, workoutClass(10, 7, DAY, "10:00", 60, POOL)), 1);
+
+        stamp = index.stamp();
+        List<WorkoutClass> schedule = List.of(workoutClass(1, 7, DAY, "10:00", 60, STUDIO));
+        check("Rebuild with no save since its stamp", index.rebuildIfUnchanged(schedule, stamp) && index.isLoaded(), true);
+        index.invalidate();
+        check("Invalidated index is not loaded", index.isLoaded(), false);
+    }
+
+    private static WorkoutClass workoutClass(int id, int trainerId, LocalDate date, String time, int minutes, String location) {
+        return new WorkoutClass(id, "Class " + id, trainerId, "", "Beginner", minutes, 10, date,
+                LocalTime.parse(time), location, "");
+    }
+
+    private static int conflictWith(ScheduleIndex index, WorkoutClass workoutClass) {
+        ScheduleConflictException conflict = index.findConflict(workoutClass);
+        return conflict == null ? 0 : conflict.getConflictingClassId();
+    }
+
+    private static void check(String label, List<FreeSlot> actual, List<String> expected) {
+        List<String> described = new ArrayList<>();
+        for (FreeSlot slot : actual) {
+            described.add(slot.toString());
+        }
+        check(label, (Object) described, expected);
+    }
+
+    private static void check(String label, Object actual, Object expected) {
+        boolean passed = expected.equals(actual);
+        if (!passed) {
+            failures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + label + (passed ? "" : ": expected " + expected + ", got " + actual));
+    }
+}
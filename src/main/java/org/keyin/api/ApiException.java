@@ -0,0 +1,24 @@
+package org.keyin.api;
+
+/**
+ * Signals an HTTP error that should be returned to the client as a JSON error body.
+ */
+public class ApiException extends RuntimeException {
+    private final int status;
+
+    /**
+     * @param status  HTTP status code to return
+     * @param message error message shown to the client
+     */
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return HTTP status code to return
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,324 @@
+package org.keyin.api;
+
+import org.keyin.user.User;
+import org.keyin.utils.Json;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed HTTP request as seen by an API handler: path parameters, query parameters,
+ * a lazily parsed JSON body and the logged-in user, if any. Missing or malformed values raise
+ * a 400 {@link ApiException}; missing permissions raise 401 or 403.
+ */
+public class ApiRequest {
+    private final String method;
+    private final List<String> pathParams;
+    private final Map<String, String> query;
+    private final String body;
+    private final User user;
+    private final String token;
+    private Map<String, Object> json;
+
+    /**
+     * @param method     HTTP method
+     * @param pathParams values captured from {@code {placeholders}} in the route, in order
+     * @param rawQuery   raw query string, or null
+     * @param body       request body text (may be empty)
+     * @param user       the user the request's bearer token belongs to, or null if anonymous
+     * @param token      the bearer token presented, or null
+     */
+    public ApiRequest(String method, List<String> pathParams, String rawQuery, String body, User user, String token) {
+        this.method = method;
+        this.pathParams = pathParams;
+        this.query = parseQuery(rawQuery);
+        this.body = body;
+        this.user = user;
+        this.token = token;
+    }
+
+    /** @return HTTP method. */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the logged-in user, or null if the request carried no valid token
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return the bearer token the request presented, or null
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @param roles role names, e.g. {@code admin}
+     * @return true if the request is logged in with one of the roles
+     */
+    public boolean hasRole(String... roles) {
+        return hasRole(user, roles);
+    }
+
+    static boolean hasRole(User user, String... roles) {
+        if (user == null || user.getRole() == null) {
+            return false;
+        }
+        for (String role : roles) {
+            if (role.equalsIgnoreCase(user.getRole())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fails the request unless it is logged in with one of the roles.
+     *
+     * @param roles role names, e.g. {@code admin}
+     * @return the logged-in user
+     */
+    public User requireRole(String... roles) {
+        if (user == null) {
+            throw new ApiException(401, "Login required");
+        }
+        if (!hasRole(roles)) {
+            throw new ApiException(403, "Not permitted for role " + user.getRole());
+        }
+        return user;
+    }
+
+    /**
+     * Fails the request unless it is logged in as the given user or as an admin, for resources
+     * that belong to one member (their memberships and bookings).
+     *
+     * @param userId the user the resource belongs to
+     * @return the logged-in user
+     */
+    public User requireSelfOrAdmin(int userId) {
+        if (user == null) {
+            throw new ApiException(401, "Login required");
+        }
+        if (user.getId() != userId && !hasRole("admin")) {
+            throw new ApiException(403, "Not permitted for another user's records");
+        }
+        return user;
+    }
+
+    /**
+     * @param index position of the placeholder in the route
+     * @return the path parameter as an integer
+     */
+    public int pathInt(int index) {
+        try {
+            return Integer.parseInt(pathParams.get(index));
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Path parameter must be a number: " + pathParams.get(index));
+        }
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the value, or null if absent or blank
+     */
+    public String query(String name) {
+        String value = query.get(name);
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the value as an integer, or null if absent
+     */
+    public Integer queryInt(String name) {
+        String value = query(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Query parameter '" + name + "' must be a number");
+        }
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the comma-separated values as numbers, or null if absent
+     */
+    public List<Integer> queryIntList(String name) {
+        String value = query(name);
+        if (value == null) {
+            return null;
+        }
+        List<Integer> numbers = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                numbers.add(Integer.parseInt(part.trim()));
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Query parameter '" + name + "' must be a comma-separated list of numbers");
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the value as a date (YYYY-MM-DD), or null if absent
+     */
+    public LocalDate queryDate(String name) {
+        String value = query(name);
+        return value == null ? null : parseDate(name, value);
+    }
+
+    /**
+     * @param name query parameter name
+     * @return the value as a time (HH:MM[:SS]), or null if absent
+     */
+    public LocalTime queryTime(String name) {
+        String value = query(name);
+        return value == null ? null : parseTime(name, value);
+    }
+
+    /**
+     * @return the parsed JSON body
+     */
+    public Map<String, Object> json() {
+        if (json == null) {
+            if (body == null || body.isBlank()) {
+                json = Collections.emptyMap();
+            } else {
+                try {
+                    json = Json.parseObject(body);
+                } catch (IllegalArgumentException e) {
+                    throw new ApiException(400, "Invalid JSON body: " + e.getMessage());
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * @param field JSON field name
+     * @return the field as a string
+     */
+    public String bodyString(String field) {
+        Object value = json().get(field);
+        if (value == null) {
+            throw new ApiException(400, "Missing field '" + field + "'");
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param field JSON field name
+     * @param defaultValue value used when the field is absent
+     * @return the field as a string, or the default
+     */
+    public String bodyString(String field, String defaultValue) {
+        Object value = json().get(field);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    /**
+     * @param field JSON field name
+     * @return the field as an integer
+     */
+    public int bodyInt(String field) {
+        return bodyNumber(field).intValueExact();
+    }
+
+    /**
+     * @param field JSON field name
+     * @return the field as an exact decimal
+     */
+    public BigDecimal bodyNumber(String field) {
+        Object value = json().get(field);
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value == null) {
+            throw new ApiException(400, "Missing field '" + field + "'");
+        }
+        try {
+            return new BigDecimal(value.toString());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Field '" + field + "' must be a number");
+        }
+    }
+
+    /**
+     * @param field JSON field name
+     * @param defaultValue value used when the field is absent
+     * @return the field as a boolean, or the default
+     */
+    public boolean bodyBoolean(String field, boolean defaultValue) {
+        Object value = json().get(field);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+    }
+
+    /**
+     * @param field JSON field name
+     * @return the field as a date (YYYY-MM-DD)
+     */
+    public LocalDate bodyDate(String field) {
+        return parseDate(field, bodyString(field));
+    }
+
+    /**
+     * @param field JSON field name
+     * @return the field as a time (HH:MM[:SS])
+     */
+    public LocalTime bodyTime(String field) {
+        return parseTime(field, bodyString(field));
+    }
+
+    private static LocalDate parseDate(String name, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "'" + name + "' must be a date (YYYY-MM-DD)");
+        }
+    }
+
+    private static LocalTime parseTime(String name, String value) {
+        try {
+            return LocalTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "'" + name + "' must be a time (HH:MM)");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
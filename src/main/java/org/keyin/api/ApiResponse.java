@@ -0,0 +1,36 @@
+package org.keyin.api;
+
+/**
+ * A handler result with an explicit HTTP status. Handlers that simply return a value get 200.
+ */
+public class ApiResponse {
+    private final int status;
+    private final Object body;
+
+    /**
+     * @param status HTTP status code
+     * @param body   value serialized as the JSON response body (may be null)
+     */
+    public ApiResponse(int status, Object body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    /**
+     * @param body the created resource
+     * @return a 201 Created response
+     */
+    public static ApiResponse created(Object body) {
+        return new ApiResponse(201, body);
+    }
+
+    /** @return HTTP status code. */
+    public int getStatus() {
+        return status;
+    }
+
+    /** @return value serialized as the JSON response body. */
+    public Object getBody() {
+        return body;
+    }
+}
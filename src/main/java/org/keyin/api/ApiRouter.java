@@ -0,0 +1,293 @@
+package org.keyin.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.keyin.database.ShardContext;
+import org.keyin.user.User;
+import org.keyin.utils.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Dispatches HTTP requests to JSON handlers by method and path template
+ * (e.g. {@code /api/classes/{id}/bookings}), enforcing a limit on concurrently
+ * running requests and recording per-route latency.
+ *
+ * <p>Every route needs a valid {@code Authorization: Bearer} token from {@link ApiSessions}
+ * unless it is registered with {@link #addPublic}, and may further be limited to some roles.
+ * Anonymous requests get 401 and logged-in users without the role get 403, before the body
+ * is read. Bodies over the configured size are refused with 413.</p>
+ *
+ * <p>Requests over the concurrency limit are refused immediately with 503 rather than queued,
+ * so a burst cannot pile up unbounded work behind the connection pool.</p>
+ *
+ * <p>When the database is sharded by location, an {@code X-Gym-Location} header makes the
+ * handler work for that location, e.g. so a registration lands on that location's shard.</p>
+ */
+public class ApiRouter implements HttpHandler {
+    /** Request header naming the gym location a request works for. */
+    public static final String LOCATION_HEADER = "X-Gym-Location";
+
+    /**
+     * Handles one matched request. The returned value is written as the JSON body with status 200,
+     * unless it is an {@link ApiResponse}; returning null sends 204 No Content.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        Object handle(ApiRequest request) throws Exception;
+    }
+
+    private final List<Route> routes = new ArrayList<>();
+    private final int maxConcurrentRequests;
+    private final int maxBodyBytes;
+    private final Semaphore inFlight;
+    private final RequestMetrics metrics;
+    private final ApiSessions sessions;
+
+    /**
+     * @param maxConcurrentRequests requests allowed to run at once; further requests get 503
+     * @param maxBodyBytes          largest request body accepted; larger ones get 413
+     * @param metrics               where per-route latencies are recorded
+     * @param sessions              resolves bearer tokens to logged-in users
+     */
+    public ApiRouter(int maxConcurrentRequests, int maxBodyBytes, RequestMetrics metrics, ApiSessions sessions) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxBodyBytes = maxBodyBytes;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+        this.metrics = metrics;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Registers a route that needs a logged-in user.
+     *
+     * @param method   HTTP method
+     * @param template path template; {@code {name}} segments are captured as path parameters
+     * @param handler  the handler to run
+     * @param roles    roles allowed to call it; none means any logged-in user
+     * @return this router for chaining
+     */
+    public ApiRouter add(String method, String template, Handler handler, String... roles) {
+        routes.add(new Route(method, template, handler, false, roles));
+        return this;
+    }
+
+    /**
+     * Registers a route anyone may call, e.g. login. The handler still sees the user if a valid
+     * token was sent.
+     *
+     * @param method   HTTP method
+     * @param template path template; {@code {name}} segments are captured as path parameters
+     * @param handler  the handler to run
+     * @return this router for chaining
+     */
+    public ApiRouter addPublic(String method, String template, Handler handler) {
+        routes.add(new Route(method, template, handler, true));
+        return this;
+    }
+
+    /**
+     * @return number of requests currently being handled
+     */
+    public int getInFlight() {
+        return maxConcurrentRequests - inFlight.availablePermits();
+    }
+
+    /**
+     * @return configured limit on concurrently running requests
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String routeKey = exchange.getRequestMethod() + " (unmatched)";
+        int status;
+        try {
+            if (!inFlight.tryAcquire()) {
+                metrics.recordRejected();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Server is busy, try again shortly"));
+                return;
+            }
+            try {
+                String path = exchange.getRequestURI().getPath();
+                Route route = null;
+                Matcher matcher = null;
+                boolean pathMatched = false;
+                for (Route candidate : routes) {
+                    Matcher m = candidate.pattern.matcher(path);
+                    if (m.matches()) {
+                        pathMatched = true;
+                        if (candidate.method.equals(exchange.getRequestMethod())) {
+                            route = candidate;
+                            matcher = m;
+                            break;
+                        }
+                    }
+                }
+
+                if (route == null) {
+                    status = pathMatched ? 405 : 404;
+                    send(exchange, status, error(pathMatched ? "Method not allowed" : "Not found"));
+                } else {
+                    routeKey = route.method + " " + route.template;
+                    status = dispatch(exchange, route, matcher);
+                }
+            } finally {
+                inFlight.release();
+            }
+            metrics.record(routeKey, status, System.nanoTime() - start);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private int dispatch(HttpExchange exchange, Route route, Matcher matcher) throws IOException {
+        List<String> pathParams = new ArrayList<>();
+        for (int i = 1; i <= matcher.groupCount(); i++) {
+            pathParams.add(matcher.group(i));
+        }
+
+        int status;
+        Object body;
+        try {
+            String token = bearerToken(exchange.getRequestHeaders().getFirst("Authorization"));
+            User user = sessions.lookup(token);
+            if (!route.isPublic && user == null) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                throw new ApiException(401, "Login required");
+            }
+            if (route.roles.length > 0 && !ApiRequest.hasRole(user, route.roles)) {
+                throw new ApiException(403, "Not permitted for role " + user.getRole());
+            }
+            ApiRequest request = new ApiRequest(exchange.getRequestMethod(), pathParams,
+                    exchange.getRequestURI().getRawQuery(), readBody(exchange), user, token);
+            Object result;
+            try (ShardContext.Scope ignored = enterLocation(exchange.getRequestHeaders().getFirst(LOCATION_HEADER))) {
+                result = route.handler.handle(request);
+            }
+            if (result instanceof ApiResponse) {
+                status = ((ApiResponse) result).getStatus();
+                body = ((ApiResponse) result).getBody();
+            } else {
+                status = result == null ? 204 : 200;
+                body = result;
+            }
+        } catch (Exception e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof ApiException) {
+                status = ((ApiException) cause).getStatus();
+            } else if (cause instanceof SQLException && "23P01".equals(((SQLException) cause).getSQLState())) {
+                // Exclusion constraint, e.g. a class that would double-book a trainer or room
+                status = 409;
+            } else if (cause instanceof RejectedExecutionException) {
+                status = 503;
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            } else {
+                status = 500;
+                System.out.println("Error handling " + route.method + " " + exchange.getRequestURI() + ": " + cause);
+                if (!(cause instanceof SQLException)) {
+                    cause.printStackTrace();
+                }
+            }
+            body = error(status == 500 ? "Internal server error" : cause.getMessage());
+        }
+        send(exchange, status, body);
+        return status;
+    }
+
+    private static ShardContext.Scope enterLocation(String location) throws ApiException {
+        try {
+            return ShardContext.enterLocation(location);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        Throwable current = e;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static String bearerToken(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        String token = authorization.substring(7).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && length.chars().allMatch(Character::isDigit)
+                && (length.length() > 10 || Long.parseLong(length) > maxBodyBytes)) {
+            throw new ApiException(413, "Request body larger than " + maxBodyBytes + " bytes");
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            // Read one byte past the limit so a chunked body without a length is caught too
+            byte[] bytes = in.readNBytes(maxBodyBytes + 1);
+            if (bytes.length > maxBodyBytes) {
+                throw new ApiException(413, "Request body larger than " + maxBodyBytes + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Map.of("error", message == null ? "" : message);
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (status == 204) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A method plus a compiled path template.
+     */
+    private static final class Route {
+        private final String method;
+        private final String template;
+        private final Pattern pattern;
+        private final Handler handler;
+        private final boolean isPublic;
+        private final String[] roles;
+
+        private Route(String method, String template, Handler handler, boolean isPublic, String... roles) {
+            this.method = method;
+            this.template = template;
+            this.pattern = Pattern.compile(template.replaceAll("\\{[^/]+}", "([^/]+)"));
+            this.handler = handler;
+            this.isPublic = isPublic;
+            this.roles = roles;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.keyin.api;
+
+import org.keyin.user.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bearer tokens handed out by {@code POST /api/login}. A token names the logged-in user until
+ * it has gone unused for the idle timeout or the user logs out; clients send it as
+ * {@code Authorization: Bearer <token>}. Tokens live only in this process, so a restart logs
+ * everyone out.
+ */
+public class ApiSessions {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+
+    /**
+     * @param idleTimeoutMillis how long a token stays valid after its last use
+     */
+    public ApiSessions(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Starts a session for a user who has just proven their password.
+     *
+     * @param user the logged-in user
+     * @return a new random token
+     */
+    public String create(User user) {
+        long now = System.currentTimeMillis();
+        // Logins are rare next to requests, so expired sessions are swept here rather than on a timer
+        sessions.values().removeIf(session -> session.isExpired(now, idleTimeoutMillis));
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(user, now));
+        return token;
+    }
+
+    /**
+     * @param token the token a request presented, or null
+     * @return the user the token belongs to, or null if it is unknown or expired
+     */
+    public User lookup(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now, idleTimeoutMillis)) {
+            sessions.remove(token);
+            return null;
+        }
+        session.lastUsed = now;
+        return session.user;
+    }
+
+    /**
+     * Ends one session.
+     *
+     * @param token the token to revoke
+     */
+    public void remove(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * Ends every session of a user, e.g. after the account is deleted.
+     *
+     * @param userId the user's ID
+     */
+    public void removeUser(int userId) {
+        sessions.values().removeIf(session -> session.user.getId() == userId);
+    }
+
+    /**
+     * @return number of sessions held, including expired ones not yet swept
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private static final class Session {
+        private final User user;
+        private volatile long lastUsed;
+
+        private Session(User user, long lastUsed) {
+            this.user = user;
+            this.lastUsed = lastUsed;
+        }
+
+        private boolean isExpired(long now, long idleTimeoutMillis) {
+            return now - lastUsed > idleTimeoutMillis;
+        }
+    }
+}
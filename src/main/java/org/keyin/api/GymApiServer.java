@@ -0,0 +1,471 @@
+package org.keyin.api;
+
+import com.sun.net.httpserver.HttpServer;
+import org.keyin.database.ChangeEvent;
+import org.keyin.database.ChangeFeedListener;
+import org.keyin.database.DaoMetrics;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.PartitionMaintenance;
+import org.keyin.database.ReplicaSet;
+import org.keyin.database.ShardMap;
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipExpirySweeper;
+import org.keyin.membership.MembershipService;
+import org.keyin.membership.RevenueBreakdown;
+import org.keyin.storage.StorageBackend;
+import org.keyin.user.User;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserService;
+import org.keyin.utils.VirtualThreads;
+import org.keyin.workoutclasses.BookingResult;
+import org.keyin.workoutclasses.CachingWorkoutClassDAO;
+import org.keyin.workoutclasses.FreeSlotQuery;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassCursor;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassFilter;
+import org.keyin.workoutclasses.WorkoutClassSearchPage;
+import org.keyin.workoutclasses.WorkoutClassService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP JSON front end for the gym services, so several clients (front desk, kiosks, mobile app)
+ * can share one running instance. Built on the JDK's {@code com.sun.net.httpserver}; each
+ * request runs on its own virtual thread when the JVM supports them.
+ *
+ * <p>Clients log in with {@code POST /api/login} and send the returned token as
+ * {@code Authorization: Bearer <token>}. Each route allows the same roles as the matching console
+ * menu: admins manage users and read revenue and metrics, trainers manage their own classes and
+ * see attendees, and members buy memberships and book classes for themselves. Anyone may
+ * register as a member; creating admins and trainers takes an admin.</p>
+ *
+ * <p>Settings (system properties):</p>
+ * <ul>
+ *     <li>{@code gym.api.host} - listen address (default 127.0.0.1; set 0.0.0.0 to serve other machines)</li>
+ *     <li>{@code gym.api.port} - listen port (default 8080)</li>
+ *     <li>{@code gym.api.maxConcurrentRequests} - requests handled at once before new ones get 503 (default 200)</li>
+ *     <li>{@code gym.api.maxBodyBytes} - largest request body accepted before 413 (default 1048576)</li>
+ *     <li>{@code gym.api.sessionMinutes} - how long an unused login token stays valid (default 60)</li>
+ * </ul>
+ * The database settings are the usual {@code gym.db.*} properties read by {@link DatabaseConnection}.
+ */
+public class GymApiServer {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final String ADMIN = "admin";
+    private static final String TRAINER = "trainer";
+    private static final String MEMBER = "member";
+
+    private final UserService userService;
+    private final MembershipService membershipService;
+    private final WorkoutClassService workoutClassService;
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final ApiSessions sessions;
+    private final ApiRouter router;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile ChangeFeedListener changeFeed;
+    private volatile PartitionMaintenance partitionMaintenance;
+
+    /**
+     * Creates a server over the given services.
+     *
+     * @param userService           user operations
+     * @param membershipService     membership operations
+     * @param workoutClassService   workout class and booking operations
+     * @param maxConcurrentRequests requests handled at once before new ones are refused with 503
+     * @param maxBodyBytes          largest request body accepted before it is refused with 413
+     * @param sessionMinutes        how long an unused login token stays valid
+     */
+    public GymApiServer(UserService userService, MembershipService membershipService,
+                        WorkoutClassService workoutClassService, int maxConcurrentRequests,
+                        int maxBodyBytes, long sessionMinutes) {
+        this.userService = userService;
+        this.membershipService = membershipService;
+        this.workoutClassService = workoutClassService;
+        this.sessions = new ApiSessions(TimeUnit.MINUTES.toMillis(sessionMinutes));
+        this.router = new ApiRouter(maxConcurrentRequests, maxBodyBytes, metrics, sessions);
+        registerRoutes();
+    }
+
+    /**
+     * Binds the port on the loopback interface and starts serving requests.
+     *
+     * @param port the TCP port to listen on (0 picks a free port)
+     * @throws IOException if the port cannot be bound
+     */
+    public void start(int port) throws IOException {
+        start(DEFAULT_HOST, port);
+    }
+
+    /**
+     * Binds the address and port and starts serving requests.
+     *
+     * @param host the address to listen on, e.g. {@code 127.0.0.1} or {@code 0.0.0.0}
+     * @param port the TCP port to listen on (0 picks a free port)
+     * @throws IOException if the port cannot be bound
+     */
+    public void start(String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        executor = VirtualThreads.newThreadPerTaskExecutor("gym-api");
+        server.setExecutor(executor);
+        server.createContext("/api", router);
+        server.start();
+    }
+
+    /**
+     * Reports a change feed's state in {@code /api/metrics}.
+     *
+     * @param changeFeed the listener invalidating this server's caches
+     */
+    public void setChangeFeed(ChangeFeedListener changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Reports the partition maintenance job's state in {@code /api/metrics}.
+     *
+     * @param partitionMaintenance the job creating monthly partitions ahead of time
+     */
+    public void setPartitionMaintenance(PartitionMaintenance partitionMaintenance) {
+        this.partitionMaintenance = partitionMaintenance;
+    }
+
+    /**
+     * @return the bound port, useful when started on port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, gives in-flight ones a moment to finish, then shuts the executor down.
+     *
+     * @param delaySeconds maximum time to wait for in-flight requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void registerRoutes() {
+        router.addPublic("POST", "/api/login", request -> {
+            User user = userService.loginAsync(request.bodyString("email"), request.bodyString("password")).get();
+            if (user == null) {
+                throw new ApiException(401, "Invalid email or password");
+            }
+            Map<String, Object> view = JsonViews.user(user);
+            view.put("token", sessions.create(user));
+            return view;
+        });
+        router.add("POST", "/api/logout", request -> {
+            sessions.remove(request.getToken());
+            return null;
+        });
+
+        router.add("GET", "/api/users", request -> JsonViews.list(userService.getAllUsers(), JsonViews::user), ADMIN);
+        router.addPublic("POST", "/api/users", request -> {
+            if (!MEMBER.equalsIgnoreCase(request.bodyString("role"))) {
+                request.requireRole(ADMIN);
+            }
+            int userId = userService.registerUserAsync(
+                    request.bodyString("username"), request.bodyString("email"), request.bodyString("password"),
+                    request.bodyString("role"), request.bodyString("phone", ""), request.bodyString("address", "")).get();
+            if (userId < 0) {
+                throw new ApiException(409, "Registration failed. Email or username may already be in use.");
+            }
+            return ApiResponse.created(Map.of("id", userId, "email", request.bodyString("email")));
+        });
+        router.add("DELETE", "/api/users/{id}", request -> {
+            if (!userService.deleteUser(request.pathInt(0))) {
+                throw new ApiException(404, "User not found");
+            }
+            sessions.removeUser(request.pathInt(0));
+            return null;
+        }, ADMIN);
+
+        router.add("GET", "/api/memberships", request -> {
+            List<Integer> memberIds = request.queryIntList("memberIds");
+            if (memberIds != null) {
+                request.requireRole(ADMIN);
+                Map<String, Object> byMember = new LinkedHashMap<>();
+                membershipService.getMembershipsByMemberIds(memberIds).forEach((id, memberships) ->
+                        byMember.put(String.valueOf(id), JsonViews.list(memberships, JsonViews::membership)));
+                return byMember;
+            }
+            Integer memberId = request.queryInt("memberId");
+            if (memberId == null) {
+                // Everyone but an admin gets their own memberships
+                memberId = request.hasRole(ADMIN) ? null : request.getUser().getId();
+            } else {
+                request.requireSelfOrAdmin(memberId);
+            }
+            return JsonViews.list(memberId == null
+                    ? membershipService.getAllMemberships()
+                    : membershipService.getMembershipsByMemberId(memberId), JsonViews::membership);
+        });
+        router.add("POST", "/api/memberships", request -> {
+            LocalDate startDate = request.json().containsKey("startDate") ? request.bodyDate("startDate") : LocalDate.now();
+            LocalDate endDate = request.json().containsKey("endDate") ? request.bodyDate("endDate") : startDate.plusMonths(1);
+            request.requireSelfOrAdmin(request.bodyInt("memberId"));
+            if (endDate.isBefore(startDate)) {
+                throw new ApiException(400, "'endDate' must not be before 'startDate'");
+            }
+            double cost = request.bodyNumber("cost").doubleValue();
+            if (!(cost >= 0)) {
+                throw new ApiException(400, "'cost' must not be negative");
+            }
+            Membership membership = new Membership(request.bodyString("type"), request.bodyString("description", ""),
+                    cost, request.bodyInt("memberId"), startDate, endDate, request.bodyBoolean("onHold", false));
+            membership.setPaymentMethod(request.bodyString("paymentMethod", null));
+            if (membershipService.buyMembership(membership) == -1) {
+                // The DAO logs the cause; an unknown member id is the usual one
+                throw new ApiException(422, "Membership could not be saved. Check that the member exists.");
+            }
+            return ApiResponse.created(JsonViews.membership(membership));
+        });
+        router.add("GET", "/api/revenue", request -> {
+            CompletableFuture<BigDecimal> total = membershipService.getTotalRevenueExactAsync();
+            CompletableFuture<List<RevenueBreakdown>> byType = membershipService.getRevenueByMembershipTypeAsync();
+            CompletableFuture<List<RevenueBreakdown>> byMonth = membershipService.getRevenueByStartMonthAsync();
+            CompletableFuture<List<RevenueBreakdown>> byPaymentMethod = membershipService.getRevenueByPaymentMethodAsync();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("total", total.join());
+            report.put("byType", JsonViews.list(byType.join(), JsonViews::revenue));
+            report.put("byMonth", JsonViews.list(byMonth.join(), JsonViews::revenue));
+            report.put("byPaymentMethod", JsonViews.list(byPaymentMethod.join(), JsonViews::revenue));
+            return report;
+        }, ADMIN);
+
+        router.add("GET", "/api/classes", request -> {
+            Integer trainerId = request.queryInt("trainerId");
+            if (trainerId != null) {
+                return JsonViews.list(workoutClassService.getWorkoutClassesByTrainerId(trainerId), JsonViews::workoutClass);
+            }
+            WorkoutClassFilter filter = new WorkoutClassFilter(request.queryDate("from"), request.queryDate("to"),
+                    request.query("level"), request.query("location"));
+            WorkoutClassCursor after = null;
+            Integer afterId = request.queryInt("afterId");
+            if (afterId != null) {
+                LocalDate afterDate = request.queryDate("afterDate");
+                LocalTime afterTime = request.queryTime("afterTime");
+                if (afterDate == null || afterTime == null) {
+                    throw new ApiException(400, "afterId requires afterDate and afterTime");
+                }
+                after = new WorkoutClassCursor(afterDate, afterTime, afterId);
+            }
+            Integer pageSize = request.queryInt("pageSize");
+            int size = pageSize == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+            return JsonViews.page(workoutClassService.getWorkoutClassesPage(filter, after, size));
+        });
+        router.add("GET", "/api/classes/search", request -> {
+            String text = request.query("q");
+            if (text == null || text.isBlank()) {
+                throw new ApiException(400, "Query parameter 'q' is required");
+            }
+            Integer page = request.queryInt("page");
+            Integer pageSize = request.queryInt("pageSize");
+            WorkoutClassSearchPage results = workoutClassService.searchWorkoutClasses(text,
+                    page == null ? 0 : Math.max(0, page),
+                    pageSize == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE)));
+            return JsonViews.searchPage(results);
+        });
+        router.add("GET", "/api/free-slots", request -> {
+            LocalDate from = request.queryDate("from");
+            if (from == null || request.queryInt("duration") == null) {
+                throw new ApiException(400, "Query parameters 'from' and 'duration' are required");
+            }
+            LocalDate to = request.queryDate("to");
+            LocalTime dayStart = request.queryTime("dayStart");
+            LocalTime dayEnd = request.queryTime("dayEnd");
+            FreeSlotQuery query;
+            try {
+                query = new FreeSlotQuery(from, to == null ? from : to, request.queryInt("duration"),
+                        request.query("location"), request.queryInt("trainerId"),
+                        dayStart == null ? FreeSlotQuery.DEFAULT_DAY_START : dayStart,
+                        dayEnd == null ? FreeSlotQuery.DEFAULT_DAY_END : dayEnd);
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, e.getMessage());
+            }
+            return JsonViews.list(workoutClassService.findFreeSlots(query), JsonViews::freeSlot);
+        }, TRAINER);
+        router.add("POST", "/api/classes", request -> {
+            WorkoutClass workoutClass = workoutClassFromBody(request, 0);
+            requireOwnTrainerId(request, workoutClass.getTrainerId());
+            workoutClassService.addWorkoutClass(workoutClass);
+            return ApiResponse.created(JsonViews.workoutClass(workoutClass));
+        }, TRAINER);
+        router.add("PUT", "/api/classes/{id}", request -> {
+            requireOwnClass(request, request.pathInt(0));
+            WorkoutClass workoutClass = workoutClassFromBody(request, request.pathInt(0));
+            requireOwnTrainerId(request, workoutClass.getTrainerId());
+            workoutClass.setCompleted(request.bodyBoolean("completed", false));
+            if (!workoutClassService.updateWorkoutClass(workoutClass)) {
+                throw new ApiException(404, "Workout class not found");
+            }
+            return JsonViews.workoutClass(workoutClass);
+        }, TRAINER);
+        router.add("DELETE", "/api/classes/{id}", request -> {
+            requireOwnClass(request, request.pathInt(0));
+            workoutClassService.deleteWorkoutClass(request.pathInt(0));
+            return null;
+        }, TRAINER);
+
+        router.add("GET", "/api/classes/{id}/bookings", request ->
+                JsonViews.list(workoutClassService.getAttendees(request.pathInt(0)), JsonViews::booking), TRAINER, ADMIN);
+        router.add("POST", "/api/classes/{id}/bookings", request -> {
+            request.requireSelfOrAdmin(request.bodyInt("memberId"));
+            BookingResult result = workoutClassService.bookClass(request.pathInt(0), request.bodyInt("memberId"));
+            switch (result) {
+                case BOOKED:
+                    return ApiResponse.created(Map.of("result", result.name()));
+                case CLASS_NOT_FOUND:
+                    throw new ApiException(404, "Workout class not found");
+                default:
+                    return new ApiResponse(409, Map.of("result", result.name()));
+            }
+        });
+        router.add("DELETE", "/api/classes/{id}/bookings/{memberId}", request -> {
+            request.requireSelfOrAdmin(request.pathInt(1));
+            if (!workoutClassService.cancelBooking(request.pathInt(0), request.pathInt(1))) {
+                throw new ApiException(404, "Booking not found");
+            }
+            return null;
+        });
+        router.add("GET", "/api/members/{id}/bookings", request -> {
+            request.requireSelfOrAdmin(request.pathInt(0));
+            return JsonViews.list(workoutClassService.getBookingsByMemberId(request.pathInt(0)), JsonViews::booking);
+        });
+
+        router.add("GET", "/api/metrics", request -> {
+            Map<String, Object> report = new LinkedHashMap<>(metrics.toMap());
+            report.put("inFlight", router.getInFlight());
+            report.put("maxConcurrentRequests", router.getMaxConcurrentRequests());
+            report.put("virtualThreads", VirtualThreads.isAvailable());
+            report.put("pool", JsonViews.pool(DatabaseConnection.getPoolStats()));
+            ReplicaSet replicas = DatabaseConnection.getReplicas();
+            if (replicas != null) {
+                report.put("replicas", JsonViews.replicas(replicas));
+            }
+            ShardMap shards = DatabaseConnection.getShards();
+            if (shards != null) {
+                report.put("shards", JsonViews.list(shards.getShards(), JsonViews::shard));
+            }
+            report.put("dao", JsonViews.list(DaoMetrics.getAll(), JsonViews::methodStats));
+            ChangeFeedListener feed = changeFeed;
+            if (feed != null) {
+                report.put("changeFeed", JsonViews.changeFeed(feed));
+            }
+            PartitionMaintenance partitions = partitionMaintenance;
+            if (partitions != null) {
+                report.put("partitions", JsonViews.partitions(partitions));
+            }
+            report.put("storage", StorageBackend.getName());
+            if (StorageBackend.isMapped()) {
+                report.put("mappedStores", JsonViews.list(StorageBackend.getStores(), JsonViews::recordStore));
+            }
+            report.put("sessions", sessions.size());
+            return report;
+        }, ADMIN);
+    }
+
+    /**
+     * Trainers may only schedule classes under their own ID, as in the console.
+     */
+    private static void requireOwnTrainerId(ApiRequest request, int trainerId) {
+        if (trainerId != request.getUser().getId()) {
+            throw new ApiException(403, "Trainers may only schedule their own classes");
+        }
+    }
+
+    /**
+     * Trainers may only change classes they run; the console offers them nothing else.
+     */
+    private void requireOwnClass(ApiRequest request, int classId) throws SQLException {
+        for (WorkoutClass workoutClass : workoutClassService.getWorkoutClassesByTrainerId(request.getUser().getId())) {
+            if (workoutClass.getClassId() == classId) {
+                return;
+            }
+        }
+        throw new ApiException(404, "Workout class not found");
+    }
+
+    private static WorkoutClass workoutClassFromBody(ApiRequest request, int classId) {
+        return new WorkoutClass(classId, request.bodyString("name"), request.bodyInt("trainerId"),
+                request.bodyString("description", ""), request.bodyString("level"),
+                request.bodyInt("durationMinutes"), request.bodyInt("capacity"),
+                request.bodyDate("date"), request.bodyTime("time"),
+                request.bodyString("location"), request.bodyString("equipment", ""));
+    }
+
+    /**
+     * Starts the API server with the default service wiring.
+     */
+    public static void main(String[] args) {
+        String host = System.getProperty("gym.api.host", DEFAULT_HOST);
+        int port = Integer.getInteger("gym.api.port", 8080);
+        int maxConcurrent = Integer.getInteger("gym.api.maxConcurrentRequests", 200);
+        int maxBodyBytes = Integer.getInteger("gym.api.maxBodyBytes", 1 << 20);
+        long sessionMinutes = Long.getLong("gym.api.sessionMinutes", 60);
+
+        MembershipDAO membershipDAO = DaoMetrics.instrument(MembershipDAO.class, StorageBackend.membershipDAO());
+        CachingWorkoutClassDAO workoutClassCache = new CachingWorkoutClassDAO(
+                DaoMetrics.instrument(WorkoutClassDAO.class, StorageBackend.workoutClassDAO()));
+        WorkoutClassService workoutClassService = new WorkoutClassService(workoutClassCache, StorageBackend.bookingDAO());
+        GymApiServer apiServer = new GymApiServer(
+                new UserService(DaoMetrics.instrument(UserDao.class, StorageBackend.userDao())),
+                new MembershipService(membershipDAO),
+                workoutClassService,
+                maxConcurrent,
+                maxBodyBytes,
+                sessionMinutes);
+        try {
+            apiServer.start(host, port);
+        } catch (IOException e) {
+            System.out.println("Could not start API server on " + host + ":" + port + ": " + e.getMessage());
+            return;
+        }
+        MembershipExpirySweeper sweeper = MembershipExpirySweeper.startDefault(membershipDAO);
+        // Mapped storage has no partitions
+        PartitionMaintenance partitions = StorageBackend.isMapped() ? null : PartitionMaintenance.startDefault();
+        apiServer.setPartitionMaintenance(partitions);
+        ChangeFeedListener changeFeed = new ChangeFeedListener();
+        changeFeed.subscribe(ChangeEvent.Table.WORKOUT_CLASSES, workoutClassCache::onChange);
+        changeFeed.subscribe(ChangeEvent.Table.WORKOUT_CLASSES, workoutClassService::onChange);
+        // Mapped storage never changes behind this process's back, so there is no feed to follow
+        if (!StorageBackend.isMapped() && changeFeed.startIfEnabled()) {
+            apiServer.setChangeFeed(changeFeed);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            changeFeed.stop();
+            sweeper.stop();
+            if (partitions != null) {
+                partitions.stop();
+            }
+            apiServer.stop(5);
+        }, "gym-api-shutdown"));
+        System.out.println("Gym API listening on " + host + ":" + apiServer.getPort()
+                + " (virtual threads: " + (VirtualThreads.isAvailable() ? "yes" : "no, using platform threads")
+                + ", max concurrent requests: " + maxConcurrent + ")");
+    }
+}
@@ -0,0 +1,235 @@
+package org.keyin.api;
+
+import org.keyin.database.ChangeEvent;
+import org.keyin.database.ChangeFeedListener;
+import org.keyin.database.MethodStats;
+import org.keyin.database.PartitionMaintenance;
+import org.keyin.database.PoolStats;
+import org.keyin.database.ReplicaSet;
+import org.keyin.database.ShardMap;
+import org.keyin.membership.Membership;
+import org.keyin.membership.RevenueBreakdown;
+import org.keyin.storage.RecordStore;
+import org.keyin.user.User;
+import org.keyin.utils.LatencySnapshot;
+import org.keyin.workoutclasses.Booking;
+import org.keyin.workoutclasses.FreeSlot;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassCursor;
+import org.keyin.workoutclasses.WorkoutClassPage;
+import org.keyin.workoutclasses.WorkoutClassSearchPage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Converts domain objects into the maps the HTTP API writes as JSON.
+ * Password hashes never leave the server.
+ */
+final class JsonViews {
+
+    private JsonViews() {
+    }
+
+    static Map<String, Object> user(User user) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", user.getId());
+        view.put("username", user.getUsername());
+        view.put("email", user.getEmail());
+        view.put("phone", user.getPhoneNumber());
+        view.put("address", user.getAddress());
+        view.put("role", user.getRole());
+        return view;
+    }
+
+    static Map<String, Object> membership(Membership membership) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", membership.getMembershipId());
+        view.put("type", membership.getMembershipType());
+        view.put("description", membership.getMembershipDescription());
+        view.put("cost", membership.getMembershipCost());
+        view.put("memberId", membership.getMemberId());
+        view.put("startDate", membership.getStartDate());
+        view.put("endDate", membership.getEndDate());
+        view.put("onHold", membership.isOnHold());
+        view.put("status", membership.getStatus());
+        view.put("paymentMethod", membership.getPaymentMethod());
+        return view;
+    }
+
+    static Map<String, Object> workoutClass(WorkoutClass workoutClass) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", workoutClass.getClassId());
+        view.put("name", workoutClass.getClassName());
+        view.put("description", workoutClass.getClassDescription());
+        view.put("trainerId", workoutClass.getTrainerId());
+        view.put("level", workoutClass.getClassLevel());
+        view.put("date", workoutClass.getClassDate());
+        view.put("time", workoutClass.getClassTime());
+        view.put("durationMinutes", workoutClass.getClassDuration());
+        view.put("capacity", workoutClass.getClassCapacity());
+        view.put("location", workoutClass.getClassLocation());
+        view.put("equipment", workoutClass.getClassEquipment());
+        view.put("completed", workoutClass.isCompleted());
+        return view;
+    }
+
+    static Map<String, Object> page(WorkoutClassPage page) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("classes", list(page.getClasses(), JsonViews::workoutClass));
+        WorkoutClassCursor next = page.getNextCursor();
+        if (next != null) {
+            Map<String, Object> cursor = new LinkedHashMap<>();
+            cursor.put("afterDate", next.getClassDate());
+            cursor.put("afterTime", next.getClassTime());
+            cursor.put("afterId", next.getClassId());
+            view.put("next", cursor);
+        } else {
+            view.put("next", null);
+        }
+        return view;
+    }
+
+    static Map<String, Object> searchPage(WorkoutClassSearchPage page) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("classes", list(page.getClasses(), JsonViews::workoutClass));
+        view.put("page", page.getPage());
+        view.put("hasNext", page.hasNext());
+        return view;
+    }
+
+    static Map<String, Object> partitions(PartitionMaintenance maintenance) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("monthsAhead", maintenance.getMonthsAhead());
+        view.put("runs", maintenance.getRuns());
+        view.put("lastRunAt", maintenance.getLastRunAt());
+        view.put("created", maintenance.getPartitionsCreated());
+        view.put("skipped", maintenance.getMonthsSkipped());
+        view.put("failures", maintenance.getFailures());
+        view.put("lastError", maintenance.getLastError());
+        return view;
+    }
+
+    static Map<String, Object> changeFeed(ChangeFeedListener feed) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("connected", feed.isConnected());
+        view.put("disconnectedLocations", feed.getDisconnectedLocations());
+        view.put("events", feed.getEventsReceived());
+        Map<String, Object> byTable = new LinkedHashMap<>();
+        for (ChangeEvent.Table table : ChangeEvent.Table.values()) {
+            byTable.put(table.getTableName(), feed.getEventsReceived(table));
+        }
+        view.put("eventsByTable", byTable);
+        view.put("reconnects", feed.getReconnects());
+        view.put("malformed", feed.getMalformedPayloads());
+        return view;
+    }
+
+    static Map<String, Object> recordStore(RecordStore<?> store) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("name", store.getName());
+        view.put("records", store.size());
+        view.put("liveBytes", store.getLiveBytes());
+        view.put("deadBytes", store.getDeadBytes());
+        view.put("compactions", store.getCompactions());
+        return view;
+    }
+
+    static Map<String, Object> replicas(ReplicaSet replicas) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("maxLagMs", replicas.getMaxLagMillis());
+        view.put("reads", replicas.getReplicaReads());
+        view.put("primaryFallbacks", replicas.getPrimaryFallbacks());
+        view.put("borrowFailures", replicas.getBorrowFailures());
+        view.put("replicas", list(replicas.getReplicas(), JsonViews::replica));
+        return view;
+    }
+
+    static Map<String, Object> replica(ReplicaSet.Replica replica) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("name", replica.getName());
+        view.put("reachable", replica.isReachable());
+        view.put("streaming", replica.isStreaming());
+        view.put("lagMs", replica.getLagMillis());
+        view.put("reads", replica.getReads());
+        view.put("lastError", replica.getLastError());
+        view.put("pool", pool(replica.getPoolStats()));
+        return view;
+    }
+
+    static Map<String, Object> shard(ShardMap.Shard shard) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("location", shard.getLocation());
+        view.put("firstId", shard.getFirstId());
+        view.put("pool", pool(shard.getPoolStats()));
+        return view;
+    }
+
+    static Map<String, Object> booking(Booking booking) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", booking.getBookingId());
+        view.put("classId", booking.getClassId());
+        view.put("memberId", booking.getMemberId());
+        view.put("memberName", booking.getMemberName());
+        view.put("bookedAt", booking.getBookedAt());
+        return view;
+    }
+
+    static Map<String, Object> freeSlot(FreeSlot slot) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("date", slot.getDate());
+        view.put("start", slot.getStart());
+        view.put("end", slot.getEnd());
+        view.put("minutes", slot.getDurationMinutes());
+        view.put("location", slot.getClassLocation());
+        view.put("trainerId", slot.getTrainerId());
+        return view;
+    }
+
+    static Map<String, Object> revenue(RevenueBreakdown breakdown) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("group", breakdown.getGroup());
+        view.put("memberships", breakdown.getMembershipCount());
+        view.put("revenue", breakdown.getTotalRevenue());
+        return view;
+    }
+
+    static Map<String, Object> pool(PoolStats stats) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("active", stats.getActiveConnections());
+        view.put("idle", stats.getIdleConnections());
+        view.put("max", stats.getMaxPoolSize());
+        view.put("waiting", stats.getWaitingThreads());
+        view.put("borrows", stats.getTotalBorrows());
+        view.put("timeouts", stats.getBorrowTimeouts());
+        view.put("averageWaitMs", stats.getAverageWaitMillis());
+        view.put("maxWaitMs", stats.getMaxWaitMillis());
+        view.put("leaks", stats.getLeaksDetected());
+        view.put("recentLeaks", stats.getRecentLeaks());
+        return view;
+    }
+
+    static Map<String, Object> methodStats(MethodStats stats) {
+        LatencySnapshot snapshot = stats.snapshot();
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("method", stats.getDao() + "." + stats.getMethod());
+        view.put("count", snapshot.getCount());
+        view.put("errors", stats.getErrorCount());
+        view.put("p50Ms", snapshot.getP50Millis());
+        view.put("p99Ms", snapshot.getP99Millis());
+        view.put("p999Ms", snapshot.getP999Millis());
+        view.put("maxMs", snapshot.getMaxMillis());
+        return view;
+    }
+
+    static <T> List<Map<String, Object>> list(List<T> items, Function<T, Map<String, Object>> view) {
+        List<Map<String, Object>> views = new ArrayList<>(items.size());
+        for (T item : items) {
+            views.add(view.apply(item));
+        }
+        return views;
+    }
+}
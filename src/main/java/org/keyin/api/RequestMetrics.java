@@ -0,0 +1,74 @@
+package org.keyin.api;
+
+import org.keyin.utils.LatencyHistogram;
+import org.keyin.utils.LatencySnapshot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-route request latency and outcome counters for the HTTP API.
+ */
+public class RequestMetrics {
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Records one completed request.
+     *
+     * @param route  route key, e.g. {@code GET /api/users}
+     * @param status HTTP status returned
+     * @param nanos  time spent handling the request
+     */
+    public void record(String route, int status, long nanos) {
+        RouteMetrics metrics = routes.computeIfAbsent(route, key -> new RouteMetrics());
+        metrics.latency.record(nanos);
+        if (status >= 500) {
+            metrics.serverErrors.increment();
+        } else if (status >= 400) {
+            metrics.clientErrors.increment();
+        }
+    }
+
+    /**
+     * Records a request turned away by the concurrency limit.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Builds a JSON-friendly view of every route's counters and latencies.
+     *
+     * @return route metrics keyed by route, plus the rejected request count
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> byRoute = new TreeMap<>();
+        routes.forEach((route, metrics) -> {
+            LatencySnapshot snapshot = metrics.latency.snapshot();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("count", snapshot.getCount());
+            entry.put("clientErrors", metrics.clientErrors.sum());
+            entry.put("serverErrors", metrics.serverErrors.sum());
+            entry.put("meanMs", snapshot.getMeanMillis());
+            entry.put("p50Ms", snapshot.getP50Millis());
+            entry.put("p99Ms", snapshot.getP99Millis());
+            entry.put("p999Ms", snapshot.getP999Millis());
+            entry.put("maxMs", snapshot.getMaxMillis());
+            byRoute.put(route, entry);
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routes", byRoute);
+        result.put("rejectedByConcurrencyLimit", rejected.sum());
+        return result;
+    }
+
+    private static final class RouteMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder clientErrors = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+    }
+}
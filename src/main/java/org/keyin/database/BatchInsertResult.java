@@ -0,0 +1,137 @@
+package org.keyin.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a chunked bulk insert. Each chunk is committed on its own, so a
+ * failing chunk is rolled back and reported while the other chunks still land.
+ */
+public class BatchInsertResult {
+    private final int totalRows;
+    private int insertedRows;
+    private final List<ChunkFailure> failures = new ArrayList<>();
+
+    /**
+     * @param totalRows number of rows the caller asked to insert
+     */
+    public BatchInsertResult(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * Records a chunk that committed successfully.
+     *
+     * @param rows number of rows in the chunk
+     */
+    public void recordSuccess(int rows) {
+        insertedRows += rows;
+    }
+
+    /**
+     * Records a chunk that was rolled back.
+     *
+     * @param chunkIndex zero-based index of the chunk
+     * @param firstRow   zero-based position of the chunk's first row in the input
+     * @param rowCount   number of rows in the chunk
+     * @param error      the error that caused the rollback
+     */
+    public void recordFailure(int chunkIndex, int firstRow, int rowCount, Exception error) {
+        failures.add(new ChunkFailure(chunkIndex, firstRow, rowCount, error.getMessage()));
+    }
+
+    /**
+     * Adds the outcome of an insert of part of the input, e.g. one location's share of a
+     * sharded insert. The part's chunk positions stay relative to its own rows, so its failure
+     * messages are prefixed with {@code label} to tell the parts apart.
+     *
+     * @param part  the part's result
+     * @param label name of the part, such as its location
+     */
+    public void addPart(BatchInsertResult part, String label) {
+        insertedRows += part.insertedRows;
+        for (ChunkFailure failure : part.failures) {
+            failures.add(new ChunkFailure(failure.chunkIndex, failure.firstRow, failure.rowCount,
+                    label + ": " + failure.message));
+        }
+    }
+
+    /** @return number of rows the caller asked to insert. */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    /** @return number of rows actually committed. */
+    public int getInsertedRows() {
+        return insertedRows;
+    }
+
+    /** @return chunks that failed and were rolled back. */
+    public List<ChunkFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /** @return true if every chunk committed. */
+    public boolean isComplete() {
+        return failures.isEmpty() && insertedRows == totalRows;
+    }
+
+    /**
+     * Returns a short summary of the bulk insert.
+     *
+     * @return rows inserted and chunks failed
+     */
+    @Override
+    public String toString() {
+        return "BatchInsertResult [inserted=" + insertedRows + "/" + totalRows + ", failedChunks=" + failures.size() + "]";
+    }
+
+    /**
+     * Describes one chunk that could not be inserted.
+     */
+    public static class ChunkFailure {
+        private final int chunkIndex;
+        private final int firstRow;
+        private final int rowCount;
+        private final String message;
+
+        /**
+         * @param chunkIndex zero-based index of the chunk
+         * @param firstRow   zero-based position of the chunk's first row in the input
+         * @param rowCount   number of rows in the chunk
+         * @param message    database error message
+         */
+        public ChunkFailure(int chunkIndex, int firstRow, int rowCount, String message) {
+            this.chunkIndex = chunkIndex;
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+            this.message = message;
+        }
+
+        /** @return zero-based index of the chunk. */
+        public int getChunkIndex() {
+            return chunkIndex;
+        }
+
+        /** @return zero-based position of the chunk's first row in the input. */
+        public int getFirstRow() {
+            return firstRow;
+        }
+
+        /** @return number of rows in the chunk. */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /** @return database error message. */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk " + chunkIndex + " (rows " + firstRow + "-" + (firstRow + rowCount - 1) + "): " + message;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.keyin.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Inserts many rows with JDBC batching, one transaction per chunk.
+ * Together with {@code reWriteBatchedInserts=true} on the connection URL, each chunk
+ * reaches PostgreSQL as a handful of multi-row INSERT statements instead of one round
+ * trip per row.
+ */
+public final class BatchInserter {
+
+    /**
+     * Binds one row's values onto an insert statement.
+     *
+     * @param <T> the row type
+     */
+    @FunctionalInterface
+    public interface RowBinder<T> {
+        void bind(PreparedStatement stmt, T row) throws SQLException;
+    }
+
+    private BatchInserter() {
+    }
+
+    /**
+     * Inserts the rows in chunks on a single connection. A chunk that fails is rolled back
+     * and recorded in the result; the remaining chunks are still attempted.
+     *
+     * @param conn      connection to insert on (its autocommit setting is restored afterwards)
+     * @param sql       parameterised single-row INSERT statement
+     * @param rows      rows to insert
+     * @param chunkSize rows per transaction
+     * @param binder    binds one row onto the statement
+     * @param <T>       the row type
+     * @return rows inserted and any chunk failures
+     * @throws SQLException if the connection cannot be switched into transactional mode
+     */
+    public static <T> BatchInsertResult insertInChunks(Connection conn, String sql, Collection<T> rows,
+                                                       int chunkSize, RowBinder<T> binder) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        BatchInsertResult result = new BatchInsertResult(rows.size());
+        List<T> all = new ArrayList<>(rows);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int start = 0, chunk = 0; start < all.size(); start += chunkSize, chunk++) {
+                int end = Math.min(start + chunkSize, all.size());
+                try {
+                    for (T row : all.subList(start, end)) {
+                        binder.bind(stmt, row);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                    result.recordSuccess(end - start);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    stmt.clearBatch();
+                    result.recordFailure(chunk, start, end - start, e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package org.keyin.database;
+
+import org.keyin.utils.Json;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One change to a table, as published by the {@code notify_gym_change} triggers and delivered
+ * by {@link ChangeFeedListener}. An event without ids means "any row may have changed": the
+ * statement touched too many rows to list, the table was truncated, or the listener reconnected
+ * and may have missed notifications ({@link Operation#RESYNC}).
+ */
+public class ChangeEvent {
+
+    /**
+     * Tables that publish change events.
+     */
+    public enum Table {
+        USERS("users"),
+        MEMBERSHIPS("memberships"),
+        WORKOUT_CLASSES("workoutclasses");
+
+        private final String tableName;
+
+        Table(String tableName) {
+            this.tableName = tableName;
+        }
+
+        /** @return the table's name in the database. */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * @param tableName a table name as sent in the payload
+         * @return the matching table
+         * @throws IllegalArgumentException if the table does not publish events
+         */
+        public static Table fromTableName(String tableName) {
+            for (Table table : values()) {
+                if (table.tableName.equals(tableName)) {
+                    return table;
+                }
+            }
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+    }
+
+    /**
+     * What happened to the rows.
+     */
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE,
+        TRUNCATE,
+        /** Sent by the listener after (re)connecting; anything may have changed while it was away. */
+        RESYNC
+    }
+
+    private final Table table;
+    private final Operation operation;
+    private final List<Integer> ids;
+    private final boolean local;
+
+    /**
+     * Creates a change event.
+     *
+     * @param table     the table that changed
+     * @param operation what happened
+     * @param ids       the affected primary keys, or an empty list if any row may have changed
+     * @param local     true if the change was made through this process's connection pool
+     */
+    public ChangeEvent(Table table, Operation operation, List<Integer> ids, boolean local) {
+        this.table = table;
+        this.operation = operation;
+        this.ids = Collections.unmodifiableList(new ArrayList<>(ids));
+        this.local = local;
+    }
+
+    /**
+     * Parses a trigger payload such as {@code {"table":"workoutclasses","op":"delete","ids":[7,9]}}.
+     *
+     * @param payload the NOTIFY payload
+     * @param local   true if the notifying backend belongs to this process's pool
+     * @return the event
+     * @throws IllegalArgumentException if the payload is not a change event
+     */
+    static ChangeEvent parse(String payload, boolean local) {
+        Map<String, Object> fields = Json.parseObject(payload);
+        Object table = fields.get("table");
+        Object operation = fields.get("op");
+        if (!(table instanceof String) || !(operation instanceof String)) {
+            throw new IllegalArgumentException("Change payload needs 'table' and 'op': " + payload);
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Object rawIds = fields.get("ids");
+        if (rawIds instanceof List) {
+            for (Object id : (List<?>) rawIds) {
+                try {
+                    ids.add(((BigDecimal) id).intValueExact());
+                } catch (ClassCastException | ArithmeticException e) {
+                    throw new IllegalArgumentException("Change payload has an invalid id: " + payload);
+                }
+            }
+        }
+        return new ChangeEvent(Table.fromTableName((String) table),
+                Operation.valueOf(((String) operation).toUpperCase(Locale.ROOT)), ids, local);
+    }
+
+    /** @return the table that changed. */
+    public Table getTable() {
+        return table;
+    }
+
+    /** @return what happened. */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /** @return the affected primary keys; empty if any row may have changed. */
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return true if any row of the table may have changed, so copies of the whole table are stale
+     */
+    public boolean affectsAllRows() {
+        return ids.isEmpty();
+    }
+
+    /**
+     * Changes made through this process's own pool have usually been applied to in-process
+     * copies already, so subscribers that keep themselves up to date on writes can skip them.
+     *
+     * @return true if the change was made through this process's connection pool
+     */
+    public boolean isLocal() {
+        return local;
+    }
+
+    /**
+     * Returns a one-line summary of the event.
+     *
+     * @return readable event details
+     */
+    @Override
+    public String toString() {
+        return "ChangeEvent [" + table.getTableName() + " " + operation
+                + (affectsAllRows() ? " (all rows)" : " ids=" + ids) + (local ? ", local" : "") + "]";
+    }
+}
@@ -0,0 +1,374 @@
+package org.keyin.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Listens on the {@code gym_changes} channel and hands each notification to subscribers as a
+ * {@link ChangeEvent}, so in-process caches are invalidated when another app instance or an
+ * admin's SQL session changes a table, without polling.
+ *
+ * <p>The listener keeps one dedicated connection outside the pool (LISTEN is per session) on
+ * each database it watches: the application database, or every location's shard when the data
+ * is sharded, since a trigger only notifies sessions on its own database. If a connection drops,
+ * it reconnects with exponential backoff and, because notifications sent while it was away are
+ * lost, publishes a {@link ChangeEvent.Operation#RESYNC} event for every table once it is
+ * listening again. The same happens on the first connect, covering anything cached before the
+ * listener started.</p>
+ *
+ * <p>Subscribers run on a listener thread, one per database, in registration order, and should
+ * be quick. Scheduling is controlled by {@code -Dgym.changeFeed.enabled} (default true).</p>
+ */
+public class ChangeFeedListener {
+    /** Channel the {@code notify_gym_change} triggers publish on. */
+    public static final String CHANNEL = "gym_changes";
+
+    private static final int POLL_TIMEOUT_MILLIS = 10_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * Opens the dedicated connection the listener runs LISTEN on.
+     */
+    @FunctionalInterface
+    public interface ConnectionOpener {
+        /**
+         * @return a new connection that the listener will close itself
+         * @throws SQLException if the database cannot be reached
+         */
+        Connection open() throws SQLException;
+    }
+
+    private final List<Source> sources;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder malformedPayloads = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final Map<ChangeEvent.Table, LongAdder> eventsByTable = new EnumMap<>(ChangeEvent.Table.class);
+
+    private volatile boolean running;
+
+    /**
+     * Creates a listener on the application database, or on every shard when sharding is
+     * configured. Events from this process's own pools are marked local. Nothing happens until
+     * {@link #start()} is called.
+     */
+    public ChangeFeedListener() {
+        this(applicationSources());
+    }
+
+    /**
+     * Creates a listener with its own connection source.
+     *
+     * @param opener       opens the connection to LISTEN on
+     * @param localBackend tells whether a notifying backend PID belongs to this process
+     */
+    public ChangeFeedListener(ConnectionOpener opener, IntPredicate localBackend) {
+        this(Collections.singletonList(new Source(null, opener, localBackend)));
+    }
+
+    /**
+     * Creates a listener on several databases at once.
+     *
+     * @param sources the databases to LISTEN on, each with its own session and thread
+     */
+    ChangeFeedListener(List<Source> sources) {
+        this.sources = sources;
+        for (ChangeEvent.Table table : ChangeEvent.Table.values()) {
+            eventsByTable.put(table, new LongAdder());
+        }
+    }
+
+    /**
+     * Registers a subscriber for every table.
+     *
+     * @param subscriber receives each event on the listener thread
+     */
+    public void subscribe(Consumer<ChangeEvent> subscriber) {
+        subscriptions.add(new Subscription(null, subscriber));
+    }
+
+    /**
+     * Registers a subscriber for one table.
+     *
+     * @param table      the table to receive events for
+     * @param subscriber receives each event on the listener thread
+     */
+    public void subscribe(ChangeEvent.Table table, Consumer<ChangeEvent> subscriber) {
+        subscriptions.add(new Subscription(table, subscriber));
+    }
+
+    /**
+     * Starts the listener thread unless {@code -Dgym.changeFeed.enabled=false}.
+     *
+     * @return true if the listener was started
+     */
+    public boolean startIfEnabled() {
+        if (!Boolean.parseBoolean(System.getProperty("gym.changeFeed.enabled", "true"))) {
+            return false;
+        }
+        start();
+        return true;
+    }
+
+    private static List<Source> applicationSources() {
+        ShardMap shards = DatabaseConnection.getShards();
+        if (shards == null) {
+            return Collections.singletonList(new Source(null, DatabaseConnection::openDedicatedConnection,
+                    DatabaseConnection.getPool()::isOwnBackend));
+        }
+        List<Source> perShard = new ArrayList<>();
+        for (ShardMap.Shard shard : shards.getShards()) {
+            perShard.add(new Source(shard.getLocation(), shard.getPool()::openDedicated, shard.getPool()::isOwnBackend));
+        }
+        return perShard;
+    }
+
+    /**
+     * Starts one listener thread per database. Subscribe first so the initial resync reaches everyone.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Source source : sources) {
+            source.thread = new Thread(() -> run(source),
+                    source.name == null ? "change-feed-listener" : "change-feed-listener-" + source.name);
+            source.thread.setDaemon(true);
+            source.thread.start();
+        }
+    }
+
+    /**
+     * Stops listening and closes the dedicated connections.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Source source : sources) {
+            if (source.thread != null) {
+                source.thread.interrupt();
+            }
+            Connection connection = source.current;
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private void run(Source source) {
+        long backoff = MIN_BACKOFF_MILLIS;
+        boolean firstConnect = true;
+        boolean outageReported = false;
+        while (running) {
+            try (Connection connection = source.opener.open()) {
+                source.current = connection;
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                source.connected = true;
+                backoff = MIN_BACKOFF_MILLIS;
+                if (!firstConnect) {
+                    reconnects.increment();
+                }
+                firstConnect = false;
+                outageReported = false;
+                resyncAll();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null || notifications.length == 0) {
+                        // A quiet channel and a dead socket look the same, so check the session now and then
+                        if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                            throw new SQLException("Change feed connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(source, notification);
+                    }
+                }
+            } catch (SQLException e) {
+                // Report once per outage; retries continue quietly in the background
+                if (running && !outageReported) {
+                    outageReported = true;
+                    System.out.println("Change feed disconnected" + (source.name == null ? "" : " from " + source.name)
+                            + " (" + e.getMessage() + "), reconnecting in the background");
+                }
+            } finally {
+                source.connected = false;
+                source.current = null;
+            }
+
+            if (!running) {
+                break;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void handle(Source source, PGNotification notification) {
+        if (!CHANNEL.equals(notification.getName())) {
+            return;
+        }
+        ChangeEvent event;
+        try {
+            event = ChangeEvent.parse(notification.getParameter(), source.localBackend.test(notification.getPID()));
+        } catch (IllegalArgumentException e) {
+            malformedPayloads.increment();
+            System.out.println("Ignoring malformed change notification: " + e.getMessage());
+            return;
+        }
+        publish(event);
+    }
+
+    private void resyncAll() {
+        for (ChangeEvent.Table table : ChangeEvent.Table.values()) {
+            publish(new ChangeEvent(table, ChangeEvent.Operation.RESYNC, Collections.emptyList(), false));
+        }
+    }
+
+    /**
+     * Delivers an event to every matching subscriber. A failing subscriber is reported and
+     * does not stop delivery to the others.
+     *
+     * @param event the event to deliver
+     */
+    void publish(ChangeEvent event) {
+        eventsReceived.increment();
+        eventsByTable.get(event.getTable()).increment();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.table != null && subscription.table != event.getTable()) {
+                continue;
+            }
+            try {
+                subscription.subscriber.accept(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Closing is how stop() wakes the listener thread; it will exit either way.
+        }
+    }
+
+    /** @return true while the listener holds a live LISTEN session on every database it watches. */
+    public boolean isConnected() {
+        for (Source source : sources) {
+            if (!source.connected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the shard locations whose LISTEN session is down; empty when not sharded. */
+    public List<String> getDisconnectedLocations() {
+        List<String> disconnected = new ArrayList<>();
+        for (Source source : sources) {
+            if (source.name != null && !source.connected) {
+                disconnected.add(source.name);
+            }
+        }
+        return disconnected;
+    }
+
+    /** @return events delivered, including resyncs. */
+    public long getEventsReceived() {
+        return eventsReceived.sum();
+    }
+
+    /**
+     * @param table a table
+     * @return events delivered for that table, including resyncs
+     */
+    public long getEventsReceived(ChangeEvent.Table table) {
+        return eventsByTable.get(table).sum();
+    }
+
+    /** @return notifications that could not be parsed. */
+    public long getMalformedPayloads() {
+        return malformedPayloads.sum();
+    }
+
+    /** @return times the listener had to reconnect after losing its session. */
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    /**
+     * Returns a one-line summary of the listener state.
+     *
+     * @return readable listener metrics
+     */
+    @Override
+    public String toString() {
+        List<String> disconnected = getDisconnectedLocations();
+        return String.format("Change feed [connected=%s%s, events=%d (users=%d, memberships=%d, classes=%d), reconnects=%d, malformed=%d]",
+                isConnected(), disconnected.isEmpty() ? "" : " (down: " + String.join(", ", disconnected) + ")",
+                getEventsReceived(), getEventsReceived(ChangeEvent.Table.USERS),
+                getEventsReceived(ChangeEvent.Table.MEMBERSHIPS), getEventsReceived(ChangeEvent.Table.WORKOUT_CLASSES),
+                getReconnects(), getMalformedPayloads());
+    }
+
+    /**
+     * One database the listener watches, with its own LISTEN session and thread.
+     */
+    static final class Source {
+        private final String name;
+        private final ConnectionOpener opener;
+        private final IntPredicate localBackend;
+
+        private volatile boolean connected;
+        private volatile Connection current;
+        private Thread thread;
+
+        /**
+         * @param name         shard location, or null for the application database
+         * @param opener       opens the connection to LISTEN on
+         * @param localBackend tells whether a notifying backend PID belongs to this process
+         */
+        Source(String name, ConnectionOpener opener, IntPredicate localBackend) {
+            this.name = name;
+            this.opener = opener;
+            this.localBackend = localBackend;
+        }
+    }
+
+    private static final class Subscription {
+        private final ChangeEvent.Table table;
+        private final Consumer<ChangeEvent> subscriber;
+
+        private Subscription(ChangeEvent.Table table, Consumer<ChangeEvent> subscriber) {
+            this.table = table;
+            this.subscriber = subscriber;
+        }
+    }
+}
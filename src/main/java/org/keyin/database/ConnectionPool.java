@@ -0,0 +1,505 @@
+package org.keyin.database;
+
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A small bounded JDBC connection pool.
+ * Physical connections are opened through {@link DriverManager} on demand, up to
+ * {@link PoolSettings#getMaxPoolSize()}, and reused across callers. Callers receive a
+ * proxy whose {@code close()} hands the connection back to the pool instead of closing it.
+ *
+ * <p>Idle connections are validated on borrow, evicted after the idle timeout, and
+ * connections held longer than the leak threshold are counted and kept in
+ * {@link PoolStats#getRecentLeaks()} together with the stack trace of the code that
+ * borrowed them.</p>
+ *
+ * <p>A returned connection is reset before the next caller gets it: an open transaction is
+ * rolled back, auto-commit, read-only and the isolation level go back to their defaults,
+ * and statements the caller left open are closed.</p>
+ */
+public class ConnectionPool implements DataSource {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final PoolSettings settings;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> backendPids = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private final LongAdder totalBorrows = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder leaksDetected = new LongAdder();
+    private final Deque<String> recentLeaks = new ArrayDeque<>();
+
+    // Leak reports kept for PoolStats; older ones are only counted
+    private static final int RECENT_LEAKS_KEPT = 10;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool for the given database. No connections are opened until the first borrow.
+     *
+     * @param url JDBC URL of the database
+     * @param user database user name
+     * @param password database password
+     * @param settings pool sizing and timeout settings
+     */
+    public ConnectionPool(String url, String user, String password, PoolSettings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxPoolSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout for one to free up.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @return a pooled JDBC connection
+     * @throws SQLException if the pool is closed, the wait times out, or a new connection cannot be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(settings.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.increment();
+                throw new SQLException("Timed out after " + settings.getBorrowTimeoutMillis()
+                        + "ms waiting for a database connection (" + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            recordWait(System.nanoTime() - start);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowStack = settings.getLeakDetectionThresholdMillis() > 0
+                    ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            totalBorrows.increment();
+            return pooled.newLease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an idle connection that passes validation, or opens a new one.
+     */
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (isUsable(candidate)) {
+                return candidate;
+            }
+            discard(candidate);
+        }
+        Connection physical = DriverManager.getConnection(url, user, password);
+        PooledConnection opened;
+        try {
+            opened = new PooledConnection(physical);
+        } catch (SQLException e) {
+            closeQuietly(physical);
+            throw e;
+        }
+        if (opened.backendPid != 0) {
+            backendPids.add(opened.backendPid);
+        }
+        return opened;
+    }
+
+    /**
+     * Validates an idle connection unless it was used within the validation bypass window.
+     */
+    private boolean isUsable(PooledConnection candidate) {
+        long idleFor = System.currentTimeMillis() - candidate.lastReturnedAt;
+        try {
+            if (candidate.physical.isClosed()) {
+                return false;
+            }
+            return idleFor < settings.getValidationBypassMillis()
+                    || candidate.physical.isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a connection back from a caller, resetting any session state they changed.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            Connection physical = pooled.physical;
+            if (closed || physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            if (pooled.isolationChanged) {
+                physical.setTransactionIsolation(pooled.defaultIsolation);
+                pooled.isolationChanged = false;
+            }
+            pooled.closeOpenStatements();
+            physical.clearWarnings();
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Evicts connections idle past the idle timeout (keeping {@code minIdle}) and reports leaks.
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        int keep = settings.getMinIdle();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && idle.size() > keep) {
+            PooledConnection candidate = oldestFirst.next();
+            if (now - candidate.lastReturnedAt > settings.getIdleTimeoutMillis() && idle.remove(candidate)) {
+                discard(candidate);
+            }
+        }
+
+        long threshold = settings.getLeakDetectionThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > threshold) {
+                pooled.leakReported = true;
+                leaksDetected.increment();
+                recordLeak("Connection held for " + (now - pooled.borrowedAt) + "ms without being closed", pooled.borrowStack);
+            }
+        }
+    }
+
+    private void recordLeak(String message, Throwable borrowStack) {
+        StringWriter report = new StringWriter();
+        report.write(message);
+        if (borrowStack != null) {
+            report.write(System.lineSeparator());
+            borrowStack.printStackTrace(new PrintWriter(report));
+        }
+        synchronized (recentLeaks) {
+            recentLeaks.addFirst(report.toString());
+            while (recentLeaks.size() > RECENT_LEAKS_KEPT) {
+                recentLeaks.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the pool's current metrics.
+     *
+     * @return active, idle and wait-time statistics
+     */
+    public PoolStats getStats() {
+        long borrows = totalBorrows.sum();
+        double averageWait = borrows == 0 ? 0 : totalWaitNanos.sum() / (double) borrows / 1_000_000.0;
+        List<String> leaks;
+        synchronized (recentLeaks) {
+            leaks = new ArrayList<>(recentLeaks);
+        }
+        return new PoolStats(
+                borrowed.size(),
+                idle.size(),
+                settings.getMaxPoolSize(),
+                permits.getQueueLength(),
+                borrows,
+                borrowTimeouts.sum(),
+                averageWait,
+                maxWaitNanos.get() / 1_000_000.0,
+                leaksDetected.sum(),
+                leaks
+        );
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeper.
+     * Borrowed connections are closed as their callers return them.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Tells whether a server backend belongs to this pool, e.g. to recognise notifications
+     * caused by this process's own writes.
+     *
+     * @param backendPid PID of a PostgreSQL backend
+     * @return true if one of this pool's open connections is served by that backend
+     */
+    public boolean isOwnBackend(int backendPid) {
+        return backendPids.contains(backendPid);
+    }
+
+    /**
+     * Opens a connection to this pool's database outside the pool, for sessions that must stay
+     * open indefinitely (such as a shard's change feed LISTEN). The caller closes it.
+     *
+     * @return a new physical connection
+     * @throws SQLException if the connection fails
+     */
+    Connection openDedicated() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private void discard(PooledConnection pooled) {
+        backendPids.remove(pooled.backendPid);
+        closeQuietly(pooled.physical);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded either way.
+        }
+    }
+
+    /**
+     * @return the server process serving a PostgreSQL connection, or 0 for other drivers
+     */
+    private static int backendPidOf(Connection physical) {
+        try {
+            return physical.isWrapperFor(PGConnection.class) ? physical.unwrap(PGConnection.class).getBackendPID() : 0;
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Not supported: the pool always connects with the credentials it was created with.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool uses fixed credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool does not use java.util.logging");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A physical connection plus the bookkeeping the pool keeps about it.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final int backendPid;
+        private final int defaultIsolation;
+        private final Queue<Statement> openStatements = new ConcurrentLinkedQueue<>();
+        private volatile boolean isolationChanged;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile Throwable borrowStack;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.backendPid = backendPidOf(physical);
+            this.defaultIsolation = physical.getTransactionIsolation();
+        }
+
+        /**
+         * Closes statements the last caller created and left open.
+         */
+        private void closeOpenStatements() {
+            Statement statement;
+            while ((statement = openStatements.poll()) != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // Closing the statement is best effort; the connection itself is still reset.
+                }
+            }
+        }
+
+        /**
+         * Wraps the physical connection in a proxy that is only valid until the caller closes it.
+         */
+        private Connection newLease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Finds the pool a leased connection was borrowed from, e.g. to run a follow-up query
+     * against the same database.
+     *
+     * @param connection a connection handed out by {@link #getConnection()}
+     * @return its pool, or null if the connection is not a lease from any pool
+     */
+    static ConnectionPool poolOf(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(connection);
+            if (handler instanceof ConnectionPool.LeaseHandler) {
+                return ((ConnectionPool.LeaseHandler) handler).pool();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Routes calls on a leased connection to the physical connection, and turns
+     * {@code close()} into a return to the pool.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        private ConnectionPool pool() {
+            return ConnectionPool.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        pooled.openStatements.add((Statement) result);
+                    } else if ("setTransactionIsolation".equals(method.getName())) {
+                        pooled.isolationChanged = true;
+                    }
+                    return result;
+            }
+        }
+    }
+}
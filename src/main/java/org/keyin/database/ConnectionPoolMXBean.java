@@ -0,0 +1,39 @@
+package org.keyin.database;
+
+import java.util.List;
+
+/**
+ * JMX view of a {@link ConnectionPool}'s current state and counters.
+ */
+public interface ConnectionPoolMXBean {
+
+    /** @return connections currently borrowed */
+    int getActiveConnections();
+
+    /** @return open connections waiting in the pool */
+    int getIdleConnections();
+
+    /** @return configured upper bound on physical connections */
+    int getMaxPoolSize();
+
+    /** @return threads blocked waiting for a connection */
+    int getWaitingThreads();
+
+    /** @return successful borrows since start */
+    long getTotalBorrows();
+
+    /** @return borrows that timed out */
+    long getBorrowTimeouts();
+
+    /** @return mean borrow wait in milliseconds */
+    double getAverageWaitMillis();
+
+    /** @return longest borrow wait in milliseconds */
+    double getMaxWaitMillis();
+
+    /** @return connections reported as leaked */
+    long getLeaksDetected();
+
+    /** @return the latest leak reports, newest first */
+    List<String> getRecentLeaks();
+}
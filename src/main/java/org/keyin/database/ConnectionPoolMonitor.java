@@ -0,0 +1,64 @@
+package org.keyin.database;
+
+import java.util.List;
+
+/**
+ * Publishes a pool's {@link PoolStats} as an MXBean. Each attribute read takes a fresh snapshot.
+ */
+class ConnectionPoolMonitor implements ConnectionPoolMXBean {
+    private final ConnectionPool pool;
+
+    ConnectionPoolMonitor(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return pool.getStats().getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return pool.getStats().getIdleConnections();
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return pool.getStats().getMaxPoolSize();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return pool.getStats().getWaitingThreads();
+    }
+
+    @Override
+    public long getTotalBorrows() {
+        return pool.getStats().getTotalBorrows();
+    }
+
+    @Override
+    public long getBorrowTimeouts() {
+        return pool.getStats().getBorrowTimeouts();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        return pool.getStats().getAverageWaitMillis();
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return pool.getStats().getMaxWaitMillis();
+    }
+
+    @Override
+    public long getLeaksDetected() {
+        return pool.getStats().getLeaksDetected();
+    }
+
+    @Override
+    public List<String> getRecentLeaks() {
+        return pool.getStats().getRecentLeaks();
+    }
+}
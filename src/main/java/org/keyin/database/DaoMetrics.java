@@ -0,0 +1,129 @@
+package org.keyin.database;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records per-method call counts, error counts and latency histograms for DAOs, and
+ * publishes each method as an MXBean under {@code org.keyin:type=DaoMethod}.
+ *
+ * <p>Wrap a DAO with {@link #instrument(Class, Object)}; the returned proxy implements the
+ * same interface and times every call, including the ones that throw.</p>
+ */
+public final class DaoMetrics {
+    private static final String DOMAIN = "org.keyin";
+    private static final Map<String, MethodStats> STATS = new ConcurrentHashMap<>();
+
+    private DaoMetrics() {
+    }
+
+    /**
+     * Wraps a DAO so that every call through its interface is timed.
+     *
+     * @param daoInterface the DAO interface, used for the proxy and as the metric name
+     * @param target       the implementation to delegate to
+     * @param <T>          the DAO type
+     * @return an instrumented proxy implementing {@code daoInterface}
+     */
+    public static <T> T instrument(Class<T> daoInterface, T target) {
+        String dao = daoInterface.getSimpleName();
+        Map<Method, MethodStats> byMethod = new ConcurrentHashMap<>();
+        for (Method method : daoInterface.getMethods()) {
+            byMethod.put(method, statsFor(dao, method.getName()));
+        }
+        return daoInterface.cast(Proxy.newProxyInstance(
+                daoInterface.getClassLoader(),
+                new Class<?>[]{daoInterface},
+                new TimingHandler(target, byMethod)));
+    }
+
+    /**
+     * @return stats for every instrumented method, slowest p99 first
+     */
+    public static List<MethodStats> getAll() {
+        List<MethodStats> all = new ArrayList<>(STATS.values());
+        all.sort(Comparator.comparingDouble(MethodStats::getP99Millis).reversed()
+                .thenComparing(MethodStats::getDao).thenComparing(MethodStats::getMethod));
+        return all;
+    }
+
+    /**
+     * Registers the pool's MXBean under {@code org.keyin:type=ConnectionPool,name=...}.
+     *
+     * @param name pool name used in the object name
+     * @param pool the pool to publish
+     */
+    public static void registerPool(String name, ConnectionPool pool) {
+        register(DOMAIN + ":type=ConnectionPool,name=" + ObjectName.quote(name), new ConnectionPoolMonitor(pool));
+    }
+
+    private static MethodStats statsFor(String dao, String method) {
+        return STATS.computeIfAbsent(dao + "." + method, key -> {
+            MethodStats stats = new MethodStats(dao, method);
+            register(DOMAIN + ":type=DaoMethod,dao=" + dao + ",method=" + method, stats);
+            return stats;
+        });
+    }
+
+    private static void register(String objectName, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(bean, new ObjectName(objectName));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published by an earlier instance; the first registration wins.
+        } catch (JMException e) {
+            System.out.println("Could not register MBean " + objectName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Times calls to the DAO and delegates them to the real implementation.
+     */
+    private static final class TimingHandler implements InvocationHandler {
+        private final Object target;
+        private final Map<Method, MethodStats> byMethod;
+
+        private TimingHandler(Object target, Map<Method, MethodStats> byMethod) {
+            this.target = target;
+            this.byMethod = byMethod;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            MethodStats stats = byMethod.get(method);
+            if (stats == null) {
+                // equals, hashCode, toString
+                return invokeTarget(method, args);
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invokeTarget(method, args);
+                failed = false;
+                return result;
+            } finally {
+                stats.record(System.nanoTime() - start, failed);
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.keyin.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Database settings, read from four layers where each one overrides the one before:
+ * <ol>
+ *   <li>{@code database.properties} on the classpath (bundled defaults, no secrets),</li>
+ *   <li>an external properties file: {@code -Dgym.db.config} or {@code GYM_DB_CONFIG}, otherwise
+ *       {@code gym-db.properties} in the working directory if it exists,</li>
+ *   <li>environment variables, named after the key in upper case with dots and camel-case humps
+ *       turned into underscores ({@code gym.db.replicaMaxLagMillis} is {@code GYM_DB_REPLICA_MAX_LAG_MILLIS}),</li>
+ *   <li>system properties ({@code -Dgym.db.url=...}).</li>
+ * </ol>
+ * The primary is {@code gym.db.url}; read replicas are listed comma-separated in {@code gym.db.replicas},
+ * and per-location shards in {@code gym.db.shards} (see {@link ShardMap}).
+ */
+public class DatabaseConfig {
+    /** Classpath resource holding the bundled defaults. */
+    public static final String BUNDLED_RESOURCE = "database.properties";
+    /** External file read when neither {@code -Dgym.db.config} nor {@code GYM_DB_CONFIG} is set. */
+    public static final String DEFAULT_CONFIG_FILE = "gym-db.properties";
+
+    private final Properties bundled;
+    private final Properties file;
+    private final Map<String, String> environment;
+    private final Properties system;
+    private final String source;
+
+    /**
+     * Creates a configuration from explicit layers, lowest precedence first.
+     *
+     * @param bundled     bundled defaults
+     * @param file        the external file's properties (empty if there is none)
+     * @param environment environment variables
+     * @param system      system properties
+     * @param source      where the external file came from, for {@link #toString()}
+     */
+    DatabaseConfig(Properties bundled, Properties file, Map<String, String> environment, Properties system, String source) {
+        this.bundled = bundled;
+        this.file = file;
+        this.environment = environment;
+        this.system = system;
+        this.source = source;
+    }
+
+    /**
+     * Loads the configuration for this process. A missing or unreadable external file is
+     * reported and skipped; the other layers still apply.
+     *
+     * @return the merged configuration
+     */
+    public static DatabaseConfig load() {
+        Properties bundled = new Properties();
+        try (InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream(BUNDLED_RESOURCE)) {
+            if (in != null) {
+                bundled.load(in);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not read bundled " + BUNDLED_RESOURCE + ": " + e.getMessage());
+        }
+
+        String configured = System.getProperty("gym.db.config", System.getenv("GYM_DB_CONFIG"));
+        Path path = Paths.get(configured != null ? configured : DEFAULT_CONFIG_FILE);
+        Properties file = new Properties();
+        String source = "none";
+        if (Files.isReadable(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                file.load(reader);
+                source = path.toAbsolutePath().toString();
+            } catch (IOException e) {
+                System.out.println("Could not read database config " + path + ": " + e.getMessage());
+            }
+        } else if (configured != null) {
+            System.out.println("Database config " + path + " not found; using defaults and environment");
+        }
+        return new DatabaseConfig(bundled, file, System.getenv(), System.getProperties(), source);
+    }
+
+    /**
+     * @param key          a setting such as {@code gym.db.url}
+     * @param defaultValue value when no layer sets it
+     * @return the highest-precedence value, trimmed
+     */
+    public String get(String key, String defaultValue) {
+        String value = system.getProperty(key);
+        if (value == null) {
+            value = environment.get(environmentName(key));
+        }
+        if (value == null) {
+            value = file.getProperty(key);
+        }
+        if (value == null) {
+            value = bundled.getProperty(key);
+        }
+        return value == null ? defaultValue : value.trim();
+    }
+
+    /**
+     * @param key          a numeric setting
+     * @param defaultValue value when no layer sets it
+     * @return the setting as a long
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number, got '" + value + "'");
+        }
+    }
+
+    /**
+     * @param key          a numeric setting
+     * @param defaultValue value when no layer sets it
+     * @return the setting as a double
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = get(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number, got '" + value + "'");
+        }
+    }
+
+    /** @return JDBC URL of the primary. */
+    public String getPrimaryUrl() {
+        return get("gym.db.url", "jdbc:postgresql://localhost:5432/gym_app");
+    }
+
+    /** @return database user for the primary. */
+    public String getUser() {
+        return get("gym.db.user", "postgres");
+    }
+
+    /** @return password for the primary; empty if none is configured. */
+    public String getPassword() {
+        return get("gym.db.password", "");
+    }
+
+    /** @return JDBC URLs of the read replicas, in configured order; empty if there are none. */
+    public List<String> getReplicaUrls() {
+        return getList("gym.db.replicas");
+    }
+
+    /** @return gym locations with their own database, in configured order; empty if unsharded. */
+    public List<String> getShardLocations() {
+        return getList("gym.db.shards");
+    }
+
+    /** @return database user for the replicas; defaults to the primary's. */
+    public String getReplicaUser() {
+        return get("gym.db.replicaUser", getUser());
+    }
+
+    /** @return password for the replicas; defaults to the primary's. */
+    public String getReplicaPassword() {
+        return get("gym.db.replicaPassword", getPassword());
+    }
+
+    private List<String> getList(String key) {
+        String value = get(key, "");
+        if (value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Maps a key to its environment variable name, e.g. {@code gym.db.replicaMaxLagMillis}
+     * to {@code GYM_DB_REPLICA_MAX_LAG_MILLIS}.
+     *
+     * @param key a setting name
+     * @return the environment variable that overrides it
+     */
+    static String environmentName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.' || c == '-') {
+                name.append('_');
+            } else if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(key.charAt(i - 1))) {
+                name.append('_').append(c);
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the effective connection settings with the passwords left out.
+     *
+     * @return readable configuration summary
+     */
+    @Override
+    public String toString() {
+        return "Database config [primary=" + getPrimaryUrl() + " as " + getUser()
+                + ", replicas=" + getReplicaUrls() + ", shards=" + getShardLocations() + ", file=" + source + "]";
+    }
+}
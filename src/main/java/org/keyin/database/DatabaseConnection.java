@@ -1,38 +1,333 @@
 // DatabaseConnection.java
 package org.keyin.database;
 
+import org.keyin.utils.AsyncServiceExecutor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles PostgreSQL database connection for the application.
- * Centralizes access credentials and connection logic.
+ * Connection settings come from {@link DatabaseConfig} (bundled defaults, an external properties
+ * file, environment variables and system properties), not from this class.
+ * Connections are handed out from a shared {@link ConnectionPool}, so closing them
+ * returns them to the pool instead of tearing down the TCP session.
+ *
+ * <p>Writes use {@link #getConnection()}, which always goes to the primary. Read-only queries
+ * use {@link #getReadConnection()}, which goes to a read replica when {@code gym.db.replicas}
+ * lists any and one is healthy and caught up. Reads stay on the primary, so they see the
+ * caller's own writes, while the thread is inside {@link #pinReadsToPrimary()}, holds a primary
+ * connection, or gave one back within the last {@code gym.db.readYourWritesMillis}
+ * (default 1000). The window runs from the release, not the borrow, so a long transaction
+ * cannot use it up before its commit is visible anywhere.</p>
+ *
+ * <p>While the thread has entered a location with {@link ShardContext}, both methods hand out
+ * connections to that location's database instead; replicas only serve the primary.</p>
  */
 public class DatabaseConnection {
-    // You only need to change the name of the database in the URL, unless PG runs on another port on your system. Default port is 5432 
-    private static final String URL = "jdbc:postgresql://localhost:5432/gym_app";
-//    By default the username is postgres and the password is what ever you set it to be. I usually keep mine simple
-    private static final String USER = "postgres";
-    private static final String PASSWORD = "Keyin2024";
+    private static final DatabaseConfig CONFIG = DatabaseConfig.load();
+
+    // The benchmarks point gym.db.url at a scratch database
+    private static final String URL = withDriverDefaults(CONFIG.getPrimaryUrl());
+    private static final String USER = CONFIG.getUser();
+    private static final String PASSWORD = CONFIG.getPassword();
+
+    /** Rows fetched per round trip when streaming large result sets through a server-side cursor. */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /** Rows per transaction for the bulk insert APIs. */
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 500;
+
+    private static final ConnectionPool POOL = new ConnectionPool(URL, USER, PASSWORD, new PoolSettings());
+
+    private static final ReplicaSet REPLICAS = createReplicaSet();
+
+    private static final ShardMap SHARDS = CONFIG.getShardLocations().isEmpty()
+            ? null : new ShardMap(CONFIG, new PoolSettings(), AsyncServiceExecutor.shared());
+
+    private static final long READ_YOUR_WRITES_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(CONFIG.getLong("gym.db.readYourWritesMillis", 1000));
+
+    // Statements slower than this are written to the slow query log; 0 turns the log off.
+    private static final long SLOW_QUERY_MILLIS = CONFIG.getLong("gym.db.slowQueryMillis", 500);
+
+    private static final SlowQueryLog SLOW_QUERY_LOG = SLOW_QUERY_MILLIS > 0
+            ? new SlowQueryLog(SLOW_QUERY_MILLIS,
+                    CONFIG.getDouble("gym.db.slowQueryExplainSampleRate", 0.1),
+                    CONFIG.get("gym.db.slowQueryLog", "logs/slow-queries.%g.log"))
+            : null;
+
+    static {
+        DaoMetrics.registerPool("primary", POOL);
+    }
 
     /**
-     * Attempts to create a live database connection.
+     * Borrows a live connection to the primary from the shared pool. Use this for anything
+     * that writes, or that must see the latest committed data.
+     * Callers must close it (try-with-resources) to give it back.
      *
      * @return a JDBC Connection object
      * @throws SQLException if the connection fails
      */
     public static Connection getConnection() throws SQLException, SQLException {
+        ShardMap.Shard shard = ShardContext.current();
+        if (shard != null) {
+            return logSlowQueries(shard.getPool().getConnection(), shard.getPool());
+        }
+        return logSlowQueries(trackPrimaryUse(POOL.getConnection()), POOL);
+    }
+
+    /**
+     * Borrows a connection to the primary ({@code gym.db.url}) even while the thread has entered
+     * a location, for data that belongs to no single location, such as the email directory
+     * that keeps emails unique across shards.
+     *
+     * @return a JDBC Connection object
+     * @throws SQLException if the connection fails
+     */
+    public static Connection getCentralConnection() throws SQLException {
+        return logSlowQueries(trackPrimaryUse(POOL.getConnection()), POOL);
+    }
+
+    /**
+     * Borrows a connection for a read-only query: from a replica when one is usable and the
+     * thread is not reading its own writes, otherwise from the primary. Never write through it.
+     *
+     * @return a JDBC Connection object
+     * @throws SQLException if no connection can be obtained from the primary either
+     */
+    public static Connection getReadConnection() throws SQLException {
+        ShardMap.Shard shard = ShardContext.current();
+        if (shard != null) {
+            return logSlowQueries(shard.getPool().getConnection(), shard.getPool());
+        }
+        if (REPLICAS != null && !ReadRouting.current().readsFromPrimary(READ_YOUR_WRITES_NANOS)) {
+            Connection connection = REPLICAS.borrow();
+            if (connection != null) {
+                return logSlowQueries(connection, ConnectionPool.poolOf(connection));
+            }
+        }
+        return logSlowQueries(POOL.getConnection(), POOL);
+    }
+
+    /**
+     * Sends this thread's reads to the primary until the returned pin is closed, e.g. while
+     * filling a cache that must not miss a write the replicas have not replayed yet.
+     * Pins nest.
+     *
+     * @return the pin; close it with try-with-resources
+     */
+    public static PrimaryPin pinReadsToPrimary() {
+        ReadRouting routing = ReadRouting.current();
+        routing.pins.incrementAndGet();
+        return new PrimaryPin(routing);
+    }
+
+    /**
+     * Keeps the calling thread's reads on the primary while the connection is out, and restarts
+     * its read-your-writes window when the connection is closed, i.e. after its last write.
+     */
+    private static Connection trackPrimaryUse(Connection connection) {
+        ReadRouting routing = ReadRouting.current();
+        routing.openPrimaryConnections.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PrimaryUseHandler(connection, routing));
+    }
+
+    /**
+     * Times the connection's statements when the slow query log is on. Sampled EXPLAINs borrow
+     * from {@code source}, the pool the connection came from.
+     */
+    private static Connection logSlowQueries(Connection connection, ConnectionPool source) {
+        return SLOW_QUERY_LOG == null ? connection : SLOW_QUERY_LOG.wrap(connection, source);
+    }
+
+    /**
+     * Opens a connection outside the pool, for sessions that must stay open indefinitely
+     * (such as the change feed's LISTEN). The caller closes it.
+     *
+     * @return a new physical connection
+     * @throws SQLException if the connection fails
+     */
+    static Connection openDedicatedConnection() throws SQLException {
         return DriverManager.getConnection(URL, USER, PASSWORD);
     }
 
+    /**
+     * Gives access to the merged database configuration.
+     *
+     * @return the configuration the pools were created from
+     */
+    public static DatabaseConfig getConfig() {
+        return CONFIG;
+    }
+
+    /**
+     * Gives access to the read replicas, e.g. to report their lag.
+     *
+     * @return the replica set, or null when no replicas are configured
+     */
+    public static ReplicaSet getReplicas() {
+        return REPLICAS;
+    }
+
+    /**
+     * Gives access to the per-location shards.
+     *
+     * @return the shard map, or null when {@code gym.db.shards} is not set
+     */
+    public static ShardMap getShards() {
+        return SHARDS;
+    }
+
+    /**
+     * Gives access to the slow query log, e.g. to report how many statements it caught.
+     *
+     * @return the slow query log, or null when it is disabled
+     */
+    public static SlowQueryLog getSlowQueryLog() {
+        return SLOW_QUERY_LOG;
+    }
+
+    /**
+     * Gives access to the shared pool, e.g. to pass it somewhere a DataSource is expected.
+     *
+     * @return the application's connection pool
+     */
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * Takes a snapshot of the shared pool's metrics.
+     *
+     * @return active, idle and wait-time statistics
+     */
+    public static PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    /**
+     * Adds driver options the application relies on, unless the URL already sets them.
+     * {@code reWriteBatchedInserts} makes pgjdbc fold JDBC insert batches into multi-row
+     * {@code INSERT ... VALUES (...), (...)} statements.
+     *
+     * @param url the configured JDBC URL
+     * @return the URL with driver defaults applied
+     */
+    static String withDriverDefaults(String url) {
+        if (url.contains("reWriteBatchedInserts")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true";
+    }
+
+    private static ReplicaSet createReplicaSet() {
+        List<String> urls = CONFIG.getReplicaUrls();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        List<String> withDefaults = new ArrayList<>();
+        for (String url : urls) {
+            withDefaults.add(withDriverDefaults(url));
+        }
+        return new ReplicaSet(withDefaults, CONFIG.getReplicaUser(), CONFIG.getReplicaPassword(), new PoolSettings(),
+                CONFIG.getLong("gym.db.replicaMaxLagMillis", 5000),
+                CONFIG.getLong("gym.db.replicaCheckIntervalMillis", 2000));
+    }
+
+    /**
+     * Passes every call through to a primary connection and tells the borrowing thread's
+     * {@link ReadRouting} when it is closed. Closing twice counts once.
+     */
+    private static final class PrimaryUseHandler implements InvocationHandler {
+        private final Connection target;
+        private final ReadRouting routing;
+        private boolean closed;
+
+        private PrimaryUseHandler(Connection target, ReadRouting routing) {
+            this.target = target;
+            this.routing = routing;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    synchronized (this) {
+                        if (closed) {
+                            return null;
+                        }
+                        closed = true;
+                    }
+                    try {
+                        target.close();
+                    } finally {
+                        routing.primaryReleased();
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Keeps the pinning thread's reads, and those of work it hands off, on the primary while open.
+     */
+    public static final class PrimaryPin implements AutoCloseable {
+        private final ReadRouting routing;
+        private boolean closed;
+
+        private PrimaryPin(ReadRouting routing) {
+            this.routing = routing;
+        }
+
+        /**
+         * Releases the pin. Closing twice has no further effect.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                routing.pins.decrementAndGet();
+            }
+        }
+    }
+
     /**
      * Main method to quickly test DB connectivity from the console.
      */
     public static void main(String[] args) {
-        try {
-            DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection()) {
             System.out.println("Connection successful");
+            System.out.println(CONFIG);
+            System.out.println(getPoolStats());
+            if (REPLICAS != null) {
+                System.out.println(REPLICAS);
+            }
+            if (SHARDS != null) {
+                System.out.println(SHARDS);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
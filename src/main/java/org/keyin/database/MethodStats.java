@@ -0,0 +1,90 @@
+package org.keyin.database;
+
+import org.keyin.utils.LatencyHistogram;
+import org.keyin.utils.LatencySnapshot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, error count and latency histogram for one DAO method.
+ */
+public class MethodStats implements MethodStatsMXBean {
+    private final String dao;
+    private final String method;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param dao    DAO interface name
+     * @param method method name
+     */
+    public MethodStats(String dao, String method) {
+        this.dao = dao;
+        this.method = method;
+    }
+
+    /**
+     * Records one completed call.
+     *
+     * @param nanos  time the call took
+     * @param failed whether it ended by throwing
+     */
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return a point-in-time view of the latency distribution
+     */
+    public LatencySnapshot snapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String getDao() {
+        return dao;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.snapshot().getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.snapshot().getMeanMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.snapshot().getP50Millis();
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.snapshot().getP99Millis();
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latency.snapshot().getP999Millis();
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.snapshot().getMaxMillis();
+    }
+}
@@ -0,0 +1,34 @@
+package org.keyin.database;
+
+/**
+ * JMX view of one instrumented DAO method's call counts and latency percentiles.
+ */
+public interface MethodStatsMXBean {
+
+    /** @return DAO interface name, e.g. {@code UserDao} */
+    String getDao();
+
+    /** @return method name */
+    String getMethod();
+
+    /** @return completed calls, successful or not */
+    long getCount();
+
+    /** @return calls that ended by throwing */
+    long getErrorCount();
+
+    /** @return mean latency in milliseconds */
+    double getMeanMillis();
+
+    /** @return median latency in milliseconds */
+    double getP50Millis();
+
+    /** @return 99th percentile latency in milliseconds */
+    double getP99Millis();
+
+    /** @return 99.9th percentile latency in milliseconds */
+    double getP999Millis();
+
+    /** @return slowest call in milliseconds */
+    double getMaxMillis();
+}
@@ -0,0 +1,303 @@
+package org.keyin.database;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background job that keeps monthly partitions of {@code memberships} (by start date) and
+ * {@code workoutclasses} (by class date) created ahead of the calendar, so new rows always land
+ * in their own month rather than in the default partition. Each run checks the current month
+ * and the next {@code monthsAhead}, and creates any that are missing through the schema's
+ * {@code create_monthly_partition} function, one short transaction per partition with a lock
+ * timeout so a busy table makes the run give up on that month instead of queueing writers.
+ * When the database is sharded, every shard is maintained; a shard that fails does not stop the
+ * others.
+ *
+ * <p>A month whose rows already sit in the default partition cannot get a partition without
+ * moving those rows; it is skipped with a warning and left for an operator. Messages go to the
+ * {@code org.keyin.partitions} logger: created partitions at {@code FINE}, skipped months and
+ * failures at {@code WARNING}.</p>
+ *
+ * <p>The scheduled instance is configured with {@code gym.db.partitionMonthsAhead} (default 12)
+ * and {@code gym.db.partitionCheckHours} (default 24, 0 disables scheduling).</p>
+ */
+public class PartitionMaintenance {
+    /** Months created beyond the current one when nothing is configured. */
+    public static final int DEFAULT_MONTHS_AHEAD = 12;
+
+    private static final Logger LOG = Logger.getLogger("org.keyin.partitions");
+
+    private static final String LOCK_TIMEOUT = "5s";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Partitioned table -> its partition key
+    private static final Map<String, String> PARTITION_KEYS = new LinkedHashMap<>();
+
+    static {
+        PARTITION_KEYS.put("memberships", "start_date");
+        PARTITION_KEYS.put("workoutclasses", "class_date");
+    }
+
+    private final int monthsAhead;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong partitionsCreated = new AtomicLong();
+    private final AtomicLong monthsSkipped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile String lastError;
+
+    /**
+     * Creates the job. Nothing runs until {@link #start(long)} or {@link #runOnce()} is called.
+     *
+     * @param monthsAhead months after the current one that must have partitions
+     */
+    public PartitionMaintenance(int monthsAhead) {
+        if (monthsAhead < 0) {
+            throw new IllegalArgumentException("monthsAhead must not be negative");
+        }
+        this.monthsAhead = monthsAhead;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the job from the database configuration and schedules it, unless the interval is 0.
+     *
+     * @return the job, scheduled or not
+     */
+    public static PartitionMaintenance startDefault() {
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        PartitionMaintenance maintenance = new PartitionMaintenance(
+                (int) config.getLong("gym.db.partitionMonthsAhead", DEFAULT_MONTHS_AHEAD));
+        long intervalHours = config.getLong("gym.db.partitionCheckHours", 24);
+        if (intervalHours > 0) {
+            maintenance.start(TimeUnit.HOURS.toMillis(intervalHours));
+        }
+        return maintenance;
+    }
+
+    /**
+     * Runs the check now and then every {@code intervalMillis} after the previous run finishes.
+     *
+     * @param intervalMillis delay between runs, in milliseconds
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::runScheduled, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops scheduled runs.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Creates missing partitions on the calling thread, on every shard if sharded. Runs are
+     * serialized, so a manual run never overlaps the scheduled one.
+     *
+     * @return number of partitions created by this run
+     */
+    public synchronized int runOnce() {
+        LocalDate firstMonth = LocalDate.now().withDayOfMonth(1);
+        lastRunAt = LocalDateTime.now();
+        lastError = null;
+        int created = 0;
+        ShardMap shards = DatabaseConnection.getShards();
+        if (shards == null) {
+            try {
+                created = ensurePartitions(firstMonth);
+            } catch (SQLException e) {
+                failed("Partition maintenance failed", e);
+            }
+        } else {
+            for (ShardMap.Shard shard : shards.getShards()) {
+                try {
+                    created += shards.onShard(shard, () -> ensurePartitions(firstMonth));
+                } catch (SQLException e) {
+                    // Keep going; the other locations still need their partitions
+                    failed("Partition maintenance failed on shard " + shard.getLocation(), e);
+                }
+            }
+        }
+        runs.incrementAndGet();
+        partitionsCreated.addAndGet(created);
+        return created;
+    }
+
+    private void failed(String message, SQLException e) {
+        failures.incrementAndGet();
+        lastError = e.getMessage();
+        LOG.log(Level.WARNING, message, e);
+    }
+
+    /**
+     * Creates the missing months of every partitioned table in the current database.
+     */
+    private int ensurePartitions(LocalDate firstMonth) throws SQLException {
+        int created = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (Map.Entry<String, String> table : PARTITION_KEYS.entrySet()) {
+                for (int i = 0; i <= monthsAhead; i++) {
+                    LocalDate month = firstMonth.plusMonths(i);
+                    String partition = partitionName(table.getKey(), month);
+                    if (exists(conn, partition)) {
+                        continue;
+                    }
+                    if (defaultHoldsMonth(conn, table.getKey(), table.getValue(), month)) {
+                        monthsSkipped.incrementAndGet();
+                        LOG.warning("Partition maintenance: " + table.getKey() + "_default already holds rows for "
+                                + month.format(SUFFIX) + ", not creating " + partition);
+                        continue;
+                    }
+                    try {
+                        createPartition(conn, table.getKey(), month);
+                        created++;
+                        LOG.fine("Partition maintenance: created " + partition);
+                    } catch (SQLException e) {
+                        // Usually the lock timeout; the next run tries again
+                        failures.incrementAndGet();
+                        lastError = e.getMessage();
+                        LOG.warning("Partition maintenance: could not create " + partition + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @param table partitioned table
+     * @param month any day in the month
+     * @return the name {@code create_monthly_partition} gives that month's partition
+     */
+    public static String partitionName(String table, LocalDate month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    private static boolean exists(Connection conn, String partition) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            stmt.setString(1, partition);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static boolean defaultHoldsMonth(Connection conn, String table, String key, LocalDate month) throws SQLException {
+        // Table and column come from PARTITION_KEYS, never from input
+        String sql = "SELECT 1 FROM " + table + "_default WHERE " + key + " >= ? AND " + key + " < ? LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(month));
+            stmt.setDate(2, Date.valueOf(month.plusMonths(1)));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void createPartition(Connection conn, String table, LocalDate month) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement timeout = conn.createStatement();
+             PreparedStatement create = conn.prepareStatement("SELECT create_monthly_partition(?, ?)")) {
+            // Creating a partition briefly locks the parent; give up rather than stall the app behind it
+            timeout.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+            create.setString(1, table);
+            create.setDate(2, Date.valueOf(month));
+            create.execute();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Scheduled entry point; an escaped exception would cancel every future run.
+     */
+    private void runScheduled() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * @return months after the current one that are kept partitioned
+     */
+    public int getMonthsAhead() {
+        return monthsAhead;
+    }
+
+    /**
+     * @return number of completed runs
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    /**
+     * @return partitions created across all runs
+     */
+    public long getPartitionsCreated() {
+        return partitionsCreated.get();
+    }
+
+    /**
+     * @return months skipped because their rows were already in a default partition
+     */
+    public long getMonthsSkipped() {
+        return monthsSkipped.get();
+    }
+
+    /**
+     * @return partitions that could not be created, across all runs
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return when the last run started, or null if none has
+     */
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+
+    /**
+     * @return the last run's error, or null if it succeeded
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionMaintenance{monthsAhead=" + monthsAhead + ", runs=" + runs.get()
+                + ", created=" + partitionsCreated.get() + ", skipped=" + monthsSkipped.get()
+                + ", failures=" + failures.get() + (lastError == null ? "" : ", lastError=" + lastError) + "}";
+    }
+}
@@ -0,0 +1,147 @@
+package org.keyin.database;
+
+/**
+ * Tunable settings for a {@link ConnectionPool}.
+ * Defaults are sized for a single GymApp instance talking to a local PostgreSQL server.
+ */
+public class PoolSettings {
+    private int maxPoolSize = 10;
+    private int minIdle = 2;
+    private long borrowTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 5 * 60_000;
+    private long validationBypassMillis = 500;
+    private int validationTimeoutSeconds = 2;
+    private long leakDetectionThresholdMillis = 30_000;
+    private long housekeepingIntervalMillis = 15_000;
+
+    /**
+     * @return maximum number of physical connections the pool will open
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize maximum number of physical connections (must be at least 1)
+     * @return this settings object for chaining
+     */
+    public PoolSettings setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be at least 1");
+        }
+        this.maxPoolSize = maxPoolSize;
+        return this;
+    }
+
+    /**
+     * @return number of idle connections kept open when evicting
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * @param minIdle idle connections that survive idle eviction
+     * @return this settings object for chaining
+     */
+    public PoolSettings setMinIdle(int minIdle) {
+        this.minIdle = Math.max(0, minIdle);
+        return this;
+    }
+
+    /**
+     * @return how long a caller waits for a free connection before failing
+     */
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    /**
+     * @param borrowTimeoutMillis wait limit for a free connection, in milliseconds
+     * @return this settings object for chaining
+     */
+    public PoolSettings setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * @return how long a connection may sit idle before it is closed
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis idle lifetime in milliseconds
+     * @return this settings object for chaining
+     */
+    public PoolSettings setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * @return window after last use during which borrow-time validation is skipped
+     */
+    public long getValidationBypassMillis() {
+        return validationBypassMillis;
+    }
+
+    /**
+     * @param validationBypassMillis skip validation for connections used this recently
+     * @return this settings object for chaining
+     */
+    public PoolSettings setValidationBypassMillis(long validationBypassMillis) {
+        this.validationBypassMillis = validationBypassMillis;
+        return this;
+    }
+
+    /**
+     * @return timeout passed to {@link java.sql.Connection#isValid(int)} on borrow
+     */
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    /**
+     * @param validationTimeoutSeconds validation timeout in seconds
+     * @return this settings object for chaining
+     */
+    public PoolSettings setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * @return how long a connection can stay borrowed before it is reported as a leak (0 disables)
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * @param leakDetectionThresholdMillis leak threshold in milliseconds, or 0 to disable
+     * @return this settings object for chaining
+     */
+    public PoolSettings setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        return this;
+    }
+
+    /**
+     * @return how often the background housekeeper evicts idle connections and checks for leaks
+     */
+    public long getHousekeepingIntervalMillis() {
+        return housekeepingIntervalMillis;
+    }
+
+    /**
+     * @param housekeepingIntervalMillis housekeeping period in milliseconds
+     * @return this settings object for chaining
+     */
+    public PoolSettings setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+        this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        return this;
+    }
+}
@@ -0,0 +1,99 @@
+package org.keyin.database;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of {@link ConnectionPool} metrics at a point in time.
+ */
+public class PoolStats {
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int maxPoolSize;
+    private final int waitingThreads;
+    private final long totalBorrows;
+    private final long borrowTimeouts;
+    private final double averageWaitMillis;
+    private final double maxWaitMillis;
+    private final long leaksDetected;
+    private final List<String> recentLeaks;
+
+    /**
+     * Creates a snapshot of pool metrics.
+     */
+    public PoolStats(int activeConnections, int idleConnections, int maxPoolSize, int waitingThreads,
+                     long totalBorrows, long borrowTimeouts, double averageWaitMillis, double maxWaitMillis,
+                     long leaksDetected, List<String> recentLeaks) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.maxPoolSize = maxPoolSize;
+        this.waitingThreads = waitingThreads;
+        this.totalBorrows = totalBorrows;
+        this.borrowTimeouts = borrowTimeouts;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.leaksDetected = leaksDetected;
+        this.recentLeaks = List.copyOf(recentLeaks);
+    }
+
+    /** @return connections currently borrowed by callers. */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /** @return open connections waiting in the pool. */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /** @return configured upper bound on physical connections. */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /** @return threads currently blocked waiting for a connection. */
+    public int getWaitingThreads() {
+        return waitingThreads;
+    }
+
+    /** @return number of successful borrows since the pool started. */
+    public long getTotalBorrows() {
+        return totalBorrows;
+    }
+
+    /** @return number of borrows that gave up after the borrow timeout. */
+    public long getBorrowTimeouts() {
+        return borrowTimeouts;
+    }
+
+    /** @return mean time callers waited for a connection, in milliseconds. */
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    /** @return longest time any caller waited for a connection, in milliseconds. */
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /** @return number of connections reported as leaked. */
+    public long getLeaksDetected() {
+        return leaksDetected;
+    }
+
+    /** @return the latest leak reports, newest first, each with the stack trace of the borrowing code. */
+    public List<String> getRecentLeaks() {
+        return recentLeaks;
+    }
+
+    /**
+     * Returns a one-line summary of the pool state.
+     *
+     * @return readable pool metrics
+     */
+    @Override
+    public String toString() {
+        return String.format("Pool [active=%d, idle=%d, max=%d, waiting=%d, borrows=%d, timeouts=%d, avgWait=%.2fms, maxWait=%.2fms, leaks=%d]",
+                activeConnections, idleConnections, maxPoolSize, waitingThreads,
+                totalBorrows, borrowTimeouts, averageWaitMillis, maxWaitMillis, leaksDetected);
+    }
+}
@@ -0,0 +1,91 @@
+package org.keyin.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An explicit, ordered column list for a SELECT. Queries render their select list from the
+ * projection, so each column's JDBC index is known when the projection is built and row
+ * mappers can read by position instead of looking every column label up on every row.
+ */
+public final class Projection {
+    private final List<String> columns;
+    private final Map<String, Integer> indexes;
+    private final String selectList;
+
+    private Projection(List<String> columns) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.indexes = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (indexes.putIfAbsent(columns.get(i), i + 1) != null) {
+                throw new IllegalArgumentException("Duplicate column in projection: " + columns.get(i));
+            }
+        }
+        this.selectList = String.join(", ", columns);
+    }
+
+    /**
+     * @param columns column names or expressions, in select-list order
+     * @return a projection over those columns
+     */
+    public static Projection of(String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("A projection needs at least one column");
+        }
+        return new Projection(new ArrayList<>(Arrays.asList(columns)));
+    }
+
+    /**
+     * @param more columns to append
+     * @return a new projection with the extra columns after this one's
+     */
+    public Projection plus(String... more) {
+        List<String> combined = new ArrayList<>(columns);
+        combined.addAll(Arrays.asList(more));
+        return new Projection(combined);
+    }
+
+    /**
+     * @return the comma-separated select list, e.g. {@code "user_id, user_name"}
+     */
+    public String columns() {
+        return selectList;
+    }
+
+    /**
+     * @return the column names in order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param column a column in this projection
+     * @return its 1-based JDBC index
+     * @throws IllegalArgumentException if the column is not projected
+     */
+    public int index(String column) {
+        Integer index = indexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Column not in projection: " + column);
+        }
+        return index;
+    }
+
+    /**
+     * @param column a column name
+     * @return true if the projection selects it
+     */
+    public boolean contains(String column) {
+        return indexes.containsKey(column);
+    }
+
+    @Override
+    public String toString() {
+        return selectList;
+    }
+}
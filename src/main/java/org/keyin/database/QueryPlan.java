@@ -0,0 +1,99 @@
+package org.keyin.database;
+
+import org.keyin.utils.Json;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The plan PostgreSQL picks for one statement with concrete parameter values, read from
+ * {@code EXPLAIN (FORMAT JSON)}. The statement is planned but not run, so INSERTs and UPDATEs
+ * can be inspected safely. Used to check which tables and partitions a query touches: a
+ * partition pruned at planning time does not appear in the plan at all.
+ */
+public class QueryPlan {
+    private final String json;
+    private final Set<String> relations = new TreeSet<>();
+
+    private QueryPlan(String json) {
+        this.json = json;
+        collectRelations(Json.parse(json));
+    }
+
+    /**
+     * Plans a statement.
+     *
+     * @param conn   connection to plan on
+     * @param sql    the statement, with {@code ?} placeholders
+     * @param params values to bind, in order
+     * @return the plan
+     * @throws SQLException if the statement cannot be planned
+     */
+    public static QueryPlan explain(Connection conn, String sql, List<?> params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return new QueryPlan(rs.getString(1));
+            }
+        }
+    }
+
+    /**
+     * @return every table and partition the plan reads or writes, by name
+     */
+    public Set<String> getRelations() {
+        return relations;
+    }
+
+    /**
+     * @param prefix name prefix, e.g. {@code workoutclasses_p}
+     * @return the relations in the plan whose names start with the prefix
+     */
+    public Set<String> getRelations(String prefix) {
+        Set<String> matching = new TreeSet<>();
+        for (String relation : relations) {
+            if (relation.startsWith(prefix)) {
+                matching.add(relation);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @return the plan as PostgreSQL returned it
+     */
+    public String getJson() {
+        return json;
+    }
+
+    private void collectRelations(Object node) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if ("Relation Name".equals(entry.getKey()) && entry.getValue() instanceof String) {
+                    relations.add((String) entry.getValue());
+                } else {
+                    collectRelations(entry.getValue());
+                }
+            }
+        } else if (node instanceof Collection) {
+            for (Object child : (Collection<?>) node) {
+                collectRelations(child);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlan" + relations;
+    }
+}
@@ -0,0 +1,51 @@
+package org.keyin.database;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-thread state deciding whether reads must stay on the primary. Work handed to another
+ * thread shares the submitting thread's instance through {@link RoutingContext}, so every field
+ * may be touched by more than one thread.
+ */
+final class ReadRouting {
+    private static final ThreadLocal<ReadRouting> CURRENT = ThreadLocal.withInitial(ReadRouting::new);
+
+    // Written by whichever thread closes the connection, usually but not always the owner
+    private volatile long lastPrimaryUse = System.nanoTime() - Long.MAX_VALUE / 2;
+    final AtomicInteger openPrimaryConnections = new AtomicInteger();
+    final AtomicInteger pins = new AtomicInteger();
+
+    /**
+     * @return the current thread's routing state
+     */
+    static ReadRouting current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Replaces the current thread's routing state.
+     *
+     * @param routing the state to use, or null to go back to a fresh one
+     */
+    static void set(ReadRouting routing) {
+        if (routing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(routing);
+        }
+    }
+
+    /**
+     * @param windowNanos how long after releasing a primary connection reads stay on the primary
+     * @return true if reads must not go to a replica
+     */
+    boolean readsFromPrimary(long windowNanos) {
+        return pins.get() > 0 || openPrimaryConnections.get() > 0
+                || System.nanoTime() - lastPrimaryUse < windowNanos;
+    }
+
+    void primaryReleased() {
+        lastPrimaryUse = System.nanoTime();
+        openPrimaryConnections.decrementAndGet();
+    }
+}
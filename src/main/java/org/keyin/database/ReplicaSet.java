@@ -0,0 +1,252 @@
+package org.keyin.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The read replicas, each with its own {@link ConnectionPool}, and the monitor that decides
+ * which of them may serve reads.
+ *
+ * <p>A background thread measures every replica's replay lag every few seconds. A replica
+ * serves reads only while its last check succeeded, found its WAL receiver streaming from the
+ * primary, and showed a lag of at most {@code maxLagMillis}; until its first check completes it is treated as unusable. Reads are
+ * spread round-robin over the usable replicas. When none is usable, or a borrow fails,
+ * {@link #borrow()} returns null and the caller reads from the primary instead.</p>
+ */
+public class ReplicaSet {
+    // First column: whether a WAL receiver is streaming from the primary. Without one (receiver
+    // disconnected, or the replica was promoted) nothing new arrives, so the replay lag below
+    // would read zero however far behind the replica is. The status column is NULL for roles
+    // without pg_read_all_stats, so for them a running receiver is the best available signal.
+    // Second column: zero when the replica has replayed everything it received; otherwise how
+    // old the last replayed transaction is.
+    private static final String LAG_SQL = "SELECT EXISTS (SELECT 1 FROM pg_stat_wal_receiver "
+            + "WHERE COALESCE(status, 'streaming') = 'streaming'), "
+            + "COALESCE(CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END, 0)";
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService monitor;
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryFallbacks = new LongAdder();
+    private final LongAdder borrowFailures = new LongAdder();
+
+    /**
+     * Creates pools for the replicas and starts monitoring them.
+     *
+     * @param urls                JDBC URLs of the replicas
+     * @param user                database user
+     * @param password            database password
+     * @param settings            pool settings, shared by every replica pool
+     * @param maxLagMillis        replay lag above which a replica stops serving reads
+     * @param checkIntervalMillis how often lag is measured
+     */
+    public ReplicaSet(List<String> urls, String user, String password, PoolSettings settings,
+                      long maxLagMillis, long checkIntervalMillis) {
+        List<Replica> created = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            ConnectionPool pool = new ConnectionPool(urls.get(i), user, password, settings);
+            String name = "replica-" + (i + 1);
+            DaoMetrics.registerPool(name, pool);
+            created.add(new Replica(name, urls.get(i), pool));
+        }
+        this.replicas = Collections.unmodifiableList(created);
+        this.maxLagMillis = maxLagMillis;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(this::checkAll, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the next usable replica.
+     *
+     * @return a pooled replica connection, or null if the read should go to the primary
+     */
+    public Connection borrow() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.isUsable(maxLagMillis)) {
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                replicaReads.increment();
+                replica.reads.increment();
+                return connection;
+            } catch (SQLException e) {
+                // Stop routing here until the monitor sees it healthy again
+                borrowFailures.increment();
+                replica.markFailed(e);
+            }
+        }
+        primaryFallbacks.increment();
+        return null;
+    }
+
+    private void checkAll() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement stmt = connection.createStatement()) {
+                stmt.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+                try (ResultSet rs = stmt.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    replica.markChecked(rs.getBoolean(1), Math.max(0, Math.round(rs.getDouble(2))));
+                }
+            } catch (SQLException e) {
+                replica.markFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Stops monitoring and closes every replica pool.
+     */
+    public void close() {
+        monitor.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    /** @return the replicas, in configured order. */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /** @return replay lag above which a replica stops serving reads. */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /** @return reads served by a replica. */
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /** @return reads sent to the primary because no replica was usable. */
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.sum();
+    }
+
+    /** @return replica borrows that failed and were retried elsewhere. */
+    public long getBorrowFailures() {
+        return borrowFailures.sum();
+    }
+
+    /**
+     * Returns a one-line summary of the replicas and routing counters.
+     *
+     * @return readable replica metrics
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("Replicas [");
+        for (Replica replica : replicas) {
+            summary.append(replica).append(", ");
+        }
+        return summary.append("reads=").append(getReplicaReads())
+                .append(", primary fallbacks=").append(getPrimaryFallbacks())
+                .append(", borrow failures=").append(getBorrowFailures()).append("]").toString();
+    }
+
+    /**
+     * One replica and what the monitor last saw of it.
+     */
+    public static final class Replica {
+        private final String name;
+        private final String url;
+        private final ConnectionPool pool;
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean reachable;
+        private volatile boolean streaming;
+        private volatile long lagMillis = -1;
+        private volatile String lastError;
+
+        private Replica(String name, String url, ConnectionPool pool) {
+            this.name = name;
+            this.url = url;
+            this.pool = pool;
+        }
+
+        private boolean isUsable(long maxLagMillis) {
+            return reachable && streaming && lagMillis >= 0 && lagMillis <= maxLagMillis;
+        }
+
+        private void markChecked(boolean streaming, long lagMillis) {
+            this.lagMillis = lagMillis;
+            this.streaming = streaming;
+            this.reachable = true;
+            this.lastError = streaming ? null : "no WAL receiver streaming from the primary";
+        }
+
+        private void markFailed(SQLException e) {
+            this.reachable = false;
+            this.lastError = e.getMessage();
+        }
+
+        /** @return the replica's metrics name, e.g. {@code replica-1}. */
+        public String getName() {
+            return name;
+        }
+
+        /** @return the replica's JDBC URL. */
+        public String getUrl() {
+            return url;
+        }
+
+        /** @return true if the last check reached the replica. */
+        public boolean isReachable() {
+            return reachable;
+        }
+
+        /** @return true if the last check found the replica receiving WAL from the primary. */
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        /** @return replay lag at the last check, or -1 before the first successful check. */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        /** @return the last check or borrow error, or null. */
+        public String getLastError() {
+            return lastError;
+        }
+
+        /** @return reads this replica served. */
+        public long getReads() {
+            return reads.sum();
+        }
+
+        /** @return the replica's connection pool statistics. */
+        public PoolStats getPoolStats() {
+            return pool.getStats();
+        }
+
+        @Override
+        public String toString() {
+            String state = !reachable ? " unreachable" : !streaming ? " not streaming" : " lag=" + lagMillis + "ms";
+            return name + state + " reads=" + getReads();
+        }
+    }
+}
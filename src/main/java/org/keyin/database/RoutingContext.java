@@ -0,0 +1,60 @@
+package org.keyin.database;
+
+/**
+ * Where a thread's connections go: the location it entered with {@link ShardContext} and its
+ * read-your-writes state (pinned reads, open primary connections and the last primary release).
+ * Work handed to another thread captures this on the submitting thread and applies it on the
+ * worker, so the worker reads and writes where its caller would have.
+ *
+ * <p>The read-your-writes state is shared rather than copied: a write on the worker also keeps
+ * the caller's next reads on the primary.</p>
+ */
+public final class RoutingContext {
+    private final ShardMap.Shard shard;
+    private final ReadRouting reads;
+
+    private RoutingContext(ShardMap.Shard shard, ReadRouting reads) {
+        this.shard = shard;
+        this.reads = reads;
+    }
+
+    /**
+     * @return the current thread's routing
+     */
+    public static RoutingContext capture() {
+        return new RoutingContext(ShardContext.current(), ReadRouting.current());
+    }
+
+    /**
+     * Routes the current thread as the capturing thread was routed until the returned scope is
+     * closed.
+     *
+     * @return the scope; close it with try-with-resources
+     */
+    public Scope apply() {
+        ReadRouting previousReads = ReadRouting.current();
+        ShardMap.Shard previousShard = ShardContext.current();
+        ReadRouting.set(reads);
+        ShardContext.set(shard);
+        return new Scope(previousShard, previousReads);
+    }
+
+    /**
+     * Restores the previous routing when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final ShardMap.Shard previousShard;
+        private final ReadRouting previousReads;
+
+        private Scope(ShardMap.Shard previousShard, ReadRouting previousReads) {
+            this.previousShard = previousShard;
+            this.previousReads = previousReads;
+        }
+
+        @Override
+        public void close() {
+            ShardContext.set(previousShard);
+            ReadRouting.set(previousReads);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.keyin.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Turns the current result set row into an object.
+ * Mappers are built once against a {@link Projection}, resolving column indexes up front,
+ * and kept in static finals so every call reuses them.
+ *
+ * @param <T> the mapped type
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * @param rs result set positioned on a row
+     * @return the mapped object
+     * @throws SQLException if reading a column fails
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Maps every remaining row into a list.
+     *
+     * @param rs     result set to drain
+     * @param mapper row mapper
+     * @param <T>    the mapped type
+     * @return the mapped rows in order
+     * @throws SQLException if reading fails
+     */
+    static <T> List<T> toList(ResultSet rs, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(mapper.mapRow(rs));
+        }
+        return rows;
+    }
+
+    /**
+     * Maps every remaining row and hands each one to a callback without collecting them.
+     *
+     * @param rs      result set to drain
+     * @param mapper  row mapper
+     * @param handler callback invoked once per row
+     * @param <T>     the mapped type
+     * @throws SQLException if reading fails
+     */
+    static <T> void forEach(ResultSet rs, RowMapper<T> mapper, Consumer<? super T> handler) throws SQLException {
+        while (rs.next()) {
+            handler.accept(mapper.mapRow(rs));
+        }
+    }
+
+    /**
+     * Maps the next row, if there is one.
+     *
+     * @param rs     result set to read
+     * @param mapper row mapper
+     * @param <T>    the mapped type
+     * @return the mapped row, or null if the result set is exhausted
+     * @throws SQLException if reading fails
+     */
+    static <T> T first(ResultSet rs, RowMapper<T> mapper) throws SQLException {
+        return rs.next() ? mapper.mapRow(rs) : null;
+    }
+}
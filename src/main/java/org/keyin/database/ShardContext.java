@@ -0,0 +1,80 @@
+package org.keyin.database;
+
+/**
+ * The location the current thread is working for. While a shard is entered,
+ * {@link DatabaseConnection#getConnection()} and {@link DatabaseConnection#getReadConnection()}
+ * hand out connections to that location's database instead of the primary, so the unsharded
+ * DAOs run unchanged against whichever shard their caller picked.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<ShardMap.Shard> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the shard the current thread is working for, or null for the primary
+     */
+    public static ShardMap.Shard current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Routes the current thread's connections to a shard until the returned scope is closed.
+     * Scopes nest; closing one restores the shard that was current before it.
+     *
+     * @param shard the shard to use, or null to leave the routing unchanged
+     * @return the scope; close it with try-with-resources
+     */
+    public static Scope enter(ShardMap.Shard shard) {
+        ShardMap.Shard previous = CURRENT.get();
+        if (shard != null) {
+            CURRENT.set(shard);
+        }
+        return new Scope(previous);
+    }
+
+    /**
+     * Routes the current thread to a location by name, e.g. from a request header.
+     *
+     * @param location a configured location, or null to leave the routing unchanged
+     * @return the scope; close it with try-with-resources
+     * @throws IllegalArgumentException if locations are configured and this is not one of them
+     */
+    public static Scope enterLocation(String location) {
+        ShardMap shards = DatabaseConnection.getShards();
+        if (location == null || location.trim().isEmpty() || shards == null) {
+            return enter(null);
+        }
+        return enter(shards.forLocation(location));
+    }
+
+    /**
+     * Replaces the current thread's shard outright, for {@link RoutingContext}.
+     *
+     * @param shard the shard to use, or null for the primary
+     */
+    static void set(ShardMap.Shard shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    /**
+     * Restores the previous routing when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final ShardMap.Shard previous;
+
+        private Scope(ShardMap.Shard previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            set(previous);
+        }
+    }
+}
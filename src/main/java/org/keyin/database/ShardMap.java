@@ -0,0 +1,313 @@
+package org.keyin.database;
+
+import org.keyin.utils.AsyncServiceExecutor;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToIntFunction;
+
+/**
+ * The gym locations and the database each one lives on.
+ *
+ * <p>Locations are listed in {@code gym.db.shards}, e.g. {@code stjohns,mountpearl}, and each
+ * names its database with {@code gym.db.shard.<location>.url} (plus optional {@code .user} and
+ * {@code .password}, defaulting to the primary's). The order matters: the location at position
+ * {@code i} (from 0) hands out user, membership, class and booking ids from
+ * {@code i * ID_BLOCK_SIZE + 1} to {@code (i + 1) * ID_BLOCK_SIZE}, so the shard owning any row
+ * follows from its id alone. Append new locations at the end; never reorder the list.</p>
+ *
+ * <p>A user lives at one location, together with their memberships, the classes they teach and
+ * the bookings for those classes. Rows that reference each other must therefore be on the same
+ * shard, as the foreign keys already require.</p>
+ */
+public class ShardMap {
+    /** Ids each location may hand out; the setup script starts every sequence at its block. */
+    public static final int ID_BLOCK_SIZE = 100_000_000;
+
+    private final List<Shard> shards;
+    private final Map<String, Shard> byLocation;
+    private final Shard defaultShard;
+    private final AsyncServiceExecutor executor;
+
+    /**
+     * Creates a pool for every configured location.
+     *
+     * @param config   the database configuration listing the locations
+     * @param settings pool settings, shared by every shard pool
+     * @param executor runs the per-shard calls of a scatter-gather in parallel
+     * @throws IllegalArgumentException if a location has no URL, is listed twice, or there are
+     *                                  more locations than id blocks
+     */
+    public ShardMap(DatabaseConfig config, PoolSettings settings, AsyncServiceExecutor executor) {
+        List<String> locations = config.getShardLocations();
+        if (locations.size() > Integer.MAX_VALUE / ID_BLOCK_SIZE) {
+            throw new IllegalArgumentException("At most " + Integer.MAX_VALUE / ID_BLOCK_SIZE + " locations are supported");
+        }
+        List<Shard> created = new ArrayList<>();
+        Map<String, Shard> index = new LinkedHashMap<>();
+        for (int i = 0; i < locations.size(); i++) {
+            String location = locations.get(i);
+            String prefix = "gym.db.shard." + location + ".";
+            String url = config.get(prefix + "url", "");
+            if (url.isEmpty()) {
+                throw new IllegalArgumentException(prefix + "url is not set");
+            }
+            if (index.containsKey(key(location))) {
+                throw new IllegalArgumentException("Location " + location + " is listed twice in gym.db.shards");
+            }
+            ConnectionPool pool = new ConnectionPool(DatabaseConnection.withDriverDefaults(url),
+                    config.get(prefix + "user", config.getUser()), config.get(prefix + "password", config.getPassword()),
+                    settings);
+            DaoMetrics.registerPool("shard-" + location, pool);
+            Shard shard = new Shard(i, location, url, pool);
+            created.add(shard);
+            index.put(key(location), shard);
+        }
+        this.shards = Collections.unmodifiableList(created);
+        this.byLocation = index;
+        this.executor = executor;
+        String defaultLocation = config.get("gym.db.defaultShard", "");
+        if (!defaultLocation.isEmpty()) {
+            this.defaultShard = forLocation(defaultLocation);
+        } else {
+            this.defaultShard = shards.isEmpty() ? null : shards.get(0);
+        }
+    }
+
+    /**
+     * @param location a location name, compared ignoring case
+     * @return the location's shard
+     * @throws IllegalArgumentException if the location is not configured
+     */
+    public Shard forLocation(String location) {
+        Shard shard = byLocation.get(key(location));
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown location: " + location);
+        }
+        return shard;
+    }
+
+    /**
+     * @param id a user, membership, class or booking id
+     * @return the shard that handed the id out, or null if no configured shard owns it
+     */
+    public Shard forId(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        int index = (id - 1) / ID_BLOCK_SIZE;
+        return index < shards.size() ? shards.get(index) : null;
+    }
+
+    /**
+     * Picks where a new row without an owning id goes, such as a user registration: the
+     * location the current thread is working for, otherwise {@code gym.db.defaultShard}
+     * (the first location if unset).
+     *
+     * @return the shard for new rows
+     */
+    public Shard forNewRows() {
+        Shard current = ShardContext.current();
+        return current != null ? current : defaultShard;
+    }
+
+    /**
+     * Splits rows by the shard owning each one.
+     *
+     * @param rows    the rows to split
+     * @param ownerId the id that decides a row's shard, e.g. its member id
+     * @param <T>     the row type
+     * @return rows per shard in input order; rows no shard owns are under the {@code null} key
+     */
+    public <T> Map<Shard, List<T>> groupById(Collection<T> rows, ToIntFunction<T> ownerId) {
+        Map<Shard, List<T>> groups = new LinkedHashMap<>();
+        for (T row : rows) {
+            groups.computeIfAbsent(forId(ownerId.applyAsInt(row)), shard -> new ArrayList<>()).add(row);
+        }
+        return groups;
+    }
+
+    /** @return every location, in configured order. */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Runs a call against one shard on the current thread.
+     *
+     * @param shard where the call's connections go
+     * @param call  the DAO call
+     * @param <T>   the result type
+     * @return the call's result
+     * @throws SQLException if the call fails
+     */
+    public <T> T onShard(Shard shard, ShardCall<T> call) throws SQLException {
+        try (ShardContext.Scope ignored = ShardContext.enter(shard)) {
+            return call.call();
+        }
+    }
+
+    /**
+     * Runs a call against every shard at once and waits for all of them.
+     *
+     * @param call the DAO call, run once per shard
+     * @param <T>  the result type
+     * @return each shard's result, in shard order
+     * @throws SQLException if any shard fails or times out
+     */
+    public <T> List<T> scatter(ShardCall<T> call) throws SQLException {
+        return scatter(shards, call);
+    }
+
+    /**
+     * Runs a call against the given shards at once and waits for all of them.
+     *
+     * @param targets the shards to query
+     * @param call    the DAO call, run once per shard
+     * @param <T>     the result type
+     * @return each shard's result, in the order of {@code targets}
+     * @throws SQLException if any shard fails or times out, after every shard has finished; the
+     *                      message names each failed location and the first failure is the cause
+     */
+    public <T> List<T> scatter(List<Shard> targets, ShardCall<T> call) throws SQLException {
+        if (targets.size() == 1) {
+            try {
+                return Collections.singletonList(onShard(targets.get(0), call));
+            } catch (SQLException e) {
+                throw shardsFailed(Collections.singletonList(targets.get(0).getLocation()), e);
+            }
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(executor.supply(() -> onShard(shard, call)));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        List<String> failedLocations = new ArrayList<>();
+        Throwable firstFailure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failedLocations.add(targets.get(i).getLocation());
+                if (firstFailure == null) {
+                    firstFailure = cause;
+                } else {
+                    firstFailure.addSuppressed(cause);
+                }
+            }
+        }
+        if (firstFailure != null) {
+            // A merge over the shards that did answer would pass for the whole result
+            throw shardsFailed(failedLocations, firstFailure);
+        }
+        return results;
+    }
+
+    /**
+     * Keeps the first failure's SQL state, so callers that act on it (e.g. a conflict) still can.
+     */
+    private static SQLException shardsFailed(List<String> locations, Throwable cause) {
+        String sqlState = cause instanceof SQLException ? ((SQLException) cause).getSQLState() : null;
+        return new SQLException("Query failed on shard" + (locations.size() == 1 ? " " : "s ")
+                + String.join(", ", locations) + ": " + cause.getMessage(), sqlState, cause);
+    }
+
+    /**
+     * Closes every shard pool.
+     */
+    public void close() {
+        for (Shard shard : shards) {
+            shard.pool.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("Shards [");
+        for (Shard shard : shards) {
+            if (shard.index > 0) {
+                summary.append(", ");
+            }
+            summary.append(shard.location).append(" ").append(shard.pool.getStats());
+        }
+        return summary.append("]").toString();
+    }
+
+    private static String key(String location) {
+        return location.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A DAO call to run against a shard.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface ShardCall<T> {
+        /**
+         * @return the call's result
+         * @throws SQLException if the call fails
+         */
+        T call() throws SQLException;
+    }
+
+    /**
+     * One location and its database.
+     */
+    public static final class Shard {
+        private final int index;
+        private final String location;
+        private final String url;
+        private final ConnectionPool pool;
+
+        private Shard(int index, String location, String url, ConnectionPool pool) {
+            this.index = index;
+            this.location = location;
+            this.url = url;
+            this.pool = pool;
+        }
+
+        /** @return position in {@code gym.db.shards}, which fixes the shard's id block. */
+        public int getIndex() {
+            return index;
+        }
+
+        /** @return the location name. */
+        public String getLocation() {
+            return location;
+        }
+
+        /** @return the shard's JDBC URL. */
+        public String getUrl() {
+            return url;
+        }
+
+        /** @return the first id in this shard's block. */
+        public int getFirstId() {
+            return index * ID_BLOCK_SIZE + 1;
+        }
+
+        /** @return the shard's connection pool statistics. */
+        public PoolStats getPoolStats() {
+            return pool.getStats();
+        }
+
+        ConnectionPool getPool() {
+            return pool;
+        }
+
+        @Override
+        public String toString() {
+            return location;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.keyin.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Detects slow SQL statements on the connections handed out by {@link DatabaseConnection}.
+ *
+ * <p>Wrapped connections return statement proxies that remember the SQL and bound parameters
+ * and time every {@code execute*} call. Statements over the threshold are written to a
+ * rotating log file with their parameters and timing. A sample of the slow SELECTs is then
+ * re-run as {@code EXPLAIN (ANALYZE, BUFFERS)} on a background thread, inside a read-only
+ * transaction that is rolled back, and the plan is appended to the same log. The EXPLAIN runs
+ * on a connection from the pool the slow statement's connection came from, so a query that was
+ * slow on a replica or a location's shard is planned there, against that database's data.</p>
+ *
+ * <p>Only the execute call is timed: for streamed result sets, time spent fetching later
+ * batches while iterating is not included.</p>
+ */
+public class SlowQueryLog {
+    private static final Logger LOG = Logger.getLogger("org.keyin.slowquery");
+    private static final int MAX_PARAMETER_LENGTH = 100;
+    private static final int EXPLAIN_QUEUE_CAPACITY = 16;
+
+    private final long thresholdNanos;
+    private final double explainSampleRate;
+    private final ThreadPoolExecutor explainExecutor;
+
+    private final LongAdder slowStatements = new LongAdder();
+    private final LongAdder explainsCaptured = new LongAdder();
+    private final LongAdder explainsDropped = new LongAdder();
+
+    /**
+     * Creates a slow-query log writing to a rotating file.
+     *
+     * @param thresholdMillis    statements taking at least this long are logged
+     * @param explainSampleRate  fraction (0..1) of slow SELECTs that get an EXPLAIN captured
+     * @param logFilePattern     {@link FileHandler} file pattern, e.g. {@code logs/slow-queries.%g.log}
+     */
+    public SlowQueryLog(long thresholdMillis, double explainSampleRate, String logFilePattern) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explainSampleRate = Math.max(0, Math.min(1, explainSampleRate));
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EXPLAIN_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> explainsDropped.increment());
+        configureLogFile(logFilePattern);
+    }
+
+    private static synchronized void configureLogFile(String pattern) {
+        if (LOG.getHandlers().length > 0) {
+            return;
+        }
+        try {
+            File parent = new File(pattern).getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            FileHandler handler = new FileHandler(pattern, 5 * 1024 * 1024, 5, true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return Instant.ofEpochMilli(record.getMillis()) + " " + record.getMessage() + System.lineSeparator();
+                }
+            });
+            LOG.addHandler(handler);
+            LOG.setUseParentHandlers(false);
+        } catch (IOException e) {
+            System.out.println("Could not open slow query log " + pattern + ", logging to the console instead: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wraps a connection so its statements are timed.
+     *
+     * @param connection the connection to wrap
+     * @param source     the pool it was borrowed from, used for EXPLAIN runs; null skips EXPLAIN
+     * @return a connection that reports slow statements
+     */
+    public Connection wrap(Connection connection, ConnectionPool source) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, source));
+    }
+
+    /** @return statements logged as slow since start */
+    public long getSlowStatementCount() {
+        return slowStatements.sum();
+    }
+
+    /** @return EXPLAIN plans written to the log */
+    public long getExplainsCaptured() {
+        return explainsCaptured.sum();
+    }
+
+    /** @return EXPLAIN runs skipped because the background queue was full */
+    public long getExplainsDropped() {
+        return explainsDropped.sum();
+    }
+
+    /**
+     * Stops the background EXPLAIN thread.
+     */
+    public void close() {
+        explainExecutor.shutdownNow();
+    }
+
+    private void record(ConnectionPool source, String sql, Object[] parameters, long nanos, boolean failed) {
+        if (nanos < thresholdNanos || sql == null) {
+            return;
+        }
+        slowStatements.increment();
+        LOG.warning(String.format(Locale.ROOT, "SLOW %.1fms%s sql=[%s] params=%s",
+                nanos / 1_000_000.0, failed ? " (failed)" : "", sql, describe(parameters)));
+
+        if (!failed && source != null && isSelect(sql) && ThreadLocalRandom.current().nextDouble() < explainSampleRate) {
+            explainExecutor.execute(() -> explain(source, sql, parameters));
+        }
+    }
+
+    private void explain(ConnectionPool source, String sql, Object[] parameters) {
+        // A lease straight from the pool, not a wrapped one, so the EXPLAIN is never logged itself
+        Connection conn;
+        try {
+            conn = source.getConnection();
+        } catch (SQLException e) {
+            LOG.warning("EXPLAIN skipped for sql=[" + sql + "]: " + e.getMessage());
+            return;
+        }
+        StringBuilder plan = new StringBuilder();
+        try (Connection c = conn) {
+            c.setAutoCommit(false);
+            c.setReadOnly(true);
+            try (PreparedStatement stmt = c.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+                if (parameters != null) {
+                    for (int i = 1; i < parameters.length; i++) {
+                        stmt.setObject(i, parameters[i]);
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(System.lineSeparator()).append("    ").append(rs.getString(1));
+                    }
+                }
+            } finally {
+                c.rollback();
+            }
+            explainsCaptured.increment();
+            LOG.warning("EXPLAIN sql=[" + sql + "] params=" + describe(parameters) + plan);
+        } catch (SQLException e) {
+            LOG.warning("EXPLAIN failed for sql=[" + sql + "]: " + e.getMessage());
+        }
+    }
+
+    private static boolean isSelect(String sql) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, "SELECT", 0, 6);
+    }
+
+    /**
+     * Formats bound parameters for the log, truncating long values and hiding password hashes.
+     */
+    private static String describe(Object[] parameters) {
+        if (parameters == null || parameters.length <= 1) {
+            return "[]";
+        }
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 1; i < parameters.length; i++) {
+            if (i > 1) {
+                out.append(", ");
+            }
+            Object value = parameters[i];
+            if (value instanceof String) {
+                String text = (String) value;
+                if (text.startsWith("$2") && text.length() == 60) {
+                    out.append("<redacted>");
+                } else {
+                    out.append('\'').append(text.length() > MAX_PARAMETER_LENGTH
+                            ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text).append('\'');
+                }
+            } else {
+                out.append(value);
+            }
+        }
+        return out.append(']').toString();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Hands out timed statements from the wrapped connection.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final ConnectionPool source;
+
+        private ConnectionHandler(Connection target, ConnectionPool source) {
+            this.target = target;
+            this.source = source;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object result = SlowQueryLog.invoke(target, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                        new StatementHandler((Statement) result, sql, proxy, source));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Captures parameters and times executions on one statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final Object connectionProxy;
+        private final ConnectionPool source;
+        private Object[] parameters;
+        private int highestIndex;
+
+        private StatementHandler(Statement target, String preparedSql, Object connectionProxy, ConnectionPool source) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.connectionProxy = connectionProxy;
+            this.source = source;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && preparedSql != null) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters = null;
+                highestIndex = 0;
+            } else if (name.equals("getConnection")) {
+                return connectionProxy;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.startsWith("execute")) {
+                boolean adHoc = args != null && args.length > 0 && args[0] instanceof String;
+                String sql = adHoc ? (String) args[0] : preparedSql;
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    Object result = SlowQueryLog.invoke(target, method, args);
+                    failed = false;
+                    return result;
+                } finally {
+                    record(source, sql, adHoc ? null : boundParameters(), System.nanoTime() - start, failed);
+                }
+            }
+            return SlowQueryLog.invoke(target, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (parameters == null) {
+                parameters = new Object[Math.max(index + 1, 8)];
+            } else if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            parameters[index] = value;
+            highestIndex = Math.max(highestIndex, index);
+        }
+
+        /**
+         * @return bound values indexed from 1, trimmed to the highest bound index
+         */
+        private Object[] boundParameters() {
+            return parameters == null ? null : Arrays.copyOf(parameters, highestIndex + 1);
+        }
+    }
+}
@@ -6,9 +6,16 @@ import java.time.LocalDate;
 /**
  * Represents a gym membership associated with a specific member.
  * Includes membership details such as type, description, cost,
- * membership period, and on-hold status.
+ * membership period, on-hold flag and lifecycle status.
  */
 public class Membership {
+    /** Status of a membership that is current and usable. */
+    public static final String STATUS_ACTIVE = "active";
+    /** Status of a membership that is paused. */
+    public static final String STATUS_ON_HOLD = "on hold";
+    /** Status of a membership whose end date has passed. */
+    public static final String STATUS_EXPIRED = "expired";
+
     private int membershipId;
     private String membershipType;
     private String membershipDescription;
@@ -17,6 +24,8 @@ public class Membership {
     private LocalDate startDate;
     private LocalDate endDate;
     private boolean isOnHold;
+    private String status;
+    private String paymentMethod;
 
     /**
      * Constructor with ID, used when retrieving membership records from the database.
@@ -178,6 +187,35 @@ public class Membership {
         isOnHold = onHold;
     }
 
+    /**
+     * @return lifecycle status ({@link #STATUS_ACTIVE}, {@link #STATUS_ON_HOLD} or {@link #STATUS_EXPIRED}),
+     *         or null if it has not been saved yet
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status set the lifecycle status
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * @return how the membership was paid for (e.g., Card, Cash), or null if not recorded
+     */
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    /**
+     * @param paymentMethod set how the membership was paid for
+     */
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
     /**
      * Returns a readable string describing the membership.
      *
@@ -192,6 +230,8 @@ public class Membership {
                ", Member ID: " + memberId +
                ", Start Date: " + (startDate != null ? startDate : "N/A") +
                ", End Date: " + (endDate != null ? endDate : "N/A") +
-               ", On Hold: " + (isOnHold ? "Yes" : "No");
+               ", On Hold: " + (isOnHold ? "Yes" : "No") +
+               ", Status: " + (status != null ? status : "N/A") +
+               ", Payment Method: " + (paymentMethod != null ? paymentMethod : "N/A");
     }
 }
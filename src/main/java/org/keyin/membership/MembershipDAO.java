@@ -1,7 +1,15 @@
 // MembershipDAO.java
 package org.keyin.membership;
 
+import org.keyin.database.BatchInsertResult;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Interface defining data access methods for Membership operations.
@@ -11,27 +19,100 @@ import java.util.List;
 public interface MembershipDAO {
 
     /**
-     * Adds a new membership to the database.
+     * Adds a new membership to the database and stores the generated ID on it.
      * @param membership the Membership object to add
+     * @return the new membership's ID, or -1 if the insert failed
+     */
+    int addMembership(Membership membership);
+
+    /**
+     * Adds many memberships using batched inserts, committing one chunk at a time.
+     * @param memberships the memberships to insert
+     * @param chunkSize number of rows per transaction
+     * @return rows inserted and any chunks that failed
      */
-    void addMembership(Membership membership);
+    BatchInsertResult addMemberships(Collection<Membership> memberships, int chunkSize);
 
     /**
      * Retrieves all memberships in the system.
      * @return a list of all Membership objects
+     * @throws SQLException if the memberships cannot be read
+     */
+    List<Membership> getAllMemberships() throws SQLException;
+
+    /**
+     * Streams every membership to a callback as rows arrive, using a server-side cursor
+     * so memory use stays constant no matter how many memberships exist.
+     * @param fetchSize number of rows fetched from the database per round trip
+     * @param rowHandler callback invoked once per membership, in membership ID order
+     * @throws SQLException if the memberships cannot be read; rows handed over before the
+     *         failure are not retracted
      */
-    List<Membership> getAllMemberships();
+    void streamAllMemberships(int fetchSize, Consumer<Membership> rowHandler) throws SQLException;
 
     /**
      * Retrieves all memberships associated with a specific member.
      * @param memberId the ID of the member
      * @return a list of memberships tied to the given member ID
+     * @throws SQLException if the memberships cannot be read
      */
-    List<Membership> getMembershipsByMemberId(int memberId);
+    List<Membership> getMembershipsByMemberId(int memberId) throws SQLException;
+
+    /**
+     * Retrieves the memberships of many members in one query.
+     * @param memberIds the IDs of the members; duplicates are ignored
+     * @return memberships grouped by member ID, with an empty list for members that have none
+     * @throws SQLException if the memberships cannot be read
+     */
+    Map<Integer, List<Membership>> getMembershipsByMemberIds(Collection<Integer> memberIds) throws SQLException;
 
     /**
      * Calculates total revenue generated from all memberships.
      * @return total revenue as a double
+     * @throws SQLException if the revenue cannot be read
+     */
+    double getTotalRevenue() throws SQLException;
+
+    /**
+     * Calculates total revenue with exact decimal arithmetic.
+     * @return total revenue as a BigDecimal
+     * @throws SQLException if the revenue cannot be read; a partial sum is never returned
+     */
+    BigDecimal getTotalRevenueExact() throws SQLException;
+
+    /**
+     * Computes revenue totals grouped by the given dimension inside the database.
+     * @param grouping the dimension to group by
+     * @return one breakdown row per group, ordered by group key
+     * @throws SQLException if the revenue cannot be read
+     */
+    List<RevenueBreakdown> getRevenueGroupedBy(RevenueGrouping grouping) throws SQLException;
+
+    /**
+     * Marks up to {@code limit} active memberships that ended before {@code asOf} as expired,
+     * in one short transaction. Rows locked by other transactions are skipped, not waited for.
+     * @param asOf the first day a membership must still cover to stay active
+     * @param limit maximum number of rows to update per transaction
+     * @return the number of memberships expired; a sharded DAO drains every shard in chunks of
+     *         {@code limit} and may return more, with nothing left to expire
+     * @throws SQLException if the update fails
+     */
+    int expireMemberships(LocalDate asOf, int limit) throws SQLException;
+
+    /**
+     * Returns up to {@code limit} memberships whose hold has been lifted from "on hold" to active,
+     * in one short transaction. Rows locked by other transactions are skipped, not waited for.
+     * @param limit maximum number of rows to update per transaction
+     * @return the number of memberships reactivated; a sharded DAO drains every shard and may
+     *         return more than {@code limit}
+     * @throws SQLException if the update fails
+     */
+    int reactivateReleasedHolds(int limit) throws SQLException;
+
+    /**
+     * Rebuilds the revenue summary table from the memberships table,
+     * e.g. after rows were loaded with triggers disabled or truncated.
+     * @throws SQLException if the rebuild fails; the old summary is kept
      */
-    double getTotalRevenue();
+    void rebuildRevenueSummary() throws SQLException;
 } 
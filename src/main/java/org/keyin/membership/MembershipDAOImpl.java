@@ -1,11 +1,23 @@
 // MembershipDAOImpl.java
 package org.keyin.membership;
 
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.BatchInserter;
 import org.keyin.database.DatabaseConnection;
+import org.keyin.database.Projection;
+import org.keyin.database.RowMapper;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the MembershipDAO interface.
@@ -14,13 +26,34 @@ import java.util.List;
  */
 public class MembershipDAOImpl implements MembershipDAO {
 
+    private static final Projection MEMBERSHIP_COLUMNS = Projection.of(
+            "membership_id", "membership_type", "membership_description", "membership_cost",
+            "member_id", "start_date", "end_date", "is_on_hold", "status", "payment_method");
+
+    private static final RowMapper<Membership> MEMBERSHIP_MAPPER = membershipMapper(MEMBERSHIP_COLUMNS);
+
+    /**
+     * Expires one chunk; parameters are the as-of date twice, the chunk size and the as-of date again.
+     * {@code start_date < ?} is implied by {@code end_date < ?} (end never precedes start), but
+     * only a condition on the partition key lets PostgreSQL skip the months starting after the
+     * cutoff, both when picking rows and when updating them. The UPDATE joins on the full primary
+     * key so each row is found through its own partition's index.
+     */
+    public static final String EXPIRE_SQL = "WITH due AS (" +
+            "SELECT membership_id, start_date FROM memberships WHERE status = 'active' AND end_date < ? AND start_date < ? " +
+            "ORDER BY end_date LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "UPDATE memberships m SET status = 'expired' FROM due " +
+            "WHERE m.membership_id = due.membership_id AND m.start_date = due.start_date AND m.start_date < ?";
+
     /**
- * Adds a new membership to the database.
+ * Adds a new membership to the database and stores the generated ID on it.
+ * The ID comes back from the INSERT itself via RETURNING, so no follow-up query is needed.
  * @param membership the Membership object to insert
+ * @return the new membership's ID, or -1 if the insert failed
  */
 @Override
-public void addMembership(Membership membership) {
-    String sql = "INSERT INTO memberships (membership_type, membership_description, membership_cost, member_id, start_date, end_date, is_on_hold) VALUES (?, ?, ?, ?, ?, ?, ?)";
+public int addMembership(Membership membership) {
+    String sql = "INSERT INTO memberships (membership_type, membership_description, membership_cost, member_id, start_date, end_date, is_on_hold, status, payment_method) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING membership_id";
     try (Connection conn = DatabaseConnection.getConnection();
          PreparedStatement pstmt = conn.prepareStatement(sql)) {
         pstmt.setString(1, membership.getMembershipType());
@@ -30,94 +63,312 @@ public void addMembership(Membership membership) {
         pstmt.setDate(5, java.sql.Date.valueOf(membership.getStartDate()));
         pstmt.setDate(6, java.sql.Date.valueOf(membership.getEndDate()));
         pstmt.setBoolean(7, membership.isOnHold());
-        pstmt.executeUpdate();
+        pstmt.setString(8, initialStatus(membership));
+        pstmt.setString(9, membership.getPaymentMethod());
+        try (ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            membership.setMembershipId(rs.getInt(1));
+            membership.setStatus(initialStatus(membership));
+            return membership.getMembershipId();
+        }
     } catch (SQLException e) {
         e.printStackTrace();
+        return -1;
     }
 }
 
+    /**
+     * Adds many memberships in batched, chunked transactions on one connection.
+     * @param memberships the memberships to insert
+     * @param chunkSize number of rows per transaction
+     * @return rows inserted and any chunks that failed
+     */
+    @Override
+    public BatchInsertResult addMemberships(Collection<Membership> memberships, int chunkSize) {
+        String sql = "INSERT INTO memberships (membership_type, membership_description, membership_cost, member_id, start_date, end_date, is_on_hold, status, payment_method) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return BatchInserter.insertInChunks(conn, sql, memberships, chunkSize, (pstmt, membership) -> {
+                pstmt.setString(1, membership.getMembershipType());
+                pstmt.setString(2, membership.getMembershipDescription());
+                pstmt.setDouble(3, membership.getMembershipCost());
+                pstmt.setInt(4, membership.getMemberId());
+                pstmt.setDate(5, java.sql.Date.valueOf(membership.getStartDate()));
+                pstmt.setDate(6, java.sql.Date.valueOf(membership.getEndDate()));
+                pstmt.setBoolean(7, membership.isOnHold());
+                pstmt.setString(8, initialStatus(membership));
+                pstmt.setString(9, membership.getPaymentMethod());
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            BatchInsertResult result = new BatchInsertResult(memberships.size());
+            result.recordFailure(0, 0, memberships.size(), e);
+            return result;
+        }
+    }
+
     /**
      * Retrieves all memberships in the database.
      * @return a list of all Membership objects
+     * @throws SQLException if the query fails
      */
     @Override
-public List<Membership> getAllMemberships() {
-    List<Membership> memberships = new ArrayList<>();
-    String sql = "SELECT * FROM memberships";
+public List<Membership> getAllMemberships() throws SQLException {
+    String sql = "SELECT " + MEMBERSHIP_COLUMNS.columns() + " FROM memberships";
 
-    try (Connection conn = DatabaseConnection.getConnection();
+    try (Connection conn = DatabaseConnection.getReadConnection();
          Statement stmt = conn.createStatement();
          ResultSet rs = stmt.executeQuery(sql)) {
-        while (rs.next()) {
-            memberships.add(new Membership(
-                    rs.getInt("membership_id"),
-                    rs.getString("membership_type"),
-                    rs.getString("membership_description"),
-                    rs.getDouble("membership_cost"),
-                    rs.getInt("member_id"),
-                    rs.getDate("start_date").toLocalDate(),
-                    rs.getDate("end_date").toLocalDate(),
-                    rs.getBoolean("is_on_hold")
-            ));
-        }
-    } catch (SQLException e) {
-        e.printStackTrace();
+        return RowMapper.toList(rs, MEMBERSHIP_MAPPER);
     }
-    return memberships;
 }
 
+    /**
+     * Streams all memberships through a server-side cursor. PostgreSQL only honours the
+     * fetch size inside a transaction, so autocommit is switched off for the scan.
+     * @param fetchSize number of rows fetched per round trip
+     * @param rowHandler callback invoked once per membership
+     * @throws SQLException if the query fails
+     */
+    @Override
+    public void streamAllMemberships(int fetchSize, Consumer<Membership> rowHandler) throws SQLException {
+        String sql = "SELECT " + MEMBERSHIP_COLUMNS.columns() + " FROM memberships ORDER BY membership_id";
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setFetchSize(fetchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    RowMapper.forEach(rs, MEMBERSHIP_MAPPER, rowHandler);
+                }
+            }
+            conn.commit();
+        }
+    }
 
     /**
      * Retrieves memberships associated with a specific member.
      * @param memberId the ID of the member
      * @return a list of memberships belonging to the member
+     * @throws SQLException if the query fails
      */
     @Override
-public List<Membership> getMembershipsByMemberId(int memberId) {
-    List<Membership> memberships = new ArrayList<>();
-    String sql = "SELECT * FROM memberships WHERE member_id = ?";
+public List<Membership> getMembershipsByMemberId(int memberId) throws SQLException {
+    String sql = "SELECT " + MEMBERSHIP_COLUMNS.columns() + " FROM memberships WHERE member_id = ?";
 
-    try (Connection conn = DatabaseConnection.getConnection();
+    try (Connection conn = DatabaseConnection.getReadConnection();
          PreparedStatement pstmt = conn.prepareStatement(sql)) {
         pstmt.setInt(1, memberId);
-        ResultSet rs = pstmt.executeQuery();
-        while (rs.next()) {
-            memberships.add(new Membership(
-                    rs.getInt("membership_id"),
-                    rs.getString("membership_type"),
-                    rs.getString("membership_description"),
-                    rs.getDouble("membership_cost"),
-                    rs.getInt("member_id"),
-                    rs.getDate("start_date").toLocalDate(),
-                    rs.getDate("end_date").toLocalDate(),
-                    rs.getBoolean("is_on_hold")
-            ));
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return RowMapper.toList(rs, MEMBERSHIP_MAPPER);
         }
-    } catch (SQLException e) {
-        e.printStackTrace();
     }
-    return memberships;
 }
 
+    /**
+     * Retrieves the memberships of many members with a single {@code member_id = ANY(?)} query,
+     * so a roster of N members costs one round trip instead of N.
+     * @param memberIds the IDs of the members; duplicates are ignored
+     * @return memberships grouped by member ID in the order the IDs were given,
+     *         with an empty list for members that have none
+     * @throws SQLException if the query fails
+     */
+    @Override
+    public Map<Integer, List<Membership>> getMembershipsByMemberIds(Collection<Integer> memberIds) throws SQLException {
+        Set<Integer> uniqueIds = new LinkedHashSet<>(memberIds);
+        Map<Integer, List<Membership>> byMember = new LinkedHashMap<>();
+        for (Integer memberId : uniqueIds) {
+            byMember.put(memberId, new ArrayList<>());
+        }
+        if (uniqueIds.isEmpty()) {
+            return byMember;
+        }
+
+        String sql = "SELECT " + MEMBERSHIP_COLUMNS.columns() + " FROM memberships WHERE member_id = ANY(?) ORDER BY member_id, membership_id";
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            Array ids = conn.createArrayOf("integer", uniqueIds.toArray());
+            try {
+                pstmt.setArray(1, ids);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    RowMapper.forEach(rs, MEMBERSHIP_MAPPER,
+                            membership -> byMember.get(membership.getMemberId()).add(membership));
+                }
+            } finally {
+                ids.free();
+            }
+        }
+        return byMember;
+    }
 
     /**
      * Calculates the total revenue earned from all memberships.
+     * Reads the trigger-maintained summary table, so the cost is per group, not per membership.
      * @return the sum of membership costs as a double
+     * @throws SQLException if the query fails
      */
     @Override
-    public double getTotalRevenue() {
-        double totalRevenue = 0;
-        String sql = "SELECT SUM(membership_cost) AS total FROM memberships";
+    public double getTotalRevenue() throws SQLException {
+        return getTotalRevenueExact().doubleValue();
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
+    /**
+     * Calculates the total revenue as an exact decimal from the summary table.
+     * @return the sum of membership costs, or zero if there are none
+     * @throws SQLException if the query fails
+     */
+    @Override
+    public BigDecimal getTotalRevenueExact() throws SQLException {
+        String sql = "SELECT COALESCE(SUM(total_revenue), 0) AS total FROM membership_revenue_summary";
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getBigDecimal("total");
+        }
+    }
+
+    /**
+     * Groups revenue by the requested dimension using the summary table.
+     * The grouping expression comes from the {@link RevenueGrouping} enum, never from user input.
+     * @param grouping the dimension to group by
+     * @return one breakdown row per group, ordered by group key
+     * @throws SQLException if the query fails
+     */
+    @Override
+    public List<RevenueBreakdown> getRevenueGroupedBy(RevenueGrouping grouping) throws SQLException {
+        List<RevenueBreakdown> breakdown = new ArrayList<>();
+        String groupExpression = grouping.getColumnExpression();
+        String sql = "SELECT " + groupExpression + " AS group_key, SUM(membership_count) AS membership_count, " +
+                "SUM(total_revenue) AS total_revenue FROM membership_revenue_summary " +
+                "GROUP BY " + groupExpression + " ORDER BY group_key";
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                totalRevenue = rs.getDouble("total");
+            while (rs.next()) {
+                breakdown.add(new RevenueBreakdown(
+                        rs.getString("group_key"),
+                        rs.getLong("membership_count"),
+                        rs.getBigDecimal("total_revenue")));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return totalRevenue;
+        return breakdown;
+    }
+
+    /**
+     * Recomputes the summary table from scratch in one transaction.
+     * @throws SQLException if the rebuild fails and was rolled back
+     */
+    @Override
+    public void rebuildRevenueSummary() throws SQLException {
+        String deleteSql = "DELETE FROM membership_revenue_summary";
+        String rebuildSql = "INSERT INTO membership_revenue_summary (membership_type, revenue_month, payment_method, membership_count, total_revenue) " +
+                "SELECT membership_type, date_trunc('month', start_date)::DATE, COALESCE(payment_method, 'Unspecified'), COUNT(*), SUM(membership_cost) " +
+                "FROM memberships GROUP BY 1, 2, 3";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            try {
+                stmt.executeUpdate(deleteSql);
+                stmt.executeUpdate(rebuildSql);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Expires one chunk of active memberships past their end date.
+     * The CTE picks at most {@code limit} rows through the partial index on active end dates and
+     * locks them with SKIP LOCKED, so the statement never queues behind a member's own update
+     * and two sweepers running at once split the work instead of blocking each other.
+     * @param asOf the first day a membership must still cover to stay active
+     * @param limit maximum number of rows to update
+     * @return the number of memberships expired
+     * @throws SQLException if the update fails
+     */
+    @Override
+    public int expireMemberships(LocalDate asOf, int limit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EXPIRE_SQL)) {
+            pstmt.setObject(1, asOf);
+            pstmt.setObject(2, asOf);
+            pstmt.setInt(3, limit);
+            pstmt.setObject(4, asOf);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reactivates one chunk of memberships still marked "on hold" whose hold flag has been cleared.
+     * Uses the same LIMIT + SKIP LOCKED shape as {@link #expireMemberships(LocalDate, int)}; a
+     * reactivated membership that has already ended is expired by the next expiry chunk.
+     * @param limit maximum number of rows to update
+     * @return the number of memberships reactivated
+     * @throws SQLException if the update fails
+     */
+    @Override
+    public int reactivateReleasedHolds(int limit) throws SQLException {
+        String sql = "WITH released AS (" +
+                "SELECT membership_id, start_date FROM memberships WHERE status = 'on hold' AND NOT is_on_hold " +
+                "LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                "UPDATE memberships m SET status = 'active' FROM released " +
+                "WHERE m.membership_id = released.membership_id AND m.start_date = released.start_date";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            return pstmt.executeUpdate();
+        }
     }
-} 
+
+    /**
+     * Status a membership is saved with: the one already set on it, otherwise derived from its hold flag.
+     * @param membership the membership being inserted
+     * @return the status to store
+     */
+    private static String initialStatus(Membership membership) {
+        if (membership.getStatus() != null) {
+            return membership.getStatus();
+        }
+        return membership.isOnHold() ? Membership.STATUS_ON_HOLD : Membership.STATUS_ACTIVE;
+    }
+
+    /**
+     * Builds a mapper for {@link Membership} rows over the given projection,
+     * resolving column indexes once.
+     * @param columns the projection the query selects
+     * @return a reusable row mapper
+     */
+    private static RowMapper<Membership> membershipMapper(Projection columns) {
+        int idIndex = columns.index("membership_id");
+        int typeIndex = columns.index("membership_type");
+        int descriptionIndex = columns.index("membership_description");
+        int costIndex = columns.index("membership_cost");
+        int memberIndex = columns.index("member_id");
+        int startIndex = columns.index("start_date");
+        int endIndex = columns.index("end_date");
+        int onHoldIndex = columns.index("is_on_hold");
+        int statusIndex = columns.index("status");
+        int paymentMethodIndex = columns.index("payment_method");
+
+        return rs -> {
+            Membership membership = new Membership(
+                    rs.getInt(idIndex),
+                    rs.getString(typeIndex),
+                    rs.getString(descriptionIndex),
+                    rs.getDouble(costIndex),
+                    rs.getInt(memberIndex),
+                    rs.getObject(startIndex, LocalDate.class),
+                    rs.getObject(endIndex, LocalDate.class),
+                    rs.getBoolean(onHoldIndex)
+            );
+            membership.setStatus(rs.getString(statusIndex));
+            membership.setPaymentMethod(rs.getString(paymentMethodIndex));
+            return membership;
+        };
+    }
+}
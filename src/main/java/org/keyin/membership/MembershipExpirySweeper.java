@@ -0,0 +1,189 @@
+package org.keyin.membership;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background job that keeps {@code memberships.status} in step with the calendar and hold flag.
+ * Each run first returns released holds to active, then expires active memberships whose end
+ * date has passed. Both transitions run as a series of small set-based UPDATEs of at most
+ * {@code chunkSize} rows, each in its own transaction, so row locks are held for milliseconds
+ * and a backlog of any size is worked through without one long-running statement.
+ *
+ * <p>The scheduled instance is configured with {@code -Dgym.membership.sweepIntervalMinutes}
+ * (default 60, 0 disables scheduling) and {@code -Dgym.membership.sweepChunkSize} (default 1000).
+ * Scheduled runs that change rows are logged at {@code FINE} to the {@code org.keyin.membership.sweeper}
+ * logger, failed runs at {@code WARNING}, so the console menu is not interrupted by routine runs.</p>
+ */
+public class MembershipExpirySweeper {
+    private static final Logger LOG = Logger.getLogger("org.keyin.membership.sweeper");
+
+    /** Rows updated per transaction when no chunk size is configured. */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final MembershipDAO membershipDAO;
+    private final int chunkSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLong totalReactivated = new AtomicLong();
+    private volatile SweepResult lastResult;
+
+    /**
+     * Creates a sweeper. Nothing runs until {@link #start(long)} or {@link #runOnce()} is called.
+     *
+     * @param membershipDAO DAO that performs the chunked status updates
+     * @param chunkSize     maximum rows changed per transaction
+     */
+    public MembershipExpirySweeper(MembershipDAO membershipDAO, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        this.membershipDAO = membershipDAO;
+        this.chunkSize = chunkSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "membership-expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a sweeper from the {@code gym.membership.*} system properties and schedules it,
+     * unless the interval is 0.
+     *
+     * @param membershipDAO DAO that performs the chunked status updates
+     * @return the sweeper, scheduled or not
+     */
+    public static MembershipExpirySweeper startDefault(MembershipDAO membershipDAO) {
+        MembershipExpirySweeper sweeper = new MembershipExpirySweeper(membershipDAO,
+                Integer.getInteger("gym.membership.sweepChunkSize", DEFAULT_CHUNK_SIZE));
+        long intervalMinutes = Long.getLong("gym.membership.sweepIntervalMinutes", 60);
+        if (intervalMinutes > 0) {
+            sweeper.start(TimeUnit.MINUTES.toMillis(intervalMinutes));
+        }
+        return sweeper;
+    }
+
+    /**
+     * Runs the sweep now and then every {@code intervalMillis} after the previous run finishes.
+     *
+     * @param intervalMillis delay between runs, in milliseconds
+     */
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::runScheduled, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops scheduled runs and interrupts one in progress between chunks.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Runs one sweep on the calling thread. Runs are serialized, so a manual run never
+     * overlaps the scheduled one.
+     *
+     * @return what the run changed and how long it took
+     */
+    public synchronized SweepResult runOnce() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDate today = startedAt.toLocalDate();
+        long start = System.nanoTime();
+        int reactivated = 0;
+        int expired = 0;
+        int chunks = 0;
+        String error = null;
+
+        try {
+            // Reactivate first: a released hold that has also run out is then expired in the same run.
+            int updated;
+            do {
+                updated = membershipDAO.reactivateReleasedHolds(chunkSize);
+                reactivated += updated;
+                chunks++;
+            } while (updated == chunkSize && !Thread.currentThread().isInterrupted());
+
+            do {
+                updated = membershipDAO.expireMemberships(today, chunkSize);
+                expired += updated;
+                chunks++;
+            } while (updated == chunkSize && !Thread.currentThread().isInterrupted());
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Membership expiry sweep failed", e);
+            error = e.getMessage();
+        }
+        if (error == null && Thread.currentThread().isInterrupted()) {
+            error = "interrupted";
+        }
+
+        SweepResult result = new SweepResult(startedAt, expired, reactivated, chunks,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), error);
+        runs.incrementAndGet();
+        totalExpired.addAndGet(expired);
+        totalReactivated.addAndGet(reactivated);
+        lastResult = result;
+        return result;
+    }
+
+    /**
+     * Scheduled entry point; logs runs that changed something or failed.
+     */
+    private void runScheduled() {
+        try {
+            SweepResult result = runOnce();
+            if (!result.isSuccessful()) {
+                LOG.warning("Membership expiry sweep: " + result);
+            } else if (result.getRowsProcessed() > 0) {
+                LOG.fine("Membership expiry sweep: " + result);
+            }
+        } catch (RuntimeException e) {
+            // An escaped exception would cancel every future run.
+            LOG.log(Level.WARNING, "Membership expiry sweep failed", e);
+        }
+    }
+
+    /**
+     * @return the most recent run, or null if none has completed
+     */
+    public SweepResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * @return number of completed runs
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    /**
+     * @return memberships expired across all runs
+     */
+    public long getTotalExpired() {
+        return totalExpired.get();
+    }
+
+    /**
+     * @return memberships reactivated across all runs
+     */
+    public long getTotalReactivated() {
+        return totalReactivated.get();
+    }
+
+    /**
+     * @return maximum rows changed per transaction
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -1,7 +1,17 @@
 // MembershipService.java
 package org.keyin.membership;
 
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.utils.AsyncServiceExecutor;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Service class for handling high-level membership-related operations.
@@ -10,47 +20,223 @@ import java.util.List;
 public class MembershipService {
 
     private MembershipDAO membershipDAO;
+    private final AsyncServiceExecutor asyncExecutor;
 
     /**
      * Constructs a MembershipService with the provided DAO implementation.
      * @param membershipDAO the DAO to use for membership data access
      */
     public MembershipService(MembershipDAO membershipDAO) {
+        this(membershipDAO, AsyncServiceExecutor.shared());
+    }
+
+    /**
+     * Constructs a MembershipService whose *Async methods run on the given executor.
+     * @param membershipDAO the DAO to use for membership data access
+     * @param asyncExecutor executor that runs the *Async methods
+     */
+    public MembershipService(MembershipDAO membershipDAO, AsyncServiceExecutor asyncExecutor) {
         this.membershipDAO = membershipDAO;
+        this.asyncExecutor = asyncExecutor;
     }
 
     /**
      * Adds a new membership to the system. Typically used by trainers or members.
      * @param membership the Membership object containing membership details
+     * @return the new membership's ID, or -1 if the purchase could not be saved
+     */
+    public int buyMembership(Membership membership) {
+        return membershipDAO.addMembership(membership);
+    }
+
+    /**
+     * Adds many memberships at once, e.g. when migrating from another system.
+     * @param memberships the memberships to insert
+     * @return rows inserted and any chunks that failed
      */
-    public void buyMembership(Membership membership) {
-        membershipDAO.addMembership(membership);
+    public BatchInsertResult addMemberships(Collection<Membership> memberships) {
+        return membershipDAO.addMemberships(memberships, DatabaseConnection.DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    /**
+     * Adds many memberships at once using a custom chunk size.
+     * @param memberships the memberships to insert
+     * @param chunkSize number of rows per transaction
+     * @return rows inserted and any chunks that failed
+     */
+    public BatchInsertResult addMemberships(Collection<Membership> memberships, int chunkSize) {
+        return membershipDAO.addMemberships(memberships, chunkSize);
     }
 
     /**
      * Retrieves all memberships in the system. Typically used by admin users.
      * @return a list of all Membership objects
+     * @throws SQLException if a database error occurs
      */
-    public List<Membership> getAllMemberships() {
+    public List<Membership> getAllMemberships() throws SQLException {
         return membershipDAO.getAllMemberships();
     }
 
+    /**
+     * Streams all memberships to a callback as they are read, so the admin
+     * screen can print rows without loading every membership first.
+     * @param rowHandler callback invoked once per membership
+     * @throws SQLException if a database error occurs
+     */
+    public void streamAllMemberships(Consumer<Membership> rowHandler) throws SQLException {
+        membershipDAO.streamAllMemberships(DatabaseConnection.DEFAULT_FETCH_SIZE, rowHandler);
+    }
+
+    /**
+     * Streams all memberships to a callback using a custom cursor fetch size.
+     * @param fetchSize number of rows fetched per database round trip
+     * @param rowHandler callback invoked once per membership
+     * @throws SQLException if a database error occurs
+     */
+    public void streamAllMemberships(int fetchSize, Consumer<Membership> rowHandler) throws SQLException {
+        membershipDAO.streamAllMemberships(fetchSize, rowHandler);
+    }
+
     /**
      * Retrieves memberships belonging to a specific member.
      * Used by trainers or members to view a user's memberships.
      * @param memberId the ID of the user
      * @return a list of Memberships for that user
+     * @throws SQLException if a database error occurs
      */
-    public List<Membership> getMembershipsByMemberId(int memberId) {
+    public List<Membership> getMembershipsByMemberId(int memberId) throws SQLException {
         return membershipDAO.getMembershipsByMemberId(memberId);
     }
 
+    /**
+     * Retrieves the memberships of many members at once, e.g. for a front-desk roster.
+     * Use this instead of calling {@link #getMembershipsByMemberId(int)} in a loop.
+     * @param memberIds the IDs of the members
+     * @return memberships grouped by member ID, with an empty list for members that have none
+     * @throws SQLException if a database error occurs
+     */
+    public Map<Integer, List<Membership>> getMembershipsByMemberIds(Collection<Integer> memberIds) throws SQLException {
+        return membershipDAO.getMembershipsByMemberIds(memberIds);
+    }
+
     /**
      * Calculates the total revenue from all memberships in the system.
      * Typically used by admin users.
      * @return the total revenue as a double
+     * @throws SQLException if a database error occurs
      */
-    public double getTotalRevenue() {
+    public double getTotalRevenue() throws SQLException {
         return membershipDAO.getTotalRevenue();
     }
-} 
+
+    /**
+     * Calculates the total revenue with exact decimal arithmetic.
+     * @return the total revenue as a BigDecimal
+     * @throws SQLException if a database error occurs
+     */
+    public BigDecimal getTotalRevenueExact() throws SQLException {
+        return membershipDAO.getTotalRevenueExact();
+    }
+
+    /**
+     * Reports revenue per membership type, computed inside the database.
+     * @return one breakdown row per membership type
+     * @throws SQLException if a database error occurs
+     */
+    public List<RevenueBreakdown> getRevenueByMembershipType() throws SQLException {
+        return membershipDAO.getRevenueGroupedBy(RevenueGrouping.MEMBERSHIP_TYPE);
+    }
+
+    /**
+     * Reports revenue per month of membership start date (YYYY-MM).
+     * @return one breakdown row per month
+     * @throws SQLException if a database error occurs
+     */
+    public List<RevenueBreakdown> getRevenueByStartMonth() throws SQLException {
+        return membershipDAO.getRevenueGroupedBy(RevenueGrouping.START_MONTH);
+    }
+
+    /**
+     * Reports revenue per payment method.
+     * @return one breakdown row per payment method
+     * @throws SQLException if a database error occurs
+     */
+    public List<RevenueBreakdown> getRevenueByPaymentMethod() throws SQLException {
+        return membershipDAO.getRevenueGroupedBy(RevenueGrouping.PAYMENT_METHOD);
+    }
+
+    /**
+     * Buys a membership without blocking the caller.
+     * @param membership the membership to save
+     * @return a future with the new membership's ID, or -1 if it could not be saved
+     */
+    public CompletableFuture<Integer> buyMembershipAsync(Membership membership) {
+        return asyncExecutor.supply(() -> buyMembership(membership));
+    }
+
+    /**
+     * Retrieves all memberships without blocking the caller.
+     * @return a future with every membership
+     */
+    public CompletableFuture<List<Membership>> getAllMembershipsAsync() {
+        return asyncExecutor.supply(this::getAllMemberships);
+    }
+
+    /**
+     * Retrieves a member's memberships without blocking the caller.
+     * @param memberId the ID of the member
+     * @return a future with the member's memberships
+     */
+    public CompletableFuture<List<Membership>> getMembershipsByMemberIdAsync(int memberId) {
+        return asyncExecutor.supply(() -> getMembershipsByMemberId(memberId));
+    }
+
+    /**
+     * Retrieves the memberships of many members without blocking the caller.
+     * @param memberIds the IDs of the members
+     * @return a future with memberships grouped by member ID
+     */
+    public CompletableFuture<Map<Integer, List<Membership>>> getMembershipsByMemberIdsAsync(Collection<Integer> memberIds) {
+        return asyncExecutor.supply(() -> getMembershipsByMemberIds(memberIds));
+    }
+
+    /**
+     * Calculates total revenue without blocking the caller.
+     * @return a future with the total revenue
+     */
+    public CompletableFuture<Double> getTotalRevenueAsync() {
+        return asyncExecutor.supply(this::getTotalRevenue);
+    }
+
+    /**
+     * Calculates exact total revenue without blocking the caller.
+     * @return a future with the total revenue as an exact decimal
+     */
+    public CompletableFuture<BigDecimal> getTotalRevenueExactAsync() {
+        return asyncExecutor.supply(this::getTotalRevenueExact);
+    }
+
+    /**
+     * Reports revenue per membership type without blocking the caller.
+     * @return a future with one breakdown row per membership type
+     */
+    public CompletableFuture<List<RevenueBreakdown>> getRevenueByMembershipTypeAsync() {
+        return asyncExecutor.supply(this::getRevenueByMembershipType);
+    }
+
+    /**
+     * Reports revenue per start month without blocking the caller.
+     * @return a future with one breakdown row per month
+     */
+    public CompletableFuture<List<RevenueBreakdown>> getRevenueByStartMonthAsync() {
+        return asyncExecutor.supply(this::getRevenueByStartMonth);
+    }
+
+    /**
+     * Reports revenue per payment method without blocking the caller.
+     * @return a future with one breakdown row per payment method
+     */
+    public CompletableFuture<List<RevenueBreakdown>> getRevenueByPaymentMethodAsync() {
+        return asyncExecutor.supply(this::getRevenueByPaymentMethod);
+    }
+}
@@ -0,0 +1,55 @@
+package org.keyin.membership;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of a grouped revenue report: a group key, how many memberships fall
+ * into it, and their exact total cost.
+ */
+public class RevenueBreakdown {
+    private final String group;
+    private final long membershipCount;
+    private final BigDecimal totalRevenue;
+
+    /**
+     * @param group           the group key (a type, a YYYY-MM month, or a payment method)
+     * @param membershipCount number of memberships in the group
+     * @param totalRevenue    exact sum of membership costs in the group
+     */
+    public RevenueBreakdown(String group, long membershipCount, BigDecimal totalRevenue) {
+        this.group = group;
+        this.membershipCount = membershipCount;
+        this.totalRevenue = totalRevenue;
+    }
+
+    /**
+     * @return the group key
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @return number of memberships in the group
+     */
+    public long getMembershipCount() {
+        return membershipCount;
+    }
+
+    /**
+     * @return exact total revenue for the group
+     */
+    public BigDecimal getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    /**
+     * Returns a readable summary of the group.
+     *
+     * @return group, count and revenue
+     */
+    @Override
+    public String toString() {
+        return group + ": " + membershipCount + " memberships, $" + totalRevenue.toPlainString();
+    }
+}
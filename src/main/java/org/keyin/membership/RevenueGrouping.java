@@ -0,0 +1,27 @@
+package org.keyin.membership;
+
+/**
+ * Dimensions the revenue report can be grouped by.
+ * Each maps to a column of the {@code membership_revenue_summary} table.
+ */
+public enum RevenueGrouping {
+    /** Group by membership type (e.g., Monthly, Annual). */
+    MEMBERSHIP_TYPE("membership_type"),
+    /** Group by the calendar month of the membership start date. */
+    START_MONTH("to_char(revenue_month, 'YYYY-MM')"),
+    /** Group by how the membership was paid for. */
+    PAYMENT_METHOD("payment_method");
+
+    private final String columnExpression;
+
+    RevenueGrouping(String columnExpression) {
+        this.columnExpression = columnExpression;
+    }
+
+    /**
+     * @return SQL expression for the grouping key on the summary table
+     */
+    public String getColumnExpression() {
+        return columnExpression;
+    }
+}
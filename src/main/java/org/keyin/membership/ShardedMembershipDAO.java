@@ -0,0 +1,217 @@
+package org.keyin.membership;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.ShardContext;
+import org.keyin.database.ShardMap;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps each membership on its member's location shard, in front of a single-database
+ * {@link MembershipDAO}. Per-member calls go to one shard; the admin list, revenue totals,
+ * revenue breakdowns and expiry sweeps run on every shard in parallel and are merged here.
+ * If any shard fails, reads throw an exception naming the failed locations rather than
+ * returning what the other shards answered.
+ */
+public class ShardedMembershipDAO implements MembershipDAO {
+    private final MembershipDAO delegate;
+    private final ShardMap shards;
+
+    /**
+     * @param delegate the DAO run against each shard
+     * @param shards   the locations and their databases
+     */
+    public ShardedMembershipDAO(MembershipDAO delegate, ShardMap shards) {
+        this.delegate = delegate;
+        this.shards = shards;
+    }
+
+    @Override
+    public int addMembership(Membership membership) {
+        ShardMap.Shard shard = shards.forId(membership.getMemberId());
+        if (shard == null) {
+            System.out.println("No location owns member " + membership.getMemberId());
+            return -1;
+        }
+        try {
+            return shards.onShard(shard, () -> delegate.addMembership(membership));
+        } catch (SQLException e) {
+            System.out.println("Error adding membership on " + shard.getLocation() + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Inserts each location's share of the memberships on its shard, all shards in parallel.
+     * Rows for members no location owns are reported as one failure with chunk index -1.
+     */
+    @Override
+    public BatchInsertResult addMemberships(Collection<Membership> memberships, int chunkSize) {
+        BatchInsertResult result = new BatchInsertResult(memberships.size());
+        Map<ShardMap.Shard, List<Membership>> groups = shards.groupById(memberships, Membership::getMemberId);
+        List<Membership> unowned = groups.remove(null);
+        if (unowned != null) {
+            result.recordFailure(-1, -1, unowned.size(),
+                    new IllegalArgumentException("No location owns member " + unowned.get(0).getMemberId()));
+        }
+        List<ShardMap.Shard> targets = new ArrayList<>(groups.keySet());
+        try {
+            List<BatchInsertResult> parts = shards.scatter(targets, () -> delegate.addMemberships(
+                    groups.get(ShardContext.current()), chunkSize));
+            for (int i = 0; i < parts.size(); i++) {
+                result.addPart(parts.get(i), targets.get(i).getLocation());
+            }
+        } catch (SQLException e) {
+            result.recordFailure(-1, -1, memberships.size() - result.getInsertedRows(), e);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Membership> getAllMemberships() throws SQLException {
+        List<Membership> memberships = new ArrayList<>();
+        for (List<Membership> part : shards.scatter(delegate::getAllMemberships)) {
+            memberships.addAll(part);
+        }
+        memberships.sort(Comparator.comparingInt(Membership::getMembershipId));
+        return memberships;
+    }
+
+    /**
+     * Streams one location after another, which keeps membership ID order because every
+     * location's ids lie in its own block. A failed location stops the stream there.
+     */
+    @Override
+    public void streamAllMemberships(int fetchSize, Consumer<Membership> rowHandler) throws SQLException {
+        for (ShardMap.Shard shard : shards.getShards()) {
+            try {
+                shards.onShard(shard, () -> {
+                    delegate.streamAllMemberships(fetchSize, rowHandler);
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw new SQLException("Streaming memberships failed on shard " + shard.getLocation()
+                        + ": " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+    }
+
+    @Override
+    public List<Membership> getMembershipsByMemberId(int memberId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(memberId);
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return shards.scatter(Collections.singletonList(shard), () -> delegate.getMembershipsByMemberId(memberId)).get(0);
+    }
+
+    /**
+     * Asks each shard only for its own members, all shards in parallel.
+     */
+    @Override
+    public Map<Integer, List<Membership>> getMembershipsByMemberIds(Collection<Integer> memberIds) throws SQLException {
+        Map<Integer, List<Membership>> byMember = new HashMap<>();
+        Map<ShardMap.Shard, List<Integer>> groups = shards.groupById(new LinkedHashSet<>(memberIds), Integer::intValue);
+        List<Integer> unowned = groups.remove(null);
+        if (unowned != null) {
+            for (int memberId : unowned) {
+                byMember.put(memberId, new ArrayList<>());
+            }
+        }
+        if (groups.isEmpty()) {
+            return byMember;
+        }
+        for (Map<Integer, List<Membership>> part : shards.scatter(new ArrayList<>(groups.keySet()),
+                () -> delegate.getMembershipsByMemberIds(groups.get(ShardContext.current())))) {
+            byMember.putAll(part);
+        }
+        return byMember;
+    }
+
+    @Override
+    public double getTotalRevenue() throws SQLException {
+        return getTotalRevenueExact().doubleValue();
+    }
+
+    @Override
+    public BigDecimal getTotalRevenueExact() throws SQLException {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal part : shards.scatter(delegate::getTotalRevenueExact)) {
+            total = total.add(part);
+        }
+        return total;
+    }
+
+    /**
+     * Adds up each location's breakdown group by group, ordered by group key like the
+     * single-database query.
+     */
+    @Override
+    public List<RevenueBreakdown> getRevenueGroupedBy(RevenueGrouping grouping) throws SQLException {
+        Map<String, RevenueBreakdown> merged = new TreeMap<>();
+        for (List<RevenueBreakdown> part : shards.scatter(() -> delegate.getRevenueGroupedBy(grouping))) {
+            for (RevenueBreakdown row : part) {
+                merged.merge(row.getGroup(), row, (a, b) -> new RevenueBreakdown(a.getGroup(),
+                        a.getMembershipCount() + b.getMembershipCount(), a.getTotalRevenue().add(b.getTotalRevenue())));
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Expires every due membership on every shard, all shards in parallel. Each shard runs
+     * chunks of at most {@code limit} rows until one comes back short. The sum across shards
+     * says nothing about whether any one shard is done, so a caller that stops at the first
+     * short chunk would otherwise leave most of a backlog behind; after this returns, nothing
+     * is left. The result may exceed {@code limit}.
+     */
+    @Override
+    public int expireMemberships(LocalDate asOf, int limit) throws SQLException {
+        return drainEachShard(() -> delegate.expireMemberships(asOf, limit), limit);
+    }
+
+    /**
+     * Reactivates every released hold on every shard, chunk by chunk like
+     * {@link #expireMemberships}. The result may exceed {@code limit}.
+     */
+    @Override
+    public int reactivateReleasedHolds(int limit) throws SQLException {
+        return drainEachShard(() -> delegate.reactivateReleasedHolds(limit), limit);
+    }
+
+    private int drainEachShard(ShardMap.ShardCall<Integer> chunk, int limit) throws SQLException {
+        int total = 0;
+        for (int part : shards.scatter(() -> {
+            int changed = 0;
+            int updated;
+            do {
+                updated = chunk.call();
+                changed += updated;
+            } while (updated == limit && !Thread.currentThread().isInterrupted());
+            return changed;
+        })) {
+            total += part;
+        }
+        return total;
+    }
+
+    @Override
+    public void rebuildRevenueSummary() throws SQLException {
+        shards.scatter(() -> {
+            delegate.rebuildRevenueSummary();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package org.keyin.membership;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable outcome of one {@link MembershipExpirySweeper} run.
+ */
+public class SweepResult {
+    private final LocalDateTime startedAt;
+    private final int expired;
+    private final int reactivated;
+    private final int chunks;
+    private final long durationMillis;
+    private final String error;
+
+    /**
+     * Creates a sweep result.
+     *
+     * @param startedAt      when the run began
+     * @param expired        memberships moved from active to expired
+     * @param reactivated    memberships moved from on hold back to active
+     * @param chunks         number of UPDATE statements issued
+     * @param durationMillis wall-clock time of the run
+     * @param error          why the run stopped early, or null if it completed
+     */
+    public SweepResult(LocalDateTime startedAt, int expired, int reactivated, int chunks, long durationMillis, String error) {
+        this.startedAt = startedAt;
+        this.expired = expired;
+        this.reactivated = reactivated;
+        this.chunks = chunks;
+        this.durationMillis = durationMillis;
+        this.error = error;
+    }
+
+    /** @return when the run began. */
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    /** @return memberships moved from active to expired. */
+    public int getExpired() {
+        return expired;
+    }
+
+    /** @return memberships moved from on hold back to active. */
+    public int getReactivated() {
+        return reactivated;
+    }
+
+    /** @return total rows whose status changed. */
+    public int getRowsProcessed() {
+        return expired + reactivated;
+    }
+
+    /** @return number of UPDATE statements (chunks) issued. */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /** @return wall-clock time of the run, in milliseconds. */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /** @return why the run stopped early, or null if it completed. */
+    public String getError() {
+        return error;
+    }
+
+    /** @return true if the run processed every due membership. */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns a one-line summary of the run.
+     *
+     * @return readable sweep outcome
+     */
+    @Override
+    public String toString() {
+        return String.format("Sweep [started=%s, expired=%d, reactivated=%d, chunks=%d, duration=%dms%s]",
+                startedAt, expired, reactivated, chunks, durationMillis, error == null ? "" : ", error=" + error);
+    }
+}
@@ -0,0 +1,536 @@
+package org.keyin.storage;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.membership.Membership;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.RevenueBreakdown;
+import org.keyin.membership.RevenueGrouping;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * {@link MembershipDAO} over a memory-mapped {@link RecordStore} ({@code memberships.log})
+ * instead of PostgreSQL. The in-memory indexes play the part of the table's indexes and of the
+ * trigger-maintained {@code membership_revenue_summary}:
+ * <ul>
+ *   <li>memberships by member ID,</li>
+ *   <li>active memberships by end date, for the expiry sweeper,</li>
+ *   <li>memberships whose hold was lifted but are still marked "on hold",</li>
+ *   <li>revenue totals by membership type, start month and payment method.</li>
+ * </ul>
+ */
+public class MappedMembershipDAO implements MembershipDAO {
+    // Memberships saved without a payment method, the same fallback the summary table uses
+    private static final String UNSPECIFIED_PAYMENT_METHOD = "Unspecified";
+
+    private final RecordStore<Membership> store;
+    private final IntPredicate memberExists;
+
+    // Each key packs two ints, (memberId, membershipId) or (endDay, membershipId), into one long
+    private final NavigableSet<Long> idsByMember = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Long> activeByEndDate = new ConcurrentSkipListSet<>();
+    private final Set<Integer> releasedHolds = new ConcurrentSkipListSet<>();
+    // Guarded by its own monitor; taken inside the store's write lock, never the other way round
+    private final Map<RevenueKey, RevenueTotal> revenue = new HashMap<>();
+    private final Object sweepLock = new Object();
+
+    /**
+     * Opens (or creates) the membership store in a directory.
+     *
+     * @param directory    where the store's files live
+     * @param syncWrites   force every write to disk before returning
+     * @param memberExists checks a member ID, standing in for the foreign key to {@code users}
+     * @throws IOException if the store cannot be opened
+     */
+    public MappedMembershipDAO(Path directory, boolean syncWrites, IntPredicate memberExists) throws IOException {
+        this.memberExists = memberExists;
+        this.store = RecordStore.open(directory, "memberships", new MembershipCodec(), new MembershipIndexes(), syncWrites);
+    }
+
+    /**
+     * Adds a new membership and stores the generated ID on it.
+     * @param membership the Membership object to insert
+     * @return the new membership's ID, or -1 if the member does not exist or the write failed
+     */
+    @Override
+    public int addMembership(Membership membership) {
+        if (!memberExists.test(membership.getMemberId())) {
+            System.out.println("No member with ID " + membership.getMemberId() + "; membership not added.");
+            return -1;
+        }
+        try {
+            membership.setStatus(initialStatus(membership));
+            return store.insert(membership);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Adds many memberships, reporting results in the same chunks the JDBC batch uses. A chunk
+     * is rejected as a whole if any of its members does not exist, like a failed transaction.
+     * @param memberships the memberships to insert
+     * @param chunkSize number of rows per chunk
+     * @return rows inserted and any chunks that failed
+     */
+    @Override
+    public BatchInsertResult addMemberships(Collection<Membership> memberships, int chunkSize) {
+        BatchInsertResult result = new BatchInsertResult(memberships.size());
+        List<Membership> chunk = new ArrayList<>(chunkSize);
+        int chunkIndex = 0;
+        int firstRow = 0;
+        for (Iterator<Membership> it = memberships.iterator(); it.hasNext(); ) {
+            chunk.add(it.next());
+            if (chunk.size() == chunkSize || !it.hasNext()) {
+                try {
+                    insertChunk(chunk);
+                    result.recordSuccess(chunk.size());
+                } catch (IOException | SQLException e) {
+                    result.recordFailure(chunkIndex, firstRow, chunk.size(), e);
+                }
+                chunkIndex++;
+                firstRow += chunk.size();
+                chunk.clear();
+            }
+        }
+        return result;
+    }
+
+    private void insertChunk(List<Membership> chunk) throws IOException, SQLException {
+        for (Membership membership : chunk) {
+            if (!memberExists.test(membership.getMemberId())) {
+                throw new SQLException("No member with ID " + membership.getMemberId());
+            }
+        }
+        for (Membership membership : chunk) {
+            membership.setStatus(initialStatus(membership));
+            store.insert(membership);
+        }
+    }
+
+    /**
+     * Retrieves all memberships in ID order.
+     * @return a list of all Membership objects
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public List<Membership> getAllMemberships() throws SQLException {
+        try {
+            return store.getAll();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read memberships", e);
+        }
+    }
+
+    /**
+     * Hands every membership to the callback in ID order, decoding one at a time.
+     * @param fetchSize ignored; there are no round trips to batch
+     * @param rowHandler callback invoked once per membership
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public void streamAllMemberships(int fetchSize, Consumer<Membership> rowHandler) throws SQLException {
+        try {
+            store.forEach(rowHandler);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read memberships", e);
+        }
+    }
+
+    /**
+     * Retrieves memberships associated with a specific member through the member index.
+     * @param memberId the ID of the member
+     * @return the member's memberships in ID order
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public List<Membership> getMembershipsByMemberId(int memberId) throws SQLException {
+        try {
+            return store.getAll(membershipIdsOf(memberId));
+        } catch (IOException e) {
+            throw new SQLException("Failed to read memberships", e);
+        }
+    }
+
+    /**
+     * Retrieves the memberships of many members through the member index.
+     * @param memberIds the IDs of the members; duplicates are ignored
+     * @return memberships grouped by member ID in the order the IDs were given,
+     *         with an empty list for members that have none
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public Map<Integer, List<Membership>> getMembershipsByMemberIds(Collection<Integer> memberIds) throws SQLException {
+        Map<Integer, List<Membership>> byMember = new LinkedHashMap<>();
+        for (Integer memberId : new LinkedHashSet<>(memberIds)) {
+            byMember.put(memberId, getMembershipsByMemberId(memberId));
+        }
+        return byMember;
+    }
+
+    /**
+     * Calculates the total revenue earned from all memberships.
+     * @return the sum of membership costs as a double
+     */
+    @Override
+    public double getTotalRevenue() {
+        return getTotalRevenueExact().doubleValue();
+    }
+
+    /**
+     * Calculates the total revenue from the in-memory summary, so the cost is per group.
+     * @return the sum of membership costs, or zero if there are none
+     */
+    @Override
+    public BigDecimal getTotalRevenueExact() {
+        BigDecimal total = BigDecimal.ZERO;
+        synchronized (revenue) {
+            for (RevenueTotal group : revenue.values()) {
+                total = total.add(group.total);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Groups revenue by the requested dimension using the in-memory summary.
+     * @param grouping the dimension to group by
+     * @return one breakdown row per group, ordered by group key
+     */
+    @Override
+    public List<RevenueBreakdown> getRevenueGroupedBy(RevenueGrouping grouping) {
+        Map<String, RevenueTotal> groups = new TreeMap<>();
+        synchronized (revenue) {
+            for (Map.Entry<RevenueKey, RevenueTotal> entry : revenue.entrySet()) {
+                String group;
+                switch (grouping) {
+                    case MEMBERSHIP_TYPE:
+                        group = entry.getKey().membershipType;
+                        break;
+                    case START_MONTH:
+                        group = entry.getKey().month.toString();
+                        break;
+                    default:
+                        group = entry.getKey().paymentMethod;
+                        break;
+                }
+                RevenueTotal sum = groups.computeIfAbsent(group, key -> new RevenueTotal());
+                sum.count += entry.getValue().count;
+                sum.total = sum.total.add(entry.getValue().total);
+            }
+        }
+
+        List<RevenueBreakdown> breakdown = new ArrayList<>();
+        for (Map.Entry<String, RevenueTotal> entry : groups.entrySet()) {
+            breakdown.add(new RevenueBreakdown(entry.getKey(), entry.getValue().count, entry.getValue().total));
+        }
+        return breakdown;
+    }
+
+    /**
+     * Recomputes the revenue summary from every stored membership.
+     * @throws SQLException if the store cannot be read; the old summary is kept
+     */
+    @Override
+    public void rebuildRevenueSummary() throws SQLException {
+        Map<RevenueKey, RevenueTotal> rebuilt = new HashMap<>();
+        try {
+            store.forEach(membership -> addRevenue(rebuilt, membership.getMembershipType(),
+                    membership.getStartDate(), membership.getPaymentMethod(), membership.getMembershipCost(), 1));
+        } catch (IOException e) {
+            throw new SQLException("Failed to rebuild the revenue summary", e);
+        }
+        synchronized (revenue) {
+            revenue.clear();
+            revenue.putAll(rebuilt);
+        }
+    }
+
+    /**
+     * Expires one chunk of active memberships past their end date, oldest first, read straight
+     * off the end-date index.
+     * @param asOf the first day a membership must still cover to stay active
+     * @param limit maximum number of rows to update
+     * @return the number of memberships expired
+     * @throws SQLException if the log cannot be written
+     */
+    @Override
+    public int expireMemberships(LocalDate asOf, int limit) throws SQLException {
+        List<Integer> due = new ArrayList<>();
+        for (Long key : activeByEndDate.headSet(pack((int) asOf.toEpochDay(), 0), false)) {
+            if (due.size() == limit) {
+                break;
+            }
+            due.add(low(key));
+        }
+        return setStatus(due, Membership.STATUS_ACTIVE, Membership.STATUS_EXPIRED);
+    }
+
+    /**
+     * Reactivates one chunk of memberships still marked "on hold" whose hold flag has been cleared.
+     * @param limit maximum number of rows to update
+     * @return the number of memberships reactivated
+     * @throws SQLException if the log cannot be written
+     */
+    @Override
+    public int reactivateReleasedHolds(int limit) throws SQLException {
+        List<Integer> released = new ArrayList<>();
+        for (Integer id : releasedHolds) {
+            if (released.size() == limit) {
+                break;
+            }
+            released.add(id);
+        }
+        return setStatus(released, Membership.STATUS_ON_HOLD, Membership.STATUS_ACTIVE);
+    }
+
+    /**
+     * Moves memberships from one status to another, skipping any that changed since they were
+     * picked, the way the JDBC sweep's WHERE clause would. Sweeps run one at a time so two
+     * sweepers never pick the same rows.
+     */
+    private int setStatus(List<Integer> ids, String from, String to) throws SQLException {
+        int updated = 0;
+        synchronized (sweepLock) {
+            try {
+                for (Membership membership : store.getAll(ids)) {
+                    if (from.equals(membership.getStatus())) {
+                        membership.setStatus(to);
+                        if (store.update(membership) != null) {
+                            updated++;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new SQLException("Failed to update membership status", e);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes every membership of a member, as the {@code ON DELETE CASCADE} on
+     * {@code memberships.member_id} does.
+     * @param memberId the deleted member's ID
+     */
+    void deleteMembershipsOfMember(int memberId) {
+        for (Integer id : membershipIdsOf(memberId)) {
+            try {
+                store.delete(id);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the underlying store, for maintenance and metrics
+     */
+    public RecordStore<Membership> getStore() {
+        return store;
+    }
+
+    private List<Integer> membershipIdsOf(int memberId) {
+        List<Integer> ids = new ArrayList<>();
+        for (Long key : idsByMember.subSet(pack(memberId, 0), true, pack(memberId, Integer.MAX_VALUE), true)) {
+            ids.add(low(key));
+        }
+        return ids;
+    }
+
+    private static String initialStatus(Membership membership) {
+        if (membership.getStatus() != null) {
+            return membership.getStatus();
+        }
+        return membership.isOnHold() ? Membership.STATUS_ON_HOLD : Membership.STATUS_ACTIVE;
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int low(long key) {
+        return (int) key;
+    }
+
+    private static void addRevenue(Map<RevenueKey, RevenueTotal> summary, String membershipType, LocalDate startDate,
+                                   String paymentMethod, double cost, int sign) {
+        RevenueKey key = new RevenueKey(membershipType, YearMonth.from(startDate),
+                paymentMethod == null ? UNSPECIFIED_PAYMENT_METHOD : paymentMethod);
+        RevenueTotal group = summary.computeIfAbsent(key, k -> new RevenueTotal());
+        group.count += sign;
+        BigDecimal amount = BigDecimal.valueOf(cost).setScale(2, RoundingMode.HALF_UP);
+        group.total = sign > 0 ? group.total.add(amount) : group.total.subtract(amount);
+        if (group.count == 0) {
+            summary.remove(key);
+        }
+    }
+
+    private static final class MembershipCodec implements RecordStore.Codec<Membership> {
+        @Override
+        public int idOf(Membership membership) {
+            return membership.getMembershipId();
+        }
+
+        @Override
+        public void assignId(Membership membership, int id) {
+            membership.setMembershipId(id);
+        }
+
+        @Override
+        public void write(Membership membership, DataOutputStream out) throws IOException {
+            RecordStore.Codec.writeString(out, membership.getMembershipType());
+            RecordStore.Codec.writeString(out, membership.getMembershipDescription());
+            out.writeDouble(membership.getMembershipCost());
+            out.writeInt(membership.getMemberId());
+            out.writeLong(membership.getStartDate().toEpochDay());
+            out.writeLong(membership.getEndDate().toEpochDay());
+            out.writeBoolean(membership.isOnHold());
+            RecordStore.Codec.writeString(out, membership.getStatus());
+            RecordStore.Codec.writeString(out, membership.getPaymentMethod());
+        }
+
+        @Override
+        public Membership read(int id, DataInputStream in) throws IOException {
+            Membership membership = new Membership(id,
+                    RecordStore.Codec.readString(in),
+                    RecordStore.Codec.readString(in),
+                    in.readDouble(),
+                    in.readInt(),
+                    LocalDate.ofEpochDay(in.readLong()),
+                    LocalDate.ofEpochDay(in.readLong()),
+                    in.readBoolean());
+            membership.setStatus(RecordStore.Codec.readString(in));
+            // Records written before payment methods were stored end here
+            membership.setPaymentMethod(in.available() > 0 ? RecordStore.Codec.readString(in) : null);
+            return membership;
+        }
+    }
+
+    private final class MembershipIndexes implements RecordStore.IndexMaintainer<Membership> {
+        @Override
+        public void added(int id, Membership membership) {
+            index(id, membership.getMemberId(), membership.getEndDate(), membership.getStatus(),
+                    membership.isOnHold(), membership.getMembershipType(), membership.getStartDate(),
+                    membership.getPaymentMethod(), membership.getMembershipCost(), 1);
+        }
+
+        @Override
+        public void removed(int id, Membership membership) {
+            index(id, membership.getMemberId(), membership.getEndDate(), membership.getStatus(),
+                    membership.isOnHold(), membership.getMembershipType(), membership.getStartDate(),
+                    membership.getPaymentMethod(), membership.getMembershipCost(), -1);
+        }
+
+        @Override
+        public void clear() {
+            idsByMember.clear();
+            activeByEndDate.clear();
+            releasedHolds.clear();
+            synchronized (revenue) {
+                revenue.clear();
+            }
+        }
+
+        @Override
+        public void writeKeys(Membership membership, DataOutputStream out) throws IOException {
+            out.writeInt(membership.getMemberId());
+            out.writeLong(membership.getEndDate().toEpochDay());
+            RecordStore.Codec.writeString(out, membership.getStatus());
+            out.writeBoolean(membership.isOnHold());
+            RecordStore.Codec.writeString(out, membership.getMembershipType());
+            out.writeLong(membership.getStartDate().toEpochDay());
+            RecordStore.Codec.writeString(out, membership.getPaymentMethod());
+            out.writeDouble(membership.getMembershipCost());
+        }
+
+        @Override
+        public void restoreKeys(int id, DataInputStream in) throws IOException {
+            index(id, in.readInt(), LocalDate.ofEpochDay(in.readLong()), RecordStore.Codec.readString(in),
+                    in.readBoolean(), RecordStore.Codec.readString(in), LocalDate.ofEpochDay(in.readLong()),
+                    RecordStore.Codec.readString(in), in.readDouble(), 1);
+        }
+
+        /**
+         * Adds ({@code sign} 1) or removes ({@code sign} -1) one membership's entries in every index.
+         */
+        private void index(int id, int memberId, LocalDate endDate, String status, boolean onHold,
+                           String membershipType, LocalDate startDate, String paymentMethod, double cost, int sign) {
+            long memberKey = pack(memberId, id);
+            long endKey = pack((int) endDate.toEpochDay(), id);
+            boolean active = Membership.STATUS_ACTIVE.equals(status);
+            boolean released = Membership.STATUS_ON_HOLD.equals(status) && !onHold;
+            if (sign > 0) {
+                idsByMember.add(memberKey);
+                if (active) {
+                    activeByEndDate.add(endKey);
+                }
+                if (released) {
+                    releasedHolds.add(id);
+                }
+            } else {
+                idsByMember.remove(memberKey);
+                activeByEndDate.remove(endKey);
+                releasedHolds.remove(id);
+            }
+            synchronized (revenue) {
+                addRevenue(revenue, membershipType, startDate, paymentMethod, cost, sign);
+            }
+        }
+    }
+
+    private static final class RevenueKey {
+        private final String membershipType;
+        private final YearMonth month;
+        private final String paymentMethod;
+
+        private RevenueKey(String membershipType, YearMonth month, String paymentMethod) {
+            this.membershipType = membershipType;
+            this.month = month;
+            this.paymentMethod = paymentMethod;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RevenueKey)) {
+                return false;
+            }
+            RevenueKey other = (RevenueKey) o;
+            return membershipType.equals(other.membershipType) && month.equals(other.month)
+                    && paymentMethod.equals(other.paymentMethod);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * membershipType.hashCode() + month.hashCode()) + paymentMethod.hashCode();
+        }
+    }
+
+    private static final class RevenueTotal {
+        private long count;
+        private BigDecimal total = BigDecimal.ZERO.setScale(2);
+    }
+}
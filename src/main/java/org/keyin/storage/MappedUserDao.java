@@ -0,0 +1,270 @@
+package org.keyin.storage;
+
+import org.keyin.user.User;
+import org.keyin.user.UserDao;
+import org.keyin.user.childclasses.Admin;
+import org.keyin.user.childclasses.Member;
+import org.keyin.user.childclasses.Trainer;
+import org.keyin.utils.PasswordUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * {@link UserDao} over a memory-mapped {@link RecordStore} ({@code users.log}) instead of PostgreSQL.
+ * Emails and usernames are unique, as in the {@code users} table, and both are indexed in
+ * memory, so login lookups never scan.
+ */
+public class MappedUserDao implements UserDao {
+    private final RecordStore<User> store;
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByUsername = new ConcurrentHashMap<>();
+    private final List<IntConsumer> deleteListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens (or creates) the user store in a directory.
+     *
+     * @param directory  where the store's files live
+     * @param syncWrites force every write to disk before returning
+     * @throws IOException if the store cannot be opened
+     */
+    public MappedUserDao(Path directory, boolean syncWrites) throws IOException {
+        this.store = RecordStore.open(directory, "users", new UserCodec(), new UserIndexes(), syncWrites);
+    }
+
+    /**
+     * Finds a user by email and checks their password. The BCrypt comparison runs without
+     * holding any store lock.
+     * @param email the email of the user attempting to log in
+     * @param enteredPassword the password they typed
+     * @return User object if valid, null otherwise
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public User findByEmailAndPassword(String email, String enteredPassword) throws SQLException {
+        User user = findByEmail(email);
+        if (user == null) {
+            // Spend the same BCrypt time as a wrong password so unknown emails cannot be told apart
+            PasswordUtils.checkPassword(enteredPassword, PasswordUtils.dummyHash());
+            return null;
+        }
+        if (!PasswordUtils.checkPassword(enteredPassword, user.getPassword())) {
+            System.out.println("Incorrect password.");
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Looks up a user through the in-memory email index.
+     * @param email the email of the user
+     * @return role-specific User object, or null if not found or the role is unknown
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public User findByEmail(String email) throws SQLException {
+        Integer id = email == null ? null : idsByEmail.get(email);
+        if (id == null) {
+            return null;
+        }
+        try {
+            User user = store.get(id);
+            // Same rule as the JDBC login query: an unrecognised role cannot log in
+            return user == null || user.getClass() == User.class ? null : user;
+        } catch (IOException e) {
+            throw new SQLException("Failed to read user " + id, e);
+        }
+    }
+
+    /**
+     * Retrieves all users in id order.
+     * @return a list of all User objects
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        try {
+            return store.getAll();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read users", e);
+        }
+    }
+
+    /**
+     * Hands every user to the callback in id order, decoding one at a time.
+     * @param fetchSize ignored; there are no round trips to batch
+     * @param rowHandler callback invoked once per user
+     * @throws SQLException if the store cannot be read
+     */
+    @Override
+    public void streamAllUsers(int fetchSize, Consumer<User> rowHandler) throws SQLException {
+        try {
+            store.forEach(rowHandler);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read users", e);
+        }
+    }
+
+    /**
+     * Registers a new user, hashing their password.
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the write fails
+     */
+    @Override
+    public int registerUser(String username, String email, String password, String role, String phone, String address) throws SQLException {
+        return registerUserWithHashedPassword(username, email, PasswordUtils.hashPassword(password), role, phone, address);
+    }
+
+    /**
+     * Registers a new user whose password was hashed by the caller. The uniqueness checks and
+     * the append run under one lock, so two registrations of the same email cannot both succeed.
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the write fails
+     */
+    @Override
+    public synchronized int registerUserWithHashedPassword(String username, String email, String hashedPassword,
+                                                           String role, String phone, String address) throws SQLException {
+        if (idsByUsername.containsKey(username) || (email != null && idsByEmail.containsKey(email))) {
+            return -1;
+        }
+        try {
+            return store.insert(new User(0, username, hashedPassword, email, phone, address, role));
+        } catch (IOException e) {
+            throw new SQLException("Failed to add user", e);
+        }
+    }
+
+    /**
+     * Deletes a user and tells the delete listeners, which stand in for the table's foreign keys.
+     * @param userId the ID of the user to be deleted
+     * @return true if deletion was successful, false otherwise
+     */
+    @Override
+    public synchronized boolean deleteUserById(int userId) {
+        try {
+            if (store.delete(userId) == null) {
+                return false;
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to delete user: " + e.getMessage());
+            return false;
+        }
+        for (IntConsumer listener : deleteListeners) {
+            listener.accept(userId);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a callback run after a user is deleted, e.g. to remove their memberships.
+     *
+     * @param listener receives the deleted user's ID
+     */
+    public void addDeleteListener(IntConsumer listener) {
+        deleteListeners.add(listener);
+    }
+
+    /**
+     * @return the underlying store, for maintenance and metrics
+     */
+    public RecordStore<User> getStore() {
+        return store;
+    }
+
+    private static final class UserCodec implements RecordStore.Codec<User> {
+        @Override
+        public int idOf(User user) {
+            return user.getId();
+        }
+
+        @Override
+        public void assignId(User user, int id) {
+            user.setId(id);
+        }
+
+        @Override
+        public void write(User user, DataOutputStream out) throws IOException {
+            RecordStore.Codec.writeString(out, user.getUsername());
+            RecordStore.Codec.writeString(out, user.getEmail());
+            RecordStore.Codec.writeString(out, user.getPassword());
+            RecordStore.Codec.writeString(out, user.getRole());
+            RecordStore.Codec.writeString(out, user.getPhoneNumber());
+            RecordStore.Codec.writeString(out, user.getAddress());
+        }
+
+        @Override
+        public User read(int id, DataInputStream in) throws IOException {
+            String username = RecordStore.Codec.readString(in);
+            String email = RecordStore.Codec.readString(in);
+            String password = RecordStore.Codec.readString(in);
+            String role = RecordStore.Codec.readString(in);
+
+            User user;
+            switch (role == null ? "" : role.toLowerCase()) {
+                case "admin":
+                    user = new Admin(id, username, email, password);
+                    break;
+                case "trainer":
+                    user = new Trainer(id, username, email, password);
+                    break;
+                case "member":
+                    user = new Member(id, username, email, password);
+                    break;
+                default:
+                    user = new User(id, username, email, password);
+                    break;
+            }
+            user.setPhoneNumber(RecordStore.Codec.readString(in));
+            user.setAddress(RecordStore.Codec.readString(in));
+            return user;
+        }
+    }
+
+    private final class UserIndexes implements RecordStore.IndexMaintainer<User> {
+        @Override
+        public void added(int id, User user) {
+            index(id, user.getUsername(), user.getEmail());
+        }
+
+        @Override
+        public void removed(int id, User user) {
+            idsByUsername.remove(user.getUsername(), id);
+            if (user.getEmail() != null) {
+                idsByEmail.remove(user.getEmail(), id);
+            }
+        }
+
+        @Override
+        public void clear() {
+            idsByUsername.clear();
+            idsByEmail.clear();
+        }
+
+        @Override
+        public void writeKeys(User user, DataOutputStream out) throws IOException {
+            RecordStore.Codec.writeString(out, user.getUsername());
+            RecordStore.Codec.writeString(out, user.getEmail());
+        }
+
+        @Override
+        public void restoreKeys(int id, DataInputStream in) throws IOException {
+            index(id, RecordStore.Codec.readString(in), RecordStore.Codec.readString(in));
+        }
+
+        private void index(int id, String username, String email) {
+            idsByUsername.put(username, id);
+            if (email != null) {
+                idsByEmail.put(email, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package org.keyin.storage;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.workoutclasses.WorkoutClass;
+import org.keyin.workoutclasses.WorkoutClassCursor;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassFilter;
+import org.keyin.workoutclasses.WorkoutClassPage;
+import org.keyin.workoutclasses.WorkoutClassSearchPage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntPredicate;
+
+/**
+ * {@link WorkoutClassDAO} over a memory-mapped {@link RecordStore} ({@code workoutclasses.log})
+ * instead of PostgreSQL. Classes are indexed in memory by trainer and by schedule
+ * ({@code class_date, class_time, class_id}), the order keyset pagination walks.
+ *
+ * <p>Search scans every class rather than a GIN index, but uses the same rules as the
+ * {@code search_vector} column: each word is a required prefix, and matches in the name count
+ * more than in the level, then the description, then the equipment.</p>
+ */
+public class MappedWorkoutClassDAO implements WorkoutClassDAO {
+    // Same A/B/C/D weights ts_rank applies by default
+    private static final float NAME_WEIGHT = 1.0f;
+    private static final float LEVEL_WEIGHT = 0.4f;
+    private static final float DESCRIPTION_WEIGHT = 0.2f;
+    private static final float EQUIPMENT_WEIGHT = 0.1f;
+
+    private final RecordStore<WorkoutClass> store;
+    private final IntPredicate trainerExists;
+
+    // (trainerId, classId) packed into one long
+    private final NavigableSet<Long> idsByTrainer = new ConcurrentSkipListSet<>();
+    private final NavigableSet<ScheduleKey> schedule = new ConcurrentSkipListSet<>();
+    // Serializes read-modify-write updates so partial updates never overwrite each other
+    private final Object updateLock = new Object();
+
+    /**
+     * Opens (or creates) the workout class store in a directory.
+     *
+     * @param directory     where the store's files live
+     * @param syncWrites    force every write to disk before returning
+     * @param trainerExists checks a trainer ID, standing in for the foreign key to {@code users}
+     * @throws IOException if the store cannot be opened
+     */
+    public MappedWorkoutClassDAO(Path directory, boolean syncWrites, IntPredicate trainerExists) throws IOException {
+        this.trainerExists = trainerExists;
+        this.store = RecordStore.open(directory, "workoutclasses", new WorkoutClassCodec(), new WorkoutClassIndexes(), syncWrites);
+    }
+
+    /**
+     * Adds a new workout class and stores the generated ID on it.
+     *
+     * @param workoutClass The {@link WorkoutClass} object containing class details.
+     * @return The new class's ID.
+     * @throws SQLException If the trainer does not exist or the log cannot be written.
+     */
+    @Override
+    public int addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        checkTrainer(workoutClass);
+        try {
+            return store.insert(workoutClass);
+        } catch (IOException e) {
+            throw new SQLException("Failed to add workout class", e);
+        }
+    }
+
+    /**
+     * Adds many workout classes, reporting results in the same chunks the JDBC batch uses.
+     * A chunk is rejected as a whole if any of its trainers does not exist.
+     *
+     * @param workoutClasses The classes to insert.
+     * @param chunkSize      Number of rows per chunk.
+     * @return Rows inserted and any chunks that failed.
+     */
+    @Override
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) {
+        BatchInsertResult result = new BatchInsertResult(workoutClasses.size());
+        List<WorkoutClass> chunk = new ArrayList<>(chunkSize);
+        int chunkIndex = 0;
+        int firstRow = 0;
+        for (Iterator<WorkoutClass> it = workoutClasses.iterator(); it.hasNext(); ) {
+            chunk.add(it.next());
+            if (chunk.size() == chunkSize || !it.hasNext()) {
+                try {
+                    for (WorkoutClass workoutClass : chunk) {
+                        checkTrainer(workoutClass);
+                    }
+                    for (WorkoutClass workoutClass : chunk) {
+                        store.insert(workoutClass);
+                    }
+                    result.recordSuccess(chunk.size());
+                } catch (IOException | SQLException e) {
+                    result.recordFailure(chunkIndex, firstRow, chunk.size(), e);
+                }
+                chunkIndex++;
+                firstRow += chunk.size();
+                chunk.clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves all workout classes in ID order.
+     *
+     * @return A list of all {@link WorkoutClass} objects.
+     * @throws SQLException If the stored records cannot be read.
+     */
+    @Override
+    public List<WorkoutClass> getAllWorkoutClasses() throws SQLException {
+        try {
+            return store.getAll();
+        } catch (IOException e) {
+            throw new SQLException("Failed to read workout classes", e);
+        }
+    }
+
+    /**
+     * Retrieves the classes taught by a trainer through the trainer index.
+     *
+     * @param trainerId The ID of the trainer.
+     * @return The trainer's classes in ID order.
+     * @throws SQLException If the stored records cannot be read.
+     */
+    @Override
+    public List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException {
+        try {
+            return store.getAll(classIdsOf(trainerId));
+        } catch (IOException e) {
+            throw new SQLException("Failed to read workout classes", e);
+        }
+    }
+
+    /**
+     * Returns one page of classes in schedule order. The walk starts right after the cursor
+     * (or at the filter's first date) in the schedule index and stops at the filter's last
+     * date, so a page costs about {@code pageSize} lookups no matter how deep it is.
+     *
+     * @param filter   Optional filters; {@code null} means no filtering.
+     * @param after    Cursor from the previous page, or {@code null} for the first page.
+     * @param pageSize Maximum number of classes per page.
+     * @return A {@link WorkoutClassPage} with the classes and the next cursor.
+     * @throws SQLException If the stored records cannot be read.
+     */
+    @Override
+    public WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException {
+        if (filter == null) {
+            filter = WorkoutClassFilter.none();
+        }
+
+        // Start from whichever is later: just past the cursor, or the first slot of the first date
+        NavigableSet<ScheduleKey> remaining = schedule;
+        ScheduleKey firstDay = filter.getFromDate() == null ? null
+                : new ScheduleKey(filter.getFromDate(), LocalTime.MIN, Integer.MIN_VALUE);
+        ScheduleKey cursor = after == null ? null
+                : new ScheduleKey(after.getClassDate(), after.getClassTime(), after.getClassId());
+        if (cursor != null && (firstDay == null || cursor.compareTo(firstDay) >= 0)) {
+            remaining = schedule.tailSet(cursor, false);
+        } else if (firstDay != null) {
+            remaining = schedule.tailSet(firstDay, true);
+        }
+
+        // Collect one extra class to find out whether another page exists
+        List<WorkoutClass> classes = new ArrayList<>();
+        try {
+            for (ScheduleKey key : remaining) {
+                if (classes.size() > pageSize
+                        || (filter.getToDate() != null && key.classDate.isAfter(filter.getToDate()))) {
+                    break;
+                }
+                WorkoutClass workoutClass = store.get(key.classId);
+                if (workoutClass != null && matches(filter, workoutClass)) {
+                    classes.add(workoutClass);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read workout classes", e);
+        }
+
+        WorkoutClassCursor next = null;
+        if (classes.size() > pageSize) {
+            classes.remove(pageSize);
+            next = WorkoutClassCursor.after(classes.get(pageSize - 1));
+        }
+        return new WorkoutClassPage(classes, next);
+    }
+
+    private static boolean matches(WorkoutClassFilter filter, WorkoutClass workoutClass) {
+        return (filter.getClassLevel() == null || filter.getClassLevel().equals(workoutClass.getClassLevel()))
+                && (filter.getClassLocation() == null || filter.getClassLocation().equals(workoutClass.getClassLocation()));
+    }
+
+    /**
+     * Scores every class against the search words and returns one page of the best matches.
+     *
+     * @param text     Words to search for.
+     * @param page     Zero-based page number.
+     * @param pageSize Maximum number of classes per page.
+     * @return A {@link WorkoutClassSearchPage} with the best matches first.
+     * @throws SQLException If the stored records cannot be read.
+     */
+    @Override
+    public WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException {
+        List<String> words = words(text);
+        if (words.isEmpty()) {
+            return new WorkoutClassSearchPage(new ArrayList<>(), page, false);
+        }
+
+        List<ScoredClass> matches = new ArrayList<>();
+        try {
+            store.forEach(workoutClass -> {
+                float score = score(words, workoutClass);
+                if (score > 0) {
+                    matches.add(new ScoredClass(workoutClass, score));
+                }
+            });
+        } catch (IOException e) {
+            throw new SQLException("Failed to search workout classes", e);
+        }
+        matches.sort(Comparator.comparingDouble((ScoredClass match) -> -match.score)
+                .thenComparingInt(match -> match.workoutClass.getClassId()));
+
+        List<WorkoutClass> classes = new ArrayList<>();
+        long from = (long) page * pageSize;
+        for (long i = from; i < matches.size() && i < from + pageSize; i++) {
+            classes.add(matches.get((int) i).workoutClass);
+        }
+        return new WorkoutClassSearchPage(classes, page, matches.size() > from + pageSize);
+    }
+
+    /**
+     * @return the summed weight of every field each word prefixes, or 0 if any word matches nothing
+     */
+    private static float score(List<String> words, WorkoutClass workoutClass) {
+        List<String> name = words(workoutClass.getClassName());
+        List<String> level = words(workoutClass.getClassLevel());
+        List<String> description = words(workoutClass.getClassDescription());
+        List<String> equipment = words(workoutClass.getClassEquipment());
+
+        float score = 0;
+        for (String word : words) {
+            float wordScore = weight(word, name, NAME_WEIGHT) + weight(word, level, LEVEL_WEIGHT)
+                    + weight(word, description, DESCRIPTION_WEIGHT) + weight(word, equipment, EQUIPMENT_WEIGHT);
+            if (wordScore == 0) {
+                return 0;
+            }
+            score += wordScore;
+        }
+        return score;
+    }
+
+    private static float weight(String prefix, List<String> fieldWords, float weight) {
+        for (String fieldWord : fieldWords) {
+            if (fieldWord.startsWith(prefix)) {
+                return weight;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, as the JDBC prefix query does.
+     */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Deletes a workout class.
+     *
+     * @param classId The ID of the class to delete.
+     * @throws SQLException If the log cannot be written.
+     */
+    @Override
+    public void deleteWorkoutClass(int classId) throws SQLException {
+        try {
+            store.delete(classId);
+        } catch (IOException e) {
+            throw new SQLException("Failed to delete workout class", e);
+        }
+    }
+
+    /**
+     * Updates the same fields the JDBC update does; the trainer and equipment are kept.
+     *
+     * @param workoutClass The {@link WorkoutClass} object with updated details.
+     * @return true if the update was successful, false otherwise.
+     */
+    @Override
+    public boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        synchronized (updateLock) {
+            try {
+                WorkoutClass stored = store.get(workoutClass.getClassId());
+                if (stored == null) {
+                    return false;
+                }
+                stored.setClassName(workoutClass.getClassName());
+                stored.setClassDescription(workoutClass.getClassDescription());
+                stored.setClassLevel(workoutClass.getClassLevel());
+                stored.setClassDuration(workoutClass.getClassDuration());
+                stored.setClassCapacity(workoutClass.getClassCapacity());
+                stored.setClassDate(workoutClass.getClassDate());
+                stored.setClassTime(workoutClass.getClassTime());
+                stored.setClassLocation(workoutClass.getClassLocation());
+                stored.setCompleted(workoutClass.isCompleted());
+                return store.update(stored) != null;
+            } catch (IOException e) {
+                throw new SQLException("Failed to update workout class " + workoutClass.getClassId(), e);
+            }
+        }
+    }
+
+    /**
+     * Unassigns a deleted trainer from their classes, as {@code ON DELETE SET NULL} on
+     * {@code workoutclasses.trainer_id} does (the JDBC mapper reads that NULL as 0).
+     *
+     * @param trainerId the deleted trainer's ID
+     */
+    void unassignTrainer(int trainerId) {
+        synchronized (updateLock) {
+            try {
+                for (WorkoutClass stored : store.getAll(classIdsOf(trainerId))) {
+                    WorkoutClass unassigned = new WorkoutClass(stored.getClassId(), stored.getClassName(), 0,
+                            stored.getClassDescription(), stored.getClassLevel(), stored.getClassDuration(),
+                            stored.getClassCapacity(), stored.getClassDate(), stored.getClassTime(),
+                            stored.getClassLocation(), stored.getClassEquipment());
+                    unassigned.setCompleted(stored.isCompleted());
+                    store.update(unassigned);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the underlying store, for maintenance and metrics
+     */
+    public RecordStore<WorkoutClass> getStore() {
+        return store;
+    }
+
+    private void checkTrainer(WorkoutClass workoutClass) throws SQLException {
+        if (workoutClass.getTrainerId() != 0 && !trainerExists.test(workoutClass.getTrainerId())) {
+            throw new SQLException("No trainer with ID " + workoutClass.getTrainerId());
+        }
+    }
+
+    private List<Integer> classIdsOf(int trainerId) {
+        List<Integer> ids = new ArrayList<>();
+        for (Long key : idsByTrainer.subSet(pack(trainerId, 0), true, pack(trainerId, Integer.MAX_VALUE), true)) {
+            ids.add((int) (long) key);
+        }
+        return ids;
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static final class WorkoutClassCodec implements RecordStore.Codec<WorkoutClass> {
+        @Override
+        public int idOf(WorkoutClass workoutClass) {
+            return workoutClass.getClassId();
+        }
+
+        @Override
+        public void assignId(WorkoutClass workoutClass, int id) {
+            workoutClass.setClassId(id);
+        }
+
+        @Override
+        public void write(WorkoutClass workoutClass, DataOutputStream out) throws IOException {
+            RecordStore.Codec.writeString(out, workoutClass.getClassName());
+            out.writeInt(workoutClass.getTrainerId());
+            RecordStore.Codec.writeString(out, workoutClass.getClassDescription());
+            RecordStore.Codec.writeString(out, workoutClass.getClassLevel());
+            out.writeInt(workoutClass.getClassDuration());
+            out.writeInt(workoutClass.getClassCapacity());
+            out.writeLong(workoutClass.getClassDate().toEpochDay());
+            out.writeInt(workoutClass.getClassTime().toSecondOfDay());
+            RecordStore.Codec.writeString(out, workoutClass.getClassLocation());
+            RecordStore.Codec.writeString(out, workoutClass.getClassEquipment());
+            out.writeBoolean(workoutClass.isCompleted());
+        }
+
+        @Override
+        public WorkoutClass read(int id, DataInputStream in) throws IOException {
+            WorkoutClass workoutClass = new WorkoutClass(id,
+                    RecordStore.Codec.readString(in),
+                    in.readInt(),
+                    RecordStore.Codec.readString(in),
+                    RecordStore.Codec.readString(in),
+                    in.readInt(),
+                    in.readInt(),
+                    LocalDate.ofEpochDay(in.readLong()),
+                    LocalTime.ofSecondOfDay(in.readInt()),
+                    RecordStore.Codec.readString(in),
+                    RecordStore.Codec.readString(in));
+            workoutClass.setCompleted(in.readBoolean());
+            return workoutClass;
+        }
+    }
+
+    private final class WorkoutClassIndexes implements RecordStore.IndexMaintainer<WorkoutClass> {
+        @Override
+        public void added(int id, WorkoutClass workoutClass) {
+            idsByTrainer.add(pack(workoutClass.getTrainerId(), id));
+            schedule.add(new ScheduleKey(workoutClass.getClassDate(), workoutClass.getClassTime(), id));
+        }
+
+        @Override
+        public void removed(int id, WorkoutClass workoutClass) {
+            idsByTrainer.remove(pack(workoutClass.getTrainerId(), id));
+            schedule.remove(new ScheduleKey(workoutClass.getClassDate(), workoutClass.getClassTime(), id));
+        }
+
+        @Override
+        public void clear() {
+            idsByTrainer.clear();
+            schedule.clear();
+        }
+
+        @Override
+        public void writeKeys(WorkoutClass workoutClass, DataOutputStream out) throws IOException {
+            out.writeInt(workoutClass.getTrainerId());
+            out.writeLong(workoutClass.getClassDate().toEpochDay());
+            out.writeInt(workoutClass.getClassTime().toSecondOfDay());
+        }
+
+        @Override
+        public void restoreKeys(int id, DataInputStream in) throws IOException {
+            idsByTrainer.add(pack(in.readInt(), id));
+            schedule.add(new ScheduleKey(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofSecondOfDay(in.readInt()), id));
+        }
+    }
+
+    /**
+     * A class's place in schedule order: date, then time, then ID.
+     */
+    private static final class ScheduleKey implements Comparable<ScheduleKey> {
+        private final LocalDate classDate;
+        private final LocalTime classTime;
+        private final int classId;
+
+        private ScheduleKey(LocalDate classDate, LocalTime classTime, int classId) {
+            this.classDate = classDate;
+            this.classTime = classTime;
+            this.classId = classId;
+        }
+
+        @Override
+        public int compareTo(ScheduleKey other) {
+            int byDate = classDate.compareTo(other.classDate);
+            if (byDate != 0) {
+                return byDate;
+            }
+            int byTime = classTime.compareTo(other.classTime);
+            return byTime != 0 ? byTime : Integer.compare(classId, other.classId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ScheduleKey && compareTo((ScheduleKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * classDate.hashCode() + classTime.hashCode()) + classId;
+        }
+    }
+
+    private static final class ScoredClass {
+        private final WorkoutClass workoutClass;
+        private final float score;
+
+        private ScoredClass(WorkoutClass workoutClass, float score) {
+            this.workoutClass = workoutClass;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.keyin.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only file of records, memory-mapped so appends and reads are plain memory
+ * accesses against the page cache instead of system calls.
+ *
+ * <p>Layout: a 24-byte header (magic, generation, id floor) followed by records of the form
+ * {@code [int bodyLength][int crc32c][byte type][int id][payload]}, where the body is everything
+ * after the CRC. A zero length marks the end of the data; a CRC mismatch marks a record torn by
+ * a crash, and everything from there on is ignored when the log is recovered.</p>
+ *
+ * <p>The mapping grows by doubling. Readers never block: they read through whichever mapping
+ * is current, and a record is only looked up after its offset has been published by the
+ * {@link RecordStore}. Appends are serialized by the store.</p>
+ */
+final class RecordLog implements Closeable {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    static final int HEADER_BYTES = 24;
+    private static final long MAGIC = 0x47594D4C4F473031L; // "GYMLOG01"
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int BODY_PREFIX = 5;
+
+    private final FileChannel channel;
+    private final long generation;
+    private final int idFloor;
+    private volatile MappedByteBuffer buffer;
+    private volatile int end;
+
+    /**
+     * Receives each valid record while a log is recovered.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * @param type    {@link #PUT} or {@link #DELETE}
+         * @param id      the record's primary key
+         * @param offset  where the record starts
+         * @param payload the encoded record (empty for deletes), positioned at its start
+         */
+        void visit(byte type, int id, int offset, ByteBuffer payload) throws IOException;
+    }
+
+    private RecordLog(FileChannel channel, MappedByteBuffer buffer, long generation, int idFloor) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.generation = generation;
+        this.idFloor = idFloor;
+        this.end = HEADER_BYTES;
+    }
+
+    /**
+     * Creates a new, empty log, replacing any file at the path.
+     *
+     * @param path            the file to create
+     * @param generation      incremented on every compaction, so snapshots can tell which log they describe
+     * @param idFloor         lowest id the store may hand out next, so compaction never lets ids be reused
+     * @param initialCapacity bytes to map up front
+     * @return the open log
+     * @throws IOException if the file cannot be created
+     */
+    static RecordLog create(Path path, long generation, int idFloor, int initialCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialCapacity, HEADER_BYTES * 2));
+        buffer.putLong(0, MAGIC);
+        buffer.putLong(8, generation);
+        buffer.putInt(16, idFloor);
+        return new RecordLog(channel, buffer, generation, idFloor);
+    }
+
+    /**
+     * Opens an existing log. Call {@link #recover(int, Visitor)} before appending.
+     *
+     * @param path the log file
+     * @return the open log
+     * @throws IOException if the file cannot be read or is not a record log
+     */
+    static RecordLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Not a record log: " + path);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a record log: " + path);
+        }
+        return new RecordLog(channel, buffer, buffer.getLong(8), buffer.getInt(16));
+    }
+
+    /**
+     * Replays every valid record from {@code from} onwards and positions the log after the last one.
+     * A torn tail left by a crash is simply overwritten by later appends; any of its bytes that
+     * survive past them fail the CRC check on the next recovery.
+     *
+     * @param from    offset of the first record to visit (at least {@link #HEADER_BYTES})
+     * @param visitor receives each record in order
+     * @throws IOException if the visitor fails
+     */
+    void recover(int from, Visitor visitor) throws IOException {
+        MappedByteBuffer current = buffer;
+        int capacity = current.capacity();
+        int position = Math.max(from, HEADER_BYTES);
+        while (position + RECORD_OVERHEAD + BODY_PREFIX <= capacity) {
+            int bodyLength = current.getInt(position);
+            if (bodyLength < BODY_PREFIX || position + RECORD_OVERHEAD + bodyLength > capacity
+                    || current.getInt(position + 4) != crc(current, position + RECORD_OVERHEAD, bodyLength)) {
+                break;
+            }
+            byte type = current.get(position + RECORD_OVERHEAD);
+            int id = current.getInt(position + RECORD_OVERHEAD + 1);
+            visitor.visit(type, id, position, payload(current, position, bodyLength));
+            position += RECORD_OVERHEAD + bodyLength;
+        }
+        end = position;
+    }
+
+    /**
+     * Appends a record. Callers serialize appends.
+     *
+     * @param type    {@link #PUT} or {@link #DELETE}
+     * @param id      the record's primary key
+     * @param payload the encoded record; empty for deletes
+     * @return the offset of the new record
+     * @throws IOException if the log cannot grow to fit it
+     */
+    int append(byte type, int id, byte[] payload) throws IOException {
+        int bodyLength = BODY_PREFIX + payload.length;
+        int offset = end;
+        MappedByteBuffer target = ensureCapacity((long) offset + RECORD_OVERHEAD + bodyLength);
+        target.put(offset + RECORD_OVERHEAD, type);
+        target.putInt(offset + RECORD_OVERHEAD + 1, id);
+        target.put(offset + RECORD_OVERHEAD + BODY_PREFIX, payload);
+        target.putInt(offset + 4, crc(target, offset + RECORD_OVERHEAD, bodyLength));
+        // The length goes last: until it is written the record reads as the end of the log
+        target.putInt(offset, bodyLength);
+        end = offset + RECORD_OVERHEAD + bodyLength;
+        return offset;
+    }
+
+    /**
+     * Copies a record verbatim from another log, as compaction does.
+     *
+     * @param source the log holding the record
+     * @param offset where the record starts in {@code source}
+     * @return the offset of the copy in this log
+     * @throws IOException if the log cannot grow to fit it
+     */
+    int copyFrom(RecordLog source, int offset) throws IOException {
+        MappedByteBuffer from = source.buffer;
+        int size = RECORD_OVERHEAD + from.getInt(offset);
+        int target = end;
+        MappedByteBuffer to = ensureCapacity((long) target + size);
+        to.put(target, from, offset, size);
+        end = target + size;
+        return target;
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the record's payload, positioned at its start
+     */
+    ByteBuffer payload(int offset) {
+        MappedByteBuffer current = buffer;
+        return payload(current, offset, current.getInt(offset));
+    }
+
+    /**
+     * @param offset where a record starts
+     * @return the record's size on disk, header included
+     */
+    int recordSize(int offset) {
+        return RECORD_OVERHEAD + buffer.getInt(offset);
+    }
+
+    /** @return bytes currently mapped. */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /** @return offset the next record will be written at. */
+    int end() {
+        return end;
+    }
+
+    /** @return the compaction generation written in the header. */
+    long generation() {
+        return generation;
+    }
+
+    /** @return the id floor written in the header. */
+    int idFloor() {
+        return idFloor;
+    }
+
+    /**
+     * Writes dirty pages to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Closes the file. The mapping stays valid until it is garbage collected, so readers
+     * that raced with a compaction finish their read.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer ensureCapacity(long needed) throws IOException {
+        MappedByteBuffer current = buffer;
+        if (needed <= current.capacity()) {
+            return current;
+        }
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Record log is full (2 GB); compact it or move to PostgreSQL");
+        }
+        long grown = Math.min(Integer.MAX_VALUE, Math.max(needed, (long) current.capacity() * 2));
+        MappedByteBuffer remapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, grown);
+        buffer = remapped;
+        return remapped;
+    }
+
+    private static ByteBuffer payload(ByteBuffer source, int offset, int bodyLength) {
+        int start = offset + RECORD_OVERHEAD + BODY_PREFIX;
+        return source.slice(start, bodyLength - BODY_PREFIX);
+    }
+
+    private static int crc(ByteBuffer source, int start, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.slice(start, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,779 @@
+package org.keyin.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A table of records kept in an append-only, memory-mapped {@link RecordLog}, with the primary
+ * index (id to log offset) in memory. Every insert, update and delete appends a record; the
+ * latest record for an id wins. Records stay in the page cache and are decoded on each read,
+ * so callers always get their own copy.
+ *
+ * <p>Secondary indexes are kept by an {@link IndexMaintainer}, which is told about every
+ * record added or removed.</p>
+ *
+ * <p><b>Snapshots.</b> {@link #snapshot()} writes {@code <name>.snapshot}: the primary index,
+ * each record's secondary keys, and the log position they cover. On startup the store loads
+ * the snapshot and replays only the log written after it, instead of decoding the whole log.
+ * A snapshot from another compaction generation, or one that fails its CRC, is ignored.</p>
+ *
+ * <p><b>Compaction.</b> Overwritten and deleted records stay in the log as dead bytes.
+ * {@link #compact()} copies the live records verbatim into a new log, swaps it in atomically,
+ * and snapshots it.</p>
+ *
+ * <p>Reads run concurrently; writes, snapshots and compaction take an exclusive lock. A file
+ * lock stops a second process from opening the same store.</p>
+ *
+ * @param <T> the record type
+ */
+public class RecordStore<T> implements Closeable {
+    private static final long SNAPSHOT_MAGIC = 0x47594D534E415032L; // "GYMSNAP2"
+    private static final int INITIAL_LOG_BYTES = 1 << 20;
+
+    /**
+     * Converts records to and from bytes. The id is stored by the log, not by the codec.
+     *
+     * @param <T> the record type
+     */
+    public interface Codec<T> {
+        /**
+         * @param record a record
+         * @return its primary key
+         */
+        int idOf(T record);
+
+        /**
+         * Stores a newly assigned primary key on the record.
+         *
+         * @param record the inserted record
+         * @param id     its new primary key
+         */
+        void assignId(T record, int id);
+
+        /**
+         * @param record the record to encode
+         * @param out    destination for every field except the id
+         * @throws IOException if writing fails
+         */
+        void write(T record, DataOutputStream out) throws IOException;
+
+        /**
+         * @param id the record's primary key
+         * @param in the fields written by {@link #write}
+         * @return a new record
+         * @throws IOException if the bytes are malformed
+         */
+        T read(int id, DataInputStream in) throws IOException;
+
+        /**
+         * Writes a string of any length, or null, as length-prefixed UTF-8.
+         *
+         * @param out   destination
+         * @param value the string, may be null
+         * @throws IOException if writing fails
+         */
+        static void writeString(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Reads a string written by {@link #writeString}.
+         *
+         * @param in source
+         * @return the string, or null
+         * @throws IOException if the bytes are malformed
+         */
+        static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Keeps secondary indexes in step with the store.
+     *
+     * @param <T> the record type
+     */
+    public interface IndexMaintainer<T> {
+        /**
+         * @param id     the record's primary key
+         * @param record a record that is now live
+         */
+        void added(int id, T record);
+
+        /**
+         * @param id     the record's primary key
+         * @param record the version that was overwritten or deleted
+         */
+        void removed(int id, T record);
+
+        /**
+         * Forgets every key, before a full reload.
+         */
+        void clear();
+
+        /**
+         * Writes the record's index keys into a snapshot.
+         *
+         * @param record a live record
+         * @param out    the snapshot
+         * @throws IOException if writing fails
+         */
+        void writeKeys(T record, DataOutputStream out) throws IOException;
+
+        /**
+         * Reads back what {@link #writeKeys} wrote and indexes it.
+         *
+         * @param id the record's primary key
+         * @param in the snapshot
+         * @throws IOException if the snapshot is malformed
+         */
+        void restoreKeys(int id, DataInputStream in) throws IOException;
+    }
+
+    private final Path directory;
+    private final String name;
+    private final Codec<T> codec;
+    private final IndexMaintainer<T> indexes;
+    private final boolean syncWrites;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Integer> offsets = new ConcurrentHashMap<>();
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+
+    private RecordLog log;
+    private int nextId = 1;
+    private long liveBytes;
+    private int snapshotEnd;
+    private long compactions;
+    private boolean closed;
+
+    private RecordStore(Path directory, String name, Codec<T> codec, IndexMaintainer<T> indexes, boolean syncWrites,
+                        FileChannel lockChannel, FileLock fileLock) {
+        this.directory = directory;
+        this.name = name;
+        this.codec = codec;
+        this.indexes = indexes;
+        this.syncWrites = syncWrites;
+        this.lockChannel = lockChannel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Opens (or creates) the store {@code <name>.log} in a directory, loading its snapshot and
+     * replaying the log written since.
+     *
+     * @param directory  where the store's files live
+     * @param name       file name prefix, e.g. {@code users}
+     * @param codec      encodes and decodes records
+     * @param indexes    maintains secondary indexes
+     * @param syncWrites force every write to disk before returning, rather than on {@link #flush()}
+     * @param <T>        the record type
+     * @return the open store
+     * @throws IOException if the files cannot be read or another process has the store open
+     */
+    public static <T> RecordStore<T> open(Path directory, String name, Codec<T> codec, IndexMaintainer<T> indexes,
+                                          boolean syncWrites) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve(name + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("Store " + directory.resolve(name) + " is already open");
+        }
+
+        RecordStore<T> store = new RecordStore<>(directory, name, codec, indexes, syncWrites, lockChannel, fileLock);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.releaseFileLock();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        // A compaction that crashed before its swap leaves this behind; the old log is still complete
+        Files.deleteIfExists(compactPath());
+        Path logPath = logPath();
+        log = Files.exists(logPath) ? RecordLog.open(logPath) : RecordLog.create(logPath, 1, 1, INITIAL_LOG_BYTES);
+        nextId = Math.max(1, log.idFloor());
+
+        int replayFrom = RecordLog.HEADER_BYTES;
+        boolean restored;
+        try {
+            restored = restoreSnapshot();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable snapshot for " + name + " (" + e + "); replaying the whole log");
+            restored = false;
+        }
+        if (restored) {
+            replayFrom = snapshotEnd;
+        } else {
+            offsets.clear();
+            indexes.clear();
+            liveBytes = 0;
+            nextId = Math.max(1, log.idFloor());
+            snapshotEnd = 0;
+        }
+        log.recover(replayFrom, this::replay);
+    }
+
+    /**
+     * Applies one record from the log during startup.
+     */
+    private void replay(byte type, int id, int offset, ByteBuffer payload) throws IOException {
+        Integer previous = type == RecordLog.PUT ? offsets.put(id, offset) : offsets.remove(id);
+        if (previous != null) {
+            indexes.removed(id, decode(id, previous));
+            liveBytes -= log.recordSize(previous);
+        }
+        if (type == RecordLog.PUT) {
+            indexes.added(id, codec.read(id, new DataInputStream(new ByteBufferInput(payload))));
+            liveBytes += log.recordSize(offset);
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    /**
+     * @param id a primary key
+     * @return a fresh copy of the record, or null if there is none
+     * @throws IOException if the stored bytes are malformed
+     */
+    public T get(int id) throws IOException {
+        lock.readLock().lock();
+        try {
+            Integer offset = offsets.get(id);
+            return offset == null ? null : decode(id, offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param ids primary keys
+     * @return the records that exist, in the order given
+     * @throws IOException if the stored bytes are malformed
+     */
+    public List<T> getAll(Collection<Integer> ids) throws IOException {
+        List<T> records = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                Integer offset = offsets.get(id);
+                if (offset != null) {
+                    records.add(decode(id, offset));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return records;
+    }
+
+    /**
+     * @return every record, in id order
+     * @throws IOException if the stored bytes are malformed
+     */
+    public List<T> getAll() throws IOException {
+        int[] ids = sortedIds();
+        List<Integer> boxed = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            boxed.add(id);
+        }
+        return getAll(boxed);
+    }
+
+    /**
+     * Hands every record to a callback in id order, decoding one at a time. The lock is not held
+     * while the callback runs, so a slow consumer never blocks writers.
+     *
+     * @param consumer receives each record
+     * @throws IOException if the stored bytes are malformed
+     */
+    public void forEach(Consumer<T> consumer) throws IOException {
+        for (int id : sortedIds()) {
+            T record = get(id);
+            if (record != null) {
+                consumer.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Appends a new record under the next free id, which is stored on the record.
+     *
+     * @param record the record to insert
+     * @return its new id
+     * @throws IOException if the log cannot be written
+     */
+    public int insert(T record) throws IOException {
+        byte[] payload = encode(record);
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            int id = nextId;
+            int offset = log.append(RecordLog.PUT, id, payload);
+            nextId = id + 1;
+            codec.assignId(record, id);
+            offsets.put(id, offset);
+            liveBytes += log.recordSize(offset);
+            indexes.added(id, record);
+            afterWrite();
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a new version of an existing record.
+     *
+     * @param record the record, carrying its id
+     * @return the version it replaced, or null if there is no record with that id
+     * @throws IOException if the log cannot be written
+     */
+    public T update(T record) throws IOException {
+        int id = codec.idOf(record);
+        byte[] payload = encode(record);
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Integer previousOffset = offsets.get(id);
+            if (previousOffset == null) {
+                return null;
+            }
+            T previous = decode(id, previousOffset);
+            int offset = log.append(RecordLog.PUT, id, payload);
+            offsets.put(id, offset);
+            liveBytes += log.recordSize(offset) - log.recordSize(previousOffset);
+            indexes.removed(id, previous);
+            indexes.added(id, record);
+            afterWrite();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a delete marker for a record.
+     *
+     * @param id the record's primary key
+     * @return the deleted record, or null if there was none
+     * @throws IOException if the log cannot be written
+     */
+    public T delete(int id) throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Integer previousOffset = offsets.get(id);
+            if (previousOffset == null) {
+                return null;
+            }
+            T previous = decode(id, previousOffset);
+            log.append(RecordLog.DELETE, id, new byte[0]);
+            offsets.remove(id);
+            liveBytes -= log.recordSize(previousOffset);
+            indexes.removed(id, previous);
+            afterWrite();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the indexes so the next startup replays only what is written after it.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            writeSnapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshots if at least {@code minBytes} of log have been written since the last snapshot.
+     *
+     * @param minBytes how much unsnapshotted log is worth a snapshot
+     * @return true if a snapshot was written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public boolean snapshotIfStale(int minBytes) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed || log.end() - Math.max(snapshotEnd, RecordLog.HEADER_BYTES) < minBytes) {
+                return false;
+            }
+            writeSnapshot();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log with only its live records, then snapshots it.
+     *
+     * @throws IOException if the new log cannot be written; the old one is then left in place
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            long needed = RecordLog.HEADER_BYTES + liveBytes + INITIAL_LOG_BYTES;
+            RecordLog compacted = RecordLog.create(compactPath(), log.generation() + 1, nextId,
+                    (int) Math.min(Integer.MAX_VALUE, needed));
+            Map<Integer, Integer> moved = new HashMap<>(offsets.size() * 2);
+            try {
+                for (int id : sortedIds()) {
+                    moved.put(id, compacted.copyFrom(log, offsets.get(id)));
+                }
+                compacted.force();
+                Files.move(compactPath(), logPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                compacted.close();
+                Files.deleteIfExists(compactPath());
+                throw e;
+            }
+
+            RecordLog old = log;
+            log = compacted;
+            offsets.putAll(moved);
+            old.close();
+            compactions++;
+            writeSnapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts when dead records take up at least {@code minDeadBytes} and outweigh live ones.
+     *
+     * @param minDeadBytes dead bytes below which compaction is not worth it
+     * @return true if the store was compacted
+     * @throws IOException if compaction fails
+     */
+    public boolean compactIfWorthwhile(long minDeadBytes) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long dead = getDeadBytes();
+            if (closed || dead < minDeadBytes || dead < liveBytes) {
+                return false;
+            }
+            compact();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes dirty log pages to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            if (!closed) {
+                log.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshots, flushes and closes the store, releasing its file lock.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                writeSnapshot();
+            } finally {
+                closed = true;
+                log.force();
+                log.close();
+                releaseFileLock();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @return the store's file name prefix, e.g. {@code users}. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return number of live records. */
+    public int size() {
+        return offsets.size();
+    }
+
+    /** @return bytes of the log holding live records. */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return bytes of the log holding overwritten or deleted records. */
+    public long getDeadBytes() {
+        lock.readLock().lock();
+        try {
+            return log.end() - RecordLog.HEADER_BYTES - liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return compactions run since the store was opened. */
+    public long getCompactions() {
+        lock.readLock().lock();
+        try {
+            return compactions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the store.
+     *
+     * @return record count and log usage
+     */
+    @Override
+    public String toString() {
+        return String.format("%s [records=%d, live=%.1fKB, dead=%.1fKB, compactions=%d]",
+                name, size(), getLiveBytes() / 1024.0, getDeadBytes() / 1024.0, getCompactions());
+    }
+
+    /**
+     * Writes {@code <name>.snapshot} through a temporary file and an atomic rename, after forcing
+     * the log so the snapshot never covers bytes that are not on disk. Caller holds the write lock.
+     */
+    private void writeSnapshot() throws IOException {
+        log.force();
+        Path temporary = directory.resolve(name + ".snapshot.tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc));
+            out.writeLong(SNAPSHOT_MAGIC);
+            out.writeLong(log.generation());
+            out.writeInt(log.end());
+            out.writeInt(nextId);
+            out.writeLong(liveBytes);
+            out.writeInt(offsets.size());
+            for (Map.Entry<Integer, Integer> entry : offsets.entrySet()) {
+                int id = entry.getKey();
+                out.writeInt(id);
+                out.writeInt(entry.getValue());
+                indexes.writeKeys(decode(id, entry.getValue()), out);
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotEnd = log.end();
+    }
+
+    /**
+     * Loads the snapshot if it matches the current log.
+     *
+     * @return true if the indexes were restored from it
+     */
+    private boolean restoreSnapshot() throws IOException {
+        Path path = snapshotPath();
+        if (!Files.exists(path)) {
+            return false;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 8) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            System.out.println("Ignoring damaged snapshot " + path + "; replaying the whole log");
+            return false;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readLong() != SNAPSHOT_MAGIC || in.readLong() != log.generation()) {
+            return false;
+        }
+        int coveredEnd = in.readInt();
+        if (coveredEnd < RecordLog.HEADER_BYTES || coveredEnd > log.capacity()) {
+            return false;
+        }
+        int snapshotNextId = in.readInt();
+        long snapshotLiveBytes = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            offsets.put(id, in.readInt());
+            indexes.restoreKeys(id, in);
+        }
+        nextId = Math.max(nextId, snapshotNextId);
+        liveBytes = snapshotLiveBytes;
+        snapshotEnd = coveredEnd;
+        return true;
+    }
+
+    private int[] sortedIds() {
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[offsets.size()];
+            int i = 0;
+            for (Integer id : offsets.keySet()) {
+                if (i == ids.length) {
+                    break;
+                }
+                ids[i++] = id;
+            }
+            int[] sorted = Arrays.copyOf(ids, i);
+            Arrays.sort(sorted);
+            return sorted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private T decode(int id, int offset) throws IOException {
+        return codec.read(id, new DataInputStream(new ByteBufferInput(log.payload(offset))));
+    }
+
+    private byte[] encode(T record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.write(record, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void afterWrite() {
+        if (syncWrites) {
+            log.force();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Store " + name + " is closed");
+        }
+    }
+
+    private void releaseFileLock() throws IOException {
+        try {
+            fileLock.release();
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    private Path logPath() {
+        return directory.resolve(name + ".log");
+    }
+
+    private Path compactPath() {
+        return directory.resolve(name + ".log.compact");
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve(name + ".snapshot");
+    }
+
+    /**
+     * Reads a {@link ByteBuffer} as a stream, so codecs can use {@link DataInputStream}.
+     */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
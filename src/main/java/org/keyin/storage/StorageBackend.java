@@ -0,0 +1,222 @@
+package org.keyin.storage;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.ShardMap;
+import org.keyin.membership.MembershipDAO;
+import org.keyin.membership.MembershipDAOImpl;
+import org.keyin.membership.ShardedMembershipDAO;
+import org.keyin.user.ShardedUserDao;
+import org.keyin.user.UserDao;
+import org.keyin.user.UserDaoImpl;
+import org.keyin.workoutclasses.BookingDAO;
+import org.keyin.workoutclasses.BookingDAOImpl;
+import org.keyin.workoutclasses.ShardedBookingDAO;
+import org.keyin.workoutclasses.ShardedWorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAO;
+import org.keyin.workoutclasses.WorkoutClassDAOImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses at startup where the user, membership and workout class DAOs keep their data.
+ *
+ * <p>{@code -Dgym.storage=postgres} (the default) returns the JDBC implementations, wrapped in
+ * the sharded ones when {@code gym.db.shards} lists locations (see {@link ShardMap}).
+ * {@code -Dgym.storage=mapped} returns the memory-mapped ones, storing their logs and snapshots
+ * in {@code -Dgym.storage.dir} (default {@code data}). In mapped mode a background thread
+ * flushes the logs every {@code -Dgym.storage.flushIntervalMillis} (default 1000), or every
+ * write is forced when {@code -Dgym.storage.syncWrites=true}; every
+ * {@code -Dgym.storage.compactIntervalMinutes} (default 10, 0 disables) it compacts stores that
+ * are mostly dead records and snapshots the rest. Stores are snapshotted and closed on exit.</p>
+ *
+ * <p>The mapped stores live in this process only: run one app instance per directory, and
+ * expect the PostgreSQL change feed, bookings and admin SQL to see none of their data.</p>
+ */
+public final class StorageBackend {
+    /** Backend name for the JDBC DAOs. */
+    public static final String POSTGRES = "postgres";
+    /** Backend name for the memory-mapped DAOs. */
+    public static final String MAPPED = "mapped";
+
+    // Compact once at least this much of a log is dead (and dead outweighs live)
+    private static final long MIN_DEAD_BYTES = 4L << 20;
+    // Snapshot once this much log has been written since the last one
+    private static final int MIN_SNAPSHOT_BYTES = 1 << 20;
+
+    private static volatile MappedUserDao users;
+    private static volatile MappedMembershipDAO memberships;
+    private static volatile MappedWorkoutClassDAO workoutClasses;
+
+    private StorageBackend() {
+    }
+
+    /**
+     * @return the configured backend name, {@link #POSTGRES} or {@link #MAPPED}
+     */
+    public static String getName() {
+        String name = System.getProperty("gym.storage", POSTGRES);
+        if (!POSTGRES.equals(name) && !MAPPED.equals(name)) {
+            throw new IllegalArgumentException("Unknown -Dgym.storage=" + name + " (expected postgres or mapped)");
+        }
+        return name;
+    }
+
+    /**
+     * @return true if the memory-mapped DAOs are in use
+     */
+    public static boolean isMapped() {
+        return MAPPED.equals(getName());
+    }
+
+    /**
+     * @return the user DAO for the configured backend
+     */
+    public static UserDao userDao() {
+        if (!isMapped()) {
+            ShardMap shards = DatabaseConnection.getShards();
+            return shards == null ? new UserDaoImpl() : new ShardedUserDao(new UserDaoImpl(), shards);
+        }
+        openMapped();
+        return users;
+    }
+
+    /**
+     * @return the membership DAO for the configured backend
+     */
+    public static MembershipDAO membershipDAO() {
+        if (!isMapped()) {
+            ShardMap shards = DatabaseConnection.getShards();
+            return shards == null ? new MembershipDAOImpl() : new ShardedMembershipDAO(new MembershipDAOImpl(), shards);
+        }
+        openMapped();
+        return memberships;
+    }
+
+    /**
+     * @return the workout class DAO for the configured backend
+     */
+    public static WorkoutClassDAO workoutClassDAO() {
+        if (!isMapped()) {
+            ShardMap shards = DatabaseConnection.getShards();
+            return shards == null ? new WorkoutClassDAOImpl() : new ShardedWorkoutClassDAO(new WorkoutClassDAOImpl(), shards);
+        }
+        openMapped();
+        return workoutClasses;
+    }
+
+    /**
+     * @return the booking DAO; bookings always live in PostgreSQL, on the class's shard if sharded
+     */
+    public static BookingDAO bookingDAO() {
+        ShardMap shards = DatabaseConnection.getShards();
+        return shards == null ? new BookingDAOImpl() : new ShardedBookingDAO(new BookingDAOImpl(), shards);
+    }
+
+    /**
+     * @return the open mapped stores, for metrics; empty on the PostgreSQL backend
+     */
+    public static synchronized List<RecordStore<?>> getStores() {
+        if (users == null) {
+            return Collections.emptyList();
+        }
+        List<RecordStore<?>> stores = new ArrayList<>();
+        stores.add(users.getStore());
+        stores.add(memberships.getStore());
+        stores.add(workoutClasses.getStore());
+        return stores;
+    }
+
+    /**
+     * Opens all three stores on first use, wires the cascades the foreign keys would perform,
+     * and starts maintenance. Every DAO handed out shares these instances, since a store can
+     * only be open once per directory.
+     */
+    private static synchronized void openMapped() {
+        if (users == null) {
+            Path directory = Paths.get(System.getProperty("gym.storage.dir", "data"));
+            boolean syncWrites = Boolean.getBoolean("gym.storage.syncWrites");
+            try {
+                MappedUserDao userDao = new MappedUserDao(directory, syncWrites);
+                MappedMembershipDAO membershipDAO = new MappedMembershipDAO(directory, syncWrites,
+                        memberId -> userExists(userDao, memberId));
+                MappedWorkoutClassDAO workoutClassDAO = new MappedWorkoutClassDAO(directory, syncWrites,
+                        trainerId -> userExists(userDao, trainerId));
+                userDao.addDeleteListener(membershipDAO::deleteMembershipsOfMember);
+                userDao.addDeleteListener(workoutClassDAO::unassignTrainer);
+                users = userDao;
+                memberships = membershipDAO;
+                workoutClasses = workoutClassDAO;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open mapped storage in " + directory.toAbsolutePath(), e);
+            }
+            startMaintenance(syncWrites);
+            System.out.println("Using mapped storage in " + directory.toAbsolutePath() + ": " + getStores());
+        }
+    }
+
+    private static boolean userExists(MappedUserDao userDao, int userId) {
+        try {
+            return userDao.getStore().get(userId) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void startMaintenance(boolean syncWrites) {
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mapped-storage-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalMillis = Long.getLong("gym.storage.flushIntervalMillis", 1000);
+        if (!syncWrites && flushIntervalMillis > 0) {
+            maintenance.scheduleWithFixedDelay(StorageBackend::flushAll, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        long compactIntervalMinutes = Long.getLong("gym.storage.compactIntervalMinutes", 10);
+        if (compactIntervalMinutes > 0) {
+            maintenance.scheduleWithFixedDelay(StorageBackend::compactAll, compactIntervalMinutes, compactIntervalMinutes,
+                    TimeUnit.MINUTES);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            maintenance.shutdownNow();
+            closeAll();
+        }, "mapped-storage-shutdown"));
+    }
+
+    private static void flushAll() {
+        for (RecordStore<?> store : getStores()) {
+            store.flush();
+        }
+    }
+
+    private static void compactAll() {
+        for (RecordStore<?> store : getStores()) {
+            try {
+                if (!store.compactIfWorthwhile(MIN_DEAD_BYTES)) {
+                    store.snapshotIfStale(MIN_SNAPSHOT_BYTES);
+                }
+            } catch (IOException e) {
+                System.out.println("Maintenance failed for " + store + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeAll() {
+        for (RecordStore<?> store : getStores()) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.out.println("Could not close " + store + ": " + e.getMessage());
+            }
+        }
+    }
+}
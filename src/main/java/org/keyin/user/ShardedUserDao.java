@@ -0,0 +1,213 @@
+package org.keyin.user;
+
+import org.keyin.database.ShardMap;
+import org.keyin.utils.PasswordHashingExecutor;
+import org.keyin.utils.PasswordUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Spreads users over the location shards in front of a single-database {@link UserDao}.
+ * A user lives at the location that registered them; lookups by id go to the shard owning
+ * the id, while lookups by email and the admin user list ask every shard in parallel. If any
+ * shard fails, lookups and registration throw rather than treat its users as missing.
+ * Emails are kept unique across locations by a {@link UserEmailDirectory} on the primary.
+ */
+public class ShardedUserDao implements UserDao {
+    private final UserDao delegate;
+    private final ShardMap shards;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final UserEmailDirectory directory;
+
+    /**
+     * @param delegate the DAO run against each shard
+     * @param shards   the locations and their databases
+     */
+    public ShardedUserDao(UserDao delegate, ShardMap shards) {
+        this(delegate, shards, PasswordHashingExecutor.shared());
+    }
+
+    /**
+     * @param delegate        the DAO run against each shard
+     * @param shards          the locations and their databases
+     * @param hashingExecutor bounded executor the login's BCrypt check runs on
+     */
+    public ShardedUserDao(UserDao delegate, ShardMap shards, PasswordHashingExecutor hashingExecutor) {
+        this(delegate, shards, hashingExecutor, new UserEmailDirectory());
+    }
+
+    ShardedUserDao(UserDao delegate, ShardMap shards, PasswordHashingExecutor hashingExecutor, UserEmailDirectory directory) {
+        this.delegate = delegate;
+        this.shards = shards;
+        this.hashingExecutor = hashingExecutor;
+        this.directory = directory;
+    }
+
+    /**
+     * Finds the user on whichever shard has the email, then checks the password once on the
+     * hashing executor. Only the lookup goes to the shards: the delegate's own login would
+     * hash against a dummy on every shard without the email, so a login would cost one BCrypt
+     * run per location, outside the hashing executor's bound.
+     */
+    @Override
+    public User findByEmailAndPassword(String email, String enteredPassword) throws SQLException {
+        User user = findByEmail(email);
+        // An unknown email is checked against a dummy hash, so it takes as long as a wrong password
+        String hash = user == null ? PasswordUtils.dummyHash() : user.getPassword();
+        boolean matches;
+        try {
+            matches = hashingExecutor.checkPassword(enteredPassword, hash).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (user != null && !matches) {
+            System.out.println("Incorrect password.");
+        }
+        return matches ? user : null;
+    }
+
+    @Override
+    public User findByEmail(String email) throws SQLException {
+        return first(() -> delegate.findByEmail(email));
+    }
+
+    /**
+     * Collects every location's users, merged in user ID order.
+     *
+     * @return list of all User objects
+     */
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        List<User> users = new ArrayList<>();
+        for (List<User> shardUsers : shards.scatter(delegate::getAllUsers)) {
+            users.addAll(shardUsers);
+        }
+        users.sort(Comparator.comparingInt(User::getId));
+        return users;
+    }
+
+    /**
+     * Streams one location after another, so rows arrive in user ID order without holding
+     * more than one cursor open. A failed location stops the stream there.
+     */
+    @Override
+    public void streamAllUsers(int fetchSize, Consumer<User> rowHandler) throws SQLException {
+        for (ShardMap.Shard shard : shards.getShards()) {
+            try {
+                shards.onShard(shard, () -> {
+                    delegate.streamAllUsers(fetchSize, rowHandler);
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw new SQLException("Streaming users failed on shard " + shard.getLocation()
+                        + ": " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+    }
+
+    /**
+     * Registers the user at the current location (see {@link ShardMap#forNewRows()}), after
+     * checking that no location already has the email and claiming it in the email directory.
+     * If any location cannot be checked, nothing is inserted.
+     */
+    @Override
+    public int registerUser(String username, String email, String password, String role, String phone, String address) throws SQLException {
+        return register(email, () -> delegate.registerUser(username, email, password, role, phone, address));
+    }
+
+    @Override
+    public int registerUserWithHashedPassword(String username, String email, String hashedPassword, String role, String phone, String address) throws SQLException {
+        return register(email, () -> delegate.registerUserWithHashedPassword(username, email, hashedPassword, role, phone, address));
+    }
+
+    /**
+     * Deletes the user on their shard and frees their email in the directory.
+     */
+    @Override
+    public boolean deleteUserById(int userId) {
+        ShardMap.Shard shard = shards.forId(userId);
+        if (shard == null || !call(shard, () -> delegate.deleteUserById(userId), false)) {
+            return false;
+        }
+        try {
+            directory.remove(userId);
+        } catch (SQLException e) {
+            System.out.println("User " + userId + " was deleted, but their email stays reserved: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * The shard check finds users registered before the directory existed; the claim is what
+     * stops two locations registering the same email at the same time.
+     */
+    private int register(String email, ShardMap.ShardCall<Integer> insert) throws SQLException {
+        if (email != null && findByEmail(email) != null) {
+            return -1;
+        }
+        ShardMap.Shard shard = shards.forNewRows();
+        if (email == null) {
+            return shards.onShard(shard, insert);
+        }
+        if (!directory.claim(email, shard.getLocation())) {
+            return -1;
+        }
+        int userId;
+        try {
+            userId = shards.onShard(shard, insert);
+        } catch (SQLException | RuntimeException e) {
+            releaseQuietly(email, e);
+            throw e;
+        }
+        if (userId < 0) {
+            // The username is taken at this location
+            directory.release(email);
+            return -1;
+        }
+        try {
+            directory.assign(email, userId);
+        } catch (SQLException e) {
+            // The user exists; an unassigned claim goes stale, after which the shard check still finds them
+            System.out.println("Registered user " + userId + " but could not record their email: " + e.getMessage());
+        }
+        return userId;
+    }
+
+    private void releaseQuietly(String email, Exception failure) {
+        try {
+            directory.release(email);
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Returns the first shard's match; a shard that failed may hold the user, so any failure
+     * is thrown instead of answering "not found".
+     */
+    private User first(ShardMap.ShardCall<User> lookup) throws SQLException {
+        for (User user : shards.scatter(lookup)) {
+            if (user != null) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private <T> T call(ShardMap.Shard shard, ShardMap.ShardCall<T> call, T onError) {
+        try {
+            return shards.onShard(shard, call);
+        } catch (SQLException e) {
+            System.out.println("Error on location " + shard.getLocation() + ": " + e.getMessage());
+            return onError;
+        }
+    }
+}
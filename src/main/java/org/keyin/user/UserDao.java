@@ -1,7 +1,9 @@
 // UserDao.java
 package org.keyin.user;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * UserDao defines the contract for user-related database operations.
@@ -13,14 +15,36 @@ public interface UserDao {
      * Finds a user by their email address for login purposes.
      * @param email the email address to search for
      * @return the matching User object or null if not found
+     * @throws SQLException if the user cannot be looked up
      */
-    User findByEmailAndPassword(String email, String enteredPassword); 
+    User findByEmailAndPassword(String email, String enteredPassword) throws SQLException;
+
+    /**
+     * Looks up a user by email without checking a password.
+     * The returned user carries the stored password hash so the caller can verify it
+     * after the database connection has been released.
+     * @param email the email address to search for
+     * @return the matching User object (with hashed password) or null if not found
+     * @throws SQLException if the user cannot be looked up; never reported as "not found"
+     */
+    User findByEmail(String email) throws SQLException;
 
     /**
      * Retrieves a list of all users in the database.
      * @return list of all User objects
+     * @throws SQLException if the users cannot be read
+     */
+    List<User> getAllUsers() throws SQLException;
+
+    /**
+     * Streams every user to a callback as rows arrive, using a server-side cursor
+     * so memory use stays constant no matter how many users exist.
+     * @param fetchSize number of rows fetched from the database per round trip
+     * @param rowHandler callback invoked once per user, in user ID order
+     * @throws SQLException if the users cannot be read; rows handed over before the failure
+     *         are not retracted
      */
-    List<User> getAllUsers();
+    void streamAllUsers(int fetchSize, Consumer<User> rowHandler) throws SQLException;
 
     /**
      * Registers a new user in the database.
@@ -30,9 +54,23 @@ public interface UserDao {
      * @param role the role of the new user (e.g., "admin", "user")
      * @param phone the phone number of the new user
      * @param address the address of the new user
-     * @return true if registration was successful, false otherwise
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the insert fails, or it cannot be checked that the email is free
+     */
+    int registerUser(String username, String email, String password, String role, String phone, String address) throws SQLException;
+
+    /**
+     * Registers a new user whose password has already been hashed.
+     * @param username the username of the new user
+     * @param email the email of the new user
+     * @param hashedPassword the BCrypt hash of the new user's password
+     * @param role the role of the new user
+     * @param phone the phone number of the new user
+     * @param address the address of the new user
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the insert fails, or it cannot be checked that the email is free
      */
-    boolean registerUser(String username, String email, String password, String role, String phone, String address);
+    int registerUserWithHashedPassword(String username, String email, String hashedPassword, String role, String phone, String address) throws SQLException;
 
 
     /**
@@ -2,14 +2,16 @@
 package org.keyin.user;
 
 import org.keyin.database.DatabaseConnection;
+import org.keyin.database.Projection;
+import org.keyin.database.RowMapper;
 import org.keyin.user.childclasses.Admin;
 import org.keyin.user.childclasses.Member;
 import org.keyin.user.childclasses.Trainer;
 import org.keyin.utils.PasswordUtils;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Implementation of UserDao for handling user-related database operations.
@@ -17,72 +19,125 @@ import java.util.List;
  */
 public class UserDaoImpl implements UserDao {
 
+    /** Columns needed to authenticate a user; login never reads the contact details. */
+    private static final Projection LOGIN_COLUMNS = Projection.of(
+            "user_id", "user_name", "user_email", "user_password", "user_role");
+
+    /** Columns for full user listings. */
+    private static final Projection USER_COLUMNS = LOGIN_COLUMNS.plus("user_phone", "user_address");
+
+    private static final RowMapper<User> LOGIN_MAPPER = userMapper(LOGIN_COLUMNS, false);
+    private static final RowMapper<User> USER_MAPPER = userMapper(USER_COLUMNS, true);
+
     /**
      * Attempts to find a user by email and validate their password interactively.
      * If email is not found or password is incorrect, returns null.
+     * The password is checked after the lookup's connection has gone back to the pool,
+     * so the slow BCrypt comparison never holds a database connection.
      * @param email the email of the user attempting to log in
      * @return User object if valid, null otherwise
+     * @throws SQLException if the lookup fails
+     */
+    @Override
+    public User findByEmailAndPassword(String email, String enteredPassword) throws SQLException {
+        User user = findByEmail(email);
+        if (user == null) {
+            // Spend the same BCrypt time as a wrong password so unknown emails cannot be told apart
+            PasswordUtils.checkPassword(enteredPassword, PasswordUtils.dummyHash());
+            return null;
+        }
+
+        if (!PasswordUtils.checkPassword(enteredPassword, user.getPassword())) {
+            System.out.println("Incorrect password.");
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Looks up a user by email and returns them with their stored password hash.
+     * @param email the email of the user
+     * @return role-specific User object, or null if not found or the role is unknown
+     * @throws SQLException if the query fails
      */
     @Override
-    public User findByEmailAndPassword(String email, String enteredPassword) {
-        String sql = "SELECT * FROM users WHERE user_email = ?";
+    public User findByEmail(String email) throws SQLException {
+        String sql = "SELECT " + LOGIN_COLUMNS.columns() + " FROM users WHERE user_email = ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, email);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                String role = rs.getString("user_role");
-                int id = rs.getInt("user_id");
-                String username = rs.getString("user_name");
-                String hashedPassword = rs.getString("user_password");
-
-                if (!PasswordUtils.checkPassword(enteredPassword, hashedPassword)) {
-                    System.out.println("Incorrect password.");
-                    return null;
-                }
-
-                switch (role.toLowerCase()) {
-                    case "admin":
-                        return new Admin(id, username, email, hashedPassword);
-                    case "trainer":
-                        return new Trainer(id, username, email, hashedPassword);
-                    case "member":
-                        return new Member(id, username, email, hashedPassword);
-                }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return RowMapper.first(rs, LOGIN_MAPPER);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return null;
     }
 
     /**
  * Retrieves all users from the database.
  * @return a list of all User objects
+ * @throws SQLException if the query fails
  */
 @Override
-public List<User> getAllUsers() {
-    List<User> users = new ArrayList<>();
-    String sql = "SELECT * FROM users";
+public List<User> getAllUsers() throws SQLException {
+    String sql = "SELECT " + USER_COLUMNS.columns() + " FROM users";
 
-    try (Connection conn = DatabaseConnection.getConnection();
+    try (Connection conn = DatabaseConnection.getReadConnection();
          Statement stmt = conn.createStatement();
          ResultSet rs = stmt.executeQuery(sql)) {
 
-        while (rs.next()) {
-            String role = rs.getString("user_role");
-            int id = rs.getInt("user_id");
-            String username = rs.getString("user_name");
-            String email = rs.getString("user_email");
-            String password = rs.getString("user_password");
-            String phone = rs.getString("user_phone");
-            String address = rs.getString("user_address");
+        return RowMapper.toList(rs, USER_MAPPER);
+    }
+}
+
+    /**
+     * Streams all users through a server-side cursor. PostgreSQL only honours the
+     * fetch size inside a transaction, so autocommit is switched off for the scan.
+     * @param fetchSize number of rows fetched per round trip
+     * @param rowHandler callback invoked once per user
+     * @throws SQLException if the query fails
+     */
+    @Override
+    public void streamAllUsers(int fetchSize, Consumer<User> rowHandler) throws SQLException {
+        String sql = "SELECT " + USER_COLUMNS.columns() + " FROM users ORDER BY user_id";
+
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    RowMapper.forEach(rs, USER_MAPPER, rowHandler);
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    /**
+     * Builds a mapper for the role-specific {@link User} subclass over the given projection.
+     * Column indexes are resolved here, once, rather than by label on every row.
+     * @param columns the projection the query selects
+     * @param plainUserForUnknownRole map unrecognised roles to a plain User instead of null
+     * @return a reusable row mapper
+     */
+    private static RowMapper<User> userMapper(Projection columns, boolean plainUserForUnknownRole) {
+        int idIndex = columns.index("user_id");
+        int nameIndex = columns.index("user_name");
+        int emailIndex = columns.index("user_email");
+        int passwordIndex = columns.index("user_password");
+        int roleIndex = columns.index("user_role");
+        int phoneIndex = columns.contains("user_phone") ? columns.index("user_phone") : 0;
+        int addressIndex = columns.contains("user_address") ? columns.index("user_address") : 0;
+
+        return rs -> {
+            int id = rs.getInt(idIndex);
+            String username = rs.getString(nameIndex);
+            String email = rs.getString(emailIndex);
+            String password = rs.getString(passwordIndex);
 
             User user;
-            switch (role.toLowerCase()) {
+            switch (rs.getString(roleIndex).toLowerCase()) {
                 case "admin":
                     user = new Admin(id, username, email, password);
                     break;
@@ -93,20 +148,22 @@ public List<User> getAllUsers() {
                     user = new Member(id, username, email, password);
                     break;
                 default:
+                    if (!plainUserForUnknownRole) {
+                        return null;
+                    }
                     user = new User(id, username, email, password);
                     break;
             }
 
-            user.setPhoneNumber(phone);
-            user.setAddress(address);
-            users.add(user);
-        }
-
-    } catch (SQLException e) {
-        e.printStackTrace();
+            if (phoneIndex > 0) {
+                user.setPhoneNumber(rs.getString(phoneIndex));
+            }
+            if (addressIndex > 0) {
+                user.setAddress(rs.getString(addressIndex));
+            }
+            return user;
+        };
     }
-    return users;
-}
 
 
     /**
@@ -117,37 +174,45 @@ public List<User> getAllUsers() {
      * @param role the assigned role (admin, trainer, member)
      * @param phone the user's phone number
      * @param address the user's mailing address
-     * @return true if insert was successful, false otherwise
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the insert fails
+     */
+    @Override
+    public int registerUser(String username, String email, String password, String role, String phone, String address) throws SQLException {
+        return registerUserWithHashedPassword(username, email, PasswordUtils.hashPassword(password), role, phone, address);
+    }
+
+    /**
+     * Registers a new user whose password was hashed by the caller.
+     * A single INSERT ... ON CONFLICT DO NOTHING RETURNING statement both checks the unique
+     * email and username constraints and inserts, so concurrent registrations of the same
+     * email cannot race between a check and the insert, and it costs one round trip.
+     * @param username the new user's username
+     * @param email the new user's email
+     * @param hashedPassword the BCrypt hash of the new user's password
+     * @param role the assigned role (admin, trainer, member)
+     * @param phone the user's phone number
+     * @param address the user's mailing address
+     * @return the new user's ID, or -1 if the email or username is taken
+     * @throws SQLException if the insert fails
      */
     @Override
-    public boolean registerUser(String username, String email, String password, String role, String phone, String address) {
-        String checkSql = "SELECT 1 FROM users WHERE user_email = ?";
-        String insertSql = "INSERT INTO users (user_name, user_email, user_password, user_role, user_phone, user_address) VALUES (?, ?, ?, ?, ?, ?)";
+    public int registerUserWithHashedPassword(String username, String email, String hashedPassword, String role, String phone, String address) throws SQLException {
+        String insertSql = "INSERT INTO users (user_name, user_email, user_password, user_role, user_phone, user_address) " +
+                "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING RETURNING user_id";
 
         try (Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-            checkStmt.setString(1, email);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next()) {
-                // Email exists
-                return false;
-            }   
-
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                insertStmt.setString(1, username);
-                insertStmt.setString(2, email);
-                insertStmt.setString(3, PasswordUtils.hashPassword(password));
-                insertStmt.setString(4, role);
-                insertStmt.setString(5, phone);
-                insertStmt.setString(6, address);
-                insertStmt.executeUpdate();
-                return true;
+             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            insertStmt.setString(1, username);
+            insertStmt.setString(2, email);
+            insertStmt.setString(3, hashedPassword);
+            insertStmt.setString(4, role);
+            insertStmt.setString(5, phone);
+            insertStmt.setString(6, address);
+            try (ResultSet rs = insertStmt.executeQuery()) {
+                // No row back means a unique constraint (email or username) was hit
+                return rs.next() ? rs.getInt(1) : -1;
             }
-    
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
         }
     }
 
@@ -0,0 +1,95 @@
+package org.keyin.user;
+
+import org.keyin.database.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The location each email is registered at, kept in {@code user_email_directory} on the
+ * primary database ({@code gym.db.url}) while users are sharded. Each shard's unique
+ * constraint only covers its own users; this table's primary key covers all of them. A
+ * registration claims the email here before inserting on its shard, so two locations
+ * registering the same email at once cannot both succeed.
+ *
+ * <p>A claim whose shard insert never finished, e.g. because the process died in between, has
+ * no user id. After {@link #STALE_CLAIM_MINUTES} minutes it may be claimed again.</p>
+ */
+class UserEmailDirectory {
+    /** Minutes after which a claim without a user id is considered abandoned. */
+    static final int STALE_CLAIM_MINUTES = 5;
+
+    /**
+     * Claims an email for a registration at a location.
+     *
+     * @param email    the email being registered
+     * @param location the location the user will be inserted at
+     * @return true if the claim is ours, false if the email is registered or being registered
+     * @throws SQLException if the directory cannot be reached
+     */
+    boolean claim(String email, String location) throws SQLException {
+        String sql = "INSERT INTO user_email_directory (user_email, location) VALUES (?, ?) " +
+                "ON CONFLICT (user_email) DO UPDATE SET location = EXCLUDED.location, claimed_at = now() " +
+                "WHERE user_email_directory.user_id IS NULL " +
+                "AND user_email_directory.claimed_at < now() - make_interval(mins => ?) " +
+                "RETURNING user_email";
+        try (Connection conn = DatabaseConnection.getCentralConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, email);
+            stmt.setString(2, location);
+            stmt.setInt(3, STALE_CLAIM_MINUTES);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Records the id of the user a claim was inserted as, which makes the claim permanent.
+     *
+     * @param email  the claimed email
+     * @param userId the new user's id
+     * @throws SQLException if the directory cannot be reached
+     */
+    void assign(String email, int userId) throws SQLException {
+        String sql = "UPDATE user_email_directory SET user_id = ? WHERE user_email = ?";
+        try (Connection conn = DatabaseConnection.getCentralConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, email);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Gives up a claim whose insert did not happen.
+     *
+     * @param email the claimed email
+     * @throws SQLException if the directory cannot be reached
+     */
+    void release(String email) throws SQLException {
+        String sql = "DELETE FROM user_email_directory WHERE user_email = ? AND user_id IS NULL";
+        try (Connection conn = DatabaseConnection.getCentralConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, email);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Frees a deleted user's email for a new registration.
+     *
+     * @param userId the deleted user's id
+     * @throws SQLException if the directory cannot be reached
+     */
+    void remove(int userId) throws SQLException {
+        String sql = "DELETE FROM user_email_directory WHERE user_id = ?";
+        try (Connection conn = DatabaseConnection.getCentralConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -1,7 +1,17 @@
 // UserService.java
 package org.keyin.user;
 
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.RoutingContext;
+import org.keyin.utils.AsyncServiceExecutor;
+import org.keyin.utils.PasswordHashingExecutor;
+import org.keyin.utils.PasswordUtils;
+
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Service layer class that handles user-related operations,
@@ -9,13 +19,36 @@ import java.util.List;
  */
 public class UserService {
     private final UserDao userDao;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final AsyncServiceExecutor asyncExecutor;
 
     /**
      * Constructs a UserService with the provided UserDao.
      * @param userDao the DAO implementation used for user persistence operations
      */
     public UserService(UserDao userDao) {
+        this(userDao, PasswordHashingExecutor.shared());
+    }
+
+    /**
+     * Constructs a UserService that runs async password work on the given executor.
+     * @param userDao the DAO implementation used for user persistence operations
+     * @param hashingExecutor bounded executor used for BCrypt hashing and verification
+     */
+    public UserService(UserDao userDao, PasswordHashingExecutor hashingExecutor) {
+        this(userDao, hashingExecutor, AsyncServiceExecutor.shared());
+    }
+
+    /**
+     * Constructs a UserService with explicit executors for password work and async queries.
+     * @param userDao the DAO implementation used for user persistence operations
+     * @param hashingExecutor bounded executor used for BCrypt hashing and verification
+     * @param asyncExecutor executor that runs the *Async query methods
+     */
+    public UserService(UserDao userDao, PasswordHashingExecutor hashingExecutor, AsyncServiceExecutor asyncExecutor) {
         this.userDao = userDao;
+        this.hashingExecutor = hashingExecutor;
+        this.asyncExecutor = asyncExecutor;
     }
 
     /**
@@ -26,30 +59,110 @@ public class UserService {
      * @param role the role of the new user (e.g., "admin", "user")
      * @param phone the phone number of the new user
      * @param address the address of the new user
-     * @return true if registration was successful, false otherwise
+     * @return the new user's ID, or -1 if the email or username is already taken
+     * @throws SQLException if a database error occurs
      */
-    public boolean registerUser(String username, String email, String password, String role, String phone, String address) {
+    public int registerUser(String username, String email, String password, String role, String phone, String address) throws SQLException {
         return userDao.registerUser(username, email, password, role, phone, address);
     }
 
+    /**
+     * Registers a new user with the password hashed on the bounded hashing executor.
+     * The insert then runs on the async query executor, so no connection is held while BCrypt
+     * works and a slow insert never occupies a hashing thread.
+     * @param username the username of the new user
+     * @param email the email of the new user
+     * @param password the password of the new user
+     * @param role the role of the new user
+     * @param phone the phone number of the new user
+     * @param address the address of the new user
+     * @return a future completing with the new user's ID (-1 if the email or username is taken),
+     *         or failing with {@link RejectedExecutionException} when the hashing executor is saturated
+     */
+    public CompletableFuture<Integer> registerUserAsync(String username, String email, String password, String role, String phone, String address) {
+        // supply() is called from the hashing thread, so hand it the caller's routing explicitly
+        RoutingContext routing = RoutingContext.capture();
+        return hashingExecutor.hashPassword(password)
+                .thenCompose(hash -> {
+                    try (RoutingContext.Scope ignored = routing.apply()) {
+                        return asyncExecutor.supply(() ->
+                                userDao.registerUserWithHashedPassword(username, email, hash, role, phone, address));
+                    }
+                });
+    }
+
     /**
      * Attempts to log in a user by their email.
      * Delegates authentication to the DAO.
      * @param email user's email
      * @return the corresponding User object if login is valid, otherwise null
+     * @throws SQLException if a database error occurs
      */
-    public User login(String email, String password) {
+    public User login(String email, String password) throws SQLException {
         return userDao.findByEmailAndPassword(email, password);
     }
 
+    /**
+     * Logs a user in without tying up a database connection during BCrypt verification.
+     * The user row is fetched first and its connection returned to the pool, then the
+     * password is checked on the bounded hashing executor. When that executor is
+     * saturated the login is rejected before touching the database. An unknown email is
+     * checked against a dummy hash, so it takes as long as a wrong password.
+     * @param email user's email
+     * @param password the password entered by the user
+     * @return a future completing with the User if the login is valid, null otherwise, or
+     *         failing with {@link RejectedExecutionException} when the system is overloaded, or
+     *         with {@link SQLException} when the user cannot be looked up
+     */
+    public CompletableFuture<User> loginAsync(String email, String password) {
+        if (hashingExecutor.isSaturated()) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many logins in progress, try again shortly"));
+        }
+
+        User candidate;
+        try {
+            candidate = userDao.findByEmail(email);
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (candidate == null) {
+            return hashingExecutor.checkPassword(password, PasswordUtils.dummyHash())
+                    .thenApply(ignored -> null);
+        }
+        return hashingExecutor.checkPassword(password, candidate.getPassword())
+                .thenApply(matches -> matches ? candidate : null);
+    }
+
     /**
      * Retrieves a list of all users in the system.
      * @return list of all registered users
+     * @throws SQLException if a database error occurs
      */
-    public List<User> getAllUsers() {
+    public List<User> getAllUsers() throws SQLException {
         return userDao.getAllUsers();
     }
 
+    /**
+     * Streams all users to a callback as they are read, so large user lists
+     * can be displayed without loading them all into memory first.
+     * @param rowHandler callback invoked once per user
+     * @throws SQLException if a database error occurs
+     */
+    public void streamAllUsers(Consumer<User> rowHandler) throws SQLException {
+        userDao.streamAllUsers(DatabaseConnection.DEFAULT_FETCH_SIZE, rowHandler);
+    }
+
+    /**
+     * Streams all users to a callback using a custom cursor fetch size.
+     * @param fetchSize number of rows fetched per database round trip
+     * @param rowHandler callback invoked once per user
+     * @throws SQLException if a database error occurs
+     */
+    public void streamAllUsers(int fetchSize, Consumer<User> rowHandler) throws SQLException {
+        userDao.streamAllUsers(fetchSize, rowHandler);
+    }
+
     /**
      * Deletes a user by their ID.
      * @param userId the ID of the user to be deleted
@@ -59,4 +172,21 @@ public class UserService {
         return userDao.deleteUserById(userId);
     }
     
-} 
+
+    /**
+     * Retrieves all users without blocking the caller.
+     * @return a future with the list of all registered users
+     */
+    public CompletableFuture<List<User>> getAllUsersAsync() {
+        return asyncExecutor.supply(this::getAllUsers);
+    }
+
+    /**
+     * Deletes a user without blocking the caller.
+     * @param userId the ID of the user to delete
+     * @return a future completing with true if the user was deleted
+     */
+    public CompletableFuture<Boolean> deleteUserAsync(int userId) {
+        return asyncExecutor.supply(() -> deleteUser(userId));
+    }
+}
@@ -0,0 +1,111 @@
+package org.keyin.utils;
+
+import org.keyin.database.RoutingContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs blocking service calls (mostly JDBC) off the caller's thread so independent queries
+ * can be in flight at the same time. Each call gets its own thread, virtual when the JVM
+ * supports them, and a timeout after which the returned future fails with
+ * {@link TimeoutException} and the task is interrupted. A statement already running on the
+ * server is not cancelled by the interrupt; it finishes and its result is discarded.
+ *
+ * <p>Calls run with the submitting thread's {@link RoutingContext}: the location it entered and
+ * whether its reads must stay on the primary to see its own writes.</p>
+ *
+ * <p>The shared instance reads its default timeout from {@code -Dgym.async.timeoutMillis}
+ * (default 10000).</p>
+ */
+public class AsyncServiceExecutor {
+    private static final AsyncServiceExecutor SHARED = new AsyncServiceExecutor(
+            VirtualThreads.newThreadPerTaskExecutor("service-async"),
+            Long.getLong("gym.async.timeoutMillis", 10_000));
+
+    private final ExecutorService executor;
+    private final long defaultTimeoutMillis;
+
+    /**
+     * Creates an async executor.
+     *
+     * @param executor             where calls run; one thread per task is expected
+     * @param defaultTimeoutMillis timeout applied when a call does not specify its own
+     */
+    public AsyncServiceExecutor(ExecutorService executor, long defaultTimeoutMillis) {
+        this.executor = executor;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * @return the application-wide executor
+     */
+    public static AsyncServiceExecutor shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return timeout applied to calls that don't pass one
+     */
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Runs a call asynchronously with the default timeout.
+     *
+     * @param task the blocking call
+     * @param <T>  the result type
+     * @return a future with the call's result or failure
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        return supply(task, defaultTimeoutMillis);
+    }
+
+    /**
+     * Runs a call asynchronously with its own timeout. Checked exceptions such as
+     * {@code SQLException} fail the future as they are, wrapped in a {@link CompletionException}
+     * when joined.
+     *
+     * @param task          the blocking call
+     * @param timeoutMillis how long to wait before failing the future with {@link TimeoutException}
+     * @param <T>           the result type
+     * @return a future with the call's result or failure
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        RoutingContext routing = RoutingContext.capture();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try (RoutingContext.Scope ignored = routing.apply()) {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                // Interrupt the worker so it gives up at its next interruptible point, e.g. waiting for a pooled connection
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stops accepting work.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
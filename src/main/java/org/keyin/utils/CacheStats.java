@@ -0,0 +1,80 @@
+package org.keyin.utils;
+
+/**
+ * Immutable snapshot of {@link LruCache} counters, used to tune cache size and TTL.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final int size;
+    private final int maxEntries;
+    private final long stalePutsSkipped;
+
+    /**
+     * Creates a snapshot of cache counters.
+     */
+    public CacheStats(long hits, long misses, long evictions, long expirations, int size, int maxEntries,
+                      long stalePutsSkipped) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.stalePutsSkipped = stalePutsSkipped;
+    }
+
+    /** @return loaded values not stored because their key was invalidated while loading. */
+    public long getStalePutsSkipped() {
+        return stalePutsSkipped;
+    }
+
+    /** @return lookups answered from the cache. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return lookups that had to load from the underlying source. */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return entries dropped because the cache was full. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** @return entries dropped because their TTL ran out. */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /** @return entries currently cached. */
+    public int getSize() {
+        return size;
+    }
+
+    /** @return configured maximum number of entries. */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** @return fraction of lookups that were hits, between 0 and 1. */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns a one-line summary of the cache counters.
+     *
+     * @return readable cache statistics
+     */
+    @Override
+    public String toString() {
+        return String.format("Cache [size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, expirations=%d, stalePutsSkipped=%d]",
+                size, maxEntries, hits, misses, getHitRate() * 100, evictions, expirations, stalePutsSkipped);
+    }
+}
@@ -0,0 +1,243 @@
+package org.keyin.utils;
+
+/**
+ * A set of half-open intervals {@code [start, end)}, each tagged with an int id, that answers
+ * "does anything overlap this range?" in O(log n).
+ * It is an AVL tree ordered by start (ties broken by id) where every node also records the
+ * largest end in its subtree, so whole subtrees that finish before the query begins are skipped.
+ *
+ * <p>Not thread-safe; callers synchronize.</p>
+ */
+public class IntervalTree {
+    /** Returned by lookups when no interval matches. */
+    public static final int NONE = -1;
+
+    private Node root;
+    private int size;
+
+    /**
+     * Adds an interval.
+     *
+     * @param start inclusive start
+     * @param end   exclusive end, greater than {@code start}
+     * @param id    identifier reported by lookups
+     */
+    public void insert(long start, long end, int id) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Interval end must be after its start");
+        }
+        root = insert(root, new Node(start, end, id));
+        size++;
+    }
+
+    /**
+     * Removes the interval with the given start and id.
+     *
+     * @param start the start the interval was inserted with
+     * @param id    the interval's id
+     * @return true if an interval was removed
+     */
+    public boolean remove(long start, int id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * Finds an interval that overlaps {@code [start, end)}.
+     *
+     * @param start    inclusive start of the query range
+     * @param end      exclusive end of the query range
+     * @param ignoreId id to skip, e.g. the class being rescheduled ({@link #NONE} to skip nothing)
+     * @return the id of an overlapping interval, or {@link #NONE}
+     */
+    public int findOverlap(long start, long end, int ignoreId) {
+        return findOverlap(root, start, end, ignoreId);
+    }
+
+    /**
+     * Visits every interval that overlaps {@code [start, end)}, in order of start.
+     * Costs O(log n + k) for k matches.
+     *
+     * @param start   inclusive start of the query range
+     * @param end     exclusive end of the query range
+     * @param visitor receives each overlapping interval
+     */
+    public void forEachOverlap(long start, long end, Visitor visitor) {
+        forEachOverlap(root, start, end, visitor);
+    }
+
+    /**
+     * @return number of intervals stored
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int findOverlap(Node node, long start, long end, int ignoreId) {
+        if (node == null || node.maxEnd <= start) {
+            return NONE;
+        }
+        int found = findOverlap(node.left, start, end, ignoreId);
+        if (found != NONE) {
+            return found;
+        }
+        if (node.start >= end) {
+            // This node and everything to its right start after the query ends
+            return NONE;
+        }
+        if (node.end > start && node.id != ignoreId) {
+            return node.id;
+        }
+        return findOverlap(node.right, start, end, ignoreId);
+    }
+
+    private static void forEachOverlap(Node node, long start, long end, Visitor visitor) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        forEachOverlap(node.left, start, end, visitor);
+        if (node.start >= end) {
+            return;
+        }
+        if (node.end > start) {
+            visitor.visit(node.start, node.end, node.id);
+        }
+        forEachOverlap(node.right, start, end, visitor);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node remove(Node node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private static int compare(long start, int id, Node node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Integer.compare(id, node.id);
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Receives intervals from {@link #forEachOverlap(long, long, Visitor)}.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param start inclusive start of the interval
+         * @param end   exclusive end of the interval
+         * @param id    the interval's id
+         */
+        void visit(long start, long end, int id);
+    }
+
+    private static final class Node {
+        private final long start;
+        private final long end;
+        private final int id;
+        private long maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, int id) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.maxEnd = end;
+        }
+    }
+}
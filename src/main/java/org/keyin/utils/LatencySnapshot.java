@@ -0,0 +1,74 @@
+package org.keyin.utils;
+
+/**
+ * Point-in-time view of a {@link LatencyHistogram}. Durations are stored in nanoseconds
+ * and reported in milliseconds for display.
+ */
+public class LatencySnapshot {
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    /**
+     * Creates a snapshot of histogram values.
+     */
+    public LatencySnapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /** @return number of recorded durations. */
+    public long getCount() {
+        return count;
+    }
+
+    /** @return mean duration in milliseconds. */
+    public double getMeanMillis() {
+        return meanNanos / 1_000_000.0;
+    }
+
+    /** @return median duration in milliseconds. */
+    public double getP50Millis() {
+        return p50Nanos / 1_000_000.0;
+    }
+
+    /** @return 90th percentile duration in milliseconds. */
+    public double getP90Millis() {
+        return p90Nanos / 1_000_000.0;
+    }
+
+    /** @return 99th percentile duration in milliseconds. */
+    public double getP99Millis() {
+        return p99Nanos / 1_000_000.0;
+    }
+
+    /** @return 99.9th percentile duration in milliseconds. */
+    public double getP999Millis() {
+        return p999Nanos / 1_000_000.0;
+    }
+
+    /** @return longest recorded duration in milliseconds. */
+    public double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    /**
+     * Returns a one-line summary of the latencies.
+     *
+     * @return count and latency percentiles in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, p999=%.2fms, max=%.2fms",
+                count, getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,195 @@
+package org.keyin.utils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * A small thread-safe cache with least-recently-used eviction and a per-entry time to live.
+ * Backed by an access-ordered {@link LinkedHashMap}, which is plenty for the handful of
+ * schedule lists the application caches.
+ *
+ * <p>Read-through callers that load a value outside the lock should take a {@link #stamp(Object)}
+ * before loading and store with {@link #putIfUnchanged(Object, Object, long)}, so a load that
+ * raced with an invalidation of its key cannot put the pre-invalidation value back.</p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    // Bumped by invalidations: per key for invalidate(key), globally for invalidateIf/invalidateAll.
+    // Holds at most maxEntries keys before being folded into globalGeneration.
+    private final Map<K, Long> keyGenerations = new HashMap<>();
+    private long globalGeneration;
+    private long stalePutsSkipped;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries maximum number of entries before the least recently used one is evicted
+     * @param ttlMillis  how long an entry stays valid after it is stored
+     */
+    public LruCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for a key, counting a hit or a miss.
+     *
+     * @param key the cache key
+     * @return the cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entry if the cache is full.
+     *
+     * @param key   the cache key
+     * @param value the value to cache
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Returns a stamp that changes whenever the key is invalidated, directly or by
+     * {@link #invalidateIf} or {@link #invalidateAll}.
+     *
+     * @param key the cache key
+     * @return the key's current invalidation stamp
+     */
+    public synchronized long stamp(K key) {
+        // Both counters only grow, so their sum changes whenever either does
+        return globalGeneration + keyGenerations.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Stores a value unless the key was invalidated since {@code stamp} was taken, in which
+     * case the value may predate the change that caused the invalidation.
+     *
+     * @param key   the cache key
+     * @param value the value loaded after taking the stamp
+     * @param stamp the result of {@link #stamp(Object)} taken before loading
+     * @return true if the value was stored
+     */
+    public synchronized boolean putIfUnchanged(K key, V value, long stamp) {
+        if (stamp(key) != stamp) {
+            stalePutsSkipped++;
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * Removes a single entry.
+     *
+     * @param key the cache key to invalidate
+     */
+    public synchronized void invalidate(K key) {
+        keyGenerations.merge(key, 1L, Long::sum);
+        entries.remove(key);
+        if (keyGenerations.size() > maxEntries) {
+            foldKeyGenerations();
+        }
+    }
+
+    /**
+     * Forgets the per-key generations, so keys invalidated once and never cached again don't
+     * pile up. Raising the global generation by the largest of them keeps every key's stamp from
+     * going back to a value it had, so a load in flight for an invalidated key is still refused;
+     * loads in flight for other keys are refused too and simply not cached.
+     */
+    private void foldKeyGenerations() {
+        long largest = 0;
+        for (long generation : keyGenerations.values()) {
+            largest = Math.max(largest, generation);
+        }
+        globalGeneration += largest;
+        keyGenerations.clear();
+    }
+
+    /**
+     * Removes every entry matching the predicate.
+     *
+     * @param predicate test on key and cached value
+     */
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        // Loads in flight are not in the map yet, so any of them may hold a matching value
+        globalGeneration++;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void invalidateAll() {
+        globalGeneration++;
+        entries.clear();
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return hit, miss, eviction and expiration counts
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, expirations, entries.size(), maxEntries, stalePutsSkipped);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.keyin.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated, bounded pool of threads.
+ * BCrypt at cost 12 is deliberately slow and CPU-bound, so the pool is sized to the
+ * number of cores and the queue in front of it is capped. Once the queue is full, new
+ * work is rejected immediately instead of piling up behind a login burst.
+ */
+public class PasswordHashingExecutor {
+    private static final PasswordHashingExecutor SHARED = new PasswordHashingExecutor(
+            Runtime.getRuntime().availableProcessors(),
+            Runtime.getRuntime().availableProcessors() * 8);
+
+    private final ThreadPoolExecutor executor;
+    private final int maxQueueDepth;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a hashing executor.
+     *
+     * @param threads       number of hashing threads (usually the core count)
+     * @param maxQueueDepth how many hashing requests may wait before new ones are rejected
+     */
+    public PasswordHashingExecutor(int threads, int maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueueDepth),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @return the application-wide executor sized to the available cores
+     */
+    public static PasswordHashingExecutor shared() {
+        return SHARED;
+    }
+
+    /**
+     * Verifies a password against a BCrypt hash on a hashing thread.
+     *
+     * @param plainTextPassword the raw password to check
+     * @param hashedPassword    the stored hashed password
+     * @return a future that completes with true if the password matches, or fails with
+     *         {@link RejectedExecutionException} if the executor is saturated
+     */
+    public CompletableFuture<Boolean> checkPassword(String plainTextPassword, String hashedPassword) {
+        return submit(() -> PasswordUtils.checkPassword(plainTextPassword, hashedPassword));
+    }
+
+    /**
+     * Hashes a password on a hashing thread.
+     *
+     * @param plainTextPassword the password to hash
+     * @return a future that completes with the BCrypt hash, or fails with
+     *         {@link RejectedExecutionException} if the executor is saturated
+     */
+    public CompletableFuture<String> hashPassword(String plainTextPassword) {
+        return submit(() -> PasswordUtils.hashPassword(plainTextPassword));
+    }
+
+    /**
+     * Checks whether the queue is full, so callers can refuse work before doing anything expensive.
+     *
+     * @return true if a new hashing request would be rejected right now
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    /** @return number of hashing requests currently waiting for a thread. */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** @return maximum number of waiting hashing requests. */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /** @return number of requests rejected because the executor was saturated. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Password hashing is saturated, try again shortly", e));
+        }
+    }
+
+    /**
+     * Stops accepting work and lets queued hashing requests finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
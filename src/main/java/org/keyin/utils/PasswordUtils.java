@@ -3,6 +3,8 @@ package org.keyin.utils;
 
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.util.UUID;
+
 /**
  * Utility class for hashing and validating user passwords.
  * Uses BCrypt for secure, salted password handling.
@@ -29,4 +31,22 @@ public class PasswordUtils {
     public static boolean checkPassword(String plainTextPassword, String hashedPassword) {
         return BCrypt.checkpw(plainTextPassword, hashedPassword);
     }
+
+    /**
+     * Returns a hash of a random password at the same cost as real ones. Logins for unknown
+     * emails check against it, so they take as long as a wrong password for a known email and
+     * response times do not reveal which emails are registered.
+     *
+     * @return a BCrypt hash no password matches
+     */
+    public static String dummyHash() {
+        return DummyHash.HASH;
+    }
+
+    /**
+     * Hashed on first use, so startup does not pay for it.
+     */
+    private static final class DummyHash {
+        private static final String HASH = hashPassword(UUID.randomUUID().toString());
+    }
 } 
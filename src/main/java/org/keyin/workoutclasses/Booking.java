@@ -0,0 +1,71 @@
+package org.keyin.workoutclasses;
+
+import java.time.LocalDateTime;
+
+/**
+ * A member's reserved seat in a workout class.
+ */
+public class Booking {
+    private final int bookingId;
+    private final int classId;
+    private final int memberId;
+    private final String memberName;
+    private final LocalDateTime bookedAt;
+
+    /**
+     * Constructs a booking as read from the database.
+     *
+     * @param bookingId  The unique identifier for the booking.
+     * @param classId    The booked workout class.
+     * @param memberId   The member holding the seat.
+     * @param memberName The member's display name.
+     * @param bookedAt   When the seat was reserved.
+     */
+    public Booking(int bookingId, int classId, int memberId, String memberName, LocalDateTime bookedAt) {
+        this.bookingId = bookingId;
+        this.classId = classId;
+        this.memberId = memberId;
+        this.memberName = memberName;
+        this.bookedAt = bookedAt;
+    }
+
+    /** @return the booking ID. */
+    public int getBookingId() {
+        return bookingId;
+    }
+
+    /** @return the booked class ID. */
+    public int getClassId() {
+        return classId;
+    }
+
+    /** @return the member's user ID. */
+    public int getMemberId() {
+        return memberId;
+    }
+
+    /** @return the member's display name. */
+    public String getMemberName() {
+        return memberName;
+    }
+
+    /** @return when the seat was reserved. */
+    public LocalDateTime getBookedAt() {
+        return bookedAt;
+    }
+
+    /**
+     * Returns a formatted string representation of the booking.
+     * @return booking details in text format.
+     */
+    @Override
+    public String toString() {
+        return "Booking{" +
+                "ID=" + bookingId +
+                ", ClassID=" + classId +
+                ", MemberID=" + memberId +
+                ", Member='" + memberName + '\'' +
+                ", BookedAt=" + bookedAt +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package org.keyin.workoutclasses;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) interface for class bookings.
+ * Implementations must never let the number of bookings exceed a class's capacity,
+ * even when many members book the same class at once.
+ */
+public interface BookingDAO {
+    /**
+     * Reserves a seat in a class for a member.
+     *
+     * @param classId  The class to book.
+     * @param memberId The member booking the seat.
+     * @return The outcome of the booking attempt.
+     * @throws SQLException If a database access error occurs.
+     */
+    BookingResult bookClass(int classId, int memberId) throws SQLException;
+
+    /**
+     * Cancels a member's booking and frees the seat.
+     *
+     * @param classId  The booked class.
+     * @param memberId The member cancelling.
+     * @return true if a booking was cancelled, false if none existed.
+     * @throws SQLException If a database access error occurs.
+     */
+    boolean cancelBooking(int classId, int memberId) throws SQLException;
+
+    /**
+     * Lists the members booked into a class.
+     *
+     * @param classId The class ID.
+     * @return Bookings for the class in the order they were made.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<Booking> getAttendees(int classId) throws SQLException;
+
+    /**
+     * Lists a member's bookings.
+     *
+     * @param memberId The member's user ID.
+     * @return The member's bookings, most recent first.
+     * @throws SQLException If a database access error occurs.
+     */
+    List<Booking> getBookingsByMemberId(int memberId) throws SQLException;
+}
@@ -0,0 +1,163 @@
+package org.keyin.workoutclasses;
+
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.Projection;
+import org.keyin.database.RowMapper;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Implementation of the {@link BookingDAO} interface.
+ * Seat accounting uses the {@code seats_booked} counter on the class row: a booking
+ * inserts the booking row and then increments the counter with a conditional UPDATE
+ * that fails once the class is full. Only the single class row is locked, and only
+ * from the UPDATE until the commit right after it.
+ *
+ * <p>Bookings carry their class's date, which is the partition key of {@code workoutclasses},
+ * so the seat counter UPDATE goes straight to the one monthly partition holding the class.</p>
+ */
+public class BookingDAOImpl implements BookingDAO {
+    private static final Projection BOOKING_COLUMNS = Projection.of(
+            "b.booking_id", "b.class_id", "b.member_id", "u.user_name", "b.booked_at");
+
+    private static final RowMapper<Booking> BOOKING_MAPPER = bookingMapper(BOOKING_COLUMNS);
+
+    /** Takes a seat if one is free; parameters are the class ID and the class date. */
+    public static final String RESERVE_SQL = "UPDATE workoutclasses SET seats_booked = seats_booked + 1 " +
+            "WHERE class_id = ? AND class_date = ? AND seats_booked < class_capacity";
+
+    /**
+     * Reserves a seat in a class for a member in one short transaction.
+     *
+     * @param classId  The class to book.
+     * @param memberId The member booking the seat.
+     * @return The outcome of the booking attempt.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public BookingResult bookClass(int classId, int memberId) throws SQLException {
+        String dateSql = "SELECT class_date FROM workoutclasses WHERE class_id = ?";
+        String insertSql = "INSERT INTO class_bookings (class_id, class_date, member_id) VALUES (?, ?, ?) ON CONFLICT (class_id, member_id) DO NOTHING";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement dateStmt = conn.prepareStatement(dateSql);
+                 PreparedStatement insertStmt = conn.prepareStatement(insertSql);
+                 PreparedStatement reserveStmt = conn.prepareStatement(RESERVE_SQL)) {
+
+                // Only the ID is known here, so this lookup probes every month's primary key index once
+                Date classDate;
+                dateStmt.setInt(1, classId);
+                try (ResultSet rs = dateStmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return BookingResult.CLASS_NOT_FOUND;
+                    }
+                    classDate = rs.getDate(1);
+                }
+
+                // Insert before reserving so duplicate bookings are turned away without touching the hot class row
+                insertStmt.setInt(1, classId);
+                insertStmt.setDate(2, classDate);
+                insertStmt.setInt(3, memberId);
+                if (insertStmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return BookingResult.ALREADY_BOOKED;
+                }
+
+                reserveStmt.setInt(1, classId);
+                reserveStmt.setDate(2, classDate);
+                if (reserveStmt.executeUpdate() == 1) {
+                    conn.commit();
+                    return BookingResult.BOOKED;
+                }
+
+                conn.rollback();
+                return BookingResult.CLASS_FULL;
+            } catch (SQLException e) {
+                conn.rollback();
+                if ("23503".equals(e.getSQLState())) {
+                    // Foreign key violation: the class (or member) is gone
+                    return BookingResult.CLASS_NOT_FOUND;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Cancels a booking. The seat is released by the trigger on class_bookings.
+     *
+     * @param classId  The booked class.
+     * @param memberId The member cancelling.
+     * @return true if a booking was cancelled, false if none existed.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public boolean cancelBooking(int classId, int memberId) throws SQLException {
+        String sql = "DELETE FROM class_bookings WHERE class_id = ? AND member_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, classId);
+            stmt.setInt(2, memberId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Lists the members booked into a class.
+     *
+     * @param classId The class ID.
+     * @return Bookings for the class in booking order.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<Booking> getAttendees(int classId) throws SQLException {
+        String sql = "SELECT " + BOOKING_COLUMNS.columns() + " " +
+                "FROM class_bookings b JOIN users u ON u.user_id = b.member_id " +
+                "WHERE b.class_id = ? ORDER BY b.booked_at, b.booking_id";
+        return queryBookings(sql, classId);
+    }
+
+    /**
+     * Lists a member's bookings.
+     *
+     * @param memberId The member's user ID.
+     * @return The member's bookings, most recent first.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<Booking> getBookingsByMemberId(int memberId) throws SQLException {
+        String sql = "SELECT " + BOOKING_COLUMNS.columns() + " " +
+                "FROM class_bookings b JOIN users u ON u.user_id = b.member_id " +
+                "WHERE b.member_id = ? ORDER BY b.booked_at DESC, b.booking_id DESC";
+        return queryBookings(sql, memberId);
+    }
+
+    private List<Booking> queryBookings(String sql, int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return RowMapper.toList(rs, BOOKING_MAPPER);
+            }
+        }
+    }
+
+    private static RowMapper<Booking> bookingMapper(Projection columns) {
+        int idIndex = columns.index("b.booking_id");
+        int classIndex = columns.index("b.class_id");
+        int memberIndex = columns.index("b.member_id");
+        int nameIndex = columns.index("u.user_name");
+        int bookedAtIndex = columns.index("b.booked_at");
+
+        return rs -> new Booking(
+                rs.getInt(idIndex),
+                rs.getInt(classIndex),
+                rs.getInt(memberIndex),
+                rs.getString(nameIndex),
+                rs.getObject(bookedAtIndex, LocalDateTime.class));
+    }
+}
@@ -0,0 +1,15 @@
+package org.keyin.workoutclasses;
+
+/**
+ * Outcome of an attempt to book a seat in a workout class.
+ */
+public enum BookingResult {
+    /** A seat was reserved for the member. */
+    BOOKED,
+    /** The member already holds a seat in this class. */
+    ALREADY_BOOKED,
+    /** Every seat up to the class capacity is taken. */
+    CLASS_FULL,
+    /** No class exists with the given ID. */
+    CLASS_NOT_FOUND
+}
@@ -0,0 +1,229 @@
+package org.keyin.workoutclasses;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.ChangeEvent;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.utils.CacheStats;
+import org.keyin.utils.LruCache;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-through cache in front of another {@link WorkoutClassDAO}.
+ * The full schedule and each trainer's schedule are cached separately, and every write
+ * invalidates exactly the entries it can affect. Callers always receive copies, so
+ * editing a returned class (as the trainer update screen does) never touches the cache.
+ * Misses are loaded from the primary, never a read replica, so a replica that has not yet
+ * replayed a write cannot put the old rows back into the cache after that write invalidated them.
+ * A miss only stores what it loaded if no invalidation touched its key while it was loading,
+ * so a load that raced with a write is returned to its caller but never cached.
+ */
+public class CachingWorkoutClassDAO implements WorkoutClassDAO {
+    private static final String ALL_CLASSES_KEY = "all";
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    private final WorkoutClassDAO delegate;
+    private final LruCache<String, List<WorkoutClass>> cache;
+
+    /**
+     * Wraps a DAO with a cache using default size and TTL.
+     *
+     * @param delegate the DAO that actually talks to the database
+     */
+    public CachingWorkoutClassDAO(WorkoutClassDAO delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Wraps a DAO with a cache of the given size and TTL.
+     *
+     * @param delegate   the DAO that actually talks to the database
+     * @param maxEntries maximum number of cached schedules (the full schedule plus one per trainer)
+     * @param ttlMillis  how long a cached schedule stays valid
+     */
+    public CachingWorkoutClassDAO(WorkoutClassDAO delegate, int maxEntries, long ttlMillis) {
+        this.delegate = delegate;
+        this.cache = new LruCache<>(maxEntries, ttlMillis);
+    }
+
+    /**
+     * Adds a class and invalidates the full schedule and the trainer's schedule.
+     *
+     * @param workoutClass The {@link WorkoutClass} object to add.
+     * @return The new class's ID.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public int addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        int classId = delegate.addWorkoutClass(workoutClass);
+        invalidateForTrainer(workoutClass.getTrainerId());
+        return classId;
+    }
+
+    /**
+     * Bulk-inserts classes and invalidates the full schedule and every affected trainer's schedule.
+     *
+     * @param workoutClasses The classes to insert.
+     * @param chunkSize      Number of rows per transaction.
+     * @return Rows inserted and any chunks that failed.
+     * @throws SQLException If no database connection can be obtained.
+     */
+    @Override
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) throws SQLException {
+        try {
+            return delegate.addWorkoutClasses(workoutClasses, chunkSize);
+        } finally {
+            // Some chunks may have committed even if others failed
+            for (WorkoutClass workoutClass : workoutClasses) {
+                invalidateForTrainer(workoutClass.getTrainerId());
+            }
+        }
+    }
+
+    /**
+     * Returns the full schedule, loading it from the database on a miss.
+     *
+     * @return A list of all {@link WorkoutClass} records.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<WorkoutClass> getAllWorkoutClasses() throws SQLException {
+        long stamp = cache.stamp(ALL_CLASSES_KEY);
+        List<WorkoutClass> cached = cache.get(ALL_CLASSES_KEY);
+        if (cached == null) {
+            try (DatabaseConnection.PrimaryPin ignored = DatabaseConnection.pinReadsToPrimary()) {
+                cached = delegate.getAllWorkoutClasses();
+            }
+            cache.putIfUnchanged(ALL_CLASSES_KEY, cached, stamp);
+        }
+        return copyOf(cached);
+    }
+
+    /**
+     * Returns one trainer's schedule, loading it from the database on a miss.
+     *
+     * @param trainerId The ID of the trainer.
+     * @return A list of {@link WorkoutClass} instances taught by the trainer.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException {
+        String key = trainerKey(trainerId);
+        long stamp = cache.stamp(key);
+        List<WorkoutClass> cached = cache.get(key);
+        if (cached == null) {
+            try (DatabaseConnection.PrimaryPin ignored = DatabaseConnection.pinReadsToPrimary()) {
+                cached = delegate.getWorkoutClassesByTrainerId(trainerId);
+            }
+            cache.putIfUnchanged(key, cached, stamp);
+        }
+        return copyOf(cached);
+    }
+
+    /**
+     * Pages are not cached: every filter and cursor combination would be its own entry.
+     */
+    @Override
+    public WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException {
+        return delegate.getWorkoutClassesPage(filter, after, pageSize);
+    }
+
+    /**
+     * Search results are not cached: every query text and page would be its own entry.
+     */
+    @Override
+    public WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException {
+        return delegate.searchWorkoutClasses(text, page, pageSize);
+    }
+
+    /**
+     * Deletes a class and invalidates the full schedule plus any cached trainer schedule containing it.
+     *
+     * @param classId The ID of the workout class to delete.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public void deleteWorkoutClass(int classId) throws SQLException {
+        delegate.deleteWorkoutClass(classId);
+        invalidateForClass(classId);
+    }
+
+    /**
+     * Updates a class and invalidates the full schedule and the trainer's schedule.
+     *
+     * @param workoutClass The {@link WorkoutClass} object with updated details.
+     * @return true if the update was successful, false otherwise.
+     * @throws SQLException if the update fails
+     */
+    @Override
+    public boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        boolean updated = delegate.updateWorkoutClass(workoutClass);
+        if (updated) {
+            invalidateForTrainer(workoutClass.getTrainerId());
+        }
+        return updated;
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return hit, miss and eviction statistics
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Drops every cached schedule.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Invalidates cached schedules changed outside this process, as reported by a
+     * {@link org.keyin.database.ChangeFeedListener}. Local changes are skipped because the
+     * write methods above already invalidated what they touched.
+     *
+     * @param event a change to the workoutclasses table
+     */
+    public void onChange(ChangeEvent event) {
+        if (event.getTable() != ChangeEvent.Table.WORKOUT_CLASSES || event.isLocal()) {
+            return;
+        }
+        if (event.getOperation() == ChangeEvent.Operation.DELETE && !event.affectsAllRows()) {
+            for (int classId : event.getIds()) {
+                invalidateForClass(classId);
+            }
+        } else {
+            // The event does not say which trainer an inserted or updated class belongs to
+            invalidateAll();
+        }
+    }
+
+    private void invalidateForTrainer(int trainerId) {
+        cache.invalidate(ALL_CLASSES_KEY);
+        cache.invalidate(trainerKey(trainerId));
+    }
+
+    private void invalidateForClass(int classId) {
+        cache.invalidate(ALL_CLASSES_KEY);
+        cache.invalidateIf((key, classes) -> classes.stream().anyMatch(wc -> wc.getClassId() == classId));
+    }
+
+    private static String trainerKey(int trainerId) {
+        return "trainer:" + trainerId;
+    }
+
+    private static List<WorkoutClass> copyOf(List<WorkoutClass> classes) {
+        List<WorkoutClass> copies = new ArrayList<>(classes.size());
+        for (WorkoutClass workoutClass : classes) {
+            copies.add(new WorkoutClass(workoutClass));
+        }
+        return copies;
+    }
+}
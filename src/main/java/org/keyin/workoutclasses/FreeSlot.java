@@ -0,0 +1,74 @@
+package org.keyin.workoutclasses;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * A maximal window of free time found by {@link WorkoutClassService#findFreeSlots(FreeSlotQuery)}.
+ * Any class that fits inside {@code [start, end)} can be scheduled without a clash.
+ */
+public class FreeSlot {
+    private final LocalDate date;
+    private final LocalTime start;
+    private final LocalTime end;
+    private final String classLocation;
+    private final Integer trainerId;
+
+    /**
+     * @param date          day of the window
+     * @param start         first free moment
+     * @param end           end of the window (exclusive)
+     * @param classLocation location that is free, or null if the search was by trainer only
+     * @param trainerId     trainer who is free, or null if the search was by location only
+     */
+    public FreeSlot(LocalDate date, LocalTime start, LocalTime end, String classLocation, Integer trainerId) {
+        this.date = date;
+        this.start = start;
+        this.end = end;
+        this.classLocation = classLocation;
+        this.trainerId = trainerId;
+    }
+
+    /** @return day of the window. */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /** @return first free moment. */
+    public LocalTime getStart() {
+        return start;
+    }
+
+    /** @return end of the window (exclusive). */
+    public LocalTime getEnd() {
+        return end;
+    }
+
+    /** @return location that is free, or null. */
+    public String getClassLocation() {
+        return classLocation;
+    }
+
+    /** @return trainer who is free, or null. */
+    public Integer getTrainerId() {
+        return trainerId;
+    }
+
+    /** @return length of the window in minutes. */
+    public long getDurationMinutes() {
+        return Duration.between(start, end).toMinutes();
+    }
+
+    /**
+     * Returns a readable description of the window.
+     *
+     * @return date, times and location/trainer
+     */
+    @Override
+    public String toString() {
+        return date + " " + start + "-" + end
+                + (classLocation != null ? " in " + classLocation : "")
+                + (trainerId != null ? " with trainer " + trainerId : "");
+    }
+}
@@ -0,0 +1,103 @@
+package org.keyin.workoutclasses;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * What to search for when looking for free time in the schedule: a date range, the length of
+ * the gap needed, the daily opening hours, and optionally a location and/or trainer that must
+ * both be free. With neither, every known location is searched.
+ */
+public class FreeSlotQuery {
+    /** Default start of the bookable day. */
+    public static final LocalTime DEFAULT_DAY_START = LocalTime.of(6, 0);
+    /** Default end of the bookable day. */
+    public static final LocalTime DEFAULT_DAY_END = LocalTime.of(22, 0);
+
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final int durationMinutes;
+    private final String classLocation;
+    private final Integer trainerId;
+    private final LocalTime dayStart;
+    private final LocalTime dayEnd;
+
+    /**
+     * Creates a query over the default opening hours.
+     *
+     * @param fromDate        first day to search (inclusive)
+     * @param toDate          last day to search (inclusive)
+     * @param durationMinutes minimum length of a free window
+     * @param classLocation   location that must be free, or null
+     * @param trainerId       trainer who must be free, or null
+     */
+    public FreeSlotQuery(LocalDate fromDate, LocalDate toDate, int durationMinutes, String classLocation, Integer trainerId) {
+        this(fromDate, toDate, durationMinutes, classLocation, trainerId, DEFAULT_DAY_START, DEFAULT_DAY_END);
+    }
+
+    /**
+     * Creates a query.
+     *
+     * @param fromDate        first day to search (inclusive)
+     * @param toDate          last day to search (inclusive)
+     * @param durationMinutes minimum length of a free window
+     * @param classLocation   location that must be free, or null
+     * @param trainerId       trainer who must be free, or null
+     * @param dayStart        opening time on each day
+     * @param dayEnd          closing time on each day
+     */
+    public FreeSlotQuery(LocalDate fromDate, LocalDate toDate, int durationMinutes, String classLocation, Integer trainerId,
+                         LocalTime dayStart, LocalTime dayEnd) {
+        if (durationMinutes < 1) {
+            throw new IllegalArgumentException("durationMinutes must be at least 1");
+        }
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("toDate must not be before fromDate");
+        }
+        if (!dayEnd.isAfter(dayStart)) {
+            throw new IllegalArgumentException("dayEnd must be after dayStart");
+        }
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.durationMinutes = durationMinutes;
+        this.classLocation = classLocation;
+        this.trainerId = trainerId;
+        this.dayStart = dayStart;
+        this.dayEnd = dayEnd;
+    }
+
+    /** @return first day to search. */
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    /** @return last day to search. */
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    /** @return minimum length of a free window, in minutes. */
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    /** @return location that must be free, or null for any. */
+    public String getClassLocation() {
+        return classLocation;
+    }
+
+    /** @return trainer who must be free, or null for any. */
+    public Integer getTrainerId() {
+        return trainerId;
+    }
+
+    /** @return opening time on each day. */
+    public LocalTime getDayStart() {
+        return dayStart;
+    }
+
+    /** @return closing time on each day. */
+    public LocalTime getDayEnd() {
+        return dayEnd;
+    }
+}
@@ -0,0 +1,42 @@
+package org.keyin.workoutclasses;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a class would overlap another class with the same trainer or in the same location.
+ * Uses PostgreSQL's exclusion-violation SQLSTATE, so it reads the same whether the in-memory
+ * schedule index or the database constraint caught the clash.
+ */
+public class ScheduleConflictException extends SQLException {
+    /** SQLSTATE PostgreSQL reports for an exclusion constraint violation. */
+    public static final String EXCLUSION_VIOLATION = "23P01";
+
+    private final int conflictingClassId;
+
+    /**
+     * @param message            description of the clash
+     * @param conflictingClassId the class already holding the slot, or -1 if unknown
+     */
+    public ScheduleConflictException(String message, int conflictingClassId) {
+        super(message, EXCLUSION_VIOLATION);
+        this.conflictingClassId = conflictingClassId;
+    }
+
+    /**
+     * Wraps the database's exclusion-constraint error.
+     *
+     * @param message description of the clash
+     * @param cause   the constraint violation reported by the database
+     */
+    public ScheduleConflictException(String message, SQLException cause) {
+        super(message, EXCLUSION_VIOLATION, cause);
+        this.conflictingClassId = -1;
+    }
+
+    /**
+     * @return the class already holding the slot, or -1 if the database caught the clash
+     */
+    public int getConflictingClassId() {
+        return conflictingClassId;
+    }
+}
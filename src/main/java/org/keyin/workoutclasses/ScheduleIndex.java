@@ -0,0 +1,299 @@
+package org.keyin.workoutclasses;
+
+import org.keyin.utils.IntervalTree;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of when every class runs, with one {@link IntervalTree} per trainer and one
+ * per location. Checking a new or rescheduled class for a double booking is two O(log n)
+ * lookups instead of a scan over the trainer's whole schedule.
+ *
+ * <p>Times are seconds since the epoch of {@code class_date + class_time}, and a class occupies
+ * {@code [start, start + class_duration minutes)}, the same ranges the database's exclusion
+ * constraints compare. Classes with no duration occupy nothing, as an empty range does there.</p>
+ *
+ * <p>Every method synchronizes on the index. A schedule read for {@link #rebuildIfUnchanged}
+ * without that lock can miss a class saved while it was being read, so a rebuild is refused if
+ * the index changed after its {@link #stamp()} was taken.</p>
+ */
+public class ScheduleIndex {
+    private final Map<Integer, IntervalTree> byTrainer = new HashMap<>();
+    private final Map<String, IntervalTree> byLocation = new HashMap<>();
+    private final Map<Integer, Slot> byClass = new HashMap<>();
+    private boolean loaded;
+    private long changes;
+
+    /**
+     * @return true once {@link #rebuild(Collection)} has filled the index
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Replaces the index contents with the given schedule.
+     *
+     * @param classes every scheduled class
+     */
+    public synchronized void rebuild(Collection<WorkoutClass> classes) {
+        byTrainer.clear();
+        byLocation.clear();
+        byClass.clear();
+        for (WorkoutClass workoutClass : classes) {
+            add(slotFor(workoutClass));
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return a stamp to pass to {@link #rebuildIfUnchanged}; take it before reading the schedule
+     */
+    public synchronized long stamp() {
+        return changes;
+    }
+
+    /**
+     * Replaces the index contents with a schedule read after {@code stamp} was taken, unless a
+     * class was put or removed, or the index invalidated, since then. That change may be missing
+     * from the schedule, so the index is left unloaded to be read again instead.
+     *
+     * @param classes every scheduled class
+     * @param stamp   the {@link #stamp()} taken before the schedule was read
+     * @return true if the index was rebuilt
+     */
+    public synchronized boolean rebuildIfUnchanged(Collection<WorkoutClass> classes, long stamp) {
+        if (stamp != changes) {
+            return false;
+        }
+        rebuild(classes);
+        return true;
+    }
+
+    /**
+     * Drops the index so the next check reloads it, e.g. after the database reported a clash it missed.
+     */
+    public synchronized void invalidate() {
+        byTrainer.clear();
+        byLocation.clear();
+        byClass.clear();
+        loaded = false;
+        changes++;
+    }
+
+    /**
+     * Finds a class that clashes with the given one. A class already in the index is checked
+     * as if moved, so it never conflicts with its own current slot.
+     *
+     * @param workoutClass the class being added or rescheduled
+     * @return a description of the clash, or null if the slot is free
+     */
+    public synchronized ScheduleConflictException findConflict(WorkoutClass workoutClass) {
+        Slot slot = slotFor(workoutClass);
+        if (slot.end <= slot.start) {
+            return null;
+        }
+        if (slot.trainerId != 0) {
+            int clash = findOverlap(byTrainer.get(slot.trainerId), slot);
+            if (clash != IntervalTree.NONE) {
+                return new ScheduleConflictException("Trainer " + slot.trainerId
+                        + " is already teaching class " + clash + " at that time", clash);
+            }
+        }
+        if (slot.location != null) {
+            int clash = findOverlap(byLocation.get(slot.location), slot);
+            if (clash != IntervalTree.NONE) {
+                return new ScheduleConflictException(slot.location
+                        + " is already booked for class " + clash + " at that time", clash);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a class, or moves it if it is already indexed.
+     *
+     * @param workoutClass the saved class
+     */
+    public synchronized void put(WorkoutClass workoutClass) {
+        Slot slot = slotFor(workoutClass);
+        removeSlot(slot.classId);
+        add(slot);
+        changes++;
+    }
+
+    /**
+     * Removes a class from the index.
+     *
+     * @param classId the deleted class
+     */
+    public synchronized void remove(int classId) {
+        removeSlot(classId);
+        changes++;
+    }
+
+    /**
+     * Finds the free windows matching a query. The busy intervals of the location and/or trainer
+     * come out of their interval trees already sorted by start, once for the whole date range,
+     * and a single sweep over them yields the gaps inside each day's opening hours.
+     *
+     * @param query date range, required length, opening hours and optional location/trainer
+     * @return maximal free windows at least as long as requested, by location then date and time
+     */
+    public synchronized List<FreeSlot> findFreeSlots(FreeSlotQuery query) {
+        long rangeStart = epochSeconds(query.getFromDate(), query.getDayStart());
+        long rangeEnd = epochSeconds(query.getToDate(), query.getDayEnd());
+        Integer trainerId = query.getTrainerId();
+        List<long[]> trainerBusy = trainerId == null ? null : busy(byTrainer.get(trainerId), rangeStart, rangeEnd);
+
+        Collection<String> locations;
+        if (query.getClassLocation() != null) {
+            locations = Collections.singletonList(query.getClassLocation());
+        } else if (trainerId != null) {
+            locations = Collections.singletonList(null);
+        } else {
+            locations = new TreeSet<>(byLocation.keySet());
+        }
+
+        List<FreeSlot> slots = new ArrayList<>();
+        for (String location : locations) {
+            List<long[]> busy = location == null ? trainerBusy : busy(byLocation.get(location), rangeStart, rangeEnd);
+            if (location != null && trainerBusy != null) {
+                busy = merge(busy, trainerBusy);
+            }
+            addFreeWindows(slots, query, busy, location);
+        }
+        return slots;
+    }
+
+    /**
+     * Walks the days of the query, emitting the gaps between busy intervals that are long enough.
+     * {@code busy} is sorted by start; intervals may overlap each other (trainer and room merged).
+     */
+    private static void addFreeWindows(List<FreeSlot> slots, FreeSlotQuery query, List<long[]> busy, String location) {
+        long needed = query.getDurationMinutes() * 60L;
+        int next = 0;
+        long coveredUntil = Long.MIN_VALUE;
+        for (LocalDate day = query.getFromDate(); !day.isAfter(query.getToDate()); day = day.plusDays(1)) {
+            long midnight = epochSeconds(day, LocalTime.MIDNIGHT);
+            long open = epochSeconds(day, query.getDayStart());
+            long close = epochSeconds(day, query.getDayEnd());
+            long freeFrom = Math.max(open, coveredUntil);
+            while (next < busy.size() && busy.get(next)[0] < close) {
+                long[] interval = busy.get(next++);
+                if (interval[0] - freeFrom >= needed) {
+                    slots.add(freeSlot(day, midnight, freeFrom, interval[0], location, query.getTrainerId()));
+                }
+                freeFrom = Math.max(freeFrom, interval[1]);
+                coveredUntil = Math.max(coveredUntil, interval[1]);
+            }
+            if (close - freeFrom >= needed) {
+                slots.add(freeSlot(day, midnight, freeFrom, close, location, query.getTrainerId()));
+            }
+        }
+    }
+
+    private static FreeSlot freeSlot(LocalDate day, long midnight, long start, long end, String location, Integer trainerId) {
+        return new FreeSlot(day, LocalTime.ofSecondOfDay(start - midnight), LocalTime.ofSecondOfDay(end - midnight),
+                location, trainerId);
+    }
+
+    private static List<long[]> busy(IntervalTree tree, long start, long end) {
+        List<long[]> intervals = new ArrayList<>();
+        if (tree != null) {
+            tree.forEachOverlap(start, end, (from, to, classId) -> intervals.add(new long[]{from, to}));
+        }
+        return intervals;
+    }
+
+    private static List<long[]> merge(List<long[]> a, List<long[]> b) {
+        List<long[]> merged = new ArrayList<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            if (j == b.size() || (i < a.size() && a.get(i)[0] <= b.get(j)[0])) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return number of classes indexed
+     */
+    public synchronized int size() {
+        return byClass.size();
+    }
+
+    private int findOverlap(IntervalTree tree, Slot slot) {
+        return tree == null ? IntervalTree.NONE : tree.findOverlap(slot.start, slot.end, slot.classId);
+    }
+
+    private void add(Slot slot) {
+        if (slot.end <= slot.start) {
+            return;
+        }
+        byClass.put(slot.classId, slot);
+        if (slot.trainerId != 0) {
+            byTrainer.computeIfAbsent(slot.trainerId, id -> new IntervalTree()).insert(slot.start, slot.end, slot.classId);
+        }
+        if (slot.location != null) {
+            byLocation.computeIfAbsent(slot.location, l -> new IntervalTree()).insert(slot.start, slot.end, slot.classId);
+        }
+    }
+
+    private void removeSlot(int classId) {
+        Slot slot = byClass.remove(classId);
+        if (slot == null) {
+            return;
+        }
+        if (slot.trainerId != 0) {
+            byTrainer.get(slot.trainerId).remove(slot.start, classId);
+        }
+        if (slot.location != null) {
+            byLocation.get(slot.location).remove(slot.start, classId);
+        }
+    }
+
+    /**
+     * Builds the slot a class occupies. Updates never change a class's trainer, so an indexed
+     * class keeps the trainer it was indexed with.
+     */
+    private Slot slotFor(WorkoutClass workoutClass) {
+        Slot existing = byClass.get(workoutClass.getClassId());
+        int trainerId = existing != null ? existing.trainerId : workoutClass.getTrainerId();
+        long start = epochSeconds(workoutClass.getClassDate(), workoutClass.getClassTime());
+        long end = start + workoutClass.getClassDuration() * 60L;
+        return new Slot(workoutClass.getClassId(), trainerId, workoutClass.getClassLocation(), start, end);
+    }
+
+    private static long epochSeconds(LocalDate date, LocalTime time) {
+        return date.toEpochDay() * 86_400L + time.toSecondOfDay();
+    }
+
+    private static final class Slot {
+        private final int classId;
+        private final int trainerId;
+        private final String location;
+        private final long start;
+        private final long end;
+
+        private Slot(int classId, int trainerId, String location, long start, long end) {
+            this.classId = classId;
+            this.trainerId = trainerId;
+            this.location = location;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.keyin.workoutclasses;
+
+import org.keyin.database.ShardMap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes bookings to the location shard of the class, in front of a single-database
+ * {@link BookingDAO}. A booking lives with its class, so members book classes at their own
+ * location; the shard's foreign key turns away a member from another location.
+ */
+public class ShardedBookingDAO implements BookingDAO {
+    private final BookingDAO delegate;
+    private final ShardMap shards;
+
+    /**
+     * @param delegate the DAO run against each shard
+     * @param shards   the locations and their databases
+     */
+    public ShardedBookingDAO(BookingDAO delegate, ShardMap shards) {
+        this.delegate = delegate;
+        this.shards = shards;
+    }
+
+    @Override
+    public BookingResult bookClass(int classId, int memberId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(classId);
+        if (shard == null) {
+            return BookingResult.CLASS_NOT_FOUND;
+        }
+        return shards.onShard(shard, () -> delegate.bookClass(classId, memberId));
+    }
+
+    @Override
+    public boolean cancelBooking(int classId, int memberId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(classId);
+        return shard != null && shards.onShard(shard, () -> delegate.cancelBooking(classId, memberId));
+    }
+
+    @Override
+    public List<Booking> getAttendees(int classId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(classId);
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return shards.onShard(shard, () -> delegate.getAttendees(classId));
+    }
+
+    /**
+     * Reads the member's bookings from their own location, where all of them live.
+     */
+    @Override
+    public List<Booking> getBookingsByMemberId(int memberId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(memberId);
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return shards.onShard(shard, () -> delegate.getBookingsByMemberId(memberId));
+    }
+}
@@ -0,0 +1,169 @@
+package org.keyin.workoutclasses;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.ShardContext;
+import org.keyin.database.ShardMap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each class on its trainer's location shard, in front of a single-database
+ * {@link WorkoutClassDAO}. Calls for one class or one trainer go to the shard owning the id;
+ * the full schedule, schedule pages and search run on every shard in parallel and are merged
+ * in the order the single-database queries use. Classes without a trainer go to the current
+ * location (see {@link ShardMap#forNewRows()}).
+ */
+public class ShardedWorkoutClassDAO implements WorkoutClassDAO {
+    private static final Comparator<WorkoutClass> SCHEDULE_ORDER = Comparator
+            .comparing(WorkoutClass::getClassDate)
+            .thenComparing(WorkoutClass::getClassTime)
+            .thenComparingInt(WorkoutClass::getClassId);
+
+    private final WorkoutClassDAO delegate;
+    private final ShardMap shards;
+
+    /**
+     * @param delegate the DAO run against each shard
+     * @param shards   the locations and their databases
+     */
+    public ShardedWorkoutClassDAO(WorkoutClassDAO delegate, ShardMap shards) {
+        this.delegate = delegate;
+        this.shards = shards;
+    }
+
+    @Override
+    public int addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        return shards.onShard(shardForTrainer(workoutClass.getTrainerId()), () -> delegate.addWorkoutClass(workoutClass));
+    }
+
+    /**
+     * Inserts each location's share of the classes on its shard, all shards in parallel.
+     */
+    @Override
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) throws SQLException {
+        Map<ShardMap.Shard, List<WorkoutClass>> groups = shards.groupById(workoutClasses, WorkoutClass::getTrainerId);
+        List<WorkoutClass> unassigned = groups.remove(null);
+        if (unassigned != null) {
+            groups.computeIfAbsent(shards.forNewRows(), shard -> new ArrayList<>()).addAll(unassigned);
+        }
+        List<ShardMap.Shard> targets = new ArrayList<>(groups.keySet());
+        List<BatchInsertResult> parts = shards.scatter(targets,
+                () -> delegate.addWorkoutClasses(groups.get(ShardContext.current()), chunkSize));
+        BatchInsertResult result = new BatchInsertResult(workoutClasses.size());
+        for (int i = 0; i < parts.size(); i++) {
+            result.addPart(parts.get(i), targets.get(i).getLocation());
+        }
+        return result;
+    }
+
+    @Override
+    public List<WorkoutClass> getAllWorkoutClasses() throws SQLException {
+        List<WorkoutClass> classes = new ArrayList<>();
+        for (List<WorkoutClass> part : shards.scatter(delegate::getAllWorkoutClasses)) {
+            classes.addAll(part);
+        }
+        return classes;
+    }
+
+    @Override
+    public List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(trainerId);
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return shards.onShard(shard, () -> delegate.getWorkoutClassesByTrainerId(trainerId));
+    }
+
+    /**
+     * Reads one page after the cursor from every shard and keeps the first {@code pageSize}
+     * classes of their merge, so the page is the same as one database holding all classes.
+     */
+    @Override
+    public WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException {
+        List<WorkoutClass> merged = new ArrayList<>();
+        boolean more = false;
+        for (WorkoutClassPage part : shards.scatter(() -> delegate.getWorkoutClassesPage(filter, after, pageSize))) {
+            merged.addAll(part.getClasses());
+            more |= part.hasNext();
+        }
+        merged.sort(SCHEDULE_ORDER);
+        if (merged.size() > pageSize) {
+            merged.subList(pageSize, merged.size()).clear();
+            more = true;
+        }
+        WorkoutClassCursor next = more && !merged.isEmpty() ? WorkoutClassCursor.after(merged.get(merged.size() - 1)) : null;
+        return new WorkoutClassPage(merged, next);
+    }
+
+    /**
+     * Reads the best {@code (page + 1) * pageSize} matches from every shard and merges them by
+     * rank, since the requested page can draw on any shard's top matches.
+     */
+    @Override
+    public WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException {
+        int needed = (page + 1) * pageSize;
+        List<RankedClass> merged = new ArrayList<>();
+        boolean more = false;
+        for (WorkoutClassSearchPage part : shards.scatter(() -> delegate.searchWorkoutClasses(text, 0, needed))) {
+            List<Float> ranks = part.getRanks();
+            for (int i = 0; i < part.getClasses().size(); i++) {
+                merged.add(new RankedClass(part.getClasses().get(i), ranks == null ? 0f : ranks.get(i)));
+            }
+            more |= part.hasNext();
+        }
+        merged.sort(Comparator.comparing((RankedClass ranked) -> ranked.rank).reversed()
+                .thenComparingInt(ranked -> ranked.workoutClass.getClassId()));
+
+        List<WorkoutClass> classes = new ArrayList<>();
+        List<Float> ranks = new ArrayList<>();
+        for (int i = page * pageSize; i < Math.min(needed, merged.size()); i++) {
+            classes.add(merged.get(i).workoutClass);
+            ranks.add(merged.get(i).rank);
+        }
+        return new WorkoutClassSearchPage(classes, page, more || merged.size() > needed, ranks);
+    }
+
+    @Override
+    public void deleteWorkoutClass(int classId) throws SQLException {
+        ShardMap.Shard shard = shards.forId(classId);
+        if (shard != null) {
+            shards.onShard(shard, () -> {
+                delegate.deleteWorkoutClass(classId);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Updates the class on the shard that holds it. The new trainer must work at the same
+     * location, or the shard's foreign key rejects the update.
+     */
+    @Override
+    public boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        ShardMap.Shard shard = shards.forId(workoutClass.getClassId());
+        if (shard == null) {
+            return false;
+        }
+        return shards.onShard(shard, () -> delegate.updateWorkoutClass(workoutClass));
+    }
+
+    private ShardMap.Shard shardForTrainer(int trainerId) {
+        ShardMap.Shard shard = shards.forId(trainerId);
+        return shard != null ? shard : shards.forNewRows();
+    }
+
+    private static final class RankedClass {
+        private final WorkoutClass workoutClass;
+        private final float rank;
+
+        private RankedClass(WorkoutClass workoutClass, float rank) {
+            this.workoutClass = workoutClass;
+            this.rank = rank;
+        }
+    }
+}
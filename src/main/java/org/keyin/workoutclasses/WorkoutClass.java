@@ -56,6 +56,18 @@ public class WorkoutClass {
         this.isCompleted      = false;
     }
 
+    /**
+     * Copy constructor. Creates an independent copy of another workout class.
+     *
+     * @param other The workout class to copy.
+     */
+    public WorkoutClass(WorkoutClass other) {
+        this(other.id, other.className, other.trainerId, other.classDescription, other.classLevel,
+             other.classDuration, other.classCapacity, other.classDate, other.classTime,
+             other.classLocation, other.classEquipment);
+        this.isCompleted = other.isCompleted;
+    }
+
     //        GETTERS
     /** @return class name. */
     public String getClassName() {
@@ -118,6 +130,14 @@ public class WorkoutClass {
     }
 
     //        SETTERS
+    /**
+     * Sets the workout class ID, e.g. once the database has generated it.
+     * @param classId the class ID
+     */
+    public void setClassId(int classId) {
+        this.id = classId;
+    }
+
     /**
      * Sets the name of the workout class.
      * @param className the new class name
@@ -0,0 +1,51 @@
+package org.keyin.workoutclasses;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Position in the (class_date, class_time, class_id) ordering of workout classes.
+ * A page request returns the classes strictly after this position, which lets the
+ * database seek straight to the next page through an index instead of skipping rows.
+ */
+public class WorkoutClassCursor {
+    private final LocalDate classDate;
+    private final LocalTime classTime;
+    private final int classId;
+
+    /**
+     * @param classDate date of the last class already seen
+     * @param classTime start time of the last class already seen
+     * @param classId   ID of the last class already seen
+     */
+    public WorkoutClassCursor(LocalDate classDate, LocalTime classTime, int classId) {
+        this.classDate = classDate;
+        this.classTime = classTime;
+        this.classId = classId;
+    }
+
+    /**
+     * Builds a cursor pointing at the given class.
+     *
+     * @param workoutClass the last class of a page
+     * @return a cursor positioned on that class
+     */
+    public static WorkoutClassCursor after(WorkoutClass workoutClass) {
+        return new WorkoutClassCursor(workoutClass.getClassDate(), workoutClass.getClassTime(), workoutClass.getClassId());
+    }
+
+    /** @return class date of the cursor position. */
+    public LocalDate getClassDate() {
+        return classDate;
+    }
+
+    /** @return class time of the cursor position. */
+    public LocalTime getClassTime() {
+        return classTime;
+    }
+
+    /** @return class ID of the cursor position. */
+    public int getClassId() {
+        return classId;
+    }
+}
@@ -1,7 +1,10 @@
 // WorkoutClassDAO.java
 package org.keyin.workoutclasses;
 
+import org.keyin.database.BatchInsertResult;
+
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -10,13 +13,24 @@ import java.util.List;
  */
 public interface WorkoutClassDAO {
     /**
-     * Inserts a new workout class into the database.
+     * Inserts a new workout class into the database and stores the generated ID on it.
      *
      * @param workoutClass The {@link WorkoutClass} object to add.
+     * @return The new class's ID.
      * @throws SQLException If a database access error occurs.
      */
 
-    void addWorkoutClass(WorkoutClass workoutClass) throws SQLException;
+    int addWorkoutClass(WorkoutClass workoutClass) throws SQLException;
+
+    /**
+     * Inserts many workout classes using batched inserts, committing one chunk at a time.
+     *
+     * @param workoutClasses The classes to insert.
+     * @param chunkSize      Number of rows per transaction.
+     * @return Rows inserted and any chunks that failed.
+     * @throws SQLException If no database connection can be obtained.
+     */
+    BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) throws SQLException;
     
     /**
      * Retrieves all workout classes from the database.
@@ -36,6 +50,29 @@ public interface WorkoutClassDAO {
 
     List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException;
 
+    /**
+     * Retrieves one page of workout classes in (date, time, ID) order, starting after the given cursor.
+     *
+     * @param filter   Optional date range, level and location filters.
+     * @param after    Position of the last class already seen, or null for the first page.
+     * @param pageSize Maximum number of classes to return.
+     * @return A {@link WorkoutClassPage} with the classes and the cursor for the next page.
+     * @throws SQLException If a database access error occurs.
+     */
+    WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException;
+
+    /**
+     * Searches class names, descriptions, levels and equipment. Every word must match, and the
+     * last letters of a word may be missing, so "core beg" finds "Core Strength for Beginners".
+     *
+     * @param text     Words to search for.
+     * @param page     Zero-based page number.
+     * @param pageSize Maximum number of classes per page.
+     * @return A {@link WorkoutClassSearchPage} with the best matches first.
+     * @throws SQLException If a database access error occurs.
+     */
+    WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException;
+
     /**
      * Deletes a workout class from the database using its ID.
      *
@@ -48,8 +85,10 @@ public interface WorkoutClassDAO {
      * Updates the details of an existing workout class in the database.
      *
      * @param workoutClass The {@link WorkoutClass} object with updated details.
-     * @throws SQLException If a database access error occurs or the ID does not exist.
+     * @return true if a class with that ID was updated, false if there is none.
+     * @throws SQLException If a database access error occurs, including an exclusion-constraint
+     *                      violation (SQLSTATE 23P01) when the new slot double-books the trainer or location.
      */
-    boolean updateWorkoutClass(WorkoutClass workoutClass);
+    boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException;
 
 }
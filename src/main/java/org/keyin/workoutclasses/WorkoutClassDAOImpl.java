@@ -1,166 +1,383 @@
-// WorkoutClassDAOImpl.java
-package org.keyin.workoutclasses;
-
-import org.keyin.database.DatabaseConnection;
-
-import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * Implementation of the {@link WorkoutClassDAO} interface.
- * Provides database operations for managing workout classes.
- */
-public class WorkoutClassDAOImpl implements WorkoutClassDAO {
-    /**
-     * Adds a new workout class to the database.
-     *
-     * @param workoutClass The {@link WorkoutClass} object containing class details.
-     * @throws SQLException If a database access error occurs.
-     */
-    @Override
-public void addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
-    String sql = "INSERT INTO workoutclasses (class_name, trainer_id, class_description, class_level, class_duration, class_capacity, class_date, class_time, class_location, class_equipment, is_completed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-    try (Connection conn = DatabaseConnection.getConnection();
-         PreparedStatement stmt = conn.prepareStatement(sql)) {
-        stmt.setString(1, workoutClass.getClassName());
-        stmt.setInt(2, workoutClass.getTrainerId());
-        stmt.setString(3, workoutClass.getClassDescription());
-        stmt.setString(4, workoutClass.getClassLevel());
-        stmt.setInt(5, workoutClass.getClassDuration());
-        stmt.setInt(6, workoutClass.getClassCapacity());
-        stmt.setDate(7, Date.valueOf(workoutClass.getClassDate()));
-        stmt.setTime(8, Time.valueOf(workoutClass.getClassTime()));
-        stmt.setString(9, workoutClass.getClassLocation());
-        stmt.setString(10, workoutClass.getClassEquipment());
-        stmt.setBoolean(11, workoutClass.isCompleted());
-
-        stmt.executeUpdate();
-    }
-}
-
-    /**
-     * Retrieves all workout classes from the database.
-     *
-     * @return A list of all {@link WorkoutClass} records.
-     * @throws SQLException If a database access error occurs.
-     */
-    @Override
-    public List<WorkoutClass> getAllWorkoutClasses() throws SQLException {
-        List<WorkoutClass> classes = new ArrayList<>();
-        String sql = "SELECT * FROM workoutclasses";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                classes.add(buildWorkoutClassFromResultSet(rs));
-            }
-        }
-        return classes;
-    }
-
-    /**
-     * Retrieves workout classes associated with a specific trainer.
-     *
-     * @param trainerId The ID of the trainer (foreign key from users table).
-     * @return A list of {@link WorkoutClass} instances assigned to the trainer.
-     * @throws SQLException If a database access error occurs.
-     */
-    @Override
-    public List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException {
-        List<WorkoutClass> classes = new ArrayList<>();
-        String sql = "SELECT * FROM workoutClasses WHERE trainer_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, trainerId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                classes.add(buildWorkoutClassFromResultSet(rs));
-            }
-        }
-        return classes;
-    }
-
-    /**
-     * Deletes a workout class from the database.
-     *
-     * @param classId The ID of the class to delete.
-     * @throws SQLException If a database access error occurs.
-     */
-    @Override
-    public void deleteWorkoutClass(int classId) throws SQLException {
-        String sql = "DELETE FROM workoutClasses WHERE class_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, classId);
-            stmt.executeUpdate();
-        }
-    }
-
-    
-    /**
-     * Builds a {@link WorkoutClass} object from a database result set.
-     *
-     * @param rs The {@link ResultSet} containing workout class data.
-     * @return A fully populated {@link WorkoutClass} instance.
-     * @throws SQLException If reading from the ResultSet fails.
-     */
-    private WorkoutClass buildWorkoutClassFromResultSet(ResultSet rs) throws SQLException {
-        return new WorkoutClass(
-            rs.getInt("class_id"),
-            rs.getString("class_name"),
-            rs.getInt("trainer_id"),
-            rs.getString("class_description"),
-            rs.getString("class_level"),
-            rs.getInt("class_duration"),
-            rs.getInt("class_capacity"),
-            rs.getDate("class_date").toLocalDate(),
-            rs.getTime("class_time").toLocalTime(),
-            rs.getString("class_location"),
-            rs.getString("class_equipment")
-        );
-    }
-
-    /**
-     * Updates the details of an existing workout class in the database.
-     *
-     * @param workoutClass The {@link WorkoutClass} object with updated details.
-     * @return true if the update was successful, false otherwise.
-     */
-    @Override
-    public boolean updateWorkoutClass(WorkoutClass workoutClass) {
-        String sql = "UPDATE workoutclasses SET " +
-        "class_name = ?, class_description = ?, class_level = ?, class_duration = ?, " +
-        "class_capacity = ?, class_date = ?, class_time = ?, class_location = ?, is_completed = ? " +
-        "WHERE class_id = ?";
-    
-
-        try (Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-           stmt.setString(1, workoutClass.getClassName());
-           stmt.setString(2, workoutClass.getClassDescription());
-           stmt.setString(3, workoutClass.getClassLevel());
-           stmt.setInt(4, workoutClass.getClassDuration());
-           stmt.setInt(5, workoutClass.getClassCapacity());
-           stmt.setDate(6, java.sql.Date.valueOf(workoutClass.getClassDate()));
-           stmt.setTime(7, java.sql.Time.valueOf(workoutClass.getClassTime()));
-           stmt.setString(8, workoutClass.getClassLocation());
-           stmt.setBoolean(9, workoutClass.isCompleted());
-           stmt.setInt(10, workoutClass.getClassId());
-
-            return stmt.executeUpdate() > 0;
-
-        } catch (SQLException e) {
-         System.out.println("Error updating workout class: " + e.getMessage());
-            return false;
-        }
-    }
-}
-    
+// WorkoutClassDAOImpl.java
+package org.keyin.workoutclasses;
+
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.BatchInserter;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.database.Projection;
+import org.keyin.database.RowMapper;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Implementation of the {@link WorkoutClassDAO} interface.
+ * Provides database operations for managing workout classes.
+ */
+public class WorkoutClassDAOImpl implements WorkoutClassDAO {
+    private static final Projection CLASS_COLUMNS = Projection.of(
+        "class_id", "class_name", "trainer_id", "class_description", "class_level", "class_duration",
+        "class_capacity", "class_date", "class_time", "class_location", "class_equipment", "is_completed");
+
+    private static final RowMapper<WorkoutClass> CLASS_MAPPER = workoutClassMapper(CLASS_COLUMNS);
+
+    /**
+     * Adds a new workout class to the database and stores the generated ID on it.
+     * The ID comes back from the INSERT itself via RETURNING, so no follow-up query is needed.
+     *
+     * @param workoutClass The {@link WorkoutClass} object containing class details.
+     * @return The new class's ID.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+public int addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+    String sql = "INSERT INTO workoutclasses (class_name, trainer_id, class_description, class_level, class_duration, class_capacity, class_date, class_time, class_location, class_equipment, is_completed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING class_id";
+
+    try (Connection conn = DatabaseConnection.getConnection();
+         PreparedStatement stmt = conn.prepareStatement(sql)) {
+        stmt.setString(1, workoutClass.getClassName());
+        stmt.setInt(2, workoutClass.getTrainerId());
+        stmt.setString(3, workoutClass.getClassDescription());
+        stmt.setString(4, workoutClass.getClassLevel());
+        stmt.setInt(5, workoutClass.getClassDuration());
+        stmt.setInt(6, workoutClass.getClassCapacity());
+        stmt.setDate(7, Date.valueOf(workoutClass.getClassDate()));
+        stmt.setTime(8, Time.valueOf(workoutClass.getClassTime()));
+        stmt.setString(9, workoutClass.getClassLocation());
+        stmt.setString(10, workoutClass.getClassEquipment());
+        stmt.setBoolean(11, workoutClass.isCompleted());
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            workoutClass.setClassId(rs.getInt(1));
+            return workoutClass.getClassId();
+        }
+    }
+}
+
+    /**
+     * Adds many workout classes in batched, chunked transactions on one connection.
+     *
+     * @param workoutClasses The classes to insert.
+     * @param chunkSize      Number of rows per transaction.
+     * @return Rows inserted and any chunks that failed.
+     * @throws SQLException If no database connection can be obtained.
+     */
+    @Override
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) throws SQLException {
+        String sql = "INSERT INTO workoutclasses (class_name, trainer_id, class_description, class_level, class_duration, class_capacity, class_date, class_time, class_location, class_equipment, is_completed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return BatchInserter.insertInChunks(conn, sql, workoutClasses, chunkSize, (stmt, workoutClass) -> {
+                stmt.setString(1, workoutClass.getClassName());
+                stmt.setInt(2, workoutClass.getTrainerId());
+                stmt.setString(3, workoutClass.getClassDescription());
+                stmt.setString(4, workoutClass.getClassLevel());
+                stmt.setInt(5, workoutClass.getClassDuration());
+                stmt.setInt(6, workoutClass.getClassCapacity());
+                stmt.setDate(7, Date.valueOf(workoutClass.getClassDate()));
+                stmt.setTime(8, Time.valueOf(workoutClass.getClassTime()));
+                stmt.setString(9, workoutClass.getClassLocation());
+                stmt.setString(10, workoutClass.getClassEquipment());
+                stmt.setBoolean(11, workoutClass.isCompleted());
+            });
+        }
+    }
+
+    /**
+     * Retrieves all workout classes from the database.
+     *
+     * @return A list of all {@link WorkoutClass} records.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<WorkoutClass> getAllWorkoutClasses() throws SQLException {
+        List<WorkoutClass> classes = new ArrayList<>();
+        String sql = "SELECT " + CLASS_COLUMNS.columns() + " FROM workoutclasses";
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            return RowMapper.toList(rs, CLASS_MAPPER);
+        }
+    }
+
+    /**
+     * Retrieves workout classes associated with a specific trainer.
+     *
+     * @param trainerId The ID of the trainer (foreign key from users table).
+     * @return A list of {@link WorkoutClass} instances assigned to the trainer.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public List<WorkoutClass> getWorkoutClassesByTrainerId(int trainerId) throws SQLException {
+        String sql = "SELECT " + CLASS_COLUMNS.columns() + " FROM workoutclasses WHERE trainer_id = ?";
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, trainerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return RowMapper.toList(rs, CLASS_MAPPER);
+            }
+        }
+    }
+
+    /**
+     * Retrieves one page of workout classes using keyset pagination.
+     * The row comparison on (class_date, class_time, class_id) lets PostgreSQL seek
+     * directly to the cursor through the composite indexes, so later pages cost
+     * the same as the first one. See {@link #pageSql} for how the monthly partitions are pruned.
+     *
+     * @param filter   Optional date range, level and location filters.
+     * @param after    Position of the last class already seen, or null for the first page.
+     * @param pageSize Maximum number of classes to return.
+     * @return A {@link WorkoutClassPage} with the classes and the next cursor.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = pageSql(filter, after, pageSize, params);
+
+        List<WorkoutClass> classes;
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                classes = RowMapper.toList(rs, CLASS_MAPPER);
+            }
+        }
+
+        WorkoutClassCursor next = null;
+        if (classes.size() > pageSize) {
+            classes.remove(pageSize);
+            next = WorkoutClassCursor.after(classes.get(pageSize - 1));
+        }
+        return new WorkoutClassPage(classes, next);
+    }
+
+    /**
+     * Builds the query for one schedule page. {@code workoutclasses} is partitioned by month of
+     * {@code class_date}, and PostgreSQL prunes partitions from plain comparisons on that column
+     * but not from the row comparison, so the cursor's date is repeated as {@code class_date >= ?}.
+     * With that, a page after a cursor never opens the months before it, and a date-range filter
+     * touches only the months in the range.
+     *
+     * @param filter   Optional date range, level and location filters, or null.
+     * @param after    Position of the last class already seen, or null for the first page.
+     * @param pageSize Maximum number of classes to return.
+     * @param params   Receives the values to bind, in order.
+     * @return The SQL text; it fetches one row more than {@code pageSize}.
+     */
+    public static String pageSql(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize, List<Object> params) {
+        if (filter == null) {
+            filter = WorkoutClassFilter.none();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT " + CLASS_COLUMNS.columns() + " FROM workoutclasses WHERE TRUE");
+        if (filter.getFromDate() != null) {
+            sql.append(" AND class_date >= ?");
+            params.add(Date.valueOf(filter.getFromDate()));
+        }
+        if (filter.getToDate() != null) {
+            sql.append(" AND class_date <= ?");
+            params.add(Date.valueOf(filter.getToDate()));
+        }
+        if (filter.getClassLevel() != null) {
+            sql.append(" AND class_level = ?");
+            params.add(filter.getClassLevel());
+        }
+        if (filter.getClassLocation() != null) {
+            sql.append(" AND class_location = ?");
+            params.add(filter.getClassLocation());
+        }
+        if (after != null) {
+            sql.append(" AND class_date >= ? AND (class_date, class_time, class_id) > (?, ?, ?)");
+            params.add(Date.valueOf(after.getClassDate()));
+            params.add(Date.valueOf(after.getClassDate()));
+            params.add(Time.valueOf(after.getClassTime()));
+            params.add(after.getClassId());
+        }
+        // Fetch one extra row to find out whether another page exists
+        sql.append(" ORDER BY class_date, class_time, class_id LIMIT ?");
+        params.add(pageSize + 1);
+        return sql.toString();
+    }
+
+    /**
+     * Searches the generated {@code search_vector} column through its GIN index.
+     * Each word becomes a prefix term ({@code word:*}) and all terms must match; results are
+     * ordered by {@code ts_rank}, which weights name over level over description over equipment.
+     * Every match is ranked before the page is cut, so the best matches are never missed; with a
+     * LIMIT the sort is a bounded top-N heap, so a broad query costs rank computations, not memory.
+     *
+     * @param text     Words to search for.
+     * @param page     Zero-based page number.
+     * @param pageSize Maximum number of classes per page.
+     * @return A {@link WorkoutClassSearchPage} with the best matches first.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException {
+        String tsQuery = toPrefixQuery(text);
+        if (tsQuery.isEmpty()) {
+            return new WorkoutClassSearchPage(new ArrayList<>(), page, false);
+        }
+
+        // The rank is returned too, so pages from several shards can be merged
+        String sql = "SELECT " + CLASS_COLUMNS.columns() + ", ts_rank(search_vector, to_tsquery('english', ?)) AS search_rank " +
+                "FROM workoutclasses WHERE search_vector @@ to_tsquery('english', ?) " +
+                "ORDER BY search_rank DESC, class_id LIMIT ? OFFSET ?";
+
+        List<WorkoutClass> classes = new ArrayList<>();
+        List<Float> ranks = new ArrayList<>();
+        int rankIndex = CLASS_COLUMNS.getColumns().size() + 1;
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, tsQuery);
+            stmt.setString(2, tsQuery);
+            // Fetch one extra row to find out whether another page exists
+            stmt.setInt(3, pageSize + 1);
+            stmt.setLong(4, (long) page * pageSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    classes.add(CLASS_MAPPER.mapRow(rs));
+                    ranks.add(rs.getFloat(rankIndex));
+                }
+            }
+        }
+
+        boolean hasNext = classes.size() > pageSize;
+        if (hasNext) {
+            classes.remove(pageSize);
+            ranks.remove(pageSize);
+        }
+        return new WorkoutClassSearchPage(classes, page, hasNext, ranks);
+    }
+
+    /**
+     * Turns free text into a tsquery where every word is a required prefix, e.g.
+     * {@code "core beg"} becomes {@code "core:* & beg:*"}. Only letters and digits are kept,
+     * so user input can never produce tsquery syntax errors.
+     *
+     * @param text the search text
+     * @return the tsquery string, or an empty string if the text has no words
+     */
+    private static String toPrefixQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(" & ");
+            }
+            query.append(word).append(":*");
+        }
+        return query.toString();
+    }
+
+    /**
+     * Deletes a workout class from the database.
+     *
+     * @param classId The ID of the class to delete.
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public void deleteWorkoutClass(int classId) throws SQLException {
+        String sql = "DELETE FROM workoutClasses WHERE class_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, classId);
+            stmt.executeUpdate();
+        }
+    }
+
+    
+    /**
+     * Builds a mapper for {@link WorkoutClass} rows over the given projection.
+     * Column indexes are resolved once here instead of by label on every row.
+     *
+     * @param columns The projection the query selects.
+     * @return A reusable row mapper.
+     */
+    private static RowMapper<WorkoutClass> workoutClassMapper(Projection columns) {
+        int idIndex = columns.index("class_id");
+        int nameIndex = columns.index("class_name");
+        int trainerIndex = columns.index("trainer_id");
+        int descriptionIndex = columns.index("class_description");
+        int levelIndex = columns.index("class_level");
+        int durationIndex = columns.index("class_duration");
+        int capacityIndex = columns.index("class_capacity");
+        int dateIndex = columns.index("class_date");
+        int timeIndex = columns.index("class_time");
+        int locationIndex = columns.index("class_location");
+        int equipmentIndex = columns.index("class_equipment");
+        int completedIndex = columns.index("is_completed");
+
+        return rs -> {
+            WorkoutClass workoutClass = new WorkoutClass(
+                rs.getInt(idIndex),
+                rs.getString(nameIndex),
+                rs.getInt(trainerIndex),
+                rs.getString(descriptionIndex),
+                rs.getString(levelIndex),
+                rs.getInt(durationIndex),
+                rs.getInt(capacityIndex),
+                rs.getObject(dateIndex, LocalDate.class),
+                rs.getObject(timeIndex, LocalTime.class),
+                rs.getString(locationIndex),
+                rs.getString(equipmentIndex)
+            );
+            workoutClass.setCompleted(rs.getBoolean(completedIndex));
+            return workoutClass;
+        };
+    }
+
+    /**
+     * Updates the details of an existing workout class in the database.
+     *
+     * @param workoutClass The {@link WorkoutClass} object with updated details.
+     * @return true if the update was successful, false if no class has that ID.
+     * @throws SQLException if the update fails, e.g. with 23P01 when the new slot overlaps another class
+     */
+    @Override
+    public boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        String sql = "UPDATE workoutclasses SET " +
+        "class_name = ?, class_description = ?, class_level = ?, class_duration = ?, " +
+        "class_capacity = ?, class_date = ?, class_time = ?, class_location = ?, is_completed = ? " +
+        "WHERE class_id = ?";
+    
+
+        try (Connection conn = DatabaseConnection.getConnection();
+            PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+           stmt.setString(1, workoutClass.getClassName());
+           stmt.setString(2, workoutClass.getClassDescription());
+           stmt.setString(3, workoutClass.getClassLevel());
+           stmt.setInt(4, workoutClass.getClassDuration());
+           stmt.setInt(5, workoutClass.getClassCapacity());
+           stmt.setDate(6, java.sql.Date.valueOf(workoutClass.getClassDate()));
+           stmt.setTime(7, java.sql.Time.valueOf(workoutClass.getClassTime()));
+           stmt.setString(8, workoutClass.getClassLocation());
+           stmt.setBoolean(9, workoutClass.isCompleted());
+           stmt.setInt(10, workoutClass.getClassId());
+
+            return stmt.executeUpdate() > 0;
+        }
+    }
+}
+    
@@ -0,0 +1,56 @@
+package org.keyin.workoutclasses;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters for browsing workout classes page by page.
+ * Any field left {@code null} is not applied.
+ */
+public class WorkoutClassFilter {
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final String classLevel;
+    private final String classLocation;
+
+    /**
+     * Creates a filter. Pass {@code null} for any criterion that should not be applied.
+     *
+     * @param fromDate      earliest class date to include (inclusive)
+     * @param toDate        latest class date to include (inclusive)
+     * @param classLevel    exact class level to match (e.g., Beginner)
+     * @param classLocation exact class location to match (e.g., Studio A)
+     */
+    public WorkoutClassFilter(LocalDate fromDate, LocalDate toDate, String classLevel, String classLocation) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.classLevel = classLevel;
+        this.classLocation = classLocation;
+    }
+
+    /**
+     * @return a filter that matches every class
+     */
+    public static WorkoutClassFilter none() {
+        return new WorkoutClassFilter(null, null, null, null);
+    }
+
+    /** @return earliest class date to include, or null. */
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    /** @return latest class date to include, or null. */
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    /** @return class level to match, or null. */
+    public String getClassLevel() {
+        return classLevel;
+    }
+
+    /** @return class location to match, or null. */
+    public String getClassLocation() {
+        return classLocation;
+    }
+}
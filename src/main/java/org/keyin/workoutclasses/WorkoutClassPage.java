@@ -0,0 +1,35 @@
+package org.keyin.workoutclasses;
+
+import java.util.List;
+
+/**
+ * One page of workout classes plus the cursor needed to fetch the next page.
+ */
+public class WorkoutClassPage {
+    private final List<WorkoutClass> classes;
+    private final WorkoutClassCursor nextCursor;
+
+    /**
+     * @param classes    the classes on this page, in schedule order
+     * @param nextCursor cursor for the following page, or null if this is the last page
+     */
+    public WorkoutClassPage(List<WorkoutClass> classes, WorkoutClassCursor nextCursor) {
+        this.classes = classes;
+        this.nextCursor = nextCursor;
+    }
+
+    /** @return the classes on this page. */
+    public List<WorkoutClass> getClasses() {
+        return classes;
+    }
+
+    /** @return cursor for the next page, or null when there are no more classes. */
+    public WorkoutClassCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /** @return true if another page is available. */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
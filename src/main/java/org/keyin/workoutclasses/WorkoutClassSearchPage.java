@@ -0,0 +1,55 @@
+package org.keyin.workoutclasses;
+
+import java.util.List;
+
+/**
+ * One page of full-text search results, best match first.
+ */
+public class WorkoutClassSearchPage {
+    private final List<WorkoutClass> classes;
+    private final int page;
+    private final boolean hasNext;
+    private final List<Float> ranks;
+
+    /**
+     * @param classes the matching classes on this page, in rank order
+     * @param page    zero-based page number
+     * @param hasNext true if another page of matches exists
+     */
+    public WorkoutClassSearchPage(List<WorkoutClass> classes, int page, boolean hasNext) {
+        this(classes, page, hasNext, null);
+    }
+
+    /**
+     * @param classes the matching classes on this page, in rank order
+     * @param page    zero-based page number
+     * @param hasNext true if another page of matches exists
+     * @param ranks   each class's search rank, parallel to {@code classes}, or null if unknown
+     */
+    public WorkoutClassSearchPage(List<WorkoutClass> classes, int page, boolean hasNext, List<Float> ranks) {
+        this.classes = classes;
+        this.page = page;
+        this.hasNext = hasNext;
+        this.ranks = ranks;
+    }
+
+    /** @return the matching classes on this page. */
+    public List<WorkoutClass> getClasses() {
+        return classes;
+    }
+
+    /** @return zero-based page number. */
+    public int getPage() {
+        return page;
+    }
+
+    /** @return true if another page is available. */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /** @return each class's search rank, so pages from several databases can be merged; null if unknown. */
+    public List<Float> getRanks() {
+        return ranks;
+    }
+}
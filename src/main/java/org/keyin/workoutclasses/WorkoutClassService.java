@@ -1,31 +1,105 @@
 // WorkoutClassService.java
 package org.keyin.workoutclasses;
 
+import org.keyin.database.BatchInsertResult;
+import org.keyin.database.ChangeEvent;
+import org.keyin.database.DatabaseConnection;
+import org.keyin.utils.AsyncServiceExecutor;
+
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service class for managing workout class-related business logic.
  * Acts as an intermediary between the UI/controller layer and the DAO layer.
  */
 public class WorkoutClassService {
+    // Schedule reads refused because a save landed during them, before the read holds off saves
+    private static final int SCHEDULE_LOAD_ATTEMPTS = 3;
+
     private WorkoutClassDAO workoutClassDAO;
+    private BookingDAO bookingDAO;
+    private final AsyncServiceExecutor asyncExecutor;
+    private final ScheduleIndex scheduleIndex = new ScheduleIndex();
+    private final Object scheduleLoadLock = new Object();
 
     /**
      * Constructs the WorkoutClassService using a DAO implementation.
      * @param workoutClassDAO the DAO used to manage workout class data
      */
     public WorkoutClassService(WorkoutClassDAO workoutClassDAO) {
+        this(workoutClassDAO, new BookingDAOImpl());
+    }
+
+    /**
+     * Constructs the WorkoutClassService with explicit class and booking DAOs.
+     * @param workoutClassDAO the DAO used to manage workout class data
+     * @param bookingDAO the DAO used to manage class bookings
+     */
+    public WorkoutClassService(WorkoutClassDAO workoutClassDAO, BookingDAO bookingDAO) {
+        this(workoutClassDAO, bookingDAO, AsyncServiceExecutor.shared());
+    }
+
+    /**
+     * Constructs the WorkoutClassService with explicit DAOs and an executor for the *Async methods.
+     * @param workoutClassDAO the DAO used to manage workout class data
+     * @param bookingDAO the DAO used to manage class bookings
+     * @param asyncExecutor executor that runs the *Async methods
+     */
+    public WorkoutClassService(WorkoutClassDAO workoutClassDAO, BookingDAO bookingDAO, AsyncServiceExecutor asyncExecutor) {
         this.workoutClassDAO = workoutClassDAO;
+        this.bookingDAO = bookingDAO;
+        this.asyncExecutor = asyncExecutor;
     }
 
     /**
-     * Adds a new workout class to the database.
+     * Adds a new workout class to the database, refusing it if the trainer or location is
+     * already busy at that time.
      * @param workoutClass the class to add
+     * @return the new class's ID
+     * @throws ScheduleConflictException if the class overlaps another with the same trainer or location
      * @throws SQLException if a database error occurs
      */
-    public void addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
-        workoutClassDAO.addWorkoutClass(workoutClass);
+    public int addWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        checkSchedule(workoutClass);
+        int classId;
+        try {
+            classId = workoutClassDAO.addWorkoutClass(workoutClass);
+        } catch (SQLException e) {
+            throw translateConflict(e);
+        }
+        scheduleIndex.put(workoutClass);
+        return classId;
+    }
+
+    /**
+     * Adds many workout classes at once, e.g. when loading a season's schedule.
+     * Overlaps are left to the database's exclusion constraints, which reject the chunk they occur in.
+     * @param workoutClasses the classes to add
+     * @return rows inserted and any chunks that failed
+     * @throws SQLException if no database connection can be obtained
+     */
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses) throws SQLException {
+        return addWorkoutClasses(workoutClasses, DatabaseConnection.DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    /**
+     * Adds many workout classes at once using a custom chunk size.
+     * Overlaps are left to the database's exclusion constraints, which reject the chunk they occur in.
+     * @param workoutClasses the classes to add
+     * @param chunkSize number of rows per transaction
+     * @return rows inserted and any chunks that failed
+     * @throws SQLException if no database connection can be obtained
+     */
+    public BatchInsertResult addWorkoutClasses(Collection<WorkoutClass> workoutClasses, int chunkSize) throws SQLException {
+        try {
+            return workoutClassDAO.addWorkoutClasses(workoutClasses, chunkSize);
+        } finally {
+            // Batch inserts don't return IDs, so reload the index on the next check
+            scheduleIndex.invalidate();
+        }
     }
 
     /**
@@ -47,6 +121,31 @@ public class WorkoutClassService {
         return workoutClassDAO.getWorkoutClassesByTrainerId(trainerId);
     }
 
+    /**
+     * Retrieves one page of workout classes in schedule order.
+     * @param filter optional date range, level and location filters
+     * @param after cursor from the previous page, or null for the first page
+     * @param pageSize maximum number of classes to return
+     * @return the page of classes and the cursor for the next page
+     * @throws SQLException if a database error occurs
+     */
+    public WorkoutClassPage getWorkoutClassesPage(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) throws SQLException {
+        return workoutClassDAO.getWorkoutClassesPage(filter, after, pageSize);
+    }
+
+    /**
+     * Searches classes by name, description, level and equipment, best match first.
+     * Words may be partial ("pil" matches "Pilates"), and every word must match.
+     * @param text the words to search for
+     * @param page zero-based page number
+     * @param pageSize maximum number of classes per page
+     * @return the page of matches and whether more exist
+     * @throws SQLException if a database error occurs
+     */
+    public WorkoutClassSearchPage searchWorkoutClasses(String text, int page, int pageSize) throws SQLException {
+        return workoutClassDAO.searchWorkoutClasses(text, page, pageSize);
+    }
+
     /**
      * Deletes a workout class by its ID.
      * @param classId the ID of the class to delete
@@ -54,15 +153,293 @@ public class WorkoutClassService {
      */
     public void deleteWorkoutClass(int classId) throws SQLException {
         workoutClassDAO.deleteWorkoutClass(classId);
+        scheduleIndex.remove(classId);
+    }
+
+    /**
+     * Updates an existing workout class in the database, refusing a new date, time, duration or
+     * location that would double-book the trainer or the location.
+     * @param workoutClass the class with updated details
+     * @return true if the update was successful, false if no class has that ID
+     * @throws ScheduleConflictException if the new slot overlaps another class with the same trainer or location
+     * @throws SQLException if a database error occurs
+     */
+    public boolean updateWorkoutClass(WorkoutClass workoutClass) throws SQLException {
+        try {
+            checkSchedule(workoutClass);
+        } catch (ScheduleConflictException e) {
+            throw e;
+        } catch (SQLException e) {
+            // The index could not be loaded; the database constraint still guards the update
+            System.out.println("Could not check schedule: " + e.getMessage());
+        }
+        boolean updated;
+        try {
+            updated = workoutClassDAO.updateWorkoutClass(workoutClass);
+        } catch (SQLException e) {
+            throw translateConflict(e);
+        }
+        if (updated) {
+            scheduleIndex.put(workoutClass);
+        }
+        return updated;
+    }
+
+    /**
+     * Finds windows of free time in the schedule, e.g. "which studio is free Thursday evening
+     * for 60 minutes?". Answered from the in-memory schedule index without querying the database
+     * (after the index's first load).
+     * @param query date range, required length, opening hours and optional location/trainer
+     * @return maximal free windows at least as long as requested, by location then date and time
+     * @throws SQLException if the schedule index has to be loaded and that fails
+     */
+    public List<FreeSlot> findFreeSlots(FreeSlotQuery query) throws SQLException {
+        return loadedScheduleIndex().findFreeSlots(query);
+    }
+
+    /**
+     * Gives access to the schedule index, e.g. to report its size.
+     * @return the in-memory schedule index
+     */
+    public ScheduleIndex getScheduleIndex() {
+        return scheduleIndex;
+    }
+
+    /**
+     * Keeps the schedule index in step with class changes made outside this service, e.g. by
+     * another app instance. Register it with a {@link org.keyin.database.ChangeFeedListener}
+     * after the DAO's cache so a reload never reads stale cached classes. Local changes are
+     * skipped because this service already updated the index when it made them.
+     * @param event a change to the workoutclasses table
+     */
+    public void onChange(ChangeEvent event) {
+        if (event.getTable() != ChangeEvent.Table.WORKOUT_CLASSES || event.isLocal()) {
+            return;
+        }
+        if (event.getOperation() == ChangeEvent.Operation.DELETE && !event.affectsAllRows()) {
+            for (int classId : event.getIds()) {
+                scheduleIndex.remove(classId);
+            }
+        } else {
+            // Inserted or moved classes are not in the event, so reload on the next check
+            scheduleIndex.invalidate();
+        }
+    }
+
+    /**
+     * Throws if the class would overlap another class with the same trainer or in the same location,
+     * loading the schedule index on first use.
+     * The check and the write are not atomic: two concurrent requests for the same slot can both
+     * pass here, in which case the database's exclusion constraint rejects the second.
+     */
+    private void checkSchedule(WorkoutClass workoutClass) throws SQLException {
+        ScheduleConflictException conflict = loadedScheduleIndex().findConflict(workoutClass);
+        if (conflict != null) {
+            throw conflict;
+        }
+    }
+
+    /**
+     * Returns the schedule index, loading it from the database on first use. The schedule is read
+     * without holding the index, so saves carry on meanwhile; a save that lands during the read
+     * makes the rebuild refuse and the read is repeated. After {@link #SCHEDULE_LOAD_ATTEMPTS}
+     * refusals the read is done holding the index, which makes saves wait for it.
+     */
+    private ScheduleIndex loadedScheduleIndex() throws SQLException {
+        if (!scheduleIndex.isLoaded()) {
+            synchronized (scheduleLoadLock) {
+                for (int attempt = 1; !scheduleIndex.isLoaded(); attempt++) {
+                    if (attempt < SCHEDULE_LOAD_ATTEMPTS) {
+                        long stamp = scheduleIndex.stamp();
+                        scheduleIndex.rebuildIfUnchanged(readSchedule(), stamp);
+                    } else {
+                        synchronized (scheduleIndex) {
+                            scheduleIndex.rebuild(readSchedule());
+                        }
+                    }
+                }
+            }
+        }
+        return scheduleIndex;
+    }
+
+    /**
+     * Reads the whole schedule from the primary, so the index sees the writes that invalidated it.
+     */
+    private List<WorkoutClass> readSchedule() throws SQLException {
+        try (DatabaseConnection.PrimaryPin ignored = DatabaseConnection.pinReadsToPrimary()) {
+            return workoutClassDAO.getAllWorkoutClasses();
+        }
+    }
+
+    /**
+     * Turns the database's exclusion-constraint violation into a {@link ScheduleConflictException}.
+     * The index missed that clash, so it is stale (another process wrote to the schedule) and is
+     * dropped to be reloaded on the next check.
+     */
+    private SQLException translateConflict(SQLException e) {
+        if (!ScheduleConflictException.EXCLUSION_VIOLATION.equals(e.getSQLState())) {
+            return e;
+        }
+        scheduleIndex.invalidate();
+        return new ScheduleConflictException("The trainer or location is already booked at that time", e);
+    }
+
+    /**
+     * Books a seat in a class for a member. Never oversells, even under heavy contention.
+     * @param classId the class to book
+     * @param memberId the member booking the seat
+     * @return the outcome of the booking attempt
+     * @throws SQLException if a database error occurs
+     */
+    public BookingResult bookClass(int classId, int memberId) throws SQLException {
+        return bookingDAO.bookClass(classId, memberId);
+    }
+
+    /**
+     * Cancels a member's booking and frees the seat.
+     * @param classId the booked class
+     * @param memberId the member cancelling
+     * @return true if a booking was cancelled, false if none existed
+     * @throws SQLException if a database error occurs
+     */
+    public boolean cancelBooking(int classId, int memberId) throws SQLException {
+        return bookingDAO.cancelBooking(classId, memberId);
     }
 
     /**
-     * Updates an existing workout class in the database.
+     * Lists the members booked into a class.
+     * @param classId the class ID
+     * @return bookings for the class
+     * @throws SQLException if a database error occurs
+     */
+    public List<Booking> getAttendees(int classId) throws SQLException {
+        return bookingDAO.getAttendees(classId);
+    }
+
+    /**
+     * Lists a member's bookings.
+     * @param memberId the member's user ID
+     * @return the member's bookings, most recent first
+     * @throws SQLException if a database error occurs
+     */
+    public List<Booking> getBookingsByMemberId(int memberId) throws SQLException {
+        return bookingDAO.getBookingsByMemberId(memberId);
+    }
+
+    /**
+     * Finds free windows in the schedule without blocking the caller.
+     * @param query date range, required length, opening hours and optional location/trainer
+     * @return a future with the free windows
+     */
+    public CompletableFuture<List<FreeSlot>> findFreeSlotsAsync(FreeSlotQuery query) {
+        return asyncExecutor.supply(() -> findFreeSlots(query));
+    }
+
+    /**
+     * Adds a workout class without blocking the caller.
+     * @param workoutClass the class to add
+     * @return a future with the new class's ID
+     */
+    public CompletableFuture<Integer> addWorkoutClassAsync(WorkoutClass workoutClass) {
+        return asyncExecutor.supply(() -> addWorkoutClass(workoutClass));
+    }
+
+    /**
+     * Retrieves all workout classes without blocking the caller.
+     * @return a future with every workout class
+     */
+    public CompletableFuture<List<WorkoutClass>> getAllWorkoutClassesAsync() {
+        return asyncExecutor.supply(this::getAllWorkoutClasses);
+    }
+
+    /**
+     * Retrieves a trainer's classes without blocking the caller.
+     * @param trainerId the trainer's user ID
+     * @return a future with the trainer's classes
+     */
+    public CompletableFuture<List<WorkoutClass>> getWorkoutClassesByTrainerIdAsync(int trainerId) {
+        return asyncExecutor.supply(() -> getWorkoutClassesByTrainerId(trainerId));
+    }
+
+    /**
+     * Retrieves one page of classes without blocking the caller.
+     * @param filter optional date range, level and location filters (null for none)
+     * @param after cursor from the previous page, or null for the first page
+     * @param pageSize maximum number of classes per page
+     * @return a future with the page and the cursor for the next one
+     */
+    public CompletableFuture<WorkoutClassPage> getWorkoutClassesPageAsync(WorkoutClassFilter filter, WorkoutClassCursor after, int pageSize) {
+        return asyncExecutor.supply(() -> getWorkoutClassesPage(filter, after, pageSize));
+    }
+
+    /**
+     * Searches classes without blocking the caller.
+     * @param text the words to search for
+     * @param page zero-based page number
+     * @param pageSize maximum number of classes per page
+     * @return a future with the page of matches
+     */
+    public CompletableFuture<WorkoutClassSearchPage> searchWorkoutClassesAsync(String text, int page, int pageSize) {
+        return asyncExecutor.supply(() -> searchWorkoutClasses(text, page, pageSize));
+    }
+
+    /**
+     * Deletes a workout class without blocking the caller.
+     * @param classId the ID of the class to delete
+     * @return a future that completes once the class is deleted
+     */
+    public CompletableFuture<Void> deleteWorkoutClassAsync(int classId) {
+        return asyncExecutor.supply(() -> {
+            deleteWorkoutClass(classId);
+            return null;
+        });
+    }
+
+    /**
+     * Updates a workout class without blocking the caller.
      * @param workoutClass the class with updated details
-     * @return true if the update was successful, false otherwise
+     * @return a future completing with true if the update succeeded
+     */
+    public CompletableFuture<Boolean> updateWorkoutClassAsync(WorkoutClass workoutClass) {
+        return asyncExecutor.supply(() -> updateWorkoutClass(workoutClass));
+    }
+
+    /**
+     * Books a seat without blocking the caller.
+     * @param classId the class to book
+     * @param memberId the member booking the seat
+     * @return a future with the outcome of the booking attempt
+     */
+    public CompletableFuture<BookingResult> bookClassAsync(int classId, int memberId) {
+        return asyncExecutor.supply(() -> bookClass(classId, memberId));
+    }
+
+    /**
+     * Cancels a booking without blocking the caller.
+     * @param classId the class ID
+     * @param memberId the member's user ID
+     * @return a future completing with true if a booking was cancelled
+     */
+    public CompletableFuture<Boolean> cancelBookingAsync(int classId, int memberId) {
+        return asyncExecutor.supply(() -> cancelBooking(classId, memberId));
+    }
+
+    /**
+     * Lists a class's attendees without blocking the caller.
+     * @param classId the class ID
+     * @return a future with the bookings for the class
+     */
+    public CompletableFuture<List<Booking>> getAttendeesAsync(int classId) {
+        return asyncExecutor.supply(() -> getAttendees(classId));
+    }
+
+    /**
+     * Lists a member's bookings without blocking the caller.
+     * @param memberId the member's user ID
+     * @return a future with the member's bookings
      */
-    public boolean updateWorkoutClass(WorkoutClass workoutClass) {
-        return workoutClassDAO.updateWorkoutClass(workoutClass);
+    public CompletableFuture<List<Booking>> getBookingsByMemberIdAsync(int memberId) {
+        return asyncExecutor.supply(() -> getBookingsByMemberId(memberId));
     }
-    
-} 
+}
@@ -1,7 +1,10 @@
 -- Drop table if it exists (for dev resets)
+DROP TABLE IF EXISTS class_bookings CASCADE;
+DROP TABLE IF EXISTS membership_revenue_summary CASCADE;
 DROP TABLE IF EXISTS memberships CASCADE;
 DROP TABLE IF EXISTS workoutclasses CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
+DROP TABLE IF EXISTS user_email_directory;
 
 -- Create users table (if not already done)
 CREATE TABLE users (
@@ -30,11 +33,69 @@ VALUES
 ('Emily Turner', '$2b$12$VE5vb9Ufhu1NZfBlGke07uRsWY99dm.jSBzoTix2esFq30JTYPMY.', 'eturner@homtmail.com', '777-888-9999', '5 Jog Ave', 'Member'),
 ('Noah Diaz', '$2b$12$0xcZ2gQXtjokevRLHRWO.e5Dr.IKsLTSocCPKs0BQlfwWLgwkeF9y', 'noahdiaz@gmail.com', '222-333-4444', '6 Spin Blvd', 'Member');
 
+-- ==== EMAIL DIRECTORY ====
+-- Only used when users are sharded by location, on the database gym.db.url points at. Each
+-- shard's UNIQUE (user_email) covers its own users only; registrations claim the email here
+-- first, so two locations cannot register the same email at once. user_id stays NULL until
+-- the shard insert succeeds; such claims are given up after a few minutes.
+CREATE TABLE user_email_directory (
+    user_email VARCHAR(100) PRIMARY KEY,
+    location VARCHAR(100) NOT NULL,
+    user_id INT UNIQUE,
+    claimed_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+
+
+-- ==== MONTHLY PARTITIONS ====
+-- memberships (by start_date) and workoutclasses (by class_date) are range-partitioned by month,
+-- so date-bounded queries only touch the months they ask for and old months can be vacuumed,
+-- reindexed or detached on their own. Partitions are named <table>_pYYYYMM; rows outside every
+-- month land in <table>_default. This script creates months up to a year ahead and
+-- PartitionMaintenance keeps that window rolling forward.
+-- Needs PostgreSQL 15+: moving a booked class to another month is a cross-partition UPDATE,
+-- which only cascades to class_bookings from 15 on.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Exclusion constraints cannot be declared on a partitioned table unless they compare the
+-- partition key with =, so the schedule backstop lives on each partition (see below).
+-- A class occupies [class_date + class_time, + class_duration minutes).
+CREATE OR REPLACE FUNCTION add_workoutclass_overlap_constraints(partition_name TEXT) RETURNS VOID AS $$
+BEGIN
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I EXCLUDE USING gist (trainer_id WITH =, ' ||
+                   'tsrange(class_date + class_time, class_date + class_time + class_duration * INTERVAL ''1 minute'') WITH &&)',
+                   partition_name, partition_name || '_no_trainer_overlap');
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I EXCLUDE USING gist (class_location WITH =, ' ||
+                   'tsrange(class_date + class_time, class_date + class_time + class_duration * INTERVAL ''1 minute'') WITH &&)',
+                   partition_name, partition_name || '_no_location_overlap');
+END;
+$$ LANGUAGE plpgsql;
 
+-- Creates the partition of parent_table holding the month containing for_month.
+-- Returns the new partition's name, or NULL if it already exists. Fails if the default
+-- partition already holds rows for that month; PartitionMaintenance checks for that first.
+CREATE OR REPLACE FUNCTION create_monthly_partition(parent_table TEXT, for_month DATE) RETURNS TEXT AS $$
+DECLARE
+    first_day DATE := date_trunc('month', for_month)::DATE;
+    partition_name TEXT := parent_table || '_p' || to_char(first_day, 'YYYYMM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN NULL;
+    END IF;
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, parent_table, first_day, (first_day + INTERVAL '1 month')::DATE);
+    IF parent_table = 'workoutclasses' THEN
+        PERFORM add_workoutclass_overlap_constraints(partition_name);
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
 
 -- Create memberships table
+-- The partition key has to be part of every unique constraint, hence the two-column primary key;
+-- membership_id alone is still unique because it comes from one sequence.
 CREATE TABLE memberships (
-    membership_id SERIAL PRIMARY KEY,
+    membership_id SERIAL,
     membership_type VARCHAR(100) NOT NULL,
     membership_description TEXT,
     membership_cost NUMERIC(10, 2) NOT NULL,
@@ -43,9 +104,87 @@ CREATE TABLE memberships (
     end_date DATE NOT NULL,
     is_on_hold BOOLEAN DEFAULT FALSE,
     payment_method VARCHAR(100),
-    status VARCHAR(50)
+    status VARCHAR(50),
+    PRIMARY KEY (membership_id, start_date),
+    -- Lets the expiry sweep bound start_date by its cutoff, which is what prunes partitions
+    CHECK (end_date >= start_date)
+) PARTITION BY RANGE (start_date);
+
+CREATE TABLE memberships_default PARTITION OF memberships DEFAULT;
+
+-- One partition per month from the first seeded month to a year from now
+SELECT create_monthly_partition('memberships', month::DATE)
+FROM generate_series(DATE '2024-01-01', date_trunc('month', CURRENT_DATE) + INTERVAL '12 months', INTERVAL '1 month') AS month;
+
+-- Serves per-member lookups and the bulk member_id = ANY(?) roster query
+CREATE INDEX idx_memberships_member ON memberships (member_id);
+
+-- Expiry sweeper: only active rows are indexed, so the index stays small no matter how many
+-- expired memberships pile up, and "active AND end_date < today" is a short range scan.
+CREATE INDEX idx_memberships_active_end_date ON memberships (end_date) WHERE status = 'active';
+CREATE INDEX idx_memberships_on_hold ON memberships (membership_id) WHERE status = 'on hold';
+
+-- ==== REVENUE SUMMARY ====
+-- Running totals per (type, start month, payment method), kept current by a trigger on memberships
+-- so revenue reports read one row per group instead of scanning every membership.
+CREATE TABLE membership_revenue_summary (
+    membership_type VARCHAR(100) NOT NULL,
+    revenue_month DATE NOT NULL,
+    payment_method VARCHAR(100) NOT NULL,
+    membership_count BIGINT NOT NULL DEFAULT 0,
+    total_revenue NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (membership_type, revenue_month, payment_method)
 );
 
+-- Statement-level: each INSERT, UPDATE or DELETE nets its rows per (type, month, method) and
+-- upserts each group once, in key order, so a 1,000-row batch takes one summary row lock per
+-- group instead of 1,000 and concurrent statements lock shared groups in the same order.
+-- Updates that leave every group unchanged (status changes from the expiry sweep) touch nothing.
+CREATE OR REPLACE FUNCTION maintain_membership_revenue_summary() RETURNS TRIGGER AS $$
+DECLARE
+    changes TEXT;
+BEGIN
+    -- Transition tables only exist for the matching events, so build the source per operation
+    IF TG_OP = 'INSERT' THEN
+        changes := 'SELECT membership_type, start_date, payment_method, membership_cost, 1 AS sign FROM new_rows';
+    ELSIF TG_OP = 'DELETE' THEN
+        changes := 'SELECT membership_type, start_date, payment_method, membership_cost, -1 AS sign FROM old_rows';
+    ELSE
+        changes := 'SELECT membership_type, start_date, payment_method, membership_cost, 1 AS sign FROM new_rows ' ||
+                   'UNION ALL SELECT membership_type, start_date, payment_method, membership_cost, -1 FROM old_rows';
+    END IF;
+
+    EXECUTE 'WITH changes AS (' || changes || ') ' ||
+        'INSERT INTO membership_revenue_summary AS s (membership_type, revenue_month, payment_method, membership_count, total_revenue) ' ||
+        'SELECT membership_type, date_trunc(''month'', start_date)::DATE, COALESCE(payment_method, ''Unspecified''), ' ||
+        '       SUM(sign), SUM(sign * membership_cost) ' ||
+        'FROM changes GROUP BY 1, 2, 3 ' ||
+        'HAVING SUM(sign) <> 0 OR SUM(sign * membership_cost) <> 0 ' ||
+        'ORDER BY 1, 2, 3 ' ||
+        'ON CONFLICT (membership_type, revenue_month, payment_method) ' ||
+        'DO UPDATE SET membership_count = s.membership_count + EXCLUDED.membership_count, ' ||
+        '              total_revenue = s.total_revenue + EXCLUDED.total_revenue';
+
+    IF TG_OP <> 'INSERT' THEN
+        EXECUTE 'WITH changes AS (' || changes || ') ' ||
+            'DELETE FROM membership_revenue_summary s USING (' ||
+            '    SELECT DISTINCT membership_type, date_trunc(''month'', start_date)::DATE AS revenue_month, ' ||
+            '           COALESCE(payment_method, ''Unspecified'') AS payment_method FROM changes) c ' ||
+            'WHERE s.membership_type = c.membership_type AND s.revenue_month = c.revenue_month ' ||
+            '  AND s.payment_method = c.payment_method AND s.membership_count = 0';
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Transition tables allow one event per trigger and no column list, hence three triggers
+CREATE TRIGGER memberships_revenue_summary_insert AFTER INSERT ON memberships
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION maintain_membership_revenue_summary();
+CREATE TRIGGER memberships_revenue_summary_update AFTER UPDATE ON memberships
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION maintain_membership_revenue_summary();
+CREATE TRIGGER memberships_revenue_summary_delete AFTER DELETE ON memberships
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION maintain_membership_revenue_summary();
+
 -- ==== INSERT MEMBERSHIPS ====
 
 INSERT INTO memberships (
@@ -69,8 +208,9 @@ VALUES
 
 
 -- Create workout classes table
+-- class_id alone is still unique because it comes from one sequence
 CREATE TABLE workoutclasses (
-    class_id SERIAL PRIMARY KEY,
+    class_id SERIAL,
     class_name VARCHAR(100) NOT NULL,
     class_description TEXT,
     class_date DATE NOT NULL,
@@ -81,8 +221,17 @@ CREATE TABLE workoutclasses (
     class_location VARCHAR(100) NOT NULL,
     class_level VARCHAR(50) NOT NULL,
     class_equipment VARCHAR(100),
-    is_completed BOOLEAN DEFAULT FALSE
-);
+    is_completed BOOLEAN DEFAULT FALSE,
+    seats_booked INT NOT NULL DEFAULT 0 CHECK (seats_booked >= 0),
+    PRIMARY KEY (class_id, class_date)
+) PARTITION BY RANGE (class_date);
+
+CREATE TABLE workoutclasses_default PARTITION OF workoutclasses DEFAULT;
+SELECT add_workoutclass_overlap_constraints('workoutclasses_default');
+
+-- One partition per month from the first seeded month to a year from now
+SELECT create_monthly_partition('workoutclasses', month::DATE)
+FROM generate_series(DATE '2024-01-01', date_trunc('month', CURRENT_DATE) + INTERVAL '12 months', INTERVAL '1 month') AS month;
 
 -- ==== INSERT WORKOUT CLASSES ====
 INSERT INTO workoutclasses (
@@ -99,8 +248,130 @@ INSERT INTO workoutclasses (
     is_completed
 )
 VALUES
-('Yoga Basics', 'A gentle introduction to yoga for beginners.', 2, '2025-04-10', '09:00:00', '60 minutes' , 20, 'Studio A', 'Beginner', 'Yoga Mat', FALSE),
-('HIIT Blast', 'High-intensity interval training for all levels.', 3, '2025-04-11', '18:00:00', '45 minutes', 15, 'Gym Floor', 'Intermediate', 'Dumbbells', FALSE),
-('Zumba Dance Party', 'Fun and energetic dance workout.', 2, '2025-04-12', '17:00:00', '60 minutes', 25, 'Dance Studio', 'All Levels', 'None', FALSE),
-('Pilates Core Strength', 'Focus on core strength and flexibility.', 3, '2025-04-13', '08:30:00', '50 minutes', 15, 'Studio B', 'Intermediate', 'Reformer', FALSE),
-('Spin Class Challenge', 'High-energy cycling class with music.', 2, '2025-04-14', '19:30:00', '45 minutes', 20, 'Cycling Studio', 'All Levels', 'None', FALSE);
\ No newline at end of file
+('Yoga Basics', 'A gentle introduction to yoga for beginners.', 2, '2025-04-10', '09:00:00', 60, 20, 'Studio A', 'Beginner', 'Yoga Mat', FALSE),
+('HIIT Blast', 'High-intensity interval training for all levels.', 3, '2025-04-11', '18:00:00', 45, 15, 'Gym Floor', 'Intermediate', 'Dumbbells', FALSE),
+('Zumba Dance Party', 'Fun and energetic dance workout.', 2, '2025-04-12', '17:00:00', 60, 25, 'Dance Studio', 'All Levels', 'None', FALSE),
+('Pilates Core Strength', 'Focus on core strength and flexibility.', 3, '2025-04-13', '08:30:00', 50, 15, 'Studio B', 'Intermediate', 'Reformer', FALSE),
+('Spin Class Challenge', 'High-energy cycling class with music.', 2, '2025-04-14', '19:30:00', 45, 20, 'Cycling Studio', 'All Levels', 'None', FALSE);
+
+-- ==== WORKOUT CLASS BROWSE INDEXES ====
+-- Match the keyset ORDER BY (class_date, class_time, class_id) so each page is an index seek,
+-- with level/location leading where those filters are used.
+CREATE INDEX idx_workoutclasses_schedule ON workoutclasses (class_date, class_time, class_id);
+CREATE INDEX idx_workoutclasses_level_schedule ON workoutclasses (class_level, class_date, class_time, class_id);
+CREATE INDEX idx_workoutclasses_location_schedule ON workoutclasses (class_location, class_date, class_time, class_id);
+
+-- ==== WORKOUT CLASS SEARCH ====
+-- Weighted document for ranked text search: name (A) outranks level (B), description (C) and equipment (D).
+-- Generated, so it can never drift from the columns; the GIN index serves the @@ match.
+ALTER TABLE workoutclasses ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(class_name, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(class_level, '')), 'B') ||
+    setweight(to_tsvector('english', coalesce(class_description, '')), 'C') ||
+    setweight(to_tsvector('english', coalesce(class_equipment, '')), 'D')
+) STORED;
+CREATE INDEX idx_workoutclasses_search ON workoutclasses USING gin (search_vector);
+
+-- ==== SCHEDULE CONFLICT BACKSTOP ====
+-- WorkoutClassService checks for double bookings against an in-memory interval index; the
+-- exclusion constraints added to every partition by add_workoutclass_overlap_constraints catch
+-- what it cannot see (other app instances, direct SQL, concurrent requests). Being per partition,
+-- they miss only a class running past midnight on the last day of a month into the next month.
+
+-- ==== CLASS BOOKINGS ====
+-- seats_booked on workoutclasses is the seat counter. Booking increments it with a conditional
+-- UPDATE (seats_booked < class_capacity) that only locks the one class row; removing a booking
+-- (cancel, or cascade from a deleted user) gives the seat back through the trigger below.
+-- class_date is copied from the class so the foreign key can reference the partitioned key and
+-- seat updates can name the class's partition; ON UPDATE CASCADE follows a rescheduled class.
+CREATE TABLE class_bookings (
+    booking_id SERIAL PRIMARY KEY,
+    class_id INT NOT NULL,
+    class_date DATE NOT NULL,
+    member_id INT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    booked_at TIMESTAMP NOT NULL DEFAULT now(),
+    UNIQUE (class_id, member_id),
+    FOREIGN KEY (class_id, class_date) REFERENCES workoutclasses (class_id, class_date)
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX idx_class_bookings_member ON class_bookings (member_id);
+
+CREATE OR REPLACE FUNCTION release_class_seat() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE workoutclasses SET seats_booked = seats_booked - 1
+    WHERE class_id = OLD.class_id AND class_date = OLD.class_date AND seats_booked > 0;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER class_bookings_release_seat
+AFTER DELETE ON class_bookings
+FOR EACH ROW EXECUTE FUNCTION release_class_seat();
+
+-- ==== CHANGE FEED ====
+-- Statement-level triggers publish what changed on channel gym_changes as
+-- {"table": ..., "op": ..., "ids": [...]}; ChangeFeedListener turns these into ChangeEvents that
+-- invalidate in-process caches. One notification per statement, not per row, so bulk writes stay cheap.
+-- Statements touching more than 500 rows leave out "ids" (payloads are capped at 8000 bytes),
+-- which listeners treat as "any row may have changed".
+-- Trigger arguments: the id column, then columns whose changes alone are not worth reporting
+-- (seats_booked moves on every booking but is not part of any cached class).
+CREATE OR REPLACE FUNCTION notify_gym_change() RETURNS TRIGGER AS $$
+DECLARE
+    id_column TEXT := TG_ARGV[0];
+    ignored_columns TEXT[] := TG_ARGV[1:];
+    changed_ids INT[];
+    payload JSONB;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        EXECUTE format('SELECT array_agg(%1$I ORDER BY %1$I) FROM new_rows', id_column) INTO changed_ids;
+    ELSIF TG_OP = 'DELETE' THEN
+        EXECUTE format('SELECT array_agg(%1$I ORDER BY %1$I) FROM old_rows', id_column) INTO changed_ids;
+    ELSIF TG_OP = 'UPDATE' THEN
+        EXECUTE format(
+            'SELECT array_agg(n.%1$I ORDER BY n.%1$I) FROM new_rows n JOIN old_rows o ON o.%1$I = n.%1$I ' ||
+            'WHERE to_jsonb(n) - $1 IS DISTINCT FROM to_jsonb(o) - $1', id_column)
+            INTO changed_ids USING ignored_columns;
+    END IF;
+
+    IF TG_OP <> 'TRUNCATE' AND changed_ids IS NULL THEN
+        RETURN NULL; -- no rows, or only ignored columns, changed
+    END IF;
+
+    payload := jsonb_build_object('table', TG_TABLE_NAME, 'op', lower(TG_OP));
+    IF changed_ids IS NOT NULL AND cardinality(changed_ids) <= 500 THEN
+        payload := payload || jsonb_build_object('ids', to_jsonb(changed_ids));
+    END IF;
+    PERFORM pg_notify('gym_changes', payload::text);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Transition tables allow only one event per trigger, hence four triggers per table.
+CREATE TRIGGER users_notify_insert AFTER INSERT ON users
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('user_id');
+CREATE TRIGGER users_notify_update AFTER UPDATE ON users
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('user_id');
+CREATE TRIGGER users_notify_delete AFTER DELETE ON users
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('user_id');
+CREATE TRIGGER users_notify_truncate AFTER TRUNCATE ON users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('user_id');
+
+CREATE TRIGGER memberships_notify_insert AFTER INSERT ON memberships
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('membership_id');
+CREATE TRIGGER memberships_notify_update AFTER UPDATE ON memberships
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('membership_id');
+CREATE TRIGGER memberships_notify_delete AFTER DELETE ON memberships
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('membership_id');
+CREATE TRIGGER memberships_notify_truncate AFTER TRUNCATE ON memberships
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('membership_id');
+
+CREATE TRIGGER workoutclasses_notify_insert AFTER INSERT ON workoutclasses
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('class_id', 'seats_booked');
+CREATE TRIGGER workoutclasses_notify_update AFTER UPDATE ON workoutclasses
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('class_id', 'seats_booked');
+CREATE TRIGGER workoutclasses_notify_delete AFTER DELETE ON workoutclasses
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('class_id', 'seats_booked');
+CREATE TRIGGER workoutclasses_notify_truncate AFTER TRUNCATE ON workoutclasses
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_gym_change('class_id', 'seats_booked');